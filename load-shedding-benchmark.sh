@@ -0,0 +1,71 @@
+#!/bin/bash
+set -e
+
+# Latência das requisições aceitas sob sobrecarga, com e sem o limite adaptativo
+# (app.traffic.adaptive-limits.payments.enabled). Para cada nível de CONCURRENCY_LEVELS, REQUESTS leituras por id
+# são enviadas contra o pool de 5 conexões; as rejeitadas (503 do limite) são contadas à parte.
+#   ./mvnw clean package -DskipTests
+#   VAULT_TOKEN=root ./load-shedding-benchmark.sh
+JAR=${JAR:-target/vault-rotation-0.0.1-SNAPSHOT.jar}
+REQUESTS=${REQUESTS:-5000}
+CONCURRENCY_LEVELS=${CONCURRENCY_LEVELS:-8 32 128}
+PAYMENTS=${PAYMENTS:-200}
+PORT=${PORT:-8080}
+URL="http://localhost:$PORT"
+# O bulkhead de pagamentos vira o teto (sem espera) e as threads do Tomcat não limitam antes dele
+APP_ARGS=${APP_ARGS:---spring.jpa.show-sql=false --logging.level.org.springframework.jdbc.core=INFO --app.traffic.bulkheads.payments.max-concurrent=200 --app.traffic.bulkheads.payments.max-wait=0 --app.traffic.adaptive-limits.payments.max-limit=200}
+
+start_app() {
+  local limited=$1
+  java -jar "$JAR" --server.port="$PORT" --app.traffic.adaptive-limits.payments.enabled="$limited" $APP_ARGS \
+    > "/tmp/load-shedding-$limited.log" 2>&1 &
+  APP_PID=$!
+  until curl -sf "$URL/actuator/health/readiness" > /dev/null; do
+    kill -0 "$APP_PID" 2>/dev/null || { echo "processo terminou, veja /tmp/load-shedding-$limited.log"; exit 1; }
+    sleep 0.2
+  done
+}
+
+stop_app() {
+  kill "$APP_PID"; wait "$APP_PID" 2>/dev/null || true
+}
+
+# Imprime "aceitas/s;p50;p99;rejeitadas;erros" das aceitas (200) com $1 clientes
+load() {
+  local concurrency=$1 start end
+  start=$(date +%s%N)
+  awk -v n="$REQUESTS" '{ url[NR] = $0 } END { for (i = 0; i < n; i++) print url[i % NR + 1] }' /tmp/load-shedding-get.txt \
+    | xargs -P "$concurrency" -n 1 curl -s -o /dev/null -w '%{time_total} %{http_code}\n' \
+    > /tmp/load-shedding-times.txt
+  end=$(date +%s%N)
+  awk '$2 == 200 { print $1 }' /tmp/load-shedding-times.txt | sort -n > /tmp/load-shedding-accepted.txt
+  awk -v elapsed=$(( (end - start) / 1000000 )) \
+      -v shed="$(awk '$2 == 503' /tmp/load-shedding-times.txt | wc -l)" \
+      -v errors="$(awk '$2 != 200 && $2 != 503' /tmp/load-shedding-times.txt | wc -l)" '
+    { times[NR] = $1 * 1000 }
+    END {
+      printf "%.0f;%.2f;%.2f;%d;%d\n", NR * 1000 / elapsed, times[int((NR + 1) * 0.5)],
+        times[int(NR * 0.99)], shed, errors
+    }' /tmp/load-shedding-accepted.txt
+}
+
+start_app false
+: > /tmp/load-shedding-ids.txt
+for i in $(seq 1 "$PAYMENTS"); do
+  curl -s -X POST "$URL/api/payments" -H 'Content-Type: application/json' \
+    -d "{\"name\":\"Sobrecarga $i\",\"ccInfo\":\"4111111111111111\",\"amount\":$i.50}" \
+    | sed -n 's/.*"id":"\([^"]*\)".*/\1/p' >> /tmp/load-shedding-ids.txt
+done
+stop_app
+sed "s#^#$URL/api/payments/#" /tmp/load-shedding-ids.txt > /tmp/load-shedding-get.txt
+
+echo "limite adaptativo;clientes;aceitas/s;p50 (ms);p99 (ms);rejeitadas (503);erros"
+for limited in false true; do
+  start_app "$limited"
+  # Aquecimento: JIT, conexões do pool e a latência de referência do limite, com carga leve
+  REQUESTS=1000 load 4 > /dev/null
+  for concurrency in $CONCURRENCY_LEVELS; do
+    echo "$limited;$concurrency;$(load "$concurrency")"
+  done
+  stop_app
+done
@@ -0,0 +1,83 @@
+#!/bin/bash
+set -e
+
+# Espalhamento das rotações agendadas pela frota: INSTANCES réplicas da aplicação, com o mesmo Vault e
+# MySQL e identidades diferentes, são iniciadas juntas (como após um rollout) com uma verificação de
+# credenciais curta. Depois de DURATION segundos, os eventos ROTATION_SLOT_RELEASED de cada réplica
+# mostram quando cada uma rotacionou; o teste falha se mais de MAX_CONCURRENT rotações se sobrepuseram.
+#   ./mvnw clean package -DskipTests
+#   VAULT_TOKEN=root ./rotation-stagger-test.sh
+JAR=${JAR:-target/vault-rotation-0.0.1-SNAPSHOT.jar}
+INSTANCES=${INSTANCES:-6}
+MAX_CONCURRENT=${MAX_CONCURRENT:-2}
+PERIOD=${PERIOD:-30s}
+DURATION=${DURATION:-150}
+BASE_PORT=${BASE_PORT:-8081}
+MYSQL=${MYSQL:-mysql -h 127.0.0.1 -uroot -prootpassword payments}
+APP_ARGS=${APP_ARGS:---spring.jpa.show-sql=false}
+
+PIDS=()
+cleanup() {
+  for pid in "${PIDS[@]}"; do kill "$pid" 2>/dev/null || true; done
+  wait 2>/dev/null || true
+}
+trap cleanup EXIT
+
+echo "Iniciando $INSTANCES réplicas (verificação a cada $PERIOD, até $MAX_CONCURRENT rotações simultâneas)..."
+for i in $(seq 1 "$INSTANCES"); do
+  java -jar "$JAR" --server.port=$((BASE_PORT + i - 1)) \
+    --app.rotation.coordination.instance-id="replica-$i" \
+    --app.rotation.coordination.max-concurrent="$MAX_CONCURRENT" \
+    --app.rotation.coordination.retry-interval=2s \
+    --app.rotation.coordination.max-defer="$PERIOD" \
+    --app.maintenance.credential-check.period="$PERIOD" \
+    $APP_ARGS > "/tmp/rotation-stagger-$i.log" 2>&1 &
+  PIDS+=($!)
+done
+for i in $(seq 1 "$INSTANCES"); do
+  until curl -sf "http://localhost:$((BASE_PORT + i - 1))/actuator/health/readiness" > /dev/null; do
+    kill -0 "${PIDS[$((i - 1))]}" 2>/dev/null || { echo "réplica $i terminou, veja /tmp/rotation-stagger-$i.log"; exit 1; }
+    sleep 0.5
+  done
+done
+
+echo "Aguardando ${DURATION}s de rotações..."
+sleep "$DURATION"
+
+# Uma linha "início fim réplica datasource" (ms desde a época) por rotação concluída, de todas as réplicas
+: > /tmp/rotation-stagger-intervals.txt
+for i in $(seq 1 "$INSTANCES"); do
+  curl -sf "http://localhost:$((BASE_PORT + i - 1))/api/rotation/events?type=ROTATION_SLOT_RELEASED&limit=1000" \
+    | jq -r --arg replica "replica-$i" '.events[]
+        | (.timestamp | capture("^(?<s>[^.Z]+)(\\.(?<f>[0-9]+))?Z$")) as $t
+        | ((($t.s + "Z") | fromdate) * 1000 + (("0." + ($t.f // "0")) | tonumber * 1000 | floor)) as $finish
+        | "\($finish - .durationMs) \($finish) \($replica) \(.datasource)"' \
+    >> /tmp/rotation-stagger-intervals.txt
+done
+
+echo
+echo "réplica;rotações;segundo do período da primeira rotação"
+sort -n /tmp/rotation-stagger-intervals.txt | awk -v period="${PERIOD%s}" '
+  { count[$3]++; if (!($3 in first)) first[$3] = int($1 / 1000) % period }
+  END { for (r in count) printf "%s;%d;%d\n", r, count[r], first[r] }' | sort
+
+# Sobreposição máxima: +1 no início e -1 no fim de cada rotação, em ordem de tempo
+MAX_OVERLAP=$(awk '{ print $1, 1; print $2, -1 }' /tmp/rotation-stagger-intervals.txt | sort -n -k1,1 -k2,2 \
+  | awk '{ current += $2; if (current > max) max = current } END { print max + 0 }')
+TOTAL=$(wc -l < /tmp/rotation-stagger-intervals.txt)
+
+echo
+echo "Vagas de rotação no banco:"
+$MYSQL -e "SELECT slot, holder, datasource, acquired_at, expires_at FROM rotation_slots ORDER BY slot" || true
+
+echo
+echo "$TOTAL rotações concluídas, no máximo $MAX_OVERLAP simultâneas (limite $MAX_CONCURRENT)"
+if [ "$TOTAL" -eq 0 ]; then
+  echo "FALHA: nenhuma rotação coordenada; veja /tmp/rotation-stagger-*.log"
+  exit 1
+fi
+if [ "$MAX_OVERLAP" -gt "$MAX_CONCURRENT" ]; then
+  echo "FALHA: limite de rotações simultâneas excedido"
+  exit 1
+fi
+echo "OK"
@@ -0,0 +1,89 @@
+#!/bin/bash
+set -e
+
+# Latência da busca filtrada (GET /api/payments/search) com milhões de pagamentos.
+# Use um banco de testes: o script insere ROWS pagamentos sintéticos diretamente na tabela payments.
+# A busca consulta todos os shards, então basta popular um deles.
+#   MYSQL="mysql -h127.0.0.1 -uroot -proot payments" ROWS=3000000 ./search-benchmark.sh
+# A aplicação deve estar rodando (URL) e já ter criado a tabela e os índices.
+MYSQL=${MYSQL:-mysql -h127.0.0.1 -uroot -proot payments}
+ROWS=${ROWS:-3000000}
+RUNS=${RUNS:-50}
+URL=${URL:-http://localhost:8080}
+SEED=${SEED:-true}
+CHUNK=100000
+
+if [ "$SEED" = "true" ]; then
+  echo "Inserindo $ROWS pagamentos em lotes de $CHUNK..."
+  for offset in $(seq 0 "$CHUNK" $((ROWS - 1))); do
+    # Nomes de 200 prefixos distintos, valores até 10.000 e datas espalhadas nos últimos 90 dias
+    $MYSQL -e "SET SESSION cte_max_recursion_depth = $CHUNK;
+      INSERT INTO payments (id, name, cc_info, amount, created_at)
+      WITH RECURSIVE seq(n) AS (SELECT 0 UNION ALL SELECT n + 1 FROM seq WHERE n < $CHUNK - 1)
+      SELECT UUID(),
+             CONCAT(ELT(1 + (n + $offset) % 20, 'Ana', 'Bruno', 'Carla', 'Diego', 'Elisa', 'Fabio', 'Gabriela',
+                        'Hugo', 'Isabel', 'Joao', 'Karina', 'Lucas', 'Marina', 'Nuno', 'Olivia', 'Paulo',
+                        'Quenia', 'Rafael', 'Sofia', 'Tiago'),
+                    ' ', ELT(1 + FLOOR((n + $offset) / 20) % 10, 'Silva', 'Souza', 'Costa', 'Santos', 'Oliveira',
+                                    'Pereira', 'Lima', 'Gomes', 'Ribeiro', 'Almeida'),
+                    ' ', n + $offset),
+             '4111111111111111',
+             ROUND(RAND() * 10000, 2),
+             NOW(6) - INTERVAL FLOOR(RAND() * 90 * 24 * 3600) SECOND
+      FROM seq;"
+  done
+  $MYSQL -e "ANALYZE TABLE payments;" > /dev/null
+fi
+$MYSQL -N -e "SELECT CONCAT('Linhas em payments: ', COUNT(*)) FROM payments;"
+
+FROM=$(date -u -d '-1 day' +%Y-%m-%dT%H:%M:%S)
+TO=$(date -u +%Y-%m-%dT%H:%M:%S)
+FROM_30D=$(date -u -d '-30 days' +%Y-%m-%dT%H:%M:%S)
+
+# Planos de cada índice: nenhum pode ser "ALL" (varredura completa) ou usar filesort
+echo
+echo "type;key;Extra"
+for query in \
+  "FROM payments FORCE INDEX (idx_payments_name) WHERE name LIKE 'Ana S%' ESCAPE '!' AND amount >= 100 ORDER BY name, created_at, id LIMIT 50" \
+  "FROM payments FORCE INDEX (idx_payments_created) WHERE created_at >= '$FROM' AND created_at < '$TO' ORDER BY created_at, id LIMIT 50" \
+  "FROM payments FORCE INDEX (idx_payments_amount) WHERE amount >= 100 AND amount <= 200 ORDER BY amount, created_at, id LIMIT 50"; do
+  $MYSQL -N -e "EXPLAIN FORMAT=TRADITIONAL SELECT id, name, cc_info, amount, created_at $query" \
+    | awk -F'\t' '{ print $5 ";" $7 ";" $NF; if ($5 == "ALL" || $NF ~ /filesort/) { bad = 1 } } END { exit bad }' \
+    || { echo "Plano sem índice ou com filesort: $query"; exit 1; }
+done
+
+# Latência por cenário: p50, p95 e máximo de RUNS requisições
+measure() {
+  local label=$1 query=$2
+  for run in $(seq 1 "$RUNS"); do
+    curl -s -o /dev/null -w '%{time_total} %{http_code}\n' "$URL/api/payments/search?$query"
+  done | sort -n | awk -v label="$label" '
+    $2 != 200 { errors++ }
+    { times[NR] = $1 * 1000 }
+    END {
+      printf "%s;%.1f;%.1f;%.1f;%d\n", label, times[int((NR + 1) * 0.5)], times[int(NR * 0.95)], times[NR], errors
+    }'
+}
+
+echo
+echo "cenário;p50 (ms);p95 (ms);máximo (ms);erros"
+measure "prefixo do nome" "namePrefix=Ana%20S&limit=50"
+measure "prefixo + faixa de valor" "namePrefix=Ma&minAmount=9000&maxAmount=9100&limit=50"
+measure "janela de 1 dia" "createdFrom=$FROM&createdTo=$TO&limit=50"
+measure "janela de 30 dias + valor" "createdFrom=$FROM_30D&createdTo=$TO&minAmount=5000&limit=50"
+measure "faixa de valor estreita" "minAmount=100&maxAmount=101&limit=50"
+measure "faixa de valor ampla" "minAmount=0&limit=500"
+
+# Paginação: cada página continua do cursor anterior, com o mesmo custo da primeira
+echo
+echo "página;tempo (ms);pagamentos"
+cursor=""
+for page in $(seq 1 20); do
+  response=$(curl -s -w '\n%{time_total}' "$URL/api/payments/search?minAmount=0&limit=500${cursor:+&cursor=$cursor}")
+  elapsed=$(echo "$response" | tail -1)
+  body=$(echo "$response" | head -n -1)
+  count=$(echo "$body" | grep -o '"id"' | wc -l)
+  echo "$page;$(awk -v t="$elapsed" 'BEGIN { printf "%.1f", t * 1000 }');$count"
+  cursor=$(echo "$body" | sed -n 's/.*"cursor":"\([^"]*\)".*/\1/p')
+  [ -z "$cursor" ] && break
+done
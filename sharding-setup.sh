@@ -0,0 +1,43 @@
+#!/bin/bash
+set -e
+
+# Sobe o ambiente local de shards (docker-compose.sharding.yml) e configura o Vault:
+# uma conexão e uma role por instância MySQL, para que cada shard tenha usuários e leases próprios.
+COMPOSE="docker compose -f docker-compose.sharding.yml"
+SHARDS=${SHARDS:-3}
+MYSQL_USER=${MYSQL_USER:-root}
+MYSQL_PASS=${MYSQL_PASS:-rootpassword}
+MYSQL_DB=${MYSQL_DB:-payments}
+
+vault() {
+  $COMPOSE exec -T -e VAULT_ADDR=http://127.0.0.1:8200 -e VAULT_TOKEN=root vault vault "$@"
+}
+
+echo "Iniciando Vault e $SHARDS instâncias MySQL..."
+$COMPOSE up -d --wait
+
+echo "Habilitando motores de segredos..."
+vault secrets enable database || echo "Motor de banco de dados já habilitado"
+vault secrets enable -version=2 kv || echo "Motor KV já habilitado"
+
+for i in $(seq 0 $((SHARDS - 1))); do
+  # O shard 0 é o datasource payments (role payments-app), os demais payments-s<n>
+  if [ "$i" -eq 0 ]; then ROLE=payments-app; else ROLE=payments-app-s$i; fi
+
+  echo "Configurando conexão payments-shard-$i e role $ROLE..."
+  vault write database/config/payments-shard-$i \
+      plugin_name=mysql-database-plugin \
+      connection_url="{{username}}:{{password}}@tcp(mysql-shard-$i:3306)/" \
+      allowed_roles="$ROLE" \
+      username="$MYSQL_USER" \
+      password="$MYSQL_PASS"
+
+  vault write database/roles/$ROLE \
+      db_name=payments-shard-$i \
+      creation_statements="CREATE USER '{{name}}'@'%' IDENTIFIED BY '{{password}}' WITH MAX_USER_CONNECTIONS 20; GRANT ALL PRIVILEGES ON $MYSQL_DB.* TO '{{name}}'@'%';" \
+      default_ttl="1h" \
+      max_ttl="24h"
+done
+
+echo "Configuração concluída! Execute a aplicação com:"
+echo "  VAULT_ADDR=http://localhost:8200 VAULT_TOKEN=root DATABASE_URL=localhost:3306/payments ./mvnw spring-boot:run -Dspring-boot.run.profiles=sharding"
@@ -0,0 +1,45 @@
+-- Schema de cada shard de pagamentos. O Hibernate (ddl-auto=update) só atualiza o primeiro shard,
+-- por isso as tabelas são criadas na inicialização de todas as instâncias.
+CREATE TABLE IF NOT EXISTS payments (
+    id         VARCHAR(255)   NOT NULL PRIMARY KEY,
+    amount     DECIMAL(38, 2) NOT NULL,
+    cc_info    VARCHAR(255)   NOT NULL,
+    created_at DATETIME(6)    NOT NULL,
+    name       VARCHAR(255)   NOT NULL,
+    INDEX idx_payments_created (created_at, id),
+    INDEX idx_payments_name (name, created_at, id),
+    INDEX idx_payments_amount (amount, created_at, id)
+);
+
+-- Unicidade do id de pagamento quando payments é particionada (chave primária (id, created_at))
+CREATE TABLE IF NOT EXISTS payment_ids (
+    payment_id VARCHAR(255) NOT NULL PRIMARY KEY,
+    created_at DATETIME(6)  NOT NULL,
+    INDEX idx_payment_ids_created (created_at)
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idempotency_key VARCHAR(255) NOT NULL PRIMARY KEY,
+    created_at      DATETIME(6)  NOT NULL,
+    expires_at      DATETIME(6)  NOT NULL,
+    payment_id      VARCHAR(255) NOT NULL,
+    request_hash    VARCHAR(64)  NOT NULL
+);
+
+-- Alterações de pagamentos publicadas pelo feed (ver PaymentOutboxEntry); seq é a posição no feed do shard
+CREATE TABLE IF NOT EXISTS payment_outbox (
+    seq        BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    type       VARCHAR(16)  NOT NULL,
+    payment_id VARCHAR(255) NOT NULL,
+    changed_at DATETIME(6)  NOT NULL,
+    INDEX idx_payment_outbox_changed (changed_at)
+);
+
+-- Vagas de rotação compartilhadas pelas réplicas; usada apenas no primeiro shard (datasource primário)
+CREATE TABLE IF NOT EXISTS rotation_slots (
+    slot        INT          NOT NULL PRIMARY KEY,
+    holder      VARCHAR(255),
+    datasource  VARCHAR(255),
+    acquired_at DATETIME(6),
+    expires_at  DATETIME(6)  NOT NULL
+);
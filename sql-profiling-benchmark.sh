@@ -0,0 +1,73 @@
+#!/bin/bash
+set -e
+
+# Custo do perfil SQL (app.sql-profiling.enabled) sob carga: a mesma aplicação, com o mesmo Vault e MySQL,
+# é iniciada alternadamente com o perfil ligado e desligado, e cada cenário recebe REQUESTS requisições
+# com CONCURRENCY clientes. As rodadas alternam para que aquecimento do MySQL e ruído afetem os dois lados.
+#   ./mvnw clean package -DskipTests
+#   VAULT_TOKEN=root ./sql-profiling-benchmark.sh
+JAR=${JAR:-target/vault-rotation-0.0.1-SNAPSHOT.jar}
+ROUNDS=${ROUNDS:-3}
+REQUESTS=${REQUESTS:-5000}
+CONCURRENCY=${CONCURRENCY:-16}
+PAYMENTS=${PAYMENTS:-500}
+PORT=${PORT:-8080}
+URL="http://localhost:$PORT"
+# Sem o SQL no stdout, que custaria mais que o próprio perfil, e sem prazo curto nas requisições
+APP_ARGS=${APP_ARGS:---spring.jpa.show-sql=false --logging.level.org.springframework.jdbc.core=INFO --app.traffic.deadlines.payments.timeout=30s}
+
+start_app() {
+  local profiling=$1
+  java -jar "$JAR" --server.port="$PORT" --app.sql-profiling.enabled="$profiling" $APP_ARGS \
+    > "/tmp/sql-profiling-$profiling.log" 2>&1 &
+  APP_PID=$!
+  until curl -sf "$URL/actuator/health/readiness" > /dev/null; do
+    kill -0 "$APP_PID" 2>/dev/null || { echo "processo terminou, veja /tmp/sql-profiling-$profiling.log"; exit 1; }
+    sleep 0.2
+  done
+}
+
+stop_app() {
+  kill "$APP_PID"; wait "$APP_PID" 2>/dev/null || true
+}
+
+# Imprime "req/s;p50;p95;p99;erros" para as URLs em $1 (uma por linha), repetidas até REQUESTS
+load() {
+  local urls=$1 start end
+  start=$(date +%s%N)
+  awk -v n="$REQUESTS" '{ url[NR] = $0 } END { for (i = 0; i < n; i++) print url[i % NR + 1] }' "$urls" \
+    | xargs -P "$CONCURRENCY" -n 1 curl -s -o /dev/null -w '%{time_total} %{http_code}\n' \
+    | sort -n > /tmp/sql-profiling-times.txt
+  end=$(date +%s%N)
+  awk -v elapsed=$(( (end - start) / 1000000 )) '
+    $2 != 200 { errors++ }
+    { times[NR] = $1 * 1000 }
+    END {
+      printf "%.0f;%.2f;%.2f;%.2f;%d\n", NR * 1000 / elapsed, times[int((NR + 1) * 0.5)],
+        times[int(NR * 0.95)], times[int(NR * 0.99)], errors
+    }' /tmp/sql-profiling-times.txt
+}
+
+# Pagamentos de teste, criados uma vez e lidos em todas as rodadas
+start_app false
+: > /tmp/sql-profiling-ids.txt
+for i in $(seq 1 "$PAYMENTS"); do
+  curl -s -X POST "$URL/api/payments" -H 'Content-Type: application/json' \
+    -d "{\"name\":\"Benchmark $i\",\"ccInfo\":\"4111111111111111\",\"amount\":$i.50}" \
+    | sed -n 's/.*"id":"\([^"]*\)".*/\1/p' >> /tmp/sql-profiling-ids.txt
+done
+stop_app
+sed "s#^#$URL/api/payments/#" /tmp/sql-profiling-ids.txt > /tmp/sql-profiling-get.txt
+echo "$URL/api/payments/search?namePrefix=Benchmark&limit=100" > /tmp/sql-profiling-search.txt
+
+echo "rodada;perfil;cenário;req/s;p50 (ms);p95 (ms);p99 (ms);erros"
+for round in $(seq 1 "$ROUNDS"); do
+  for profiling in false true; do
+    start_app "$profiling"
+    # Aquecimento: JIT, caches do Hibernate e conexões do pool
+    REQUESTS=1000 load /tmp/sql-profiling-get.txt > /dev/null
+    echo "$round;$profiling;busca por id;$(load /tmp/sql-profiling-get.txt)"
+    echo "$round;$profiling;busca de 100 linhas;$(load /tmp/sql-profiling-search.txt)"
+    stop_app
+  done
+done
@@ -0,0 +1,189 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limite de concorrência que se ajusta pela latência observada, no estilo gradiente (Gradient2 do
+ * concurrency-limits). A cada janela, a latência média recente (curta) é comparada à de referência:
+ * enquanto a curta fica dentro de rtt-tolerance vezes a referência, o limite cresce (cerca de raiz do limite
+ * por janela); quando sobe além disso, as requisições estão enfileirando (no pool de conexões, no MySQL) e o
+ * limite cai na proporção. Respostas 5xx e exceções reduzem o limite por backoff-ratio.
+ * <p>
+ * A referência é a média de longo prazo das janelas, mas só sobe em janelas sem rejeições: sob sobrecarga
+ * contínua ela acompanharia a própria fila e o limite subiria até o máximo. No limite mínimo não há fila,
+ * e a referência acompanha a latência observada (o banco ficou realmente mais lento).
+ * <p>
+ * Acima do limite a requisição é rejeitada de imediato, sem esperar: as aceitas não enfileiram e mantêm a
+ * latência. As leituras têm prioridade: escritas só entram enquanto houver mais que read-reserve do limite livre.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Priority {
+        READ,
+        WRITE
+    }
+
+    /**
+     * Vaga obtida por uma requisição; release deve ser chamado uma única vez, ao final
+     */
+    public final class Permit {
+
+        private final long startNanos;
+        private final int inFlightAtStart;
+
+        private Permit(long startNanos, int inFlightAtStart) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * @param dropped a requisição falhou por sobrecarga (5xx, exceção, prazo esgotado)
+         */
+        public void release(boolean dropped) {
+            inFlight.decrementAndGet();
+            long rtt = System.nanoTime() - startNanos;
+            latencyTimer.record(rtt, TimeUnit.NANOSECONDS);
+            sample(startNanos + rtt, rtt, inFlightAtStart, dropped);
+        }
+    }
+
+    private final String name;
+    private final TrafficIsolationProperties.AdaptiveLimitDefinition definition;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Houve rejeição desde o início da janela atual
+    private final AtomicBoolean shedInWindow = new AtomicBoolean();
+    private final Counter readShedCounter;
+    private final Counter writeShedCounter;
+    private final Timer latencyTimer;
+    private final long windowNanos;
+    private final double longRttAlpha;
+
+    private volatile int limit;
+
+    // Estado da janela atual e das médias; protegido por this
+    private double estimatedLimit;
+    private double longRttNanos;
+    private long windowStartNanos;
+    private long windowRttSumNanos;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+
+    public AdaptiveConcurrencyLimiter(String name, TrafficIsolationProperties.AdaptiveLimitDefinition definition,
+                                      MeterRegistry meterRegistry) {
+        this.name = name;
+        this.definition = definition;
+        this.estimatedLimit = clamp(definition.getInitialLimit());
+        this.limit = (int) estimatedLimit;
+        this.windowNanos = definition.getWindow().toNanos();
+        this.longRttAlpha = 2.0 / (definition.getLongWindow() + 1);
+        this.windowStartNanos = System.nanoTime();
+
+        Gauge.builder("concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit).tag("limiter", name)
+                .description("Limite de requisições simultâneas estimado pela latência")
+                .register(meterRegistry);
+        Gauge.builder("concurrency.inflight", inFlight, AtomicInteger::get).tag("limiter", name)
+                .description("Requisições em execução sob o limite")
+                .register(meterRegistry);
+        Gauge.builder("concurrency.rtt.long", this, limiter -> limiter.longRttNanos / 1_000_000.0).tag("limiter", name)
+                .description("Latência de referência (média de longo prazo), em ms")
+                .register(meterRegistry);
+        this.readShedCounter = Counter.builder("concurrency.shed").tag("limiter", name).tag("priority", "read")
+                .description("Requisições rejeitadas acima do limite")
+                .register(meterRegistry);
+        this.writeShedCounter = Counter.builder("concurrency.shed").tag("limiter", name).tag("priority", "write")
+                .description("Requisições rejeitadas acima do limite")
+                .register(meterRegistry);
+        this.latencyTimer = Timer.builder("concurrency.accepted.latency").tag("limiter", name)
+                .description("Latência das requisições aceitas")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ocupa uma vaga se houver, sem esperar
+     *
+     * @return a vaga, ou null se a requisição deve ser rejeitada
+     */
+    public Permit tryAcquire(Priority priority) {
+        int current = limit;
+        int ceiling = priority == Priority.READ ? current
+                : Math.max(1, (int) Math.floor(current * (1 - definition.getReadReserve())));
+        while (true) {
+            int active = inFlight.get();
+            if (active >= ceiling) {
+                shedInWindow.set(true);
+                (priority == Priority.READ ? readShedCounter : writeShedCounter).increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(active, active + 1)) {
+                return new Permit(System.nanoTime(), active + 1);
+            }
+        }
+    }
+
+    synchronized void sample(long nowNanos, long rttNanos, int inFlightAtStart, boolean dropped) {
+        windowRttSumNanos += rttNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtStart);
+        windowDropped |= dropped;
+        if (nowNanos - windowStartNanos < windowNanos || windowSamples < definition.getMinWindowSamples()) {
+            return;
+        }
+
+        double shortRtt = (double) windowRttSumNanos / windowSamples;
+        boolean saturated = shedInWindow.getAndSet(false);
+        if (longRttNanos == 0) {
+            longRttNanos = shortRtt;
+        } else if (shortRtt < longRttNanos || !saturated || estimatedLimit <= definition.getMinLimit()) {
+            longRttNanos += (shortRtt - longRttNanos) * longRttAlpha;
+            // Referência muito acima da latência atual (após um período lento) volta mais rápido
+            if (longRttNanos / shortRtt > 2) {
+                longRttNanos *= 0.95;
+            }
+        }
+
+        double newLimit;
+        if (windowDropped) {
+            newLimit = estimatedLimit * definition.getBackoffRatio();
+        } else if (windowMaxInFlight < estimatedLimit / 2) {
+            // Demanda abaixo do limite: a latência não diz nada sobre a capacidade
+            newLimit = estimatedLimit;
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, definition.getRttTolerance() * longRttNanos / shortRtt));
+            double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+            newLimit = estimatedLimit * (1 - definition.getSmoothing()) + target * definition.getSmoothing();
+        }
+        estimatedLimit = clamp(newLimit);
+        limit = (int) estimatedLimit;
+
+        windowStartNanos = nowNanos;
+        windowRttSumNanos = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+        windowDropped = false;
+    }
+
+    private double clamp(double value) {
+        return Math.max(definition.getMinLimit(), Math.min(definition.getMaxLimit(), value));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limite de concorrência de uma classe de endpoints. Quando todas as vagas estão ocupadas,
+ * a requisição espera no máximo maxWait e então é rejeitada, sem chegar a pedir uma conexão ao pool.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final long maxWaitNanos;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final Counter rejectedCounter;
+    private final Timer waitTimer;
+
+    public Bulkhead(String name, int maxConcurrent, Duration maxWait, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxWaitNanos = maxWait.toNanos();
+
+        Gauge.builder("bulkhead.active", this, Bulkhead::getActive).tag("bulkhead", name)
+                .description("Requisições em execução no bulkhead")
+                .register(meterRegistry);
+        Gauge.builder("bulkhead.queue", waiting, AtomicInteger::get).tag("bulkhead", name)
+                .description("Requisições aguardando vaga no bulkhead")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("bulkhead.rejected").tag("bulkhead", name)
+                .description("Requisições rejeitadas por falta de vaga")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("bulkhead.wait").tag("bulkhead", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tenta ocupar uma vaga, esperando no máximo maxWait ou o tempo restante do prazo da requisição
+     *
+     * @return true se a vaga foi obtida; nesse caso release() deve ser chamado ao final
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        long waitNanos = maxWaitNanos;
+        Duration remaining = RequestDeadline.remaining();
+        if (remaining != null) {
+            waitNanos = Math.min(waitNanos, remaining.toNanos());
+        }
+        if (waitNanos <= 0) {
+            rejectedCounter.increment();
+            return false;
+        }
+        waiting.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            boolean acquired = permits.tryAcquire(waitNanos, TimeUnit.NANOSECONDS);
+            if (!acquired) {
+                rejectedCounter.increment();
+            }
+            return acquired;
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.vaultrotation.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Isola as classes de endpoints (pagamentos, administração, diagnóstico) em bulkheads próprios,
+ * para que uma rajada em /api/db/info não consuma as conexões usadas pelos pagamentos.
+ * Também aplica limites de taxa aos endpoints que disparam refresh completo do contexto e, antes dos
+ * bulkheads, os limites de concorrência adaptativos (ver AdaptiveConcurrencyLimiter).
+ * Implementado como filtro de servlet para cobrir também os endpoints do actuator.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@Slf4j
+public class BulkheadFilter extends OncePerRequestFilter {
+
+    private record BulkheadRoute(List<String> patterns, Bulkhead bulkhead) {
+    }
+
+    private record RateLimitRoute(List<String> patterns, List<String> methods, RequestRateLimiter limiter) {
+    }
+
+    private record AdaptiveLimitRoute(List<String> patterns, List<String> excludePatterns, List<String> readMethods,
+                                      long retryAfterSeconds, AdaptiveConcurrencyLimiter limiter) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<BulkheadRoute> bulkheads = new ArrayList<>();
+    private final List<RateLimitRoute> rateLimits = new ArrayList<>();
+    private final List<AdaptiveLimitRoute> adaptiveLimits = new ArrayList<>();
+
+    public BulkheadFilter(TrafficIsolationProperties properties, MeterRegistry meterRegistry, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        properties.getBulkheads().forEach((name, definition) -> {
+            bulkheads.add(new BulkheadRoute(definition.getPaths(),
+                    new Bulkhead(name, definition.getMaxConcurrent(), definition.getMaxWait(), meterRegistry)));
+            log.info("Bulkhead {}: {} requisição(ões) simultânea(s) para {}", name, definition.getMaxConcurrent(),
+                    definition.getPaths());
+        });
+        properties.getRateLimits().forEach((name, definition) -> {
+            rateLimits.add(new RateLimitRoute(definition.getPaths(), definition.getMethods(),
+                    new RequestRateLimiter(name, definition.getPermits(), definition.getPeriod(), meterRegistry)));
+            log.info("Limite de taxa {}: {} requisição(ões) a cada {} para {}", name, definition.getPermits(),
+                    definition.getPeriod(), definition.getPaths());
+        });
+        properties.getAdaptiveLimits().forEach((name, definition) -> {
+            if (!definition.isEnabled()) {
+                return;
+            }
+            adaptiveLimits.add(new AdaptiveLimitRoute(definition.getPaths(), definition.getExcludePaths(),
+                    definition.getReadMethods(), Math.max(1, definition.getRetryAfter().toSeconds()),
+                    new AdaptiveConcurrencyLimiter(name, definition, meterRegistry)));
+            log.info("Limite adaptativo {}: entre {} e {} requisição(ões) simultânea(s) para {}", name,
+                    definition.getMinLimit(), definition.getMaxLimit(), definition.getPaths());
+        });
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+
+        for (RateLimitRoute route : rateLimits) {
+            if (route.methods().contains(request.getMethod()) && matches(route.patterns(), path)
+                    && !route.limiter().tryAcquire()) {
+                log.warn("Limite de taxa {} atingido para {} {}", route.limiter().getName(), request.getMethod(), path);
+                response.setHeader("Retry-After", String.valueOf(route.limiter().secondsUntilNextPermit()));
+                reject(response, HttpStatus.TOO_MANY_REQUESTS,
+                        "Limite de requisições atingido para esta operação. Tente novamente mais tarde.");
+                return;
+            }
+        }
+
+        AdaptiveLimitRoute limitRoute = findAdaptiveLimit(path);
+        if (limitRoute == null) {
+            doFilterWithBulkhead(request, response, filterChain, path);
+            return;
+        }
+        AdaptiveConcurrencyLimiter.Priority priority = limitRoute.readMethods().contains(request.getMethod())
+                ? AdaptiveConcurrencyLimiter.Priority.READ : AdaptiveConcurrencyLimiter.Priority.WRITE;
+        AdaptiveConcurrencyLimiter.Permit permit = limitRoute.limiter().tryAcquire(priority);
+        if (permit == null) {
+            log.debug("Limite adaptativo {} atingido ({}), rejeitando {} {}", limitRoute.limiter().getName(),
+                    limitRoute.limiter().getLimit(), request.getMethod(), path);
+            response.setHeader("Retry-After", String.valueOf(limitRoute.retryAfterSeconds()));
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE,
+                    "Serviço sobrecarregado. Tente novamente em instantes.");
+            return;
+        }
+        boolean dropped = true;
+        try {
+            doFilterWithBulkhead(request, response, filterChain, path);
+            dropped = response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+        } finally {
+            permit.release(dropped);
+        }
+    }
+
+    private void doFilterWithBulkhead(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain,
+                                      String path) throws ServletException, IOException {
+        Bulkhead bulkhead = findBulkhead(path);
+        if (bulkhead == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            log.debug("Bulkhead {} cheio, rejeitando {} {}", bulkhead.getName(), request.getMethod(), path);
+            response.setHeader("Retry-After", "1");
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE,
+                    "Capacidade esgotada para esta classe de requisições. Tente novamente em instantes.");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private AdaptiveLimitRoute findAdaptiveLimit(String path) {
+        for (AdaptiveLimitRoute route : adaptiveLimits) {
+            if (matches(route.patterns(), path)) {
+                return matches(route.excludePatterns(), path) ? null : route;
+            }
+        }
+        return null;
+    }
+
+    private Bulkhead findBulkhead(String path) {
+        for (BulkheadRoute route : bulkheads) {
+            if (matches(route.patterns(), path)) {
+                return route.bulkhead();
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(List<String> patterns, String path) {
+        for (String pattern : patterns) {
+            if (pathMatcher.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        ErrorResponses.write(response, objectMapper, status, message);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.vaultrotation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Feed de alterações de pagamentos (GET /api/payments/changes). Uma única leitura periódica dos
+ * shards alimenta uma janela em memória, compartilhada por todos os clientes de long-poll e SSE.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.payments.change-feed")
+@Data
+public class ChangeFeedProperties {
+
+    // Intervalo entre leituras dos shards
+    private Duration pollInterval = Duration.ofMillis(500);
+
+    // Tempo de espera por uma lacuna na sequência de payment_outbox: a leitura do shard para na lacuna
+    // (transação ainda não confirmada) e só a pula, como transação desfeita, quando a alteração seguinte
+    // é mais antiga que este intervalo
+    private Duration gapTimeout = Duration.ofSeconds(15);
+
+    // Alterações mantidas em memória; cursores anteriores à janela são atendidos pelo banco
+    private int capacity = 10000;
+
+    // Linhas lidas por shard em cada ciclo
+    private int batchSize = 500;
+
+    // Espera máxima de um long-poll; deve ficar abaixo do timeout de requisições assíncronas (30s)
+    private Duration maxWait = Duration.ofSeconds(25);
+
+    private Duration streamTimeout = Duration.ofMinutes(30);
+
+    // Retenção de payment_outbox: cursores mais antigos perderiam alterações e precisam de carga completa
+    private Duration tombstoneRetention = Duration.ofDays(7);
+
+    // Tempo sem leitura bem-sucedida a partir do qual o feed é considerado parado:
+    // a listagem deixa de usar a posição do feed como ETag
+    private Duration staleAfter = Duration.ofSeconds(10);
+}
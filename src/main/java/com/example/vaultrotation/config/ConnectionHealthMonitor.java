@@ -1,23 +1,26 @@
 package com.example.vaultrotation.config;
 
-import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Component;
-import org.springframework.vault.core.lease.SecretLeaseContainer;
-import org.springframework.vault.core.lease.domain.RequestedSecret;
 
-import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Componente responsável por monitorar a saúde das conexões com banco de dados
  * e forçar a renovação de credenciais quando problemas persistentes são detectados.
+ * Cada datasource declarado possui seu próprio estado de saúde.
  */
 @Component
 @Slf4j
@@ -25,70 +28,126 @@ public class ConnectionHealthMonitor {
 
     private static final int MAX_CONSECUTIVE_FAILURES = 2; // Reduzido para reagir mais rápido
     private static final int MAX_ROTATION_ATTEMPTS = 5;
-    
-    // Flag para indicar que já estamos tentando uma rotação
-    private final AtomicBoolean rotationInProgress = new AtomicBoolean(false);
-
-    private final DataSource dataSource;
-    private final ContextRefresher contextRefresher;
-    private final SecretLeaseContainer leaseContainer;
-    
-    @Value("${spring.cloud.vault.database.role:payments-app}")
-    private String databaseRole;
-    
-    @Value("${spring.cloud.vault.database.backend:database}")
-    private String databaseBackend;
-
-    private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
-    private final AtomicInteger totalRotationAttempts = new AtomicInteger(0);
+
+    /**
+     * Estado de saúde de um datasource
+     */
+    private static final class PoolHealthState {
+        private static final long NO_ROTATION = Long.MIN_VALUE;
+
+        // Início (System.nanoTime) da rotação em andamento, ou NO_ROTATION
+        final AtomicLong rotationStartedAt = new AtomicLong(NO_ROTATION);
+        final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+        final AtomicInteger totalRotationAttempts = new AtomicInteger(0);
+
+        /**
+         * Uma rotação sem conclusão nem falha notificada dentro do timeout é considerada perdida
+         */
+        boolean isRotationInProgress(long timeoutNanos) {
+            long startedAt = rotationStartedAt.get();
+            return startedAt != NO_ROTATION && System.nanoTime() - startedAt < timeoutNanos;
+        }
+
+        /**
+         * Marca o início de uma rotação, exceto se outra estiver em andamento dentro do timeout
+         */
+        boolean tryStartRotation(long timeoutNanos) {
+            long startedAt = rotationStartedAt.get();
+            if (startedAt != NO_ROTATION && System.nanoTime() - startedAt < timeoutNanos) {
+                return false;
+            }
+            return rotationStartedAt.compareAndSet(startedAt, System.nanoTime());
+        }
+
+        /**
+         * Encerra a rotação em andamento; devolve false se não havia nenhuma
+         */
+        boolean finishRotation() {
+            return rotationStartedAt.getAndSet(NO_ROTATION) != NO_ROTATION;
+        }
+    }
+
+    private final RotatingDataSourceRegistry registry;
+    private final ObjectProvider<VaultRefresher> vaultRefresherProvider;
+    private final RotationEventJournal journal;
+    private final Map<String, PoolHealthState> states = new ConcurrentHashMap<>();
+    private final long rotationTimeoutNanos;
 
     @Autowired
     public ConnectionHealthMonitor(
-            DataSource dataSource,
-            ContextRefresher contextRefresher,
-            SecretLeaseContainer leaseContainer) {
-        this.dataSource = dataSource;
-        this.contextRefresher = contextRefresher;
-        this.leaseContainer = leaseContainer;
-        log.info("ConnectionHealthMonitor iniciado");
+            RotatingDataSourceRegistry registry,
+            ObjectProvider<VaultRefresher> vaultRefresherProvider,
+            RotationEventJournal journal,
+            MeterRegistry meterRegistry,
+            @Value("${app.rotation.health.rotation-timeout:2m}") Duration rotationTimeout) {
+        this.registry = registry;
+        this.vaultRefresherProvider = vaultRefresherProvider;
+        this.journal = journal;
+        this.rotationTimeoutNanos = rotationTimeout.toNanos();
+
+        for (RotatingPool pool : registry.getPools()) {
+            PoolHealthState state = new PoolHealthState();
+            states.put(pool.getName(), state);
+            Gauge.builder("db.health.consecutive.failures", state.consecutiveFailures, AtomicInteger::get)
+                    .tag("datasource", pool.getName())
+                    .register(meterRegistry);
+            Gauge.builder("db.health.rotation.in.progress", state, s -> s.isRotationInProgress(rotationTimeoutNanos) ? 1 : 0)
+                    .tag("datasource", pool.getName())
+                    .register(meterRegistry);
+        }
+        log.info("ConnectionHealthMonitor iniciado para os datasources: {}", states.keySet());
+    }
+
+    /**
+     * Verifica a saúde da conexão do datasource primário
+     */
+    public boolean checkAndRotateIfNeeded() {
+        return checkAndRotateIfNeeded(registry.getPrimary());
     }
 
     /**
-     * Verifica a saúde da conexão com o banco de dados e rotaciona credenciais 
+     * Verifica a saúde da conexão de todos os datasources declarados
+     */
+    public void checkAllAndRotateIfNeeded() {
+        registry.getPools().forEach(this::checkAndRotateIfNeeded);
+    }
+
+    /**
+     * Verifica a saúde da conexão com o banco de dados e rotaciona credenciais
      * se necessário.
-     * 
+     *
      * @return true se a conexão estiver saudável, false caso contrário
      */
-    public boolean checkAndRotateIfNeeded() {
-        try (Connection conn = dataSource.getConnection()) {
+    public boolean checkAndRotateIfNeeded(RotatingPool pool) {
+        PoolHealthState state = stateOf(pool);
+        try (Connection conn = pool.getConnection()) {
             boolean isValid = conn.isValid(3000); // Reduzido o timeout
             if (isValid) {
                 // Conexão está boa, resetar contadores
-                if (consecutiveFailures.get() > 0) {
-                    log.info("Conexão recuperada após {} falhas consecutivas", consecutiveFailures.get());
-                    consecutiveFailures.set(0);
-                    rotationInProgress.set(false);
+                if (state.consecutiveFailures.get() > 0) {
+                    log.info("[{}] Conexão recuperada após {} falhas consecutivas", pool.getName(), state.consecutiveFailures.get());
+                    state.consecutiveFailures.set(0);
+                    state.finishRotation();
                 }
                 return true;
             } else {
-                log.warn("Conexão inválida durante verificação de saúde");
-                handleConnectionIssue("Conexão retornou status inválido");
+                log.warn("[{}] Conexão inválida durante verificação de saúde", pool.getName());
+                handleConnectionIssue(pool, state, "Conexão retornou status inválido");
                 return false;
             }
         } catch (SQLException e) {
-            log.error("Erro ao verificar saúde da conexão: {}", e.getMessage());
-            
+            log.error("[{}] Erro ao verificar saúde da conexão: {}", pool.getName(), e.getMessage());
+
             // Verificar especificamente erros de acesso negado
-            if (e.getMessage().contains("Access denied") || 
-                e.getMessage().contains("acesso negado") || 
-                e.getErrorCode() == 1045) {
-                log.error("Erro de autenticação detectado: {}", e.getMessage());
+            if (isAuthenticationError(e)) {
+                log.error("[{}] Erro de autenticação detectado: {}", pool.getName(), e.getMessage());
+                journal.record(RotationEvent.Type.AUTH_FAILURE, pool.getName(), "health-check: " + e.getMessage());
                 // Force imediatamente uma rotação sem esperar por falhas consecutivas
-                forceCredentialRotation();
+                forceCredentialRotation(pool, state, "health-check:auth-failure");
                 return false;
             }
-            
-            handleConnectionIssue(e.getMessage());
+
+            handleConnectionIssue(pool, state, e.getMessage());
             return false;
         }
     }
@@ -97,89 +156,140 @@ public class ConnectionHealthMonitor {
      * Trata um problema de conexão, incrementando contadores e potencialmente
      * forçando a rotação de credenciais.
      */
-    private void handleConnectionIssue(String errorMessage) {
-        int failures = consecutiveFailures.incrementAndGet();
-        log.warn("Falha de conexão #{}: {}", failures, errorMessage);
+    private void handleConnectionIssue(RotatingPool pool, PoolHealthState state, String errorMessage) {
+        int failures = state.consecutiveFailures.incrementAndGet();
+        log.warn("[{}] Falha de conexão #{}: {}", pool.getName(), failures, errorMessage);
 
         if (failures >= MAX_CONSECUTIVE_FAILURES) {
-            log.error("{} falhas consecutivas detectadas. Tentando forçar rotação de credenciais...", failures);
-            forceCredentialRotation();
+            log.error("[{}] {} falhas consecutivas detectadas. Tentando forçar rotação de credenciais...", pool.getName(), failures);
+            forceCredentialRotation(pool, state, "health-check:consecutive-failures");
         }
     }
 
     /**
-     * Força a rotação de credenciais revogando a lease atual e atualizando o contexto.
-     * Este método garante que apenas uma rotação seja executada por vez.
+     * Força a rotação de credenciais do datasource solicitando uma nova lease ao Vault.
+     * A solicitação é processada de forma assíncrona pelo pipeline de eventos de lease, e o pool
+     * é reconstruído quando a nova lease é criada. Apenas uma rotação por datasource é feita por vez;
+     * uma rotação que não termina nem falha em app.rotation.health.rotation-timeout deixa de bloquear as próximas.
      */
-    private void forceCredentialRotation() {
+    private void forceCredentialRotation(RotatingPool pool, PoolHealthState state, String reason) {
         // Evita múltiplas rotações simultâneas
-        if (rotationInProgress.compareAndSet(false, true)) {
-            int attempts = totalRotationAttempts.incrementAndGet();
-            
+        if (state.tryStartRotation(rotationTimeoutNanos)) {
+            int attempts = state.totalRotationAttempts.incrementAndGet();
+
             if (attempts > MAX_ROTATION_ATTEMPTS) {
-                log.error("Máximo de tentativas de rotação ({}) atingido. Desistindo de rotação automática.", MAX_ROTATION_ATTEMPTS);
-                rotationInProgress.set(false);
+                log.error("[{}] Máximo de tentativas de rotação ({}) atingido. Desistindo de rotação automática.",
+                        pool.getName(), MAX_ROTATION_ATTEMPTS);
+                state.finishRotation();
                 return;
             }
-            
-            log.info("Tentativa #{} de rotação forçada de credenciais", attempts);
-            
+
+            log.info("[{}] Tentativa #{} de rotação forçada de credenciais", pool.getName(), attempts);
+
             try {
-                // Se o dataSource for um HikariDataSource, force o fechamento do pool
-                if (dataSource instanceof HikariDataSource) {
-                    try {
-                        log.info("Fechando forçadamente o pool HikariCP atual antes de obter novas credenciais");
-                        ((HikariDataSource) dataSource).close();
-                        log.info("Pool HikariCP fechado com sucesso");
-                    } catch (Exception e) {
-                        log.warn("Erro ao fechar pool HikariCP: {}", e.getMessage());
-                    }
-                }
-                
-                // Passo 1: Solicitar novas credenciais do Vault
-                String databasePath = String.format("%s/creds/%s", databaseBackend, databaseRole);
-                log.info("Solicitando renovação do secret em: {}", databasePath);
-                
-                // Solicitar rotação do secret
-                leaseContainer.requestRotatingSecret(databasePath);
-                
-                // Aguardar um breve momento para que o Vault possa processar a solicitação
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
+                VaultRefresher vaultRefresher = vaultRefresherProvider.getIfAvailable();
+                if (vaultRefresher != null) {
+                    String databasePath = pool.getDefinition().getLeasePath();
+                    log.info("[{}] Solicitando renovação do secret em: {}", pool.getName(), databasePath);
+                    vaultRefresher.requestRotation(databasePath, reason);
+                } else {
+                    // Sem Vault não há novas credenciais: apenas recria as conexões do pool
+                    log.warn("[{}] Vault indisponível. Forçando reset do pool...", pool.getName());
+                    pool.softEvictConnections();
+                    state.finishRotation();
                 }
-                
-                // Passo 2: Atualizar contexto da aplicação com novas propriedades
-                log.info("Atualizando contexto da aplicação...");
-                contextRefresher.refresh();
-                
-                log.info("Rotação forçada de credenciais concluída com sucesso");
-                resetCounters();
             } catch (Exception e) {
-                log.error("Erro durante rotação forçada de credenciais: {}", e.getMessage(), e);
-                rotationInProgress.set(false);
+                log.error("[{}] Erro durante rotação forçada de credenciais: {}", pool.getName(), e.getMessage(), e);
+                state.finishRotation();
             }
         } else {
-            log.info("Rotação de credenciais já em andamento, ignorando solicitação duplicada");
+            log.info("[{}] Rotação de credenciais já em andamento, ignorando solicitação duplicada", pool.getName());
+        }
+    }
+
+    /**
+     * Chamado quando um novo pool foi criado e verificado com sucesso.
+     * Reseta os contadores; mantemos o totalRotationAttempts para limitar o número total de tentativas.
+     */
+    public void onPoolRotated(RotatingPool pool) {
+        PoolHealthState state = stateOf(pool);
+        state.consecutiveFailures.set(0);
+        state.finishRotation();
+    }
+
+    /**
+     * Chamado quando a rotação solicitada falhou (erro do Vault ao obter a nova lease, ou pool
+     * não verificado com as novas credenciais). Libera a próxima tentativa sem esperar o timeout.
+     */
+    public void onRotationFailed(RotatingPool pool, String cause) {
+        journal.record(RotationEvent.Type.ROTATION_FAILED, pool.getName(), cause);
+        if (stateOf(pool).finishRotation()) {
+            log.warn("[{}] Rotação de credenciais falhou: {}", pool.getName(), cause);
         }
     }
-    
+
     /**
-     * Reseta os contadores após uma rotação bem-sucedida
+     * Indica se uma rotação forçada está em andamento para o datasource
      */
-    private void resetCounters() {
-        consecutiveFailures.set(0);
-        // Mantemos o totalRotationAttempts para limitar o número total de tentativas
-        rotationInProgress.set(false);
+    public boolean isRotationInProgress(RotatingPool pool) {
+        return stateOf(pool).isRotationInProgress(rotationTimeoutNanos);
     }
-    
+
+    public int getConsecutiveFailures(RotatingPool pool) {
+        return stateOf(pool).consecutiveFailures.get();
+    }
+
+    /**
+     * Método para forçar manualmente uma rotação de credenciais do datasource primário
+     */
+    public void triggerManualRotation() {
+        triggerManualRotation(registry.getPrimary(), "manual");
+    }
+
     /**
      * Método para forçar manualmente uma rotação de credenciais
      * Útil para testes ou para rotação proativa
      */
-    public void triggerManualRotation() {
-        log.info("Solicitação manual de rotação de credenciais");
-        forceCredentialRotation();
+    public void triggerManualRotation(RotatingPool pool) {
+        triggerManualRotation(pool, "manual");
+    }
+
+    /**
+     * Força a rotação de credenciais informando o motivo, registrado no journal de rotação
+     */
+    public void triggerManualRotation(RotatingPool pool, String reason) {
+        log.info("[{}] Solicitação manual de rotação de credenciais ({})", pool.getName(), reason);
+        forceCredentialRotation(pool, stateOf(pool), reason);
+    }
+
+    /**
+     * Registra uma falha de autenticação observada fora da verificação de saúde e força a rotação
+     */
+    public void onAuthenticationFailure(RotatingPool pool, String source, Exception e) {
+        journal.record(RotationEvent.Type.AUTH_FAILURE, pool.getName(), source + ": " + e.getMessage());
+        triggerManualRotation(pool, source + ":auth-failure");
+    }
+
+    private PoolHealthState stateOf(RotatingPool pool) {
+        return states.computeIfAbsent(pool.getName(), name -> new PoolHealthState());
+    }
+
+    /**
+     * Verifica se o erro é relacionado a autenticação (acesso negado pelo MySQL)
+     */
+    public static boolean isAuthenticationError(Exception e) {
+        SQLException sqlException = null;
+        if (e instanceof SQLException) {
+            sqlException = (SQLException) e;
+        } else if (e instanceof DataAccessException && e.getCause() instanceof SQLException) {
+            sqlException = (SQLException) e.getCause();
+        }
+        if (sqlException == null) {
+            return false;
+        }
+        String message = e.getMessage() != null ? e.getMessage() : "";
+        return sqlException.getErrorCode() == 1045 ||
+               message.contains("Access denied") ||
+               message.contains("acesso negado");
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package com.example.vaultrotation.config;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Definição declarativa de um datasource com credenciais dinâmicas do Vault.
+ * Cada definição recebe seu próprio pool, lease, estado de saúde e métricas.
+ */
+@Data
+public class DataSourceDefinition {
+
+    // Nome lógico do datasource (ex: payments, ledger, audit)
+    private String name;
+
+    // Role e backend do engine de banco de dados do Vault
+    private String role;
+    private String backend = "database";
+
+    // Role com os privilégios de DDL da manutenção das partições de pagamentos (ver MaintenanceConnectionFactory);
+    // sem ele, o DDL usa as credenciais do pool, e o role das requisições precisa de ALTER e DROP
+    private String maintenanceRole;
+
+    private String url;
+    private String driverClassName = "com.mysql.cj.jdbc.Driver";
+
+    // Propriedades do Environment de onde as credenciais são lidas na inicialização
+    private String usernameProperty;
+    private String passwordProperty;
+
+    // Apenas um datasource pode ser o primário (usado pelo JPA)
+    private boolean primary = false;
+    private boolean enabled = true;
+
+    // Se falso, problemas neste datasource não tiram o pod de readiness
+    private boolean requiredForReadiness = true;
+
+    private int minimumIdle = 1;
+    private int maximumPoolSize = 5;
+    private long connectionTimeout = 5000;
+
+    // Dimensionamento adaptativo (ver PoolSizeController): maximumPoolSize é o tamanho inicial,
+    // ajustado entre o piso e o teto conforme a espera por conexões e a utilização observadas
+    private boolean adaptiveSizing = true;
+    private int poolSizeFloor = 2;
+    private int poolSizeCeiling = 20;
+
+    // Limite de conexões do usuário dinâmico no MySQL; 0 consulta @@session.max_user_connections
+    private int maxUserConnections = 0;
+
+    // Cache de prepared statements do driver; com server-side prepare, o statement
+    // fica preparado no MySQL e é reutilizado pela conexão
+    private boolean statementCacheEnabled = true;
+    private boolean serverPreparedStatements = true;
+    private int statementCacheSize = 250;
+    private int statementCacheSqlLimit = 2048;
+
+    // Aquecimento do pool antes da publicação: abre minimumIdle conexões e prepara os
+    // warmup-recorded-statements statements do JPA mais usados no datasource (ver WarmupStatementRecorder),
+    // para que as primeiras requisições não paguem esse custo. warmup-statements acrescenta SQL
+    // executado fora do JPA, no texto exato em que é preparado
+    private boolean warmupEnabled = true;
+    private int warmupRecordedStatements = 20;
+    private List<String> warmupStatements = new ArrayList<>();
+    private long warmupTimeout = 10000;
+
+    /**
+     * Caminho das credenciais no Vault, ex: database/creds/payments-app
+     */
+    public String getLeasePath() {
+        return String.format("%s/creds/%s", backend, role);
+    }
+
+    /**
+     * Caminho das credenciais de manutenção no Vault, ex: database/creds/payments-maintenance
+     */
+    public String getMaintenanceLeasePath() {
+        return String.format("%s/creds/%s", backend, maintenanceRole);
+    }
+
+    public boolean hasMaintenanceRole() {
+        return maintenanceRole != null && !maintenanceRole.isBlank();
+    }
+}
@@ -3,15 +3,11 @@ package com.example.vaultrotation.config;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationListener;
-import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.dao.DataAccessException;
-import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.TransactionException;
 
-import javax.sql.DataSource;
-import java.sql.SQLException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -22,16 +18,16 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @Slf4j
 public class DatabaseConnectionEventListener implements ApplicationListener<ContextRefreshedEvent> {
 
-    private final DataSource dataSource;
     private final ConnectionHealthMonitor healthMonitor;
+    private final RotatingDataSourceRegistry registry;
     private final AtomicBoolean initialized = new AtomicBoolean(false);
     
     @Autowired
     public DatabaseConnectionEventListener(
-            DataSource dataSource,
-            @Autowired(required = false) ConnectionHealthMonitor healthMonitor) {
-        this.dataSource = dataSource;
+            @Autowired(required = false) ConnectionHealthMonitor healthMonitor,
+            RotatingDataSourceRegistry registry) {
         this.healthMonitor = healthMonitor;
+        this.registry = registry;
         
         log.info("DatabaseConnectionEventListener iniciado");
     }
@@ -43,8 +39,8 @@ public class DatabaseConnectionEventListener implements ApplicationListener<Cont
             
             // Verificar conexão inicial ao iniciar a aplicação
             if (healthMonitor != null) {
-                log.info("Realizando verificação inicial da conexão com banco de dados");
-                healthMonitor.checkAndRotateIfNeeded();
+                log.info("Realizando verificação inicial da conexão com os bancos de dados");
+                healthMonitor.checkAllAndRotateIfNeeded();
             }
         }
     }
@@ -54,35 +50,26 @@ public class DatabaseConnectionEventListener implements ApplicationListener<Cont
      * problemas de conexão para forçar uma verificação e possível rotação.
      */
     public void handleConnectionError(Exception exception) {
+        // Falhas em um shard afetam apenas o pool daquele shard
+        RotatingPool pool = registry.getPrimary();
+        if (exception instanceof ShardAccessException shardException) {
+            pool = registry.get(shardException.getShard());
+            if (shardException.getCause() instanceof DataAccessException
+                    || shardException.getCause() instanceof TransactionException) {
+                exception = (Exception) shardException.getCause();
+            }
+        }
         if (healthMonitor != null) {
             // Verificar se o erro é relacionado a autenticação
-            if (isAuthenticationError(exception)) {
+            if (ConnectionHealthMonitor.isAuthenticationError(exception)) {
                 log.error("Erro de autenticação detectado: {}", exception.getMessage());
-                healthMonitor.triggerManualRotation();
+                healthMonitor.onAuthenticationFailure(pool, "request", exception);
             } else {
                 log.warn("Erro de conexão detectado (não é de autenticação): {}", exception.getMessage());
-                healthMonitor.checkAndRotateIfNeeded();
+                healthMonitor.checkAndRotateIfNeeded(pool);
             }
         } else {
             log.warn("Erro de conexão detectado, mas não há healthMonitor disponível: {}", exception.getMessage());
         }
     }
-    
-    /**
-     * Verifica se o erro é relacionado a autenticação
-     */
-    private boolean isAuthenticationError(Exception e) {
-        if (e instanceof SQLException) {
-            SQLException sqlException = (SQLException) e;
-            return sqlException.getErrorCode() == 1045 || 
-                   e.getMessage().contains("Access denied") ||
-                   e.getMessage().contains("acesso negado");
-        } else if (e instanceof DataAccessException && e.getCause() instanceof SQLException) {
-            SQLException sqlException = (SQLException) e.getCause();
-            return sqlException.getErrorCode() == 1045 || 
-                   e.getMessage().contains("Access denied") ||
-                   e.getMessage().contains("acesso negado");
-        }
-        return false;
-    }
-} 
\ No newline at end of file
+}
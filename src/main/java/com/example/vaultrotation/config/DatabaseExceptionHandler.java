@@ -11,8 +11,6 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
 
 import java.sql.SQLException;
-import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -28,16 +26,24 @@ public class DatabaseExceptionHandler {
 
     @ExceptionHandler(value = {DataAccessException.class, SQLException.class})
     protected ResponseEntity<Object> handleDataAccessException(Exception ex, WebRequest request) {
+        if (RequestDeadline.isCause(ex)) {
+            // O prazo do cliente acabou: o banco não falhou, então não há verificação nem rotação
+            log.debug("Prazo da requisição esgotado no acesso ao banco: {}", ex.getMessage());
+            return ErrorResponses.entity(HttpStatus.GATEWAY_TIMEOUT, "Prazo da requisição esgotado");
+        }
+
         log.error("Erro ao acessar banco de dados: {}", ex.getMessage());
         
-        // Notificar o listener de eventos de conexão sobre o erro
-        connectionEventListener.handleConnectionError(ex);
+        // Notificar o listener de eventos de conexão sobre o erro. A verificação de saúde roda
+        // nesta thread e não deve herdar o prazo da requisição
+        RequestDeadline.callWith(null, () -> {
+            connectionEventListener.handleConnectionError(ex);
+            return null;
+        });
         
         // Preparar resposta para o cliente
-        Map<String, Object> body = new HashMap<>();
-        body.put("timestamp", LocalDateTime.now().toString());
-        body.put("message", "Um erro de banco de dados ocorreu e estamos tentando reconectar. Por favor, tente novamente em alguns instantes.");
-        body.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        Map<String, Object> body = ErrorResponses.body(HttpStatus.SERVICE_UNAVAILABLE,
+                "Um erro de banco de dados ocorreu e estamos tentando reconectar. Por favor, tente novamente em alguns instantes.");
         body.put("error", "Database Connection Error");
         
         return new ResponseEntity<>(body, HttpStatus.SERVICE_UNAVAILABLE);
@@ -0,0 +1,48 @@
+package com.example.vaultrotation.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Corpo de erro da API (timestamp, message e status), comum aos controllers, ao DatabaseExceptionHandler
+ * e aos filtros que rejeitam a requisição antes do DispatcherServlet.
+ */
+public final class ErrorResponses {
+
+    private ErrorResponses() {
+    }
+
+    /**
+     * Corpo de erro; o mapa é mutável para campos adicionais
+     */
+    public static Map<String, Object> body(HttpStatus status, String message) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now().toString());
+        body.put("message", message);
+        body.put("status", status.value());
+        return body;
+    }
+
+    public static ResponseEntity<Object> entity(HttpStatus status, String message) {
+        return ResponseEntity.status(status).body(body(status, message));
+    }
+
+    /**
+     * Escreve o erro diretamente na resposta, para os filtros
+     */
+    public static void write(HttpServletResponse response, ObjectMapper objectMapper, HttpStatus status,
+                             String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getWriter(), body(status, message));
+    }
+}
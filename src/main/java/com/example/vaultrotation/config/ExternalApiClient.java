@@ -0,0 +1,302 @@
+package com.example.vaultrotation.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cliente HTTP da API externa configurada pelo ExternalApiConfig (url, apiKey e timeout do Vault KV).
+ * O pool de conexões é criado uma única vez; URL, chave e timeouts ficam em um snapshot imutável
+ * trocado atomicamente após cada refresh do contexto. Cada requisição lê o snapshot uma vez no início,
+ * então as requisições em andamento terminam com as configurações com que começaram.
+ * Trocar apenas a chave não afeta o pool; trocar o host fecha somente as conexões ociosas do host anterior.
+ * Na imagem nativa (perfil native) não há ContextRefresher: as configurações são lidas apenas na inicialização.
+ */
+@Component
+@Slf4j
+public class ExternalApiClient implements ApplicationListener<RefreshScopeRefreshedEvent>, DisposableBean {
+
+    /**
+     * Configurações em uso pelas novas requisições. O toString não inclui a chave da API.
+     */
+    public record Settings(URI baseUrl, String apiKey, int timeout, long version) {
+
+        @Override
+        public String toString() {
+            return "Settings[baseUrl=" + baseUrl + ", apiKey=" + (apiKey != null ? "****" : null)
+                    + ", timeout=" + timeout + ", version=" + version + "]";
+        }
+
+        boolean sameHost(Settings other) {
+            return baseUrl != null && other.baseUrl != null
+                    && Objects.equals(baseUrl.getScheme(), other.baseUrl.getScheme())
+                    && Objects.equals(baseUrl.getHost(), other.baseUrl.getHost())
+                    && baseUrl.getPort() == other.baseUrl.getPort();
+        }
+    }
+
+    private record Response(int code, String body) {
+    }
+
+    private final ExternalApiConfig externalApiConfig;
+    private final ObjectProvider<ContextRefresher> contextRefresher;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final AtomicReference<Settings> settings = new AtomicReference<>();
+    private final Duration connectionTtl;
+
+    @Value("${app.external-api.api-key-header:X-API-Key}")
+    private String apiKeyHeader;
+
+    @Value("${app.external-api.connection-request-timeout:1s}")
+    private Duration connectionRequestTimeout;
+
+    public ExternalApiClient(
+            ExternalApiConfig externalApiConfig,
+            ObjectProvider<ContextRefresher> contextRefresher,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.external-api.max-connections:20}") int maxConnections,
+            @Value("${app.external-api.connection-ttl:5m}") Duration connectionTtl,
+            @Value("${app.external-api.idle-eviction:30s}") Duration idleEviction) {
+        this.externalApiConfig = externalApiConfig;
+        this.contextRefresher = contextRefresher;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.connectionTtl = connectionTtl;
+
+        Settings initial = readSettings(1);
+        settings.set(initial);
+
+        // Uma única API externa: todas as conexões podem ir para a mesma rota
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(connectionConfig(initial.timeout(), connectionTtl))
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEviction.toMillis()))
+                .build();
+
+        registerPoolGauge("external.api.pool.leased", PoolStats::getLeased);
+        registerPoolGauge("external.api.pool.available", PoolStats::getAvailable);
+        registerPoolGauge("external.api.pool.pending", PoolStats::getPending);
+        registerPoolGauge("external.api.pool.max", PoolStats::getMax);
+
+        log.info("Cliente da API externa criado para {} (pool de {} conexões)", initial.baseUrl(), maxConnections);
+    }
+
+    private static ConnectionConfig connectionConfig(int timeout, Duration connectionTtl) {
+        return ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(timeout))
+                .setTimeToLive(TimeValue.ofMilliseconds(connectionTtl.toMillis()))
+                .build();
+    }
+
+    private void registerPoolGauge(String name, ToIntFunction<PoolStats> value) {
+        Gauge.builder(name, connectionManager, manager -> value.applyAsInt(manager.getTotalStats()))
+                .register(meterRegistry);
+    }
+
+    private Settings readSettings(long version) {
+        // O refresh rebinda o externalApiConfig antes de publicar o RefreshScopeRefreshedEvent
+        String url = externalApiConfig.getUrl();
+        URI baseUrl = url != null && !url.isBlank() ? URI.create(url.endsWith("/") ? url : url + "/") : null;
+        return new Settings(baseUrl, externalApiConfig.getApiKey(), externalApiConfig.getTimeout(), version);
+    }
+
+    /**
+     * Verificação periódica das configurações da API externa no Vault.
+     * Agendada pelo MaintenanceScheduler (ver MaintenanceTasksConfig).
+     */
+    public void refreshConfiguration() {
+        ContextRefresher refresher = contextRefresher.getIfAvailable();
+        if (refresher == null) {
+            return;
+        }
+        log.info("Verificando atualizações nas configurações de API externa");
+        Set<String> refreshedKeys = refresher.refresh();
+        if (!refreshedKeys.isEmpty()) {
+            log.info("Configurações atualizadas: {}", refreshedKeys);
+        }
+    }
+
+    /**
+     * Força uma atualização manual das propriedades
+     */
+    public Set<String> forceRefresh() {
+        ContextRefresher refresher = contextRefresher.getIfAvailable();
+        if (refresher == null) {
+            log.warn("Refresh desabilitado (spring.cloud.refresh.enabled=false): configurações de API externa lidas apenas na inicialização");
+            return Set.of();
+        }
+        log.info("Forçando atualização das configurações de API externa");
+        Set<String> refreshedKeys = refresher.refresh();
+        log.info("Configurações atualizadas: {}", refreshedKeys);
+        return refreshedKeys;
+    }
+
+    /**
+     * Troca as configurações depois que o refresh rebindou o ExternalApiConfig
+     */
+    @Override
+    public void onApplicationEvent(RefreshScopeRefreshedEvent event) {
+        Settings previous = settings.get();
+        Settings next = readSettings(previous.version() + 1);
+        boolean urlChanged = !Objects.equals(previous.baseUrl(), next.baseUrl());
+        boolean keyChanged = !Objects.equals(previous.apiKey(), next.apiKey());
+        boolean timeoutChanged = previous.timeout() != next.timeout();
+        if (!urlChanged && !keyChanged && !timeoutChanged) {
+            return;
+        }
+
+        if (timeoutChanged) {
+            // Vale para as novas conexões; o timeout de resposta é aplicado por requisição
+            connectionManager.setDefaultConnectionConfig(connectionConfig(next.timeout(), connectionTtl));
+            countSwap("timeout");
+        }
+        if (keyChanged) {
+            countSwap("api-key");
+        }
+        settings.set(next);
+        if (urlChanged) {
+            countSwap("url");
+            if (!next.sameHost(previous)) {
+                // Conexões emprestadas terminam normalmente e são descartadas pelo TTL
+                connectionManager.closeIdle(TimeValue.ZERO_MILLISECONDS);
+            }
+        }
+        log.info("Configurações do cliente da API externa atualizadas (versão {}): url={}, chave alterada={}, timeout={} ms",
+                next.version(), next.baseUrl(), keyChanged, next.timeout());
+    }
+
+    private void countSwap(String change) {
+        meterRegistry.counter("external.api.config.swaps", "change", change).increment();
+    }
+
+    public <T> T get(String path, Class<T> responseType) {
+        Settings current = settings.get();
+        return execute(new HttpGet(resolve(current, path)), current, responseType);
+    }
+
+    public <T> T post(String path, Object body, Class<T> responseType) {
+        Settings current = settings.get();
+        HttpPost request = new HttpPost(resolve(current, path));
+        try {
+            request.setEntity(new StringEntity(objectMapper.writeValueAsString(body), ContentType.APPLICATION_JSON));
+        } catch (IOException e) {
+            throw new ExternalApiException(0, "Erro ao serializar corpo da requisição: " + e.getMessage(), e);
+        }
+        return execute(request, current, responseType);
+    }
+
+    private static URI resolve(Settings current, String path) {
+        if (current.baseUrl() == null) {
+            throw new ExternalApiException(0, "URL da API externa não configurada (api.external.url)", null);
+        }
+        return current.baseUrl().resolve(path.startsWith("/") ? path.substring(1) : path);
+    }
+
+    private <T> T execute(HttpUriRequestBase request, Settings current, Class<T> responseType) {
+        request.setConfig(RequestConfig.custom()
+                .setResponseTimeout(Timeout.ofMilliseconds(current.timeout()))
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeout.toMillis()))
+                .build());
+        if (current.apiKey() != null) {
+            request.setHeader(apiKeyHeader, current.apiKey());
+        }
+        request.setHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+
+        long start = System.nanoTime();
+        String status = "IO_ERROR";
+        try {
+            // O handler consome o corpo e devolve a conexão ao pool antes da conversão
+            Response response = httpClient.execute(request, r -> new Response(r.getCode(),
+                    r.getEntity() != null ? EntityUtils.toString(r.getEntity()) : null));
+            status = String.valueOf(response.code());
+            if (response.code() < 200 || response.code() >= 300) {
+                throw new ExternalApiException(response.code(), "API externa respondeu " + response.code() + " para "
+                        + request.getMethod() + " " + request.getRequestUri(), null);
+            }
+            if (responseType == String.class || response.body() == null || response.body().isEmpty()) {
+                return responseType.cast(response.body());
+            }
+            return objectMapper.readValue(response.body(), responseType);
+        } catch (IOException e) {
+            throw new ExternalApiException(0, "Erro na chamada à API externa: " + e.getMessage(), e);
+        } finally {
+            Timer.builder("external.api.requests")
+                    .description("Latência das chamadas à API externa")
+                    .tag("method", request.getMethod())
+                    .tag("status", status)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Estado do cliente para diagnóstico (sem a chave)
+     */
+    public Map<String, Object> describe() {
+        Settings current = settings.get();
+        PoolStats stats = connectionManager.getTotalStats();
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("baseUrl", current.baseUrl());
+        description.put("timeout", current.timeout());
+        description.put("settingsVersion", current.version());
+        description.put("poolLeased", stats.getLeased());
+        description.put("poolAvailable", stats.getAvailable());
+        description.put("poolPending", stats.getPending());
+        description.put("poolMax", stats.getMax());
+        return description;
+    }
+
+    public Settings getSettings() {
+        return settings.get();
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        log.info("Fechando cliente da API externa");
+        httpClient.close();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.vaultrotation.config;
+
+/**
+ * Falha em uma chamada à API externa: status HTTP fora de 2xx (status > 0) ou erro de I/O (status 0)
+ */
+public class ExternalApiException extends RuntimeException {
+
+    private final int status;
+
+    public ExternalApiException(int status, String message, Throwable cause) {
+        super(message, cause);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
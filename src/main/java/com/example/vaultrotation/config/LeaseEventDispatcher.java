@@ -0,0 +1,210 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.core.lease.domain.Lease;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Encaminha o processamento de eventos de lease do Vault para um executor dedicado e limitado.
+ * A thread do SecretLeaseContainer apenas marca as ações pendentes do caminho, em tempo constante.
+ * Rajadas de eventos para o mesmo caminho são agrupadas em uma única execução, e o processamento
+ * de um mesmo caminho nunca ocorre em paralelo. Caminhos diferentes são processados em paralelo,
+ * de modo que uma tempestade de eventos em um banco não atrasa os demais.
+ */
+@Component
+@Slf4j
+public class LeaseEventDispatcher implements DisposableBean {
+
+    /**
+     * Ações que podem ser solicitadas para um caminho de lease
+     */
+    public enum LeaseAction {
+        REQUEST_ROTATION,
+        REBUILD_POOL
+    }
+
+    /**
+     * Segredos de uma lease junto com a lease que os originou
+     */
+    public record LeaseSecrets(Lease lease, Map<String, Object> secrets) {
+    }
+
+    /**
+     * Processa as ações acumuladas de um caminho. Recebe os segredos da lease mais recente, se houver.
+     */
+    @FunctionalInterface
+    public interface LeaseActionHandler {
+        void handle(String path, Set<LeaseAction> actions, LeaseSecrets latestSecrets);
+
+        /**
+         * Chamado quando os segredos de uma lease são substituídos por outros mais recentes antes
+         * de serem processados. Executa na thread de quem chamou dispatch, portanto não deve bloquear.
+         */
+        default void superseded(String path, LeaseSecrets secrets) {
+        }
+    }
+
+    /**
+     * Estado de um caminho: ações pendentes (bitmask) e se já existe uma tarefa agendada
+     */
+    private static final class PathSlot {
+        final AtomicInteger pendingActions = new AtomicInteger();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final AtomicLong firstEnqueuedNanos = new AtomicLong();
+        volatile LeaseActionHandler handler;
+        final AtomicReference<LeaseSecrets> latestSecrets = new AtomicReference<>();
+    }
+
+    private final Map<String, PathSlot> slots = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    private final Counter receivedCounter;
+    private final Counter coalescedCounter;
+    private final Counter rejectedCounter;
+    private final Timer lagTimer;
+    private final Timer processingTimer;
+
+    public LeaseEventDispatcher(
+            MeterRegistry meterRegistry,
+            @Value("${app.vault.lease-events.threads:1}") int threads,
+            @Value("${app.vault.lease-events.queue-capacity:64}") int queueCapacity) {
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "lease-events-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.receivedCounter = Counter.builder("vault.lease.events.received")
+                .description("Eventos de lease recebidos do SecretLeaseContainer")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("vault.lease.events.coalesced")
+                .description("Eventos agrupados em uma execução já pendente")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("vault.lease.events.rejected")
+                .description("Execuções rejeitadas por fila cheia")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("vault.lease.events.lag")
+                .description("Tempo entre o primeiro evento pendente e o início do processamento")
+                .register(meterRegistry);
+        this.processingTimer = Timer.builder("vault.lease.events.processing")
+                .description("Duração do processamento das ações de um caminho")
+                .register(meterRegistry);
+        Gauge.builder("vault.lease.events.queue.depth", executor, e -> e.getQueue().size())
+                .description("Tarefas aguardando no executor de eventos de lease")
+                .register(meterRegistry);
+        Gauge.builder("vault.lease.events.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+
+        log.info("LeaseEventDispatcher iniciado com {} thread(s) e fila de {}", threads, queueCapacity);
+    }
+
+    /**
+     * Registra uma ação pendente para o caminho. Chamado a partir da thread do container de leases,
+     * portanto não deve bloquear: apenas atualiza o bitmask e, se necessário, agenda a execução.
+     * Quando informados, os segredos substituem os de eventos anteriores ainda não processados,
+     * e o handler é avisado dos segredos descartados.
+     */
+    public void dispatch(String path, LeaseAction action, LeaseSecrets secrets, LeaseActionHandler handler) {
+        receivedCounter.increment();
+        PathSlot slot = slots.computeIfAbsent(path, p -> new PathSlot());
+        slot.handler = handler;
+        if (secrets != null) {
+            LeaseSecrets discarded = slot.latestSecrets.getAndSet(secrets);
+            if (discarded != null) {
+                handler.superseded(path, discarded);
+            }
+        }
+
+        int bit = 1 << action.ordinal();
+        int previous = slot.pendingActions.getAndAccumulate(bit, (current, b) -> current | b);
+        if (previous == 0) {
+            slot.firstEnqueuedNanos.set(System.nanoTime());
+        } else {
+            coalescedCounter.increment();
+        }
+        schedule(path, slot);
+    }
+
+    private void schedule(String path, PathSlot slot) {
+        if (!slot.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> drain(path, slot));
+        } catch (RejectedExecutionException e) {
+            // As ações continuam pendentes e serão reprocessadas no próximo evento do caminho
+            slot.scheduled.set(false);
+            rejectedCounter.increment();
+            log.warn("Fila de eventos de lease cheia, processamento de {} adiado", path);
+        }
+    }
+
+    private void drain(String path, PathSlot slot) {
+        try {
+            int actions;
+            while ((actions = slot.pendingActions.getAndSet(0)) != 0) {
+                lagTimer.record(System.nanoTime() - slot.firstEnqueuedNanos.get(), TimeUnit.NANOSECONDS);
+                Set<LeaseAction> actionSet = toSet(actions);
+                long start = System.nanoTime();
+                try {
+                    // Os segredos são consumidos para não permanecerem em memória após o uso
+                    slot.handler.handle(path, actionSet, slot.latestSecrets.getAndSet(null));
+                } catch (Exception e) {
+                    log.error("Erro ao processar ações {} do caminho {}: {}", actionSet, path, e.getMessage(), e);
+                } finally {
+                    processingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        } finally {
+            slot.scheduled.set(false);
+        }
+        // Um evento pode ter chegado entre o último getAndSet e a liberação do slot
+        if (slot.pendingActions.get() != 0) {
+            schedule(path, slot);
+        }
+    }
+
+    private static Set<LeaseAction> toSet(int actions) {
+        Set<LeaseAction> set = EnumSet.noneOf(LeaseAction.class);
+        for (LeaseAction action : LeaseAction.values()) {
+            if ((actions & (1 << action.ordinal())) != 0) {
+                set.add(action);
+            }
+        }
+        return set;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void destroy() {
+        log.info("Encerrando executor de eventos de lease");
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.vaultrotation.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.core.lease.SecretLeaseContainer;
+import org.springframework.vault.core.lease.domain.Lease;
+import org.springframework.vault.core.lease.event.AfterSecretLeaseRenewedEvent;
+import org.springframework.vault.core.lease.event.AfterSecretLeaseRevocationEvent;
+import org.springframework.vault.core.lease.event.SecretLeaseCreatedEvent;
+import org.springframework.vault.core.lease.event.SecretLeaseExpiredEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mantém em memória o estado da última lease conhecida para cada caminho do Vault.
+ * Permite consultar o TTL restante sem realizar chamadas ao Vault, o que é
+ * necessário para que os probes de readiness sejam baratos.
+ */
+@Component
+@Slf4j
+public class LeaseStateTracker {
+
+    /**
+     * Estado de uma lease no momento em que foi obtida ou renovada.
+     *
+     * @param expired a lease expirou ou foi revogada e nenhuma outra a substituiu no caminho
+     */
+    public record LeaseState(String leaseId, Instant obtainedAt, Duration leaseDuration, boolean renewable,
+                             boolean expired) {
+
+        public Instant expiresAt() {
+            return obtainedAt.plus(leaseDuration);
+        }
+
+        public Duration remaining(Instant now) {
+            Duration remaining = Duration.between(now, expiresAt());
+            return expired || remaining.isNegative() ? Duration.ZERO : remaining;
+        }
+
+        LeaseState asExpired() {
+            return new LeaseState(leaseId, obtainedAt, leaseDuration, renewable, true);
+        }
+    }
+
+    private final Map<String, LeaseState> leases = new ConcurrentHashMap<>();
+
+    public LeaseStateTracker(ObjectProvider<SecretLeaseContainer> leaseContainerProvider) {
+        SecretLeaseContainer leaseContainer = leaseContainerProvider.getIfAvailable();
+        if (leaseContainer == null) {
+            log.info("SecretLeaseContainer não disponível, estado de leases não será monitorado");
+            return;
+        }
+
+        // O listener roda na thread do container de leases: apenas atualiza o mapa
+        leaseContainer.addLeaseListener(event -> {
+            String path = event.getSource().getPath();
+            if (event instanceof SecretLeaseCreatedEvent created) {
+                record(path, created.getLease());
+            } else if (event instanceof AfterSecretLeaseRenewedEvent renewed) {
+                record(path, renewed.getLease());
+            } else if (event instanceof SecretLeaseExpiredEvent || event instanceof AfterSecretLeaseRevocationEvent) {
+                expire(path, event.getLease());
+            }
+        });
+        log.info("LeaseStateTracker iniciado");
+    }
+
+    private void record(String path, Lease lease) {
+        if (lease == null || !lease.hasLeaseId()) {
+            return;
+        }
+        leases.put(path, new LeaseState(lease.getLeaseId(), Instant.now(), lease.getLeaseDuration(), lease.isRenewable(), false));
+    }
+
+    /**
+     * Marca a lease do caminho como expirada, mantendo o estado até uma nova lease ser obtida.
+     * Eventos de uma lease anterior à atual (já substituída) são ignorados.
+     */
+    private void expire(String path, Lease lease) {
+        String leaseId = lease != null && lease.hasLeaseId() ? lease.getLeaseId() : null;
+        leases.compute(path, (key, state) -> {
+            if (state == null) {
+                return new LeaseState(leaseId, Instant.now(), Duration.ZERO, false, true);
+            }
+            if (leaseId != null && !leaseId.equals(state.leaseId())) {
+                return state;
+            }
+            return state.asExpired();
+        });
+    }
+
+    public Optional<LeaseState> getLeaseState(String path) {
+        return Optional.ofNullable(leases.get(path));
+    }
+
+    /**
+     * Retorna o TTL restante da lease do caminho informado, se conhecida (zero se expirada).
+     */
+    public Optional<Duration> remainingTtl(String path) {
+        return getLeaseState(path).map(state -> state.remaining(Instant.now()));
+    }
+
+    public Map<String, LeaseState> getLeases() {
+        return Map.copyOf(leases);
+    }
+}
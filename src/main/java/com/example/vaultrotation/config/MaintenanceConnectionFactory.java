@@ -0,0 +1,107 @@
+package com.example.vaultrotation.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.VaultException;
+import org.springframework.vault.core.VaultOperations;
+import org.springframework.vault.core.lease.domain.Lease;
+import org.springframework.vault.support.VaultResponse;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Conexões para o DDL da manutenção das partições de pagamentos (ver PaymentArchiver). Com maintenance-role
+ * no datasource, cada conexão usa um usuário dinâmico desse role, obtido do Vault na abertura e revogado
+ * no fechamento: o role das requisições fica apenas com DML. Sem maintenance-role, a conexão vem do pool atual.
+ */
+@Component
+@Slf4j
+public class MaintenanceConnectionFactory {
+
+    /**
+     * Conexão de manutenção; o fechamento também revoga a lease, quando houver
+     */
+    public final class MaintenanceConnection implements AutoCloseable {
+
+        private final Connection connection;
+        private final String datasource;
+        private final Lease lease;
+
+        private MaintenanceConnection(Connection connection, String datasource, Lease lease) {
+            this.connection = connection;
+            this.datasource = datasource;
+            this.lease = lease;
+        }
+
+        public Connection connection() {
+            return connection;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                connection.close();
+            } finally {
+                if (lease != null) {
+                    retirer.revokeMaintenance(datasource, lease);
+                }
+            }
+        }
+    }
+
+    private final ObjectProvider<VaultOperations> vaultOperationsProvider;
+    private final PoolGenerationRetirer retirer;
+
+    public MaintenanceConnectionFactory(ObjectProvider<VaultOperations> vaultOperationsProvider,
+                                        PoolGenerationRetirer retirer) {
+        this.vaultOperationsProvider = vaultOperationsProvider;
+        this.retirer = retirer;
+    }
+
+    /**
+     * Abre uma conexão com os privilégios de DDL do datasource
+     */
+    public MaintenanceConnection open(RotatingPool pool) throws SQLException {
+        DataSourceDefinition definition = pool.getDefinition();
+        if (!definition.hasMaintenanceRole()) {
+            return new MaintenanceConnection(pool.getConnection(), pool.getName(), null);
+        }
+        VaultOperations vaultOperations = vaultOperationsProvider.getIfAvailable();
+        if (vaultOperations == null) {
+            throw new SQLException("VaultOperations não está disponível para o role de manutenção "
+                    + definition.getMaintenanceRole());
+        }
+
+        String path = definition.getMaintenanceLeasePath();
+        VaultResponse response;
+        try {
+            response = vaultOperations.read(path);
+        } catch (VaultException e) {
+            throw new SQLException("Erro ao obter credenciais de manutenção em " + path + ": " + e.getMessage(), e);
+        }
+        Map<String, Object> secrets = response != null ? response.getData() : null;
+        if (secrets == null || secrets.get("username") == null || secrets.get("password") == null) {
+            throw new SQLException("Credenciais de manutenção em " + path + " sem username/password");
+        }
+        Lease lease = response.getLeaseId() != null
+                ? Lease.of(response.getLeaseId(), Duration.ofSeconds(response.getLeaseDuration()), response.isRenewable())
+                : null;
+
+        try {
+            Connection connection = DriverManager.getConnection(definition.getUrl(),
+                    secrets.get("username").toString(), secrets.get("password").toString());
+            log.debug("[{}] Conexão de manutenção aberta com o usuário {}", pool.getName(), secrets.get("username"));
+            return new MaintenanceConnection(connection, pool.getName(), lease);
+        } catch (SQLException e) {
+            if (lease != null) {
+                retirer.revokeMaintenance(pool.getName(), lease);
+            }
+            throw e;
+        }
+    }
+}
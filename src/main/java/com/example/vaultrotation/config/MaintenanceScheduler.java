@@ -0,0 +1,209 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Agendador dedicado às tarefas de manutenção em segundo plano (verificação de conexão,
+ * rotação periódica de credenciais, atualização de configurações).
+ * Cada tarefa roda em sua própria thread, de modo que uma tarefa lenta não atrasa as demais.
+ * Execuções nunca se sobrepõem: a próxima execução só é agendada quando a anterior termina.
+ * Quando uma execução atrasa além do período, os ciclos perdidos são contabilizados e
+ * descartados em vez de executados em sequência.
+ */
+@Component
+@Slf4j
+public class MaintenanceScheduler implements DisposableBean {
+
+    private static final long STOP_POLL_MILLIS = 50;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, MaintenanceTask> tasks = new ConcurrentHashMap<>();
+
+    public MaintenanceScheduler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Registra uma tarefa periódica. Registros repetidos com o mesmo nome são ignorados.
+     *
+     * @param name         nome da tarefa, usado na thread e nas métricas
+     * @param period       intervalo entre o início de execuções consecutivas
+     * @param initialDelay atraso antes da primeira execução
+     * @param budget       duração esperada máxima de uma execução
+     * @param action       trabalho a executar
+     */
+    public void register(String name, Duration period, Duration initialDelay, Duration budget, Runnable action) {
+        tasks.computeIfAbsent(name, n -> {
+            MaintenanceTask task = new MaintenanceTask(n, period, budget, action);
+            task.start(initialDelay);
+            log.info("Tarefa de manutenção '{}' registrada (período: {}, orçamento: {})", n, period, budget);
+            return task;
+        });
+    }
+
+    /**
+     * Interrompe todas as tarefas de manutenção
+     */
+    public void shutdown() {
+        tasks.values().forEach(task -> task.executor.shutdownNow());
+    }
+
+    /**
+     * Encerra as tarefas sem interromper as execuções em andamento: nenhuma nova execução é agendada e as
+     * que estão rodando têm até timeout para terminar, depois são interrompidas.
+     * Usado no encerramento da aplicação (ver ShutdownSequence).
+     *
+     * @return tarefas que ainda executavam ao fim do timeout
+     */
+    public List<String> stop(Duration timeout) {
+        tasks.values().forEach(MaintenanceTask::stop);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (tasks.values().stream().anyMatch(task -> task.running.get()) && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(STOP_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        List<String> unfinished = new ArrayList<>();
+        tasks.values().stream().filter(task -> task.running.get()).forEach(task -> unfinished.add(task.name));
+        // Descarta as execuções agendadas e interrompe as que não terminaram a tempo
+        shutdown();
+        return unfinished;
+    }
+
+    @Override
+    public void destroy() {
+        log.info("Encerrando agendador de tarefas de manutenção");
+        shutdown();
+    }
+
+    private final class MaintenanceTask {
+
+        final String name;
+        final Duration period;
+        final Duration budget;
+        final Runnable action;
+        final ScheduledExecutorService executor;
+        final AtomicBoolean running = new AtomicBoolean(false);
+
+        final Timer durationTimer;
+        final Timer lagTimer;
+        final Counter missedCounter;
+        final Counter overrunCounter;
+        final Counter failureCounter;
+
+        // Instante (nanoTime) em que a próxima execução deveria começar
+        long nextSlotNanos;
+        volatile boolean stopped;
+
+        MaintenanceTask(String name, Duration period, Duration budget, Runnable action) {
+            this.name = name;
+            this.period = period;
+            this.budget = budget;
+            this.action = action;
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "maintenance-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            this.durationTimer = Timer.builder("maintenance.task.duration").tag("task", name)
+                    .description("Duração de cada execução da tarefa de manutenção")
+                    .register(meterRegistry);
+            this.lagTimer = Timer.builder("maintenance.task.lag").tag("task", name)
+                    .description("Atraso entre o horário previsto e o início da execução")
+                    .register(meterRegistry);
+            this.missedCounter = Counter.builder("maintenance.task.missed").tag("task", name)
+                    .description("Ciclos descartados porque a execução anterior atrasou além do período")
+                    .register(meterRegistry);
+            this.overrunCounter = Counter.builder("maintenance.task.budget.overrun").tag("task", name)
+                    .description("Execuções que ultrapassaram o orçamento de duração")
+                    .register(meterRegistry);
+            this.failureCounter = Counter.builder("maintenance.task.failures").tag("task", name)
+                    .register(meterRegistry);
+            Gauge.builder("maintenance.task.running", running, r -> r.get() ? 1 : 0).tag("task", name)
+                    .register(meterRegistry);
+        }
+
+        void start(Duration initialDelay) {
+            nextSlotNanos = System.nanoTime() + initialDelay.toNanos();
+            executor.schedule(this::runScheduled, initialDelay.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        void stop() {
+            // Nenhuma execução começa nem é reagendada; a que está rodando continua
+            stopped = true;
+            executor.shutdown();
+        }
+
+        private void runScheduled() {
+            if (stopped) {
+                return;
+            }
+            long slot = nextSlotNanos;
+            try {
+                execute(slot);
+            } finally {
+                scheduleNext(slot);
+            }
+        }
+
+        private void execute(long expectedStartNanos) {
+            running.set(true);
+            long start = System.nanoTime();
+            long lag = Math.max(0, start - expectedStartNanos);
+            lagTimer.record(lag, TimeUnit.NANOSECONDS);
+            try {
+                action.run();
+            } catch (Exception e) {
+                failureCounter.increment();
+                log.error("Erro na tarefa de manutenção '{}': {}", name, e.getMessage(), e);
+            } finally {
+                long duration = System.nanoTime() - start;
+                durationTimer.record(duration, TimeUnit.NANOSECONDS);
+                running.set(false);
+                if (duration > budget.toNanos()) {
+                    overrunCounter.increment();
+                    log.warn("Tarefa de manutenção '{}' levou {} ms, acima do orçamento de {} ms",
+                            name, TimeUnit.NANOSECONDS.toMillis(duration), budget.toMillis());
+                }
+            }
+        }
+
+        private void scheduleNext(long previousSlot) {
+            if (executor.isShutdown()) {
+                return;
+            }
+            long periodNanos = period.toNanos();
+            long next = previousSlot + periodNanos;
+            long now = System.nanoTime();
+            if (now > next) {
+                // Ciclos que deveriam ter começado durante o atraso são descartados e contabilizados
+                long missed = (now - next) / periodNanos + 1;
+                missedCounter.increment(missed);
+                next += missed * periodNanos;
+                log.warn("Tarefa de manutenção '{}' perdeu {} ciclo(s)", name, missed);
+            }
+            nextSlotNanos = next;
+            executor.schedule(this::runScheduled, next - now, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.vaultrotation.config;
+
+import com.example.vaultrotation.service.PaymentArchiver;
+import com.example.vaultrotation.service.PaymentChangeFeed;
+import com.example.vaultrotation.service.PaymentService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import java.time.Duration;
+
+/**
+ * Registra no MaintenanceScheduler as tarefas periódicas da aplicação.
+ * Mantém em um único lugar os períodos e orçamentos de cada tarefa.
+ */
+@Configuration
+@Slf4j
+public class MaintenanceTasksConfig {
+
+    public static final String DATABASE_HEALTH_TASK = "database-health";
+    public static final String CREDENTIAL_CHECK_TASK = "credential-check";
+    public static final String EXTERNAL_API_REFRESH_TASK = "external-api-refresh";
+    public static final String READINESS_SNAPSHOT_TASK = "readiness-snapshot";
+    public static final String IDEMPOTENCY_PURGE_TASK = "idempotency-purge";
+    public static final String POOL_SIZING_TASK = "pool-sizing";
+    public static final String PAYMENT_ARCHIVE_TASK = "payment-archive";
+    public static final String TOMBSTONE_PURGE_TASK = "tombstone-purge";
+
+    private final MaintenanceScheduler maintenanceScheduler;
+    private final DatabaseConfig databaseConfig;
+    private final ExternalApiClient externalApiClient;
+    private final RotationReadinessHealthIndicator readinessHealthIndicator;
+    private final ObjectProvider<VaultRefresher> vaultRefresherProvider;
+    private final RotatingDataSourceRegistry registry;
+    private final PaymentService paymentService;
+    private final PoolSizeController poolSizeController;
+    private final PaymentArchiver paymentArchiver;
+    private final PaymentChangeFeed paymentChangeFeed;
+    private final RotationCoordinator rotationCoordinator;
+
+    @Value("${app.maintenance.database-health.period:30s}")
+    private Duration databaseHealthPeriod;
+
+    @Value("${app.maintenance.database-health.budget:10s}")
+    private Duration databaseHealthBudget;
+
+    @Value("${app.maintenance.credential-check.period:5m}")
+    private Duration credentialCheckPeriod;
+
+    @Value("${app.maintenance.credential-check.budget:5s}")
+    private Duration credentialCheckBudget;
+
+    @Value("${app.maintenance.external-api-refresh.period:5m}")
+    private Duration externalApiRefreshPeriod;
+
+    @Value("${app.maintenance.external-api-refresh.budget:30s}")
+    private Duration externalApiRefreshBudget;
+
+    @Value("${app.maintenance.idempotency-purge.period:10m}")
+    private Duration idempotencyPurgePeriod;
+
+    @Value("${app.maintenance.idempotency-purge.budget:30s}")
+    private Duration idempotencyPurgeBudget;
+
+    @Value("${app.maintenance.pool-sizing.period:10s}")
+    private Duration poolSizingPeriod;
+
+    @Value("${app.maintenance.pool-sizing.budget:5s}")
+    private Duration poolSizingBudget;
+
+    @Value("${app.maintenance.payment-archive.period:1h}")
+    private Duration paymentArchivePeriod;
+
+    @Value("${app.maintenance.payment-archive.budget:30m}")
+    private Duration paymentArchiveBudget;
+
+    @Value("${app.maintenance.tombstone-purge.period:1h}")
+    private Duration tombstonePurgePeriod;
+
+    @Value("${app.maintenance.tombstone-purge.budget:1m}")
+    private Duration tombstonePurgeBudget;
+
+    @Value("${app.health.readiness.refresh-interval:5000}")
+    private long readinessRefreshInterval;
+
+    public MaintenanceTasksConfig(
+            MaintenanceScheduler maintenanceScheduler,
+            DatabaseConfig databaseConfig,
+            ExternalApiClient externalApiClient,
+            RotationReadinessHealthIndicator readinessHealthIndicator,
+            ObjectProvider<VaultRefresher> vaultRefresherProvider,
+            RotatingDataSourceRegistry registry,
+            PaymentService paymentService,
+            PoolSizeController poolSizeController,
+            PaymentArchiver paymentArchiver,
+            PaymentChangeFeed paymentChangeFeed,
+            RotationCoordinator rotationCoordinator) {
+        this.maintenanceScheduler = maintenanceScheduler;
+        this.databaseConfig = databaseConfig;
+        this.externalApiClient = externalApiClient;
+        this.readinessHealthIndicator = readinessHealthIndicator;
+        this.vaultRefresherProvider = vaultRefresherProvider;
+        this.registry = registry;
+        this.paymentService = paymentService;
+        this.poolSizeController = poolSizeController;
+        this.paymentArchiver = paymentArchiver;
+        this.paymentChangeFeed = paymentChangeFeed;
+        this.rotationCoordinator = rotationCoordinator;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerMaintenanceTasks() {
+        log.info("Registrando tarefas de manutenção");
+
+        Duration readinessInterval = Duration.ofMillis(readinessRefreshInterval);
+        maintenanceScheduler.register(READINESS_SNAPSHOT_TASK, readinessInterval, Duration.ZERO,
+                readinessInterval, readinessHealthIndicator::refreshSnapshot);
+
+        // Uma tarefa por datasource: um banco lento não atrasa a verificação dos demais
+        for (RotatingPool pool : registry.getPools()) {
+            maintenanceScheduler.register(DATABASE_HEALTH_TASK + "-" + pool.getName(), databaseHealthPeriod, Duration.ZERO,
+                    databaseHealthBudget, () -> databaseConfig.checkDatabaseConnection(pool));
+            maintenanceScheduler.register(POOL_SIZING_TASK + "-" + pool.getName(), poolSizingPeriod, poolSizingPeriod,
+                    poolSizingBudget, () -> poolSizeController.evaluate(pool));
+        }
+
+        // Tarefas que chegam ao Vault e ao MySQL rodam no horário desta réplica, e não todas as réplicas
+        // juntas a partir do rollout (ver RotationCoordinator)
+        VaultRefresher vaultRefresher = vaultRefresherProvider.getIfAvailable();
+        if (vaultRefresher != null) {
+            maintenanceScheduler.register(CREDENTIAL_CHECK_TASK, credentialCheckPeriod,
+                    rotationCoordinator.alignedDelay(CREDENTIAL_CHECK_TASK, credentialCheckPeriod),
+                    credentialCheckBudget, vaultRefresher::checkCredentials);
+        }
+
+        // O refresh troca as configurações do cliente HTTP após o refresh rebindar o ExternalApiConfig
+        maintenanceScheduler.register(EXTERNAL_API_REFRESH_TASK, externalApiRefreshPeriod,
+                rotationCoordinator.alignedDelay(EXTERNAL_API_REFRESH_TASK, externalApiRefreshPeriod),
+                externalApiRefreshBudget, externalApiClient::refreshConfiguration);
+
+        maintenanceScheduler.register(IDEMPOTENCY_PURGE_TASK, idempotencyPurgePeriod, idempotencyPurgePeriod,
+                idempotencyPurgeBudget, paymentService::purgeExpiredKeys);
+
+        // Cria as partições futuras já na inicialização; o arquivamento de um mês inteiro pode ser longo
+        maintenanceScheduler.register(PAYMENT_ARCHIVE_TASK, paymentArchivePeriod, Duration.ZERO,
+                paymentArchiveBudget, paymentArchiver::runMaintenance);
+
+        maintenanceScheduler.register(TOMBSTONE_PURGE_TASK, tombstonePurgePeriod, tombstonePurgePeriod,
+                tombstonePurgeBudget, paymentChangeFeed::purgeHistory);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.vaultrotation.config;
+
+import ch.qos.logback.classic.pattern.MessageConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Conversor de mensagem do Logback que mascara dados sensíveis (ccInfo, apiKey, senhas
+ * e usuários dinâmicos do Vault). Registrado no logback-spring.xml para %m/%msg, executa
+ * apenas quando o evento é de fato escrito por um appender; com o appender assíncrono,
+ * isso acontece na thread do appender e não na thread da requisição.
+ */
+public class MaskingMessageConverter extends MessageConverter {
+
+    // Campos no formato do toString do Lombok (ccInfo=...) ou JSON ("ccInfo":"..."). O valor vai até a aspa
+    // de fechamento ou até o próximo delimitador (, ) } ou fim da linha), incluindo espaços e hífens:
+    // números de cartão são digitados como "4111 1111 1111 1111" ou "4111-1111-1111-1111"
+    private static final Pattern SENSITIVE_FIELD = Pattern.compile(
+            "(?i)(\"?(?:ccInfo|cc_info|apiKey|api_key|password|secret_id)\"?\\s*[=:]\\s*)(\"(?:[^\"\\\\]|\\\\.)*\"?|[^\",)}\\r\\n]+)");
+
+    // Usuários criados pelo engine de banco de dados do Vault, ex: v-token-payments-a-Xyz123-1697040000
+    private static final Pattern VAULT_USERNAME = Pattern.compile("\\bv-[A-Za-z0-9_-]{4,}");
+
+    private static final int VISIBLE_SUFFIX = 4;
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        return mask(event.getFormattedMessage());
+    }
+
+    static String mask(String message) {
+        if (message == null || message.isEmpty()) {
+            return message;
+        }
+        String masked = message;
+        Matcher field = SENSITIVE_FIELD.matcher(masked);
+        if (field.find()) {
+            masked = field.replaceAll(match -> Matcher.quoteReplacement(
+                    match.group(1) + (match.group(2).startsWith("\"") ? "\"****\"" : "****")));
+        }
+        Matcher username = VAULT_USERNAME.matcher(masked);
+        if (username.find()) {
+            StringBuilder builder = new StringBuilder(masked.length());
+            do {
+                String value = username.group();
+                username.appendReplacement(builder, "v-****" + value.substring(value.length() - VISIBLE_SUFFIX));
+            } while (username.find());
+            username.appendTail(builder);
+            masked = builder.toString();
+        }
+        return masked;
+    }
+}
@@ -3,40 +3,101 @@ package com.example.vaultrotation.config;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 /**
  * Componente responsável por gerenciar usuários do MySQL criados pelo Vault.
- * Monitora apenas o usuário atual em uso.
+ * Monitora o usuário atual em uso por cada datasource e o histórico de gerações,
+ * permitindo identificar usuários de gerações substituídas que não foram removidos.
  */
 @Component
 @Slf4j
 public class MySqlUserManager {
 
-    // Armazena o usuário atual do Vault
-    private final AtomicReference<String> currentVaultUser = new AtomicReference<>("");
+    // Armazena o usuário atual do Vault por datasource
+    private final Map<String, String> currentVaultUsers = new ConcurrentHashMap<>();
+
+    // Gerações por datasource, da mais recente para a mais antiga
+    private final Map<String, Deque<PoolGeneration>> generations = new ConcurrentHashMap<>();
+
+    // Gerações já revogadas mantidas para consulta
+    private static final int REVOKED_HISTORY_SIZE = 10;
 
     /**
-     * Atualiza o usuário atual do Vault
+     * Atualiza o usuário atual do Vault de um datasource
+     * @param datasource Nome do datasource
      * @param newUsername Novo usuário criado pelo Vault
      */
-    public void updateCurrentVaultUser(String newUsername) {
+    public void updateCurrentVaultUser(String datasource, String newUsername) {
         if (newUsername == null || newUsername.isEmpty() || !newUsername.startsWith("v-")) {
             log.warn("Tentativa de atualizar usuário Vault com valor inválido: {}", newUsername);
             return;
         }
 
-        String previousUser = currentVaultUser.getAndSet(newUsername);
-        if (!previousUser.equals(newUsername)) {
-            log.info("Usuário Vault atualizado: {} -> {}", previousUser, newUsername);
+        String previousUser = currentVaultUsers.put(datasource, newUsername);
+        if (!newUsername.equals(previousUser)) {
+            log.info("[{}] Usuário Vault atualizado: {} -> {}", datasource, previousUser, newUsername);
+        }
+    }
+
+    /**
+     * Retorna o usuário atual do Vault de um datasource
+     * @param datasource Nome do datasource
+     * @return Usuário atual, ou vazio se não houver
+     */
+    public String getCurrentVaultUser(String datasource) {
+        return currentVaultUsers.getOrDefault(datasource, "");
+    }
+
+    /**
+     * Retorna os usuários atuais de todos os datasources
+     */
+    public Map<String, String> getCurrentVaultUsers() {
+        return Map.copyOf(currentVaultUsers);
+    }
+
+    /**
+     * Registra uma nova geração de pool de um datasource
+     */
+    public void registerGeneration(PoolGeneration generation) {
+        Deque<PoolGeneration> history = generations.computeIfAbsent(generation.getDatasource(),
+                d -> new ConcurrentLinkedDeque<>());
+        history.addFirst(generation);
+
+        // Descarta as gerações revogadas mais antigas; gerações órfãs nunca são descartadas
+        int revoked = 0;
+        for (PoolGeneration existing : history) {
+            if (existing.getState() == PoolGeneration.State.REVOKED && ++revoked > REVOKED_HISTORY_SIZE) {
+                history.remove(existing);
+            }
         }
     }
 
     /**
-     * Retorna o usuário atual do Vault
-     * @return Usuário atual
+     * Retorna as gerações de um datasource, da mais recente para a mais antiga
+     */
+    public List<PoolGeneration> getGenerations(String datasource) {
+        Deque<PoolGeneration> history = generations.get(datasource);
+        return history != null ? List.copyOf(history) : List.of();
+    }
+
+    public List<PoolGeneration> getAllGenerations() {
+        List<PoolGeneration> all = new ArrayList<>();
+        generations.values().forEach(all::addAll);
+        return all;
+    }
+
+    /**
+     * Retorna as gerações substituídas cujo usuário ainda existe no MySQL
      */
-    public String getCurrentVaultUser() {
-        return currentVaultUser.get();
+    public List<PoolGeneration> getOrphanedGenerations() {
+        return getAllGenerations().stream()
+                .filter(PoolGeneration::isOrphaned)
+                .toList();
     }
-} 
\ No newline at end of file
+}
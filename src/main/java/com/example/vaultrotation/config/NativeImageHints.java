@@ -0,0 +1,56 @@
+package com.example.vaultrotation.config;
+
+import com.example.vaultrotation.model.PaymentChange;
+import com.example.vaultrotation.model.PaymentSummary;
+import com.example.vaultrotation.model.PaymentView;
+import com.example.vaultrotation.service.PaymentArchiver;
+import com.example.vaultrotation.service.PaymentChangeFeed;
+import com.example.vaultrotation.service.PaymentSearchService;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Reflexão necessária na imagem nativa (perfil Maven native) que o processamento AOT não descobre
+ * sozinho. Beans, entidades JPA e tipos de retorno dos controllers já são registrados pelo Spring;
+ * aqui ficam as classes criadas por reflexão fora do contexto (Hibernate e Logback) e os
+ * objetos serializados dentro de mapas, pelo SseEmitter ou em arquivos. Sem efeito na JVM.
+ */
+@Configuration
+@ImportRuntimeHints(NativeImageHints.Registrar.class)
+@RegisterReflectionForBinding({RotationEvent.class, PaymentArchiver.ArchiveManifest.class, PaymentChange.class,
+        PaymentChangeFeed.Page.class, PaymentSearchService.SearchCursor.class, SqlProfileEndpoint.SqlProfile.class})
+public class NativeImageHints {
+
+    static class Registrar implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            // Construtores chamados pelo Hibernate nas queries com select new
+            hints.reflection().registerType(PaymentView.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+            hints.reflection().registerType(PaymentSummary.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+            // Classes declaradas no logback-spring.xml: instanciadas e configuradas pelo Logback
+            hints.reflection().registerType(MaskingMessageConverter.class,
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+            hints.reflection().registerType(SqlSamplingTurboFilter.class,
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+            // Conexões com o query timeout do prazo da requisição (RequestDeadline) e proxies do SqlProfiler
+            hints.proxies().registerJdkProxy(Connection.class);
+            hints.proxies().registerJdkProxy(Statement.class);
+            hints.proxies().registerJdkProxy(PreparedStatement.class);
+            hints.proxies().registerJdkProxy(CallableStatement.class);
+            hints.proxies().registerJdkProxy(ResultSet.class);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.vaultrotation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Particionamento mensal da tabela payments e retenção por arquivamento das partições antigas.
+ * Aplicado a cada datasource de pagamentos (um por shard) pelo PaymentArchiver.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.partitioning")
+@Data
+public class PartitioningProperties {
+
+    // Desligado por padrão: arquivar remove partições, e só deve ser ligado com archive-directory em volume persistente
+    private boolean enabled = false;
+
+    // Converte a tabela payments para particionada quando ainda não for. A conversão copia a tabela inteira e
+    // bloqueia escritas: ligue apenas em uma janela de manutenção e desligue depois. Sem a conversão, a manutenção
+    // de uma tabela não particionada é ignorada
+    private boolean convertTable = false;
+
+    // Meses completos mantidos no banco, além do mês atual; partições mais antigas são arquivadas
+    private int retentionMonths = 12;
+
+    // Partições mensais criadas com antecedência, para que inserções nunca caiam na partição pmax
+    private int futureMonths = 3;
+
+    // Diretório dos arquivos de arquivamento (payments-<datasource>-pAAAAMM.jsonl.gz), em um volume persistente
+    // montado no container. Sem ele, as partições vencidas são mantidas: o arquivo seria a única cópia dos dados
+    private String archiveDirectory;
+
+    // Declara archive-directory como durável mesmo no sistema de arquivos raiz (ex: servidor sem container).
+    // Sem isso, partições só são removidas se o diretório estiver em um volume próprio, fora de tmpfs/overlay
+    private boolean archiveDirectoryPersistent = false;
+
+    // Linhas lidas por lote; cada lote usa uma conexão nova do pool atual
+    private int batchSize = 1000;
+
+    // Tentativas de cada passo em falhas de conexão (ex: rotação de credenciais em andamento)
+    private int maxAttempts = 5;
+
+    private Duration retryBackoff = Duration.ofSeconds(1);
+
+    // Espera máxima pelo metadata lock nas alterações de partição: evita que o DDL, enfileirado atrás
+    // de uma transação longa, bloqueie as consultas de pagamentos que chegam depois dele
+    private Duration ddlLockWaitTimeout = Duration.ofSeconds(5);
+}
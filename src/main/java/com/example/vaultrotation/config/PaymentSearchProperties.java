@@ -0,0 +1,25 @@
+package com.example.vaultrotation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Busca filtrada de pagamentos (GET /api/payments/search). Toda busca percorre um dos índices
+ * compostos de payments, na ordem do índice; os limites abaixo mantêm cada página limitada.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.payments.search")
+@Data
+public class PaymentSearchProperties {
+
+    // Prefixos curtos casam com boa parte do índice de nome
+    private int minPrefixLength = 2;
+
+    private int maxLimit = 500;
+
+    // MAX_EXECUTION_TIME de cada consulta: filtros não indexados podem descartar muitas linhas do índice
+    private Duration maxExecutionTime = Duration.ofSeconds(2);
+}
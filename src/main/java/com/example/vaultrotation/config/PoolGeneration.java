@@ -0,0 +1,130 @@
+package com.example.vaultrotation.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.vault.core.lease.domain.Lease;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Uma geração de credenciais de um datasource: o pool HikariCP, o usuário dinâmico
+ * e a lease do Vault que o originou. Após ser substituída, a geração é drenada,
+ * fechada e sua lease revogada para que o Vault remova o usuário do MySQL.
+ */
+public class PoolGeneration {
+
+    public enum State {
+        // Pool publicado e recebendo novas requisições
+        ACTIVE,
+        // Substituída; aguardando as conexões emprestadas serem devolvidas
+        DRAINING,
+        // Pool fechado; lease ainda não revogada
+        DRAINED,
+        // Lease revogada, usuário removido pelo Vault
+        REVOKED,
+        // Pool fechado, mas a revogação falhou ou a lease é desconhecida
+        ORPHANED
+    }
+
+    private final String datasource;
+    private final long number;
+    private final HikariDataSource dataSource;
+    private final String username;
+    private final Lease lease;
+    private final Instant createdAt = Instant.now();
+
+    private volatile State state = State.ACTIVE;
+    private volatile Instant retiredAt;
+    private volatile Instant closedAt;
+    private volatile String lastError;
+
+    public PoolGeneration(String datasource, long number, HikariDataSource dataSource, String username, Lease lease) {
+        this.datasource = datasource;
+        this.number = number;
+        this.dataSource = dataSource;
+        this.username = username;
+        this.lease = lease;
+    }
+
+    void markDraining() {
+        retiredAt = Instant.now();
+        state = State.DRAINING;
+    }
+
+    void markDrained() {
+        closedAt = Instant.now();
+        state = State.DRAINED;
+    }
+
+    void markRevoked() {
+        state = State.REVOKED;
+        lastError = null;
+    }
+
+    void markOrphaned(String error) {
+        lastError = error;
+        state = State.ORPHANED;
+    }
+
+    /**
+     * Uma geração é órfã quando já foi substituída mas seu usuário continua existindo no MySQL
+     */
+    public boolean isOrphaned() {
+        return state == State.DRAINED || state == State.ORPHANED;
+    }
+
+    public boolean hasLease() {
+        return lease != null && lease.hasLeaseId();
+    }
+
+    public String getDatasource() {
+        return datasource;
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    public HikariDataSource getDataSource() {
+        return dataSource;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Lease getLease() {
+        return lease;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getRetiredAt() {
+        return retiredAt;
+    }
+
+    /**
+     * Representação para os endpoints de diagnóstico (sem senha)
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("datasource", datasource);
+        description.put("generation", number);
+        description.put("poolName", dataSource.getPoolName());
+        description.put("username", username);
+        description.put("leaseId", hasLease() ? lease.getLeaseId() : null);
+        description.put("state", state);
+        description.put("createdAt", createdAt.toString());
+        description.put("retiredAt", retiredAt != null ? retiredAt.toString() : null);
+        description.put("closedAt", closedAt != null ? closedAt.toString() : null);
+        description.put("lastError", lastError);
+        return description;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.vaultrotation.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.core.VaultOperations;
+import org.springframework.vault.core.lease.domain.Lease;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aposenta as gerações de pool substituídas por uma rotação: aguarda as conexões emprestadas
+ * serem devolvidas (com limite de tempo), fecha o pool e revoga a lease no Vault, que remove
+ * o usuário dinâmico do MySQL imediatamente em vez de esperar o TTL da lease.
+ * Gerações que não puderam ser revogadas ficam registradas como órfãs no MySqlUserManager.
+ */
+@Component
+@Slf4j
+public class PoolGenerationRetirer implements DisposableBean {
+
+    private final ObjectProvider<VaultOperations> vaultOperationsProvider;
+    private final MySqlUserManager mySqlUserManager;
+    private final MeterRegistry meterRegistry;
+    private final RotationEventJournal journal;
+    private final ScheduledExecutorService executor;
+
+    @Value("${app.rotation.drain.timeout:30s}")
+    private Duration drainTimeout;
+
+    @Value("${app.rotation.drain.poll-interval:500ms}")
+    private Duration pollInterval;
+
+    @Value("${app.rotation.revoke-superseded-leases:true}")
+    private boolean revokeSupersededLeases;
+
+    public PoolGenerationRetirer(
+            ObjectProvider<VaultOperations> vaultOperationsProvider,
+            MySqlUserManager mySqlUserManager,
+            RotationEventJournal journal,
+            MeterRegistry meterRegistry) {
+        this.vaultOperationsProvider = vaultOperationsProvider;
+        this.mySqlUserManager = mySqlUserManager;
+        this.journal = journal;
+        this.meterRegistry = meterRegistry;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pool-drain");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("db.pool.generations.orphaned", mySqlUserManager, m -> m.getOrphanedGenerations().size())
+                .description("Gerações substituídas cujo usuário ainda existe no MySQL")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Inicia a aposentadoria de uma geração que deixou de ser a atual. Não bloqueia quem rotacionou:
+     * a drenagem e a revogação acontecem na thread pool-drain.
+     */
+    public void retire(PoolGeneration generation) {
+        generation.markDraining();
+        HikariPoolMXBean mxBean = generation.getDataSource().getHikariPoolMXBean();
+        if (mxBean != null) {
+            // Conexões ociosas são fechadas já; as emprestadas serão fechadas ao serem devolvidas
+            mxBean.softEvictConnections();
+        }
+        log.info("[{}] Drenando pool {} (geração {})", generation.getDatasource(),
+                generation.getDataSource().getPoolName(), generation.getNumber());
+
+        long start = System.nanoTime();
+        long deadline = start + drainTimeout.toNanos();
+        executor.execute(() -> awaitDrain(generation, start, deadline));
+    }
+
+    private void awaitDrain(PoolGeneration generation, long start, long deadline) {
+        HikariDataSource dataSource = generation.getDataSource();
+        HikariPoolMXBean mxBean = dataSource.getHikariPoolMXBean();
+        int active = mxBean != null ? mxBean.getActiveConnections() : 0;
+
+        if (active > 0 && System.nanoTime() < deadline) {
+            executor.schedule(() -> awaitDrain(generation, start, deadline), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+            return;
+        }
+        if (active > 0) {
+            log.warn("[{}] Tempo de drenagem esgotado para o pool {}, fechando com {} conexão(ões) ativa(s)",
+                    generation.getDatasource(), dataSource.getPoolName(), active);
+        }
+        journal.recordTimed(RotationEvent.Type.POOL_DRAINED, generation.getDatasource(), start,
+                dataSource.getPoolName() + (active > 0 ? " timeout, " + active + " ativa(s)" : ""));
+
+        try {
+            dataSource.close();
+            generation.markDrained();
+            journal.record(RotationEvent.Type.POOL_CLOSED, generation.getDatasource(), dataSource.getPoolName());
+            log.info("[{}] Pool {} drenado e fechado", generation.getDatasource(), dataSource.getPoolName());
+        } catch (Exception e) {
+            log.warn("[{}] Erro ao fechar pool {}: {}", generation.getDatasource(), dataSource.getPoolName(), e.getMessage());
+            generation.markOrphaned("Erro ao fechar pool: " + e.getMessage());
+            return;
+        }
+        revoke(generation);
+    }
+
+    private void revoke(PoolGeneration generation) {
+        if (!generation.hasLease()) {
+            // Credenciais vindas do Environment (config data) não expõem a lease que as originou
+            generation.markOrphaned("Lease desconhecida, usuário deve ser removido manualmente ou expirar pelo TTL");
+            countRevocation(generation.getDatasource(), "skipped");
+            return;
+        }
+        if (!revokeSupersededLeases) {
+            return;
+        }
+        revokeGeneration(generation);
+    }
+
+    /**
+     * Revoga a lease de uma geração cujo pool já foi fechado. Também usado no encerramento da
+     * aplicação para a geração atual (ver ShutdownSequence).
+     *
+     * @return true se a lease foi revogada
+     */
+    boolean revokeGeneration(PoolGeneration generation) {
+        try {
+            revokeLease(generation.getLease());
+            generation.markRevoked();
+            countRevocation(generation.getDatasource(), "success");
+            journal.record(RotationEvent.Type.LEASE_REVOKED, generation.getDatasource(), generation.getLease().getLeaseId());
+            log.info("[{}] Lease {} da geração {} revogada, usuário {} removido pelo Vault",
+                    generation.getDatasource(), generation.getLease().getLeaseId(), generation.getNumber(),
+                    generation.getUsername());
+            return true;
+        } catch (Exception e) {
+            generation.markOrphaned(e.getMessage());
+            countRevocation(generation.getDatasource(), "failure");
+            journal.record(RotationEvent.Type.LEASE_REVOCATION_FAILED, generation.getDatasource(),
+                    generation.getLease().getLeaseId() + ": " + e.getMessage());
+            log.error("[{}] Erro ao revogar lease {}: {}", generation.getDatasource(),
+                    generation.getLease().getLeaseId(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Revoga uma lease cujas credenciais nunca chegaram a ser usadas por um pool
+     * (por exemplo, substituída por uma lease mais recente antes do processamento)
+     */
+    public void revokeUnused(String datasource, Lease lease) {
+        revokeAsync(datasource, lease, "não utilizada");
+    }
+
+    /**
+     * Revoga a lease de uma conexão de manutenção já fechada (ver MaintenanceConnectionFactory)
+     */
+    public void revokeMaintenance(String datasource, Lease lease) {
+        revokeAsync(datasource, lease, "manutenção");
+    }
+
+    private void revokeAsync(String datasource, Lease lease, String purpose) {
+        if (!revokeSupersededLeases || lease == null || !lease.hasLeaseId()) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                revokeLease(lease);
+                countRevocation(datasource, "success");
+                journal.record(RotationEvent.Type.LEASE_REVOKED, datasource, lease.getLeaseId() + " (" + purpose + ")");
+                log.info("[{}] Lease {} ({}) revogada", datasource, lease.getLeaseId(), purpose);
+            } catch (Exception e) {
+                countRevocation(datasource, "failure");
+                journal.record(RotationEvent.Type.LEASE_REVOCATION_FAILED, datasource,
+                        lease.getLeaseId() + " (" + purpose + "): " + e.getMessage());
+                log.error("[{}] Erro ao revogar lease {} ({}): {}", datasource, lease.getLeaseId(), purpose, e.getMessage());
+            }
+        });
+    }
+
+    // As leases revogadas aqui já não são renovadas pelo SecretLeaseContainer: a rotação (ver VaultRefresher)
+    // associa a nova lease ao mesmo segredo, e no encerramento o container é parado antes da revogação.
+    // O id da lease vai no caminho para que a política restrinja a revogação aos papéis da aplicação
+    // (ver vault-policy.hcl)
+    private void revokeLease(Lease lease) {
+        VaultOperations vaultOperations = vaultOperationsProvider.getIfAvailable();
+        if (vaultOperations == null) {
+            throw new IllegalStateException("VaultOperations não está disponível");
+        }
+        vaultOperations.write("sys/leases/revoke/" + lease.getLeaseId(), null);
+    }
+
+    private void countRevocation(String datasource, String result) {
+        meterRegistry.counter("db.lease.revocations", "datasource", datasource, "result", result).increment();
+    }
+
+    @Override
+    public void destroy() {
+        log.info("Encerrando drenagem de pools");
+        executor.shutdownNow();
+        // Pools ainda em drenagem são fechados diretamente; suas leases expiram pelo TTL
+        mySqlUserManager.getAllGenerations().stream()
+                .filter(generation -> generation.getState() == PoolGeneration.State.DRAINING)
+                .forEach(generation -> generation.getDataSource().close());
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.vaultrotation.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ajusta o tamanho máximo de cada pool em tempo de execução, a partir da espera por conexões,
+ * dos timeouts e da utilização observados desde a última avaliação. Cresce rapidamente quando há
+ * espera e encolhe devagar, uma conexão por vez, após várias avaliações consecutivas de ociosidade.
+ * O tamanho fica sempre entre o piso e o teto do datasource e dentro do limite de conexões
+ * do usuário dinâmico no MySQL (max_user_connections da conta criada pelo Vault).
+ * Executado pelo MaintenanceScheduler, uma tarefa por datasource (ver MaintenanceTasksConfig).
+ */
+@Component
+@Slf4j
+public class PoolSizeController {
+
+    /**
+     * Decisão tomada em uma avaliação
+     */
+    public enum Decision {
+        GROW,
+        SHRINK,
+        HOLD,
+        // Precisaria crescer, mas o teto ou o limite do usuário no MySQL foi atingido
+        CAPPED
+    }
+
+    /**
+     * Estado de um datasource entre avaliações
+     */
+    private static final class SizingState {
+        long lastAcquireCount;
+        double lastAcquireNanos;
+        double lastTimeouts;
+        int idleEvaluations;
+        volatile double lastAverageWaitMillis;
+        volatile int userConnectionBudget;
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, SizingState> states = new ConcurrentHashMap<>();
+
+    @Value("${app.pool-sizing.grow-wait-threshold:20ms}")
+    private Duration growWaitThreshold;
+
+    @Value("${app.pool-sizing.shrink-wait-threshold:1ms}")
+    private Duration shrinkWaitThreshold;
+
+    @Value("${app.pool-sizing.shrink-utilization:0.5}")
+    private double shrinkUtilization;
+
+    @Value("${app.pool-sizing.shrink-after-evaluations:6}")
+    private int shrinkAfterEvaluations;
+
+    public PoolSizeController(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Avalia o pool e ajusta seu tamanho máximo, se necessário
+     */
+    public Decision evaluate(RotatingPool pool) {
+        DataSourceDefinition definition = pool.getDefinition();
+        SizingState state = states.computeIfAbsent(pool.getName(), name -> registerState(pool));
+
+        // Deltas desde a última avaliação
+        long acquireCount = pool.getAcquireTimer().count();
+        double acquireNanos = pool.getAcquireTimer().totalTime(TimeUnit.NANOSECONDS);
+        double timeouts = pool.getAcquireTimeoutCounter().count();
+        long acquisitions = acquireCount - state.lastAcquireCount;
+        double waitNanos = acquireNanos - state.lastAcquireNanos;
+        double newTimeouts = timeouts - state.lastTimeouts;
+        state.lastAcquireCount = acquireCount;
+        state.lastAcquireNanos = acquireNanos;
+        state.lastTimeouts = timeouts;
+
+        HikariDataSource ds = pool.getCurrent();
+        HikariPoolMXBean mxBean = ds != null ? ds.getHikariPoolMXBean() : null;
+        if (!definition.isAdaptiveSizing() || mxBean == null || pool.isRotating()) {
+            return Decision.HOLD;
+        }
+
+        double averageWaitMillis = acquisitions > 0 ? waitNanos / acquisitions / 1_000_000.0 : 0;
+        state.lastAverageWaitMillis = averageWaitMillis;
+        int current = pool.getMaximumPoolSize();
+        int ceiling = Math.min(definition.getPoolSizeCeiling(), userConnectionBudget(pool, state));
+        int floor = Math.min(definition.getPoolSizeFloor(), ceiling);
+        double utilization = (double) mxBean.getActiveConnections() / current;
+        int waiting = mxBean.getThreadsAwaitingConnection();
+
+        Decision decision;
+        int target = current;
+        boolean pressure = newTimeouts > 0 || waiting > 0
+                || averageWaitMillis > growWaitThreshold.toNanos() / 1_000_000.0;
+        if (pressure) {
+            state.idleEvaluations = 0;
+            // Cresce proporcionalmente (25%, no mínimo 1) para absorver rajadas em poucas avaliações
+            target = Math.min(ceiling, current + Math.max(1, current / 4));
+            decision = target > current ? Decision.GROW : Decision.CAPPED;
+        } else if (averageWaitMillis <= shrinkWaitThreshold.toNanos() / 1_000_000.0 && utilization < shrinkUtilization) {
+            state.idleEvaluations++;
+            if (state.idleEvaluations >= shrinkAfterEvaluations && current > floor) {
+                target = current - 1;
+                state.idleEvaluations = 0;
+                decision = Decision.SHRINK;
+            } else {
+                decision = Decision.HOLD;
+            }
+        } else {
+            state.idleEvaluations = 0;
+            decision = Decision.HOLD;
+        }
+
+        // O teto pode ter diminuído (novo usuário com limite menor)
+        if (target > ceiling) {
+            target = ceiling;
+            decision = Decision.SHRINK;
+        } else if (target < floor) {
+            target = floor;
+            decision = Decision.GROW;
+        }
+
+        if (target != current) {
+            log.info("[{}] Ajustando tamanho do pool: {} -> {} ({}; espera média {} ms, timeouts {}, aguardando {}, utilização {}%)",
+                    pool.getName(), current, target, decision, String.format("%.2f", averageWaitMillis),
+                    (long) newTimeouts, waiting, Math.round(utilization * 100));
+            pool.resize(target);
+        }
+        meterRegistry.counter("db.pool.sizing.decisions", "datasource", pool.getName(),
+                "decision", decision.name().toLowerCase()).increment();
+        return decision;
+    }
+
+    private SizingState registerState(RotatingPool pool) {
+        SizingState state = new SizingState();
+        state.userConnectionBudget = Integer.MAX_VALUE;
+        Gauge.builder("db.pool.size.target", pool, RotatingPool::getMaximumPoolSize)
+                .tag("datasource", pool.getName())
+                .description("Tamanho máximo do pool definido pelo controle adaptativo")
+                .register(meterRegistry);
+        Gauge.builder("db.pool.size.budget", state, s -> s.userConnectionBudget == Integer.MAX_VALUE ? 0 : s.userConnectionBudget)
+                .tag("datasource", pool.getName())
+                .description("Limite de conexões do usuário dinâmico no MySQL (0 = sem limite)")
+                .register(meterRegistry);
+        Gauge.builder("db.pool.acquire.wait.average", state, s -> s.lastAverageWaitMillis)
+                .tag("datasource", pool.getName())
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        return state;
+    }
+
+    /**
+     * Limite de conexões do usuário da geração atual, lido pelo RotatingPool na rotação:
+     * a avaliação não empresta conexões do pool que está dimensionando
+     */
+    private int userConnectionBudget(RotatingPool pool, SizingState state) {
+        int limit = pool.getUserConnectionLimit();
+        state.userConnectionBudget = limit > 0 ? limit : Integer.MAX_VALUE;
+        return state.userConnectionBudget;
+    }
+}
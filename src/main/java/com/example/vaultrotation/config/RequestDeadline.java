@@ -0,0 +1,157 @@
+package com.example.vaultrotation.config;
+
+import org.springframework.dao.QueryTimeoutException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Prazo da requisição HTTP em andamento, ligado à thread pelo RequestDeadlineFilter.
+ * O RotatingPool limita a espera por conexão ao tempo restante e aplica o mesmo tempo como
+ * query timeout dos statements; o ShardRouter repassa o prazo às threads da consulta distribuída.
+ * Fora de uma requisição com prazo (tarefas de manutenção, feed de alterações) nada muda.
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private static final Set<String> STATEMENT_FACTORIES = Set.of("createStatement", "prepareStatement", "prepareCall");
+
+    private RequestDeadline() {
+    }
+
+    /**
+     * Prazo esgotado antes ou durante o acesso ao banco. Não indica falha do pool nem das credenciais.
+     */
+    public static class DeadlineExceededException extends SQLTimeoutException {
+        public DeadlineExceededException(String message) {
+            super(message);
+        }
+
+        public DeadlineExceededException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    static void start(Duration timeout) {
+        DEADLINE.set(System.nanoTime() + timeout.toNanos());
+    }
+
+    static void clear() {
+        DEADLINE.remove();
+    }
+
+    /**
+     * Prazo da thread atual (em System.nanoTime), ou null sem prazo
+     */
+    public static Long current() {
+        return DEADLINE.get();
+    }
+
+    /**
+     * Tempo restante até o prazo (zero ou negativo se já passou), ou null sem prazo
+     */
+    public static Duration remaining() {
+        Long deadline = DEADLINE.get();
+        return deadline != null ? Duration.ofNanos(deadline - System.nanoTime()) : null;
+    }
+
+    public static boolean isExpired() {
+        Long deadline = DEADLINE.get();
+        return deadline != null && deadline - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Executa a operação com o prazo informado ligado à thread (null: sem prazo)
+     */
+    public static <T> T callWith(Long deadline, Supplier<T> operation) {
+        Long previous = DEADLINE.get();
+        if (deadline != null) {
+            DEADLINE.set(deadline);
+        } else {
+            DEADLINE.remove();
+        }
+        try {
+            return operation.get();
+        } finally {
+            if (previous != null) {
+                DEADLINE.set(previous);
+            } else {
+                DEADLINE.remove();
+            }
+        }
+    }
+
+    /**
+     * Falha de acesso a dados em que o prazo desta thread foi esgotado
+     */
+    static QueryTimeoutException exceeded(String message, Throwable cause) {
+        return new QueryTimeoutException(message, new DeadlineExceededException(message, cause));
+    }
+
+    /**
+     * Indica se o erro decorre do prazo da requisição: a conexão ou a consulta foi recusada pelo prazo,
+     * ou um timeout de statement aconteceu depois que o prazo já havia passado
+     */
+    public static boolean isCause(Throwable error) {
+        boolean timeout = false;
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeadlineExceededException) {
+                return true;
+            }
+            timeout |= cause instanceof SQLTimeoutException || cause instanceof QueryTimeoutException;
+        }
+        return timeout && isExpired();
+    }
+
+    /**
+     * Aplica o tempo restante como query timeout de cada statement criado na conexão. O JDBC só aceita
+     * segundos inteiros: o timeout é arredondado para cima e o statement pode passar do prazo em até 1s.
+     * Statements criados depois do prazo são recusados sem ir ao banco.
+     * Sem prazo, o timeout é zerado: com cachePrepStmts o driver devolve o mesmo statement a quem preparar
+     * o mesmo SQL na conexão, e o timeout de uma requisição anterior cancelaria consultas sem prazo.
+     * equals e hashCode são os do proxy, e não os da conexão envolvida.
+     */
+    static Connection withQueryTimeout(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Conexão com o prazo da requisição [" + connection + "]";
+                        default:
+                            break;
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Statement statement && STATEMENT_FACTORIES.contains(method.getName())) {
+                        Duration remaining = remaining();
+                        if (remaining == null) {
+                            if (statement.getQueryTimeout() != 0) {
+                                statement.setQueryTimeout(0);
+                            }
+                            return statement;
+                        }
+                        if (remaining.isZero() || remaining.isNegative()) {
+                            statement.close();
+                            throw new DeadlineExceededException("Prazo da requisição esgotado antes da consulta");
+                        }
+                        statement.setQueryTimeout((int) Math.max(1, (remaining.toMillis() + 999) / 1000));
+                    }
+                    return result;
+                });
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.vaultrotation.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Define o prazo de cada requisição: o valor do header app.traffic.deadline-header (milissegundos,
+ * limitado a app.traffic.max-deadline) ou o prazo padrão da rota em app.traffic.deadlines.
+ * Executa antes do BulkheadFilter, para que a espera por vaga também consuma o prazo.
+ * Requisições que chegam com o prazo esgotado são rejeitadas sem chegar aos controllers.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 5)
+@Slf4j
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    private record DeadlineRoute(List<String> patterns, Duration timeout) {
+    }
+
+    private final TrafficIsolationProperties properties;
+    private final ObjectMapper objectMapper;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<DeadlineRoute> routes = new ArrayList<>();
+    private final Counter expiredCounter;
+
+    public RequestDeadlineFilter(TrafficIsolationProperties properties, MeterRegistry meterRegistry, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        properties.getDeadlines().forEach((name, definition) -> {
+            routes.add(new DeadlineRoute(definition.getPaths(), definition.getTimeout()));
+            log.info("Prazo {}: {} para {}", name, definition.getTimeout(), definition.getPaths());
+        });
+        this.expiredCounter = Counter.builder("http.requests.deadline.expired")
+                .description("Requisições recebidas com o prazo já esgotado")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(properties.getDeadlineHeader());
+        Duration timeout;
+        if (header != null) {
+            long millis;
+            try {
+                millis = Long.parseLong(header.trim());
+            } catch (NumberFormatException e) {
+                reject(response, HttpStatus.BAD_REQUEST,
+                        properties.getDeadlineHeader() + " deve ser o prazo da requisição em milissegundos");
+                return;
+            }
+            if (millis <= 0) {
+                expiredCounter.increment();
+                reject(response, HttpStatus.GATEWAY_TIMEOUT, "Prazo da requisição esgotado");
+                return;
+            }
+            timeout = Duration.ofMillis(millis);
+            if (timeout.compareTo(properties.getMaxDeadline()) > 0) {
+                timeout = properties.getMaxDeadline();
+            }
+        } else {
+            timeout = findTimeout(request.getRequestURI().substring(request.getContextPath().length()));
+        }
+
+        if (timeout == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        RequestDeadline.start(timeout);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+
+    private Duration findTimeout(String path) {
+        for (DeadlineRoute route : routes) {
+            for (String pattern : route.patterns()) {
+                if (pathMatcher.match(pattern, path)) {
+                    return route.timeout();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        ErrorResponses.write(response, objectMapper, status, message);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+
+/**
+ * Token bucket simples: permite até permits requisições por período, repondo as fichas
+ * continuamente. Usado nos endpoints administrativos que disparam um refresh completo do contexto.
+ */
+public class RequestRateLimiter {
+
+    private final String name;
+    private final int permits;
+    private final double nanosPerPermit;
+    private final Counter rejectedCounter;
+
+    private double available;
+    private long lastRefillNanos;
+
+    public RequestRateLimiter(String name, int permits, Duration period, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.permits = permits;
+        this.nanosPerPermit = (double) period.toNanos() / permits;
+        this.available = permits;
+        this.lastRefillNanos = System.nanoTime();
+        this.rejectedCounter = Counter.builder("rate.limit.rejected").tag("limit", name)
+                .description("Requisições rejeitadas por limite de taxa")
+                .register(meterRegistry);
+    }
+
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (available >= 1) {
+            available -= 1;
+            return true;
+        }
+        rejectedCounter.increment();
+        return false;
+    }
+
+    /**
+     * Segundos até a próxima ficha ficar disponível
+     */
+    public synchronized long secondsUntilNextPermit() {
+        refill();
+        double missingNanos = (1 - available) * nanosPerPermit;
+        return Math.max(1, (long) Math.ceil(missingNanos / 1_000_000_000.0));
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(permits, available + (now - lastRefillNanos) / nanosPerPermit);
+        lastRefillNanos = now;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
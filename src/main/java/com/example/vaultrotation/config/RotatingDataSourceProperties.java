@@ -0,0 +1,51 @@
+package com.example.vaultrotation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lista declarativa de datasources com credenciais rotacionadas pelo Vault.
+ * Exemplo:
+ * <pre>
+ * app.rotation.datasources[0].name=payments
+ * app.rotation.datasources[0].role=payments-app
+ * app.rotation.datasources[0].primary=true
+ * </pre>
+ */
+@Component
+@ConfigurationProperties(prefix = "app.rotation")
+@Data
+public class RotatingDataSourceProperties {
+
+    private List<DataSourceDefinition> datasources = new ArrayList<>();
+
+    /**
+     * Retorna as definições habilitadas. Se nenhuma definição foi declarada, cria uma definição
+     * única a partir das propriedades spring.datasource.* e spring.cloud.vault.database.*,
+     * preservando o comportamento de um único datasource.
+     */
+    public List<DataSourceDefinition> resolveDefinitions(Environment environment) {
+        List<DataSourceDefinition> enabled = datasources.stream()
+                .filter(DataSourceDefinition::isEnabled)
+                .toList();
+        if (!enabled.isEmpty()) {
+            return enabled;
+        }
+
+        DataSourceDefinition definition = new DataSourceDefinition();
+        definition.setName("payments");
+        definition.setRole(environment.getProperty("spring.cloud.vault.database.role", "payments-app"));
+        definition.setBackend(environment.getProperty("spring.cloud.vault.database.backend", "database"));
+        definition.setUrl(environment.getProperty("spring.datasource.url"));
+        definition.setDriverClassName(environment.getProperty("spring.datasource.driver-class-name", "com.mysql.cj.jdbc.Driver"));
+        definition.setUsernameProperty("spring.datasource.username");
+        definition.setPasswordProperty("spring.datasource.password");
+        definition.setPrimary(true);
+        return List.of(definition);
+    }
+}
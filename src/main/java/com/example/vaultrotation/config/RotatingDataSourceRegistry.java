@@ -0,0 +1,183 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.core.lease.domain.Lease;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Mantém um RotatingPool para cada datasource declarado em app.rotation.datasources.
+ * Cada pool é rotacionado de forma independente: a partir dos segredos de uma nova lease
+ * do Vault ou quando as propriedades de credencial do datasource mudam no Environment.
+ */
+@Component
+@Slf4j
+public class RotatingDataSourceRegistry implements ApplicationListener<EnvironmentChangeEvent>, DisposableBean {
+
+    private final Environment environment;
+    private final ObjectProvider<ConnectionHealthMonitor> healthMonitorProvider;
+    private final Map<String, RotatingPool> pools;
+    private final RotatingPool primary;
+
+    public RotatingDataSourceRegistry(
+            RotatingDataSourceProperties properties,
+            Environment environment,
+            MySqlUserManager mySqlUserManager,
+            PoolGenerationRetirer retirer,
+            RotationEventJournal journal,
+            MeterRegistry meterRegistry,
+            SqlProfiler sqlProfiler,
+            WarmupStatementRecorder warmupStatementRecorder,
+            ObjectProvider<ConnectionHealthMonitor> healthMonitorProvider) {
+        this.environment = environment;
+        this.healthMonitorProvider = healthMonitorProvider;
+
+        List<DataSourceDefinition> definitions = properties.resolveDefinitions(environment);
+        Map<String, RotatingPool> created = new LinkedHashMap<>();
+        RotatingPool primaryPool = null;
+        for (DataSourceDefinition definition : definitions) {
+            if (created.containsKey(definition.getName())) {
+                throw new IllegalStateException("Datasource declarado mais de uma vez: " + definition.getName());
+            }
+            RotatingPool pool = new RotatingPool(definition, mySqlUserManager, retirer, journal, meterRegistry, sqlProfiler,
+                    warmupStatementRecorder);
+            created.put(definition.getName(), pool);
+            if (definition.isPrimary()) {
+                if (primaryPool != null) {
+                    throw new IllegalStateException("Mais de um datasource marcado como primário");
+                }
+                primaryPool = pool;
+            }
+        }
+        if (primaryPool == null) {
+            // Sem marcação explícita, o primeiro datasource declarado é o primário
+            primaryPool = created.values().iterator().next();
+        }
+        this.pools = Collections.unmodifiableMap(created);
+        this.primary = primaryPool;
+
+        log.info("Datasources declarados: {} (primário: {})", pools.keySet(), primary.getName());
+
+        // Falhas de autenticação na criação inicial são tratadas pela verificação inicial
+        // do DatabaseConnectionEventListener, quando o ConnectionHealthMonitor já existe
+        pools.values().forEach(this::rotateWithEnvironmentCredentials);
+    }
+
+    /**
+     * Rotaciona o pool usando os segredos recebidos em uma nova lease do Vault.
+     * A lease é guardada com a geração para ser revogada quando o pool for substituído.
+     */
+    public void rotateFromSecrets(RotatingPool pool, Lease lease, Map<String, Object> secrets) {
+        Object username = secrets.get("username");
+        Object password = secrets.get("password");
+        if (username == null || password == null) {
+            log.warn("[{}] Lease sem username/password, pool não será rotacionado", pool.getName());
+            ConnectionHealthMonitor healthMonitor = healthMonitorProvider.getIfAvailable();
+            if (healthMonitor != null) {
+                healthMonitor.onRotationFailed(pool, "lease sem username/password");
+            }
+            return;
+        }
+        handleResult(pool, pool.rotate(username.toString(), password.toString(), lease));
+    }
+
+    /**
+     * Rotaciona o pool usando as credenciais presentes no Environment
+     */
+    public void rotateFromEnvironment(RotatingPool pool) {
+        RotatingPool.VerificationResult result = rotateWithEnvironmentCredentials(pool);
+        if (result != null) {
+            handleResult(pool, result);
+        }
+    }
+
+    private RotatingPool.VerificationResult rotateWithEnvironmentCredentials(RotatingPool pool) {
+        DataSourceDefinition definition = pool.getDefinition();
+        String username = environment.getProperty(definition.getUsernameProperty());
+        String password = environment.getProperty(definition.getPasswordProperty());
+        if (username == null) {
+            log.warn("[{}] Propriedade {} não definida, aguardando credenciais do Vault",
+                    pool.getName(), definition.getUsernameProperty());
+            return null;
+        }
+        // A lease das credenciais obtidas via config data não é exposta pelo Spring Cloud Vault
+        return pool.rotate(username, password, null);
+    }
+
+    private void handleResult(RotatingPool pool, RotatingPool.VerificationResult result) {
+        ConnectionHealthMonitor healthMonitor = healthMonitorProvider.getIfAvailable();
+        if (healthMonitor == null) {
+            return;
+        }
+        if (result == RotatingPool.VerificationResult.VALID) {
+            healthMonitor.onPoolRotated(pool);
+            return;
+        }
+        // A rotação que trouxe estas credenciais terminou sem pool válido
+        healthMonitor.onRotationFailed(pool, "verificação do pool: " + result);
+        if (result == RotatingPool.VerificationResult.AUTH_FAILURE) {
+            log.info("[{}] Erro de acesso na conexão inicial. Solicitando rotação de credenciais...", pool.getName());
+            healthMonitor.triggerManualRotation(pool, "pool-verification:auth-failure");
+        }
+    }
+
+    /**
+     * Reage a mudanças nas propriedades de credencial de cada datasource após um refresh do contexto
+     */
+    @Override
+    public void onApplicationEvent(EnvironmentChangeEvent event) {
+        Set<String> keys = event.getKeys();
+        for (RotatingPool pool : pools.values()) {
+            DataSourceDefinition definition = pool.getDefinition();
+            if (keys.contains(definition.getUsernameProperty()) || keys.contains(definition.getPasswordProperty())) {
+                log.info("[{}] Credenciais alteradas no Environment, rotacionando pool", pool.getName());
+                rotateFromEnvironment(pool);
+            }
+        }
+    }
+
+    public RotatingPool getPrimary() {
+        return primary;
+    }
+
+    public RotatingPool get(String name) {
+        RotatingPool pool = pools.get(name);
+        if (pool == null) {
+            throw new IllegalArgumentException("Datasource não declarado: " + name);
+        }
+        return pool;
+    }
+
+    public Optional<RotatingPool> find(String name) {
+        return Optional.ofNullable(pools.get(name));
+    }
+
+    public Optional<RotatingPool> findByLeasePath(String path) {
+        return pools.values().stream()
+                .filter(pool -> pool.getDefinition().getLeasePath().equals(path))
+                .findFirst();
+    }
+
+    public Collection<RotatingPool> getPools() {
+        return pools.values();
+    }
+
+    @Override
+    public void destroy() {
+        log.info("Fechando pools de conexões de todos os datasources...");
+        pools.values().forEach(RotatingPool::close);
+    }
+}
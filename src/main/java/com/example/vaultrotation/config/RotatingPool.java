@@ -0,0 +1,516 @@
+package com.example.vaultrotation.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.pool.HikariPool;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.vault.core.lease.domain.Lease;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * DataSource de um datasource declarado que delega para o pool HikariCP da geração atual.
+ * A cada rotação de credenciais um novo pool é criado e verificado, publicado atomicamente
+ * e só então a geração anterior é drenada, fechada e tem sua lease revogada (ver PoolGenerationRetirer).
+ * Quem mantém referência a este objeto (JPA, JdbcTemplate) passa a usar o novo pool sem precisar recriar beans.
+ */
+@Slf4j
+public class RotatingPool extends AbstractDataSource {
+
+    /**
+     * Resultado da verificação do pool recém-criado
+     */
+    public enum VerificationResult {
+        VALID,
+        INVALID,
+        AUTH_FAILURE,
+        ERROR
+    }
+
+    private final DataSourceDefinition definition;
+    private final MySqlUserManager mySqlUserManager;
+    private final PoolGenerationRetirer retirer;
+    private final RotationEventJournal journal;
+
+    private final AtomicReference<PoolGeneration> current = new AtomicReference<>();
+
+    // Lock para garantir exclusão mútua durante a criação/fechamento do pool
+    private final ReentrantLock rotationLock = new ReentrantLock();
+    private volatile boolean rotating = false;
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter rotationCounter;
+    private final Counter rotationFailureCounter;
+    private final Timer warmupTimer;
+    private final Timer acquireTimer;
+    private final Counter acquireTimeoutCounter;
+    private final Counter acquireDeadlineCounter;
+
+    // Perfil SQL do datasource, compartilhado por todas as gerações; nulo com o perfil desabilitado
+    private final SqlProfiler.DataSourceProfile sqlProfile;
+    private final WarmupStatementRecorder warmupStatementRecorder;
+
+    // Tamanho máximo do pool, ajustado pelo PoolSizeController e herdado pelas novas gerações
+    private volatile int maximumPoolSize;
+
+    // max_user_connections do usuário da geração atual, lido na verificação do pool; 0 = sem limite ou desconhecido
+    private volatile int userConnectionLimit;
+
+    public RotatingPool(DataSourceDefinition definition, MySqlUserManager mySqlUserManager,
+                        PoolGenerationRetirer retirer, RotationEventJournal journal, MeterRegistry meterRegistry,
+                        SqlProfiler sqlProfiler, WarmupStatementRecorder warmupStatementRecorder) {
+        this.definition = definition;
+        this.mySqlUserManager = mySqlUserManager;
+        this.retirer = retirer;
+        this.journal = journal;
+        this.maximumPoolSize = definition.getMaximumPoolSize();
+        this.sqlProfile = sqlProfiler.isEnabled() ? sqlProfiler.forDataSource(definition.getName()) : null;
+        this.warmupStatementRecorder = warmupStatementRecorder;
+
+        String name = definition.getName();
+        this.rotationCounter = Counter.builder("db.pool.rotations").tag("datasource", name)
+                .description("Pools criados por rotação de credenciais")
+                .register(meterRegistry);
+        this.rotationFailureCounter = Counter.builder("db.pool.rotation.failures").tag("datasource", name)
+                .register(meterRegistry);
+        this.warmupTimer = Timer.builder("db.pool.warmup").tag("datasource", name)
+                .description("Duração do aquecimento do pool antes da publicação")
+                .register(meterRegistry);
+        this.acquireTimer = Timer.builder("db.pool.acquire").tag("datasource", name)
+                .description("Tempo de espera para obter uma conexão do pool")
+                .register(meterRegistry);
+        this.acquireTimeoutCounter = Counter.builder("db.pool.acquire.timeouts").tag("datasource", name)
+                .description("Tentativas de obter conexão que esgotaram o connectionTimeout")
+                .register(meterRegistry);
+        this.acquireDeadlineCounter = Counter.builder("db.pool.acquire.deadline.exceeded").tag("datasource", name)
+                .description("Conexões recusadas ou não obtidas dentro do prazo da requisição")
+                .register(meterRegistry);
+
+        // Gauges leem sempre o pool atual, sobrevivendo às trocas de geração
+        registerPoolGauge(meterRegistry, "db.pool.active", HikariPoolMXBean::getActiveConnections);
+        registerPoolGauge(meterRegistry, "db.pool.idle", HikariPoolMXBean::getIdleConnections);
+        registerPoolGauge(meterRegistry, "db.pool.total", HikariPoolMXBean::getTotalConnections);
+        registerPoolGauge(meterRegistry, "db.pool.pending", HikariPoolMXBean::getThreadsAwaitingConnection);
+        Gauge.builder("db.pool.generation", generation, AtomicLong::get).tag("datasource", name)
+                .register(meterRegistry);
+    }
+
+    private void registerPoolGauge(MeterRegistry meterRegistry, String meterName, ToDoubleFunction<HikariPoolMXBean> value) {
+        Gauge.builder(meterName, this, pool -> {
+                    HikariDataSource ds = pool.getCurrent();
+                    HikariPoolMXBean mxBean = ds != null ? ds.getHikariPoolMXBean() : null;
+                    return mxBean != null ? value.applyAsDouble(mxBean) : 0;
+                })
+                .tag("datasource", definition.getName())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cria um novo pool com as credenciais informadas, publica e aposenta a geração anterior.
+     * Se as credenciais forem as mesmas do pool atual, o pool existente é mantido.
+     *
+     * @param lease lease do Vault que originou as credenciais, ou null se desconhecida
+     * @return resultado da verificação de conexão do novo pool
+     */
+    public VerificationResult rotate(String username, String password, Lease lease) {
+        rotationLock.lock();
+        try {
+            HikariDataSource existing = getCurrent();
+            if (existing != null && !existing.isClosed() && username != null && username.equals(existing.getUsername())) {
+                log.debug("[{}] Credenciais inalteradas, mantendo pool atual", definition.getName());
+                PoolGeneration currentGeneration = current.get();
+                if (lease != null && (currentGeneration.getLease() == null
+                        || !lease.getLeaseId().equals(currentGeneration.getLease().getLeaseId()))) {
+                    retirer.revokeUnused(definition.getName(), lease);
+                }
+                return VerificationResult.VALID;
+            }
+
+            rotating = true;
+            long rotationStart = System.nanoTime();
+            long gen = generation.incrementAndGet();
+            log.info("[{}] Criando pool geração {} com usuário: {}", definition.getName(), gen, username);
+            log.info("[{}] URL de conexão: {}", definition.getName(), definition.getUrl());
+
+            // Detectar se estamos usando credenciais dinâmicas do Vault
+            if (username != null && username.startsWith("v-")) {
+                log.info("[{}] Utilizando credencial dinâmica do Vault. Usuário: {}", definition.getName(), username);
+                mySqlUserManager.updateCurrentVaultUser(definition.getName(), username);
+            } else {
+                log.info("[{}] Utilizando credencial estática para o banco de dados", definition.getName());
+            }
+
+            HikariDataSource dataSource = createHikariDataSource(username, password, gen);
+            VerificationResult result = verify(dataSource, username);
+            journal.recordTimed(RotationEvent.Type.POOL_BUILT, definition.getName(), rotationStart,
+                    dataSource.getPoolName() + " " + result);
+            if (result == VerificationResult.VALID) {
+                warmUp(dataSource);
+            } else if (result == VerificationResult.AUTH_FAILURE) {
+                journal.record(RotationEvent.Type.AUTH_FAILURE, definition.getName(),
+                        "pool-verification: " + dataSource.getPoolName());
+            }
+
+            PoolGeneration generation = new PoolGeneration(definition.getName(), gen, dataSource, username, lease);
+            mySqlUserManager.registerGeneration(generation);
+
+            // Publicar o novo pool antes de aposentar o anterior, evitando uma janela sem pool
+            PoolGeneration previous = current.getAndSet(generation);
+            journal.recordTimed(RotationEvent.Type.POOL_PUBLISHED, definition.getName(), rotationStart,
+                    dataSource.getPoolName());
+            if (previous != null) {
+                retirer.retire(previous);
+            }
+
+            rotationCounter.increment();
+            if (result != VerificationResult.VALID) {
+                rotationFailureCounter.increment();
+            }
+            // Mesmo com falha na verificação o pool é mantido: o HikariCP continuará tentando conectar
+            return result;
+        } finally {
+            rotating = false;
+            rotationLock.unlock();
+        }
+    }
+
+    private HikariDataSource createHikariDataSource(String username, String password, long gen) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(definition.getName() + "-g" + gen);
+        dataSource.setJdbcUrl(definition.getUrl());
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setDriverClassName(definition.getDriverClassName());
+
+        // Configurações recomendadas para rotação de credenciais
+        dataSource.setMinimumIdle(definition.getMinimumIdle());
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setConnectionTimeout(definition.getConnectionTimeout());
+        dataSource.setIdleTimeout(60000);    // 1 minuto de idle
+
+        // Para rotação de credenciais, é importante ter um maxLifetime menor que o TTL das credenciais
+        dataSource.setMaxLifetime(1800000);   // 30 minutos
+
+        // Configurações críticas para lidar com falhas de conexão
+        dataSource.setInitializationFailTimeout(10000); // 10 segundos
+        dataSource.setConnectionTestQuery("SELECT 1");
+
+        // Configurar validação periódica das conexões
+        dataSource.setValidationTimeout(3000); // 3 segundos
+        dataSource.setKeepaliveTime(60000);    // 60 segundos
+        dataSource.setLeakDetectionThreshold(60000); // 60 segundos
+
+        dataSource.setAutoCommit(true);
+        dataSource.setRegisterMbeans(true);
+
+        // Recomendações do HikariCP para o Connector/J: evita round trips de estado de sessão
+        dataSource.addDataSourceProperty("useLocalSessionState", "true");
+        dataSource.addDataSourceProperty("cacheServerConfiguration", "true");
+        dataSource.addDataSourceProperty("elideSetAutoCommits", "true");
+        dataSource.addDataSourceProperty("maintainTimeStats", "false");
+
+        if (definition.isStatementCacheEnabled()) {
+            dataSource.addDataSourceProperty("cachePrepStmts", "true");
+            dataSource.addDataSourceProperty("prepStmtCacheSize", String.valueOf(definition.getStatementCacheSize()));
+            dataSource.addDataSourceProperty("prepStmtCacheSqlLimit", String.valueOf(definition.getStatementCacheSqlLimit()));
+            dataSource.addDataSourceProperty("useServerPrepStmts", String.valueOf(definition.isServerPreparedStatements()));
+            dataSource.addDataSourceProperty("cacheResultSetMetadata", "true");
+        }
+        return dataSource;
+    }
+
+    /**
+     * Aquece o pool antes de publicá-lo: mantém minimumIdle conexões abertas ao mesmo tempo,
+     * forçando sua criação, e prepara em cada uma os statements do JPA mais usados no datasource
+     * e os de warmup-statements, que ficam no cache de statements da conexão. Falhas no aquecimento
+     * não impedem a publicação.
+     */
+    private void warmUp(HikariDataSource dataSource) {
+        if (!definition.isWarmupEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(definition.getWarmupTimeout());
+        List<Connection> connections = new ArrayList<>();
+        List<String> statements = warmupStatements();
+        int prepared = 0;
+        try {
+            int warmConnections = Math.min(definition.getMinimumIdle(), maximumPoolSize);
+            for (int i = 0; i < warmConnections && System.nanoTime() < deadline; i++) {
+                Connection connection = dataSource.getConnection();
+                connections.add(connection);
+                for (String sql : statements) {
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        prepared++;
+                    } catch (SQLException e) {
+                        log.warn("[{}] Statement de aquecimento inválido: {} ({})", definition.getName(), sql, e.getMessage());
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("[{}] Erro ao aquecer pool {}: {}", definition.getName(), dataSource.getPoolName(), e.getMessage());
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.debug("[{}] Erro ao devolver conexão de aquecimento: {}", definition.getName(), e.getMessage());
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        warmupTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        journal.recordTimed(RotationEvent.Type.POOL_WARMED, definition.getName(), start,
+                dataSource.getPoolName() + " " + connections.size() + " conexão(ões), " + prepared + " statement(s)");
+        log.info("[{}] Pool {} aquecido: {} conexão(ões), {} statement(s) preparado(s) em {} ms",
+                definition.getName(), dataSource.getPoolName(), connections.size(), prepared,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private List<String> warmupStatements() {
+        Set<String> statements = new LinkedHashSet<>(definition.getWarmupStatements());
+        statements.addAll(warmupStatementRecorder.statementsFor(definition.getName(), definition.getWarmupRecordedStatements()));
+        return List.copyOf(statements);
+    }
+
+    /**
+     * Verifica imediatamente se o novo pool consegue obter uma conexão válida
+     */
+    private VerificationResult verify(HikariDataSource dataSource, String username) {
+        try (Connection conn = dataSource.getConnection()) {
+            if (conn.isValid(5000)) {
+                log.info("[{}] Conexão com o banco de dados estabelecida com sucesso utilizando usuário: {}",
+                        definition.getName(), username);
+                if (definition.getMaxUserConnections() <= 0) {
+                    userConnectionLimit = readUserConnectionLimit(conn, username);
+                }
+                return VerificationResult.VALID;
+            }
+            log.warn("[{}] Conexão estabelecida, mas retornou status inválido para usuário: {}", definition.getName(), username);
+            return VerificationResult.INVALID;
+        } catch (SQLException e) {
+            log.error("[{}] Erro ao testar conexão inicial com banco de dados: {}", definition.getName(), e.getMessage(), e);
+            if (ConnectionHealthMonitor.isAuthenticationError(e)) {
+                return VerificationResult.AUTH_FAILURE;
+            }
+            return VerificationResult.ERROR;
+        }
+    }
+
+    /**
+     * Limite de conexões do usuário, lido uma vez por geração na conexão de verificação: o valor de sessão
+     * de max_user_connections reflete o limite da conta criada pelo Vault, se houver
+     */
+    private int readUserConnectionLimit(Connection conn, String username) {
+        try (Statement statement = conn.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT @@session.max_user_connections")) {
+            int limit = resultSet.next() ? Math.max(0, resultSet.getInt(1)) : 0;
+            log.info("[{}] Limite de conexões do usuário {}: {}", definition.getName(), username,
+                    limit > 0 ? limit : "sem limite");
+            return limit;
+        } catch (SQLException e) {
+            log.debug("[{}] Não foi possível consultar max_user_connections: {}", definition.getName(), e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Fecha imediatamente um pool, sem drenagem nem revogação da lease
+     */
+    private void closePool(HikariDataSource previous) {
+        if (previous == null) {
+            return;
+        }
+        try {
+            log.info("[{}] Fechando pool de conexões {}...", definition.getName(), previous.getPoolName());
+
+            // Primeiro evictar todas as conexões
+            if (previous.getHikariPoolMXBean() != null) {
+                previous.getHikariPoolMXBean().softEvictConnections();
+            }
+
+            // Então fechar o pool
+            previous.close();
+            log.info("[{}] Pool de conexões fechado com sucesso", definition.getName());
+        } catch (Exception e) {
+            log.warn("[{}] Erro ao fechar pool de conexões: {}", definition.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Força a evicção das conexões do pool atual, que serão recriadas sob demanda
+     */
+    public void softEvictConnections() {
+        HikariDataSource ds = getCurrent();
+        if (ds != null && ds.getHikariPoolMXBean() != null) {
+            ds.getHikariPoolMXBean().softEvictConnections();
+        }
+    }
+
+    /**
+     * Fecha o pool atual. Usado no encerramento da aplicação.
+     */
+    public void close() {
+        rotationLock.lock();
+        try {
+            PoolGeneration generation = current.getAndSet(null);
+            if (generation != null) {
+                closePool(generation.getDataSource());
+            }
+        } finally {
+            rotationLock.unlock();
+        }
+    }
+
+    /**
+     * Ajusta o tamanho máximo do pool atual em tempo de execução, pelo MXBean de configuração do HikariCP.
+     * O novo tamanho também é usado pelas próximas gerações.
+     */
+    public void resize(int newMaximumPoolSize) {
+        maximumPoolSize = newMaximumPoolSize;
+        HikariDataSource ds = getCurrent();
+        if (ds != null && !ds.isClosed()) {
+            ds.getHikariConfigMXBean().setMaximumPoolSize(newMaximumPoolSize);
+            ds.getHikariConfigMXBean().setMinimumIdle(Math.min(definition.getMinimumIdle(), newMaximumPoolSize));
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        HikariDataSource ds = getCurrent();
+        if (ds == null) {
+            throw new SQLException("Pool do datasource '" + definition.getName() + "' indisponível");
+        }
+        Duration remaining = RequestDeadline.remaining();
+        if (remaining != null && (remaining.isZero() || remaining.isNegative())) {
+            // Prazo da requisição já esgotado: falha sem ocupar o pool nem ir ao banco
+            acquireDeadlineCounter.increment();
+            throw new RequestDeadline.DeadlineExceededException(
+                    "Prazo da requisição esgotado antes de obter conexão do datasource '" + definition.getName() + "'");
+        }
+        // Com prazo menor que o connectionTimeout, a espera pela conexão termina no prazo
+        boolean deadlineBound = remaining != null && remaining.toMillis() < definition.getConnectionTimeout();
+        long start = System.nanoTime();
+        try {
+            Connection connection = deadlineBound && ds.getHikariPoolMXBean() instanceof HikariPool pool && !ds.isClosed()
+                    ? pool.getConnection(Math.max(1, remaining.toMillis()))
+                    : ds.getConnection();
+            if (sqlProfile != null) {
+                connection = sqlProfile.wrap(connection);
+            }
+            // Também sem prazo: a conexão pode ter statements em cache com o timeout de outra requisição
+            return RequestDeadline.withQueryTimeout(connection);
+        } catch (SQLTransientConnectionException e) {
+            if (deadlineBound) {
+                acquireDeadlineCounter.increment();
+                throw new RequestDeadline.DeadlineExceededException("Prazo da requisição esgotado aguardando conexão do datasource '"
+                        + definition.getName() + "'", e);
+            }
+            acquireTimeoutCounter.increment();
+            throw e;
+        } finally {
+            acquireTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Conexão fora do pool, com as credenciais da geração atual, para sessões longas que não devem ocupar
+     * uma vaga do pool (ex: o lock nomeado do arquivamento). Não é drenada nas rotações; quem chama a fecha.
+     */
+    public Connection openUnpooledConnection() throws SQLException {
+        HikariDataSource ds = getCurrent();
+        if (ds == null) {
+            throw new SQLException("Pool do datasource '" + definition.getName() + "' indisponível");
+        }
+        return DriverManager.getConnection(definition.getUrl(), ds.getUsername(), ds.getPassword());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Credenciais são gerenciadas pelo Vault");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        HikariDataSource ds = getCurrent();
+        if (ds != null && iface.isInstance(ds)) {
+            return (T) ds;
+        }
+        return super.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        HikariDataSource ds = getCurrent();
+        return (ds != null && iface.isInstance(ds)) || super.isWrapperFor(iface);
+    }
+
+    public String getName() {
+        return definition.getName();
+    }
+
+    public DataSourceDefinition getDefinition() {
+        return definition;
+    }
+
+    public HikariDataSource getCurrent() {
+        PoolGeneration generation = current.get();
+        return generation != null ? generation.getDataSource() : null;
+    }
+
+    public PoolGeneration getCurrentGeneration() {
+        return current.get();
+    }
+
+    public boolean isRotating() {
+        return rotating;
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    /**
+     * Limite de conexões do usuário da geração atual (max-user-connections do datasource ou
+     * max_user_connections lido na rotação); 0 se não houver limite ou se não foi possível lê-lo
+     */
+    public int getUserConnectionLimit() {
+        int configured = definition.getMaxUserConnections();
+        return configured > 0 ? configured : userConnectionLimit;
+    }
+
+    public Timer getAcquireTimer() {
+        return acquireTimer;
+    }
+
+    public Counter getAcquireTimeoutCounter() {
+        return acquireTimeoutCounter;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.vaultrotation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Coordenação das rotações agendadas entre as réplicas (ver RotationCoordinator).
+ */
+@Component
+@ConfigurationProperties(prefix = "app.rotation.coordination")
+@Data
+public class RotationCoordinationProperties {
+
+    private boolean enabled = true;
+
+    // Identidade da réplica: define o horário das tarefas agendadas e o dono das vagas
+    // (no Kubernetes, HOSTNAME é o nome do pod)
+    private String instanceId;
+
+    // Rotações agendadas simultâneas em toda a frota, por tabela rotation_slots
+    private int maxConcurrent = 2;
+
+    // Uma vaga não liberada (réplica encerrada no meio da rotação) volta a ficar livre após este tempo
+    private Duration slotTtl = Duration.ofMinutes(2);
+
+    // Intervalo entre tentativas de ocupar uma vaga (mais uma variação aleatória de até metade dele)
+    private Duration retryInterval = Duration.ofSeconds(10);
+
+    // Espera máxima por uma vaga na verificação periódica; depois disso o ciclo é descartado
+    private Duration maxDefer = Duration.ofMinutes(2);
+
+    // Espera máxima quando a lease expira; depois disso a rotação segue sem vaga
+    private Duration expiryMaxDefer = Duration.ofSeconds(20);
+}
@@ -0,0 +1,337 @@
+package com.example.vaultrotation.config;
+
+import com.example.vaultrotation.repository.RotationSlotRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * Espalha as rotações agendadas entre as réplicas. Réplicas iniciadas juntas (após um rollout)
+ * rotacionariam em sincronia, criando leases no Vault, usuários no MySQL e pools novos ao mesmo tempo.
+ * <ul>
+ *   <li>Horário por réplica: as tarefas periódicas rodam em um deslocamento fixo do período, derivado
+ *   da identidade da réplica e alinhado ao relógio, e não a partir da inicialização</li>
+ *   <li>Limite da frota: uma rotação agendada só começa ocupando uma das app.rotation.coordination.max-concurrent
+ *   vagas da tabela rotation_slots no datasource primário. A vaga é liberada quando o novo pool é publicado
+ *   ou expira após slot-ttl</li>
+ * </ul>
+ * Rotações pedidas pela API, por falha de autenticação ou na inicialização não esperam vaga. Se a tabela
+ * não puder ser consultada (banco indisponível, credenciais inválidas), a rotação segue sem coordenação.
+ */
+@Component
+@Slf4j
+public class RotationCoordinator implements DisposableBean {
+
+    private enum ClaimResult {
+        ACQUIRED,
+        BUSY,
+        UNAVAILABLE
+    }
+
+    private record Claim(String holder, int slot, long startNanos) {
+    }
+
+    /**
+     * Rotação aguardando vaga. Substituída (nunca alterada) dentro das operações atômicas do mapa waiting.
+     *
+     * @param deadline fim da espera (System.nanoTime): descartada, ou rotacionada sem vaga se leaseExpiring
+     * @param deferred já adiada uma vez (o adiamento é registrado só na primeira)
+     */
+    private record PendingRotation(String requestedBy, boolean leaseExpiring, long deadline, Runnable rotation,
+                                   boolean deferred) {
+
+        /**
+         * Nova solicitação para o datasource que já aguarda vaga: é absorvida pela espera e, se for de lease
+         * expirando, a promove, com o menor dos prazos, para que a rotação não seja descartada ao fim da espera
+         */
+        PendingRotation absorb(PendingRotation request) {
+            if (!request.leaseExpiring || (leaseExpiring && deadline <= request.deadline)) {
+                return this;
+            }
+            return new PendingRotation(request.requestedBy, true, Math.min(deadline, request.deadline),
+                    request.rotation, deferred);
+        }
+
+        PendingRotation asDeferred() {
+            return new PendingRotation(requestedBy, leaseExpiring, deadline, rotation, true);
+        }
+    }
+
+    private final RotationCoordinationProperties properties;
+    private final ObjectProvider<RotationSlotRepository> repositoryProvider;
+    private final RotationEventJournal journal;
+    private final String instanceId;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean slotsCreated = new AtomicBoolean();
+    // Vaga ocupada por datasource, até o novo pool ser publicado
+    private final Map<String, Claim> claims = new ConcurrentHashMap<>();
+    // Rotações aguardando vaga, por datasource; novas solicitações são absorvidas pela que já espera
+    private final Map<String, PendingRotation> waiting = new ConcurrentHashMap<>();
+
+    private final Counter deferredCounter;
+    private final Counter skippedCounter;
+    private final Counter uncoordinatedCounter;
+
+    public RotationCoordinator(RotationCoordinationProperties properties,
+                               ObjectProvider<RotationSlotRepository> repositoryProvider,
+                               RotationEventJournal journal, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.repositoryProvider = repositoryProvider;
+        this.journal = journal;
+        this.instanceId = resolveInstanceId(properties.getInstanceId());
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rotation-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("rotation.slots.held", claims, Map::size)
+                .description("Vagas de rotação ocupadas por esta réplica")
+                .register(meterRegistry);
+        this.deferredCounter = Counter.builder("rotation.coordination.deferred")
+                .description("Rotações agendadas adiadas por falta de vaga")
+                .register(meterRegistry);
+        this.skippedCounter = Counter.builder("rotation.coordination.skipped")
+                .description("Rotações periódicas descartadas após esperar app.rotation.coordination.max-defer")
+                .register(meterRegistry);
+        this.uncoordinatedCounter = Counter.builder("rotation.coordination.uncoordinated")
+                .description("Rotações iniciadas sem vaga: tabela indisponível ou lease expirando")
+                .register(meterRegistry);
+
+        log.info("Coordenação de rotações: réplica {}, até {} rotação(ões) agendada(s) simultânea(s) na frota{}",
+                instanceId, properties.getMaxConcurrent(), properties.isEnabled() ? "" : " (desabilitada)");
+    }
+
+    private static String resolveInstanceId(String configured) {
+        if (configured != null && !configured.isBlank()) {
+            return configured;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            String random = UUID.randomUUID().toString();
+            log.warn("Identidade da réplica indefinida; usando {} (horário das tarefas muda a cada inicialização)", random);
+            return random;
+        }
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Atraso até o horário desta réplica para uma tarefa periódica: um deslocamento fixo dentro do período,
+     * contado a partir de múltiplos do período no relógio. Réplicas diferentes ficam em horários diferentes,
+     * independentemente de quando foram iniciadas.
+     */
+    public Duration alignedDelay(String task, Duration period) {
+        long periodMillis = Math.max(1, period.toMillis());
+        CRC32 crc = new CRC32();
+        crc.update((instanceId + "/" + task).getBytes(StandardCharsets.UTF_8));
+        long offset = crc.getValue() % periodMillis;
+        return Duration.ofMillis(Math.floorMod(offset - System.currentTimeMillis(), periodMillis));
+    }
+
+    /**
+     * Executa a rotação quando houver vaga na frota. Chamado fora da thread de quem solicitou.
+     *
+     * @param leaseExpiring lease expirando: depois de expiry-max-defer a rotação segue mesmo sem vaga;
+     *                      caso contrário (verificação periódica) a solicitação é descartada após max-defer.
+     *                      Com uma rotação periódica já aguardando vaga, a solicitação de lease expirando a promove
+     */
+    public void whenSlotAvailable(RotatingPool pool, String requestedBy, boolean leaseExpiring, Runnable rotation) {
+        if (!properties.isEnabled()) {
+            rotation.run();
+            return;
+        }
+        String datasource = pool.getName();
+        Duration maxDefer = leaseExpiring ? properties.getExpiryMaxDefer() : properties.getMaxDefer();
+        PendingRotation request = new PendingRotation(requestedBy, leaseExpiring, System.nanoTime() + maxDefer.toNanos(),
+                rotation, false);
+        PendingRotation pending = waiting.merge(datasource, request, (current, incoming) -> {
+            PendingRotation merged = current.absorb(incoming);
+            if (merged != current) {
+                log.info("[{}] Rotação ({}) já aguarda vaga; lease expirando ({}): rotaciona sem vaga em até {}",
+                        datasource, current.requestedBy(), requestedBy, properties.getExpiryMaxDefer());
+            } else {
+                log.debug("[{}] Rotação ({}) já aguarda vaga", datasource, requestedBy);
+            }
+            return merged;
+        });
+        if (pending == request) {
+            executor.execute(() -> attempt(datasource));
+        }
+    }
+
+    private void attempt(String datasource) {
+        if (!waiting.containsKey(datasource)) {
+            // Descartada no encerramento
+            return;
+        }
+        ClaimResult result = holdsValidClaim(datasource) ? ClaimResult.ACQUIRED : tryClaim(datasource);
+        // A decisão e a remoção são atômicas com a absorção de novas solicitações: uma promoção feita
+        // durante a tentativa vale para esta decisão, e não se perde com a remoção
+        AtomicReference<PendingRotation> before = new AtomicReference<>();
+        PendingRotation still = waiting.computeIfPresent(datasource, (key, pending) -> {
+            before.set(pending);
+            if (result == ClaimResult.BUSY && System.nanoTime() < pending.deadline()) {
+                return pending.asDeferred();
+            }
+            return null;
+        });
+        PendingRotation pending = before.get();
+        if (pending == null) {
+            return;
+        }
+        if (still != null) {
+            if (!pending.deferred()) {
+                deferredCounter.increment();
+                journal.record(RotationEvent.Type.ROTATION_DEFERRED, datasource, pending.requestedBy());
+                log.info("[{}] Sem vaga de rotação na frota; rotação ({}) adiada", datasource, pending.requestedBy());
+            }
+            long retry = properties.getRetryInterval().toMillis();
+            long delay = retry + ThreadLocalRandom.current().nextLong(Math.max(1, retry / 2));
+            executor.schedule(() -> attempt(datasource), delay, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        if (result == ClaimResult.BUSY) {
+            if (!pending.leaseExpiring()) {
+                skippedCounter.increment();
+                log.info("[{}] Nenhuma vaga de rotação em {}; rotação ({}) fica para o próximo ciclo",
+                        datasource, properties.getMaxDefer(), pending.requestedBy());
+                return;
+            }
+            uncoordinatedCounter.increment();
+            log.warn("[{}] Lease expirando e nenhuma vaga de rotação a tempo; rotacionando sem vaga", datasource);
+        }
+        try {
+            pending.rotation().run();
+        } catch (RuntimeException e) {
+            release(datasource);
+            log.error("[{}] Erro ao solicitar rotação ({}): {}", datasource, pending.requestedBy(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A vaga já ocupada pelo datasource só vale até slot-ttl: depois disso outra réplica pode tê-la ocupado
+     */
+    private boolean holdsValidClaim(String datasource) {
+        Claim claim = claims.get(datasource);
+        if (claim == null) {
+            return false;
+        }
+        if (System.nanoTime() - claim.startNanos() < properties.getSlotTtl().toNanos()) {
+            return true;
+        }
+        claims.remove(datasource, claim);
+        log.warn("[{}] Vaga de rotação {} não liberada em {}; ocupando outra", datasource, claim.slot(), properties.getSlotTtl());
+        return false;
+    }
+
+    private ClaimResult tryClaim(String datasource) {
+        String holder = instanceId + "/" + datasource + "/" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        try {
+            RotationSlotRepository repository = repositoryProvider.getObject();
+            if (slotsCreated.compareAndSet(false, true)) {
+                for (int slot = 0; slot < properties.getMaxConcurrent(); slot++) {
+                    repository.createIfAbsent(slot);
+                }
+            }
+            if (repository.claim(holder, datasource, properties.getSlotTtl().toSeconds(), properties.getMaxConcurrent()) == 0) {
+                return ClaimResult.BUSY;
+            }
+            int slot = repository.findSlotHeldBy(holder).orElse(-1);
+            claims.put(datasource, new Claim(holder, slot, System.nanoTime()));
+            journal.record(RotationEvent.Type.ROTATION_SLOT_ACQUIRED, datasource, "vaga " + slot + " (" + instanceId + ")");
+            log.debug("[{}] Vaga de rotação {} ocupada", datasource, slot);
+            return ClaimResult.ACQUIRED;
+        } catch (RuntimeException e) {
+            slotsCreated.set(false);
+            uncoordinatedCounter.increment();
+            log.warn("[{}] Vagas de rotação indisponíveis, rotacionando sem coordenação: {}", datasource, e.getMessage());
+            return ClaimResult.UNAVAILABLE;
+        }
+    }
+
+    /**
+     * Libera a vaga ocupada pelo datasource, se houver. Chamado depois que o novo pool foi publicado
+     * ou quando a rotação falhou.
+     */
+    public void release(RotatingPool pool) {
+        release(pool.getName());
+    }
+
+    private void release(String datasource) {
+        Claim claim = claims.remove(datasource);
+        if (claim == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    repositoryProvider.getObject().release(claim.holder());
+                    journal.recordTimed(RotationEvent.Type.ROTATION_SLOT_RELEASED, datasource, claim.startNanos(),
+                            "vaga " + claim.slot() + " (" + instanceId + ")");
+                } catch (RuntimeException e) {
+                    log.debug("[{}] Vaga de rotação {} será liberada pelo TTL: {}", datasource, claim.slot(), e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Encerramento em andamento (ver releaseAll)
+            log.debug("[{}] Vaga de rotação {} será liberada pelo TTL: coordenador encerrado", datasource, claim.slot());
+        }
+    }
+
+    /**
+     * Libera as vagas ocupadas por esta réplica sem esperar o TTL e descarta as rotações que aguardam vaga.
+     * Chamado no encerramento da aplicação (ver ShutdownSequence), enquanto o datasource primário está aberto.
+     *
+     * @return vagas liberadas
+     */
+    public int releaseAll() {
+        executor.shutdownNow();
+        waiting.clear();
+        int released = 0;
+        for (String datasource : claims.keySet()) {
+            Claim claim = claims.remove(datasource);
+            if (claim == null) {
+                continue;
+            }
+            try {
+                repositoryProvider.getObject().release(claim.holder());
+                journal.recordTimed(RotationEvent.Type.ROTATION_SLOT_RELEASED, datasource, claim.startNanos(),
+                        "vaga " + claim.slot() + " (" + instanceId + ", encerramento)");
+                released++;
+            } catch (RuntimeException e) {
+                log.debug("[{}] Vaga de rotação {} será liberada pelo TTL: {}", datasource, claim.slot(), e.getMessage());
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.vaultrotation.config;
+
+import java.time.Instant;
+
+/**
+ * Evento do ciclo de vida da rotação de credenciais, registrado no RotationEventJournal
+ *
+ * @param sequence   posição do evento no journal, crescente
+ * @param type       tipo do evento
+ * @param datasource datasource afetado (ou caminho da lease, se não houver datasource associado)
+ * @param timestamp  instante do registro
+ * @param durationMs duração da etapa, quando aplicável (-1 caso contrário)
+ * @param detail     informação complementar: quem solicitou, pool, lease, erro
+ */
+public record RotationEvent(
+        long sequence,
+        Type type,
+        String datasource,
+        Instant timestamp,
+        long durationMs,
+        String detail) {
+
+    public enum Type {
+        LEASE_CREATED,
+        LEASE_RENEWED,
+        LEASE_EXPIRED,
+        ROTATION_REQUESTED,
+        ROTATION_DEFERRED,
+        ROTATION_FAILED,
+        ROTATION_SLOT_ACQUIRED,
+        ROTATION_SLOT_RELEASED,
+        POOL_BUILT,
+        POOL_WARMED,
+        POOL_PUBLISHED,
+        POOL_DRAINED,
+        POOL_CLOSED,
+        LEASE_REVOKED,
+        LEASE_REVOCATION_FAILED,
+        AUTH_FAILURE
+    }
+}
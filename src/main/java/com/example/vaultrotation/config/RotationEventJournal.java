@@ -0,0 +1,98 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Journal em memória, de tamanho fixo e sem locks, dos eventos do ciclo de vida da rotação.
+ * O registro reserva uma posição com um incremento atômico e grava o evento no slot correspondente
+ * do buffer circular; eventos antigos são sobrescritos. Quem registra nunca espera por leitores.
+ * Leitores detectam slots sobrescritos durante a leitura pelo número de sequência do evento.
+ */
+@Component
+public class RotationEventJournal {
+
+    private final AtomicReferenceArray<RotationEvent> slots;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    public RotationEventJournal(
+            MeterRegistry meterRegistry,
+            @Value("${app.rotation.journal.capacity:1024}") int requestedCapacity) {
+        // Capacidade arredondada para potência de 2, permitindo calcular o slot com uma máscara
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+
+        Gauge.builder("rotation.journal.events", nextSequence, AtomicLong::get)
+                .description("Eventos registrados no journal de rotação desde o início")
+                .register(meterRegistry);
+    }
+
+    public void record(RotationEvent.Type type, String datasource, String detail) {
+        recordEvent(type, datasource, -1, detail);
+    }
+
+    /**
+     * Registra um evento com a duração da etapa, a partir do System.nanoTime() de início
+     */
+    public void recordTimed(RotationEvent.Type type, String datasource, long startNanos, String detail) {
+        recordEvent(type, datasource, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), detail);
+    }
+
+    private void recordEvent(RotationEvent.Type type, String datasource, long durationMs, String detail) {
+        long sequence = nextSequence.getAndIncrement();
+        slots.set((int) (sequence & mask), new RotationEvent(sequence, type, datasource, Instant.now(), durationMs, detail));
+    }
+
+    /**
+     * Retorna os eventos com sequência maior ou igual a fromSequence, em ordem, até o limite informado.
+     * Eventos já sobrescritos são omitidos; a leitura para no primeiro evento ainda não gravado.
+     */
+    public List<RotationEvent> since(long fromSequence, int limit, Predicate<RotationEvent> filter) {
+        long head = nextSequence.get();
+        long start = Math.max(fromSequence, head - slots.length());
+        List<RotationEvent> events = new ArrayList<>();
+        for (long sequence = Math.max(0, start); sequence < head && events.size() < limit; sequence++) {
+            RotationEvent event = slots.get((int) (sequence & mask));
+            if (event == null || event.sequence() < sequence) {
+                // Posição reservada mas ainda não gravada: os eventos seguintes ficam para a próxima leitura
+                break;
+            }
+            // Se a sequência for maior, o slot já foi sobrescrito por um evento mais novo
+            if (event.sequence() == sequence && filter.test(event)) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Retorna os últimos eventos que atendem ao filtro, em ordem
+     */
+    public List<RotationEvent> latest(int limit, Predicate<RotationEvent> filter) {
+        List<RotationEvent> all = since(0, slots.length(), filter);
+        return all.size() > limit ? all.subList(all.size() - limit, all.size()) : all;
+    }
+
+    /**
+     * Sequência que será atribuída ao próximo evento
+     */
+    public long nextSequence() {
+        return nextSequence.get();
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Transmite os eventos do RotationEventJournal por Server-Sent Events. Uma única thread lê o
+ * journal periodicamente e envia os eventos novos a cada assinante, de modo que o registro de
+ * eventos nunca depende de assinantes lentos ou desconectados.
+ */
+@Component
+@Slf4j
+public class RotationEventStream implements DisposableBean {
+
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * Assinante do stream, com seu cursor no journal e o filtro de eventos
+     */
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final Predicate<RotationEvent> filter;
+        volatile long cursor;
+
+        Subscriber(SseEmitter emitter, Predicate<RotationEvent> filter, long cursor) {
+            this.emitter = emitter;
+            this.filter = filter;
+            this.cursor = cursor;
+        }
+    }
+
+    private final RotationEventJournal journal;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executor;
+    private volatile boolean closing;
+
+    @Value("${app.rotation.journal.stream-timeout:30m}")
+    private Duration streamTimeout;
+
+    public RotationEventStream(
+            RotationEventJournal journal,
+            MeterRegistry meterRegistry,
+            @Value("${app.rotation.journal.stream-interval:250ms}") Duration streamInterval) {
+        this.journal = journal;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rotation-journal-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::pushEvents, streamInterval.toMillis(), streamInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+
+        Gauge.builder("rotation.journal.subscribers", subscribers, List::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cria um assinante que recebe os eventos a partir de fromSequence (ou apenas os novos, se nulo)
+     */
+    public SseEmitter subscribe(Long fromSequence, Predicate<RotationEvent> filter) {
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        long cursor = fromSequence != null ? fromSequence : journal.nextSequence();
+        Subscriber subscriber = new Subscriber(emitter, filter, cursor);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        if (closing) {
+            emitter.complete();
+            return emitter;
+        }
+        subscribers.add(subscriber);
+        log.debug("Novo assinante do journal de rotação a partir da sequência {}", cursor);
+        return emitter;
+    }
+
+    /**
+     * Encerra as assinaturas, que os clientes retomam pelo Last-Event-ID em outra réplica.
+     * Chamado no encerramento da aplicação (ver ShutdownSequence).
+     *
+     * @return assinaturas encerradas
+     */
+    public int closeStreams() {
+        closing = true;
+        int closed = 0;
+        for (Subscriber subscriber : subscribers) {
+            subscribers.remove(subscriber);
+            subscriber.emitter.complete();
+            closed++;
+        }
+        return closed;
+    }
+
+    private void pushEvents() {
+        for (Subscriber subscriber : subscribers) {
+            try {
+                List<RotationEvent> events;
+                do {
+                    events = journal.since(subscriber.cursor, BATCH_SIZE, event -> true);
+                    for (RotationEvent event : events) {
+                        subscriber.cursor = event.sequence() + 1;
+                        if (subscriber.filter.test(event)) {
+                            subscriber.emitter.send(SseEmitter.event()
+                                    .id(String.valueOf(event.sequence()))
+                                    .name(event.type().name())
+                                    .data(event));
+                        }
+                    }
+                } while (events.size() == BATCH_SIZE);
+            } catch (IOException | IllegalStateException e) {
+                // Cliente desconectado
+                subscribers.remove(subscriber);
+                subscriber.emitter.completeWithError(e);
+            } catch (Exception e) {
+                log.warn("Erro ao enviar eventos do journal de rotação: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.vaultrotation.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Indicador de readiness baseado em um snapshot mantido em memória.
+ * O snapshot é recalculado periodicamente fora da thread do probe a partir do estado
+ * do pool HikariCP, do TTL restante da lease do Vault e do estado de rotação de cada datasource.
+ * Nenhuma consulta SQL é executada e o pool nunca é bloqueado pelo probe.
+ */
+@Component("rotationReadinessHealthIndicator")
+@Slf4j
+public class RotationReadinessHealthIndicator implements HealthIndicator {
+
+    private final LeaseStateTracker leaseStateTracker;
+    private final RotatingDataSourceRegistry registry;
+
+    @Autowired(required = false)
+    private ConnectionHealthMonitor healthMonitor;
+
+    @Value("${spring.cloud.vault.enabled:false}")
+    private boolean vaultEnabled;
+
+    @Value("${app.health.readiness.min-lease-ttl:15s}")
+    private Duration minLeaseTtl;
+
+    @Value("${app.health.readiness.refresh-interval:5000}")
+    private long refreshInterval;
+
+    private volatile Health snapshot = Health.unknown().withDetail("reason", "Snapshot ainda não calculado").build();
+    private volatile Instant snapshotTime = Instant.EPOCH;
+
+    public RotationReadinessHealthIndicator(LeaseStateTracker leaseStateTracker, RotatingDataSourceRegistry registry) {
+        this.leaseStateTracker = leaseStateTracker;
+        this.registry = registry;
+    }
+
+    @Override
+    public Health health() {
+        // Um snapshot antigo indica que a atualização assíncrona está travada
+        Duration age = Duration.between(snapshotTime, Instant.now());
+        if (age.toMillis() > refreshInterval * 3) {
+            return Health.down()
+                    .withDetail("reason", "Snapshot de readiness desatualizado")
+                    .withDetail("snapshotAgeMs", age.toMillis())
+                    .build();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Recalcula o snapshot de readiness. Apenas lê estado em memória.
+     * Agendado pelo MaintenanceScheduler em uma thread própria.
+     */
+    public void refreshSnapshot() {
+        try {
+            snapshot = computeHealth();
+            snapshotTime = Instant.now();
+        } catch (Exception e) {
+            log.warn("Erro ao atualizar snapshot de readiness: {}", e.getMessage());
+        }
+    }
+
+    private Health computeHealth() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        boolean ready = true;
+        for (RotatingPool pool : registry.getPools()) {
+            Map<String, Object> poolDetails = new LinkedHashMap<>();
+            boolean poolReady = computePoolReadiness(pool, poolDetails);
+            poolDetails.put("ready", poolReady);
+            details.put(pool.getName(), poolDetails);
+            if (!poolReady && pool.getDefinition().isRequiredForReadiness()) {
+                ready = false;
+            }
+        }
+        return (ready ? Health.up() : Health.down()).withDetails(details).build();
+    }
+
+    /**
+     * Calcula a readiness de um datasource, preenchendo os detalhes informados
+     */
+    private boolean computePoolReadiness(RotatingPool pool, Map<String, Object> details) {
+        boolean ready = true;
+
+        // Estado do pool (somente métricas do MXBean, sem adquirir conexões)
+        HikariDataSource current = pool.getCurrent();
+        if (current == null || current.isClosed()) {
+            details.put("pool", "indisponível");
+            ready = false;
+        } else {
+            Map<String, Object> poolDetails = new LinkedHashMap<>();
+            poolDetails.put("name", current.getPoolName());
+            HikariPoolMXBean mxBean = current.getHikariPoolMXBean();
+            if (mxBean != null) {
+                poolDetails.put("active", mxBean.getActiveConnections());
+                poolDetails.put("idle", mxBean.getIdleConnections());
+                poolDetails.put("total", mxBean.getTotalConnections());
+                poolDetails.put("awaiting", mxBean.getThreadsAwaitingConnection());
+            } else {
+                // O pool ainda não conseguiu estabelecer a primeira conexão
+                poolDetails.put("state", "não inicializado");
+                ready = false;
+            }
+            poolDetails.put("maximumPoolSize", current.getMaximumPoolSize());
+            details.put("pool", poolDetails);
+        }
+
+        // Estado de rotação
+        boolean rotating = pool.isRotating()
+                || (healthMonitor != null && healthMonitor.isRotationInProgress(pool));
+        details.put("rotationInProgress", rotating);
+        if (rotating) {
+            ready = false;
+        }
+        if (healthMonitor != null) {
+            details.put("consecutiveFailures", healthMonitor.getConsecutiveFailures(pool));
+        }
+
+        // TTL restante da lease de credenciais do banco: sem lease válida o datasource não está pronto
+        if (vaultEnabled) {
+            LeaseStateTracker.LeaseState lease = leaseStateTracker.getLeaseState(pool.getDefinition().getLeasePath())
+                    .orElse(null);
+            if (lease == null) {
+                details.put("leaseTtlRemaining", "desconhecido");
+                ready = false;
+            } else if (lease.expired()) {
+                details.put("lease", "expirada");
+                details.put("leaseTtlRemaining", Duration.ZERO.toString());
+                ready = false;
+            } else {
+                Duration remaining = lease.remaining(Instant.now());
+                details.put("leaseTtlRemaining", remaining.toString());
+                if (remaining.compareTo(minLeaseTtl) < 0) {
+                    ready = false;
+                }
+            }
+        }
+        return ready;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.vaultrotation.config;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Falha de acesso a um shard específico. Carrega o nome do shard para que a reação
+ * (verificação de saúde, rotação de credenciais) aconteça apenas no pool afetado.
+ */
+public class ShardAccessException extends DataAccessException {
+
+    private final String shard;
+
+    public ShardAccessException(String shard, String message, Throwable cause) {
+        super("[" + shard + "] " + message, cause);
+        this.shard = shard;
+    }
+
+    public String getShard() {
+        return shard;
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Roteia as operações de pagamentos para o shard dono de cada id (CRC32 do id módulo o número
+ * de shards) e executa consultas distribuídas em paralelo. O shard da operação fica ligado à thread
+ * enquanto ela executa, e o ShardRoutingDataSource entrega ao JPA uma conexão do pool desse shard.
+ * Cada shard é um datasource do RotatingDataSourceRegistry, com lease e rotação independentes.
+ */
+@Component
+@Slf4j
+public class ShardRouter implements DisposableBean {
+
+    private static final ThreadLocal<String> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final List<String> shards;
+    private final ShardingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ExecutorService> executors = new LinkedHashMap<>();
+
+    public ShardRouter(ShardingProperties properties, RotatingDataSourceRegistry registry, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+
+        List<String> declared = properties.getShards().isEmpty()
+                ? List.of(registry.getPrimary().getName())
+                : List.copyOf(properties.getShards());
+        for (String shard : declared) {
+            // Falha na inicialização se o shard não for um datasource declarado e habilitado
+            registry.get(shard);
+            executors.put(shard, newExecutor(shard, properties.getFanOutThreadsPerShard()));
+        }
+        if (declared.stream().distinct().count() != declared.size()) {
+            throw new IllegalStateException("Shard declarado mais de uma vez: " + declared);
+        }
+        this.shards = declared;
+        log.info("Shards de pagamentos: {}", shards);
+    }
+
+    private static ExecutorService newExecutor(String shard, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(64),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "shard-" + shard + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Shard ligado à thread atual, ou null fora de uma operação roteada
+     */
+    static String currentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    public List<String> getShards() {
+        return shards;
+    }
+
+    public boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    /**
+     * Shard dono de uma chave (id do pagamento ou Idempotency-Key)
+     */
+    public String shardFor(String key) {
+        if (shards.size() == 1) {
+            return shards.get(0);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        return shards.get((int) (crc.getValue() % shards.size()));
+    }
+
+    /**
+     * Gera um id de pagamento que pertence ao shard informado. Usado para manter o pagamento
+     * e sua chave de idempotência no mesmo shard, gravados na mesma transação.
+     */
+    public String newIdOn(String shard) {
+        if (!shards.contains(shard)) {
+            throw new IllegalArgumentException("Shard não declarado: " + shard);
+        }
+        // Em média uma tentativa por shard
+        while (true) {
+            String id = UUID.randomUUID().toString();
+            if (shardFor(id).equals(shard)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Executa a operação com o shard ligado à thread. Falhas de acesso a dados são
+     * identificadas com o shard, para que apenas o pool afetado seja verificado ou rotacionado.
+     */
+    public <T> T callOn(String shard, Supplier<T> operation) {
+        String previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        try {
+            return operation.get();
+        } catch (ShardAccessException e) {
+            throw e;
+        } catch (DataAccessException | TransactionException e) {
+            throw new ShardAccessException(shard, e.getMessage(), e);
+        } finally {
+            if (previous != null) {
+                CURRENT_SHARD.set(previous);
+            } else {
+                CURRENT_SHARD.remove();
+            }
+        }
+    }
+
+    /**
+     * Executa a consulta em todos os shards em paralelo, cada um nas threads do próprio shard.
+     * Se algum shard falhar ou não responder dentro de app.sharding.fan-out-timeout, as consultas
+     * pendentes são canceladas e a falha é propagada com o nome do shard. O prazo da requisição
+     * (RequestDeadline) acompanha as consultas nas threads dos shards e encurta a espera.
+     *
+     * @return resultados por shard, na ordem de declaração
+     */
+    public <T> Map<String, T> fanOut(String operation, Function<String, T> query) {
+        Long requestDeadline = RequestDeadline.current();
+        if (RequestDeadline.isExpired()) {
+            throw RequestDeadline.exceeded("Prazo da requisição esgotado antes da consulta distribuída " + operation, null);
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long deadline = System.nanoTime() + properties.getFanOutTimeout().toNanos();
+        boolean deadlineBound = requestDeadline != null && requestDeadline - deadline < 0;
+        if (deadlineBound) {
+            deadline = requestDeadline;
+        }
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        try {
+            for (String shard : shards) {
+                try {
+                    futures.put(shard, executors.get(shard).submit(() -> RequestDeadline.callWith(requestDeadline,
+                            () -> callOn(shard, () -> query.apply(shard)))));
+                } catch (RejectedExecutionException e) {
+                    throw shardFailure(shard, "Fila de consultas do shard cheia", e);
+                }
+            }
+
+            Map<String, T> results = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<T>> entry : futures.entrySet()) {
+                String shard = entry.getKey();
+                try {
+                    results.put(shard, entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    if (deadlineBound) {
+                        // Esgotou o prazo do cliente, não o do shard: não conta como falha do shard
+                        throw RequestDeadline.exceeded("Prazo da requisição esgotado aguardando o shard " + shard, e);
+                    }
+                    throw shardFailure(shard, "Shard não respondeu em " + properties.getFanOutTimeout(), e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException cause && RequestDeadline.isCause(cause)) {
+                        throw cause;
+                    }
+                    if (e.getCause() instanceof ShardAccessException shardException) {
+                        meterRegistry.counter("db.shard.fanout.failures", "shard", shard).increment();
+                        throw shardException;
+                    }
+                    throw shardFailure(shard, "Erro na consulta distribuída: " + e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw shardFailure(shard, "Consulta distribuída interrompida", e);
+                }
+            }
+            return results;
+        } finally {
+            // Cancela as consultas pendentes quando um shard falha
+            futures.values().forEach(future -> future.cancel(true));
+            sample.stop(meterRegistry.timer("db.shard.fanout", "operation", operation));
+        }
+    }
+
+    private ShardAccessException shardFailure(String shard, String message, Throwable cause) {
+        meterRegistry.counter("db.shard.fanout.failures", "shard", shard).increment();
+        log.warn("[{}] {}", shard, message);
+        return new ShardAccessException(shard, message, cause);
+    }
+
+    /**
+     * Concatena os resultados por shard em uma única lista
+     */
+    public static <T> List<T> merge(Map<String, List<T>> resultsByShard) {
+        List<T> merged = new ArrayList<>();
+        resultsByShard.values().forEach(merged::addAll);
+        return merged;
+    }
+
+    @Override
+    public void destroy() {
+        executors.values().forEach(ExecutorService::shutdownNow);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.vaultrotation.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * DataSource usado pelo JPA quando há mais de um shard. Cada conexão é obtida do RotatingPool
+ * do shard ligado à thread pelo ShardRouter; sem shard ligado (ex: validação de schema na
+ * inicialização), usa o primeiro shard.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardRouter.currentShard();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.vaultrotation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Distribuição dos pagamentos entre instâncias MySQL. Cada shard é um datasource declarado em
+ * app.rotation.datasources, com role, lease e pool próprios. Exemplo:
+ * <pre>
+ * app.sharding.shards=payments,payments-s1,payments-s2
+ * </pre>
+ * A ordem da lista define o shard de cada id (hash do id módulo o número de shards) e não pode
+ * ser alterada sem redistribuir os dados. Sem shards declarados, o datasource primário é o único shard.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.sharding")
+@Data
+public class ShardingProperties {
+
+    private List<String> shards = new ArrayList<>();
+
+    // Tempo máximo de uma consulta distribuída (todos os shards em paralelo)
+    private Duration fanOutTimeout = Duration.ofSeconds(5);
+
+    // Threads por shard para consultas distribuídas: um shard lento não ocupa as threads dos demais
+    private int fanOutThreadsPerShard = 2;
+}
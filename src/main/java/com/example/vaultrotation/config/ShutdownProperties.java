@@ -0,0 +1,32 @@
+package com.example.vaultrotation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Sequência de encerramento da aplicação (ver ShutdownSequence). A espera pelas requisições em andamento
+ * é a do encerramento gracioso do servidor web (spring.lifecycle.timeout-per-shutdown-phase).
+ */
+@Component
+@ConfigurationProperties(prefix = "app.shutdown")
+@Data
+public class ShutdownProperties {
+
+    // Tempo atendendo normalmente depois da readiness cair, até o Service/balanceador deixar de enviar
+    // requisições a esta réplica (no Kubernetes: periodSeconds x failureThreshold da readinessProbe, com folga)
+    private Duration readinessPropagation = Duration.ofSeconds(10);
+
+    // Espera pelas conexões emprestadas (e rotações em andamento) depois que as requisições terminaram
+    private Duration connectionDrainTimeout = Duration.ofSeconds(10);
+
+    // Espera pelas tarefas de manutenção em execução antes de interrompê-las
+    private Duration taskStopTimeout = Duration.ofSeconds(10);
+
+    // Revoga no Vault a lease da geração atual de cada pool logo depois de fechá-lo, com registro no journal e
+    // nas métricas. Com false, as leases obtidas pelo SecretLeaseContainer ainda são revogadas por ele no destroy
+    // (comportamento do Spring Vault), e as credenciais vindas do config data expiram pelo TTL
+    private boolean revokeLeases = true;
+}
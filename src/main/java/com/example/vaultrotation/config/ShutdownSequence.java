@@ -0,0 +1,259 @@
+package com.example.vaultrotation.config;
+
+import com.example.vaultrotation.service.PaymentChangeFeed;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.core.lease.SecretLeaseContainer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encerramento da aplicação sem requisições com falha (SIGTERM no rollout). Em vez de fechar os pools
+ * com transações em andamento, o encerramento segue, em ordem:
+ * <ol>
+ *   <li>readiness REFUSING_TRAFFIC</li>
+ *   <li>atendimento normal por app.shutdown.readiness-propagation, até o Service deixar de enviar requisições;
+ *   então o servidor web para de aceitar conexões (server.shutdown=graceful) e long-polls/SSE são encerrados</li>
+ *   <li>espera pelas requisições em andamento (spring.lifecycle.timeout-per-shutdown-phase), depois pelas
+ *   conexões emprestadas e rotações em andamento (app.shutdown.connection-drain-timeout)</li>
+ *   <li>parada das tarefas de manutenção, do feed, do container de leases e das vagas de rotação</li>
+ *   <li>fechamento dos pools e, com app.shutdown.revoke-leases, revogação das leases atuais no Vault</li>
+ * </ol>
+ * As etapas 1 e 2 rodam em {@link BeforeRequests}, antes do encerramento gracioso do servidor web (fase de
+ * lifecycle mais alta); as demais, em {@link AfterRequests}, depois dele. Cada etapa é registrada no log
+ * com sua duração.
+ */
+@Component
+@Slf4j
+public class ShutdownSequence {
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private final ApplicationContext applicationContext;
+    private final ApplicationAvailability availability;
+    private final ShutdownProperties properties;
+    private final RotatingDataSourceRegistry registry;
+    private final MaintenanceScheduler maintenanceScheduler;
+    private final RotationCoordinator rotationCoordinator;
+    private final PoolGenerationRetirer retirer;
+    private final PaymentChangeFeed paymentChangeFeed;
+    private final RotationEventStream rotationEventStream;
+    private final ObjectProvider<SecretLeaseContainer> leaseContainerProvider;
+
+    private volatile long startNanos;
+    private volatile long requestDrainStartNanos;
+
+    public ShutdownSequence(
+            ApplicationContext applicationContext,
+            ApplicationAvailability availability,
+            ShutdownProperties properties,
+            RotatingDataSourceRegistry registry,
+            MaintenanceScheduler maintenanceScheduler,
+            RotationCoordinator rotationCoordinator,
+            PoolGenerationRetirer retirer,
+            PaymentChangeFeed paymentChangeFeed,
+            RotationEventStream rotationEventStream,
+            ObjectProvider<SecretLeaseContainer> leaseContainerProvider) {
+        this.applicationContext = applicationContext;
+        this.availability = availability;
+        this.properties = properties;
+        this.registry = registry;
+        this.maintenanceScheduler = maintenanceScheduler;
+        this.rotationCoordinator = rotationCoordinator;
+        this.retirer = retirer;
+        this.paymentChangeFeed = paymentChangeFeed;
+        this.rotationEventStream = rotationEventStream;
+        this.leaseContainerProvider = leaseContainerProvider;
+    }
+
+    /**
+     * Etapas 1 e 2: readiness e propagação, enquanto as requisições continuam sendo atendidas
+     */
+    void beforeRequests() {
+        startNanos = System.nanoTime();
+        log.info("Encerramento iniciado");
+
+        long step = System.nanoTime();
+        // O contexto já publica REFUSING_TRAFFIC ao fechar; publicado aqui também quando não há servidor web
+        if (availability.getReadinessState() != ReadinessState.REFUSING_TRAFFIC) {
+            AvailabilityChangeEvent.publish(applicationContext, ReadinessState.REFUSING_TRAFFIC);
+        }
+        logStep(1, "readiness REFUSING_TRAFFIC", step);
+
+        step = System.nanoTime();
+        sleep(properties.getReadinessPropagation());
+        int streams = paymentChangeFeed.closeStreams() + rotationEventStream.closeStreams();
+        logStep(2, "propagação da readiness (" + properties.getReadinessPropagation().toMillis()
+                + " ms), " + streams + " long-poll(s)/stream(s) encerrado(s); servidor web deixa de aceitar conexões", step);
+        requestDrainStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Etapas 3 a 5, depois que o servidor web terminou as requisições em andamento
+     */
+    void afterRequests() {
+        if (startNanos == 0) {
+            // Encerramento antes de BeforeRequests ter rodado (contexto que não chegou a iniciar)
+            startNanos = System.nanoTime();
+            requestDrainStartNanos = startNanos;
+        }
+        logStep(3, "requisições em andamento concluídas", requestDrainStartNanos);
+
+        long step = System.nanoTime();
+        int borrowed = awaitConnections(step + properties.getConnectionDrainTimeout().toNanos());
+        if (borrowed > 0) {
+            log.warn("Encerramento: {} conexão(ões) emprestada(s) ou rotação(ões) ainda em andamento após {} ms",
+                    borrowed, properties.getConnectionDrainTimeout().toMillis());
+        }
+        logStep(3, "conexões emprestadas devolvidas" + (borrowed > 0 ? " (tempo esgotado, " + borrowed + " pendente(s))" : ""), step);
+
+        step = System.nanoTime();
+        List<String> unfinished = maintenanceScheduler.stop(properties.getTaskStopTimeout());
+        if (!unfinished.isEmpty()) {
+            log.warn("Encerramento: tarefas de manutenção interrompidas após {} ms: {}",
+                    properties.getTaskStopTimeout().toMillis(), unfinished);
+        }
+        paymentChangeFeed.stopPolling();
+        SecretLeaseContainer leaseContainer = leaseContainerProvider.getIfAvailable();
+        if (leaseContainer != null) {
+            leaseContainer.stop();
+        }
+        int slots = rotationCoordinator.releaseAll();
+        logStep(4, "tarefas de manutenção, feed e container de leases parados, " + slots + " vaga(s) de rotação liberada(s)", step);
+
+        step = System.nanoTime();
+        int revoked = 0;
+        for (RotatingPool pool : registry.getPools()) {
+            PoolGeneration generation = pool.getCurrentGeneration();
+            pool.close();
+            if (properties.isRevokeLeases() && generation != null && generation.hasLease()
+                    && retirer.revokeGeneration(generation)) {
+                revoked++;
+            }
+        }
+        logStep(5, "pools fechados" + (properties.isRevokeLeases() ? ", " + revoked + " lease(s) revogada(s)" : ""), step);
+
+        log.info("Encerramento concluído em {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    // Conexões emprestadas dos pools atuais e rotações em andamento; as gerações substituídas são do PoolGenerationRetirer
+    private int awaitConnections(long deadline) {
+        int pending = pendingConnections();
+        while (pending > 0 && System.nanoTime() < deadline) {
+            sleep(Duration.ofMillis(POLL_INTERVAL_MILLIS));
+            pending = pendingConnections();
+        }
+        return pending;
+    }
+
+    private int pendingConnections() {
+        int pending = 0;
+        for (RotatingPool pool : registry.getPools()) {
+            HikariDataSource dataSource = pool.getCurrent();
+            HikariPoolMXBean mxBean = dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+            if (mxBean != null) {
+                pending += mxBean.getActiveConnections();
+            }
+            if (pool.isRotating()) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    private void logStep(int number, String description, long stepStartNanos) {
+        log.info("Encerramento [{}/5] {} ({} ms)", number, description,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stepStartNanos));
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Primeira fase a parar, antes do encerramento gracioso do servidor web. As fases não dependem uma da
+     * outra: o LifecycleProcessor para antes os beans que dependem do que está parando, fora da ordem das fases.
+     */
+    @Component
+    static class BeforeRequests implements SmartLifecycle {
+
+        private final ShutdownSequence shutdownSequence;
+        private volatile boolean running;
+
+        BeforeRequests(ShutdownSequence shutdownSequence) {
+            this.shutdownSequence = shutdownSequence;
+        }
+
+        @Override
+        public void start() {
+            running = true;
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+            shutdownSequence.beforeRequests();
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public int getPhase() {
+            return SmartLifecycle.DEFAULT_PHASE;
+        }
+    }
+
+    /**
+     * Fase logo abaixo do encerramento gracioso do servidor web: roda quando as requisições terminaram
+     * (ou o tempo de spring.lifecycle.timeout-per-shutdown-phase se esgotou)
+     */
+    @Component
+    static class AfterRequests implements SmartLifecycle {
+
+        private final ShutdownSequence shutdownSequence;
+        private volatile boolean running;
+
+        AfterRequests(ShutdownSequence shutdownSequence) {
+            this.shutdownSequence = shutdownSequence;
+        }
+
+        @Override
+        public void start() {
+            running = true;
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+            shutdownSequence.afterRequests();
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public int getPhase() {
+            return WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 1;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /actuator/sqlprofile: formatos de statement ordenados pelo tempo total de execução, uso das
+ * conexões por datasource e os statements lentos capturados. Os valores são acumulados desde
+ * a inicialização; os percentis e o máximo cobrem apenas os últimos minutos.
+ * /actuator/sqlprofile/{limit} limita o número de formatos retornados.
+ */
+@Component
+@Endpoint(id = "sqlprofile")
+@RequiredArgsConstructor
+public class SqlProfileEndpoint {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    /**
+     * Estatísticas de um formato de statement. rows soma as linhas lidas ou afetadas.
+     */
+    public record StatementStats(String datasource, String shape, String sql, long count, double totalMs,
+                                 double meanMs, double maxMs, Map<String, Double> percentilesMs,
+                                 long rows, double meanRows, double maxRows, long errors) {
+    }
+
+    public record ConnectionStats(long count, double meanHoldMs, double maxHoldMs, Map<String, Double> percentilesMs) {
+    }
+
+    public record SqlProfile(boolean enabled, Map<String, ConnectionStats> connections, List<StatementStats> statements,
+                             List<SqlProfiler.SlowStatement> slowStatements) {
+    }
+
+    private final SqlProfiler sqlProfiler;
+
+    @ReadOperation
+    public SqlProfile profile() {
+        return profile(DEFAULT_LIMIT);
+    }
+
+    @ReadOperation
+    public SqlProfile profile(@Selector int limit) {
+        Map<String, ConnectionStats> connections = new LinkedHashMap<>();
+        List<StatementStats> statements = new ArrayList<>();
+        for (SqlProfiler.DataSourceProfile profile : sqlProfiler.getProfiles()) {
+            HistogramSnapshot hold = profile.getHoldTimer().takeSnapshot();
+            connections.put(profile.getName(), new ConnectionStats(hold.count(), hold.mean(TimeUnit.MILLISECONDS),
+                    hold.max(TimeUnit.MILLISECONDS), percentiles(hold)));
+
+            for (SqlProfiler.StatementShape shape : profile.getShapes()) {
+                Timer latency = shape.getLatency();
+                HistogramSnapshot snapshot = latency.takeSnapshot();
+                statements.add(new StatementStats(shape.getDatasource(), shape.getId(), shape.getSql(),
+                        snapshot.count(), snapshot.total(TimeUnit.MILLISECONDS), snapshot.mean(TimeUnit.MILLISECONDS),
+                        snapshot.max(TimeUnit.MILLISECONDS), percentiles(snapshot),
+                        (long) shape.getRows().totalAmount(), shape.getRows().mean(), shape.getRows().max(),
+                        (long) shape.getErrors().count()));
+            }
+        }
+        statements.sort(Comparator.comparingDouble(StatementStats::totalMs).reversed());
+        int boundedLimit = Math.max(1, limit);
+        return new SqlProfile(sqlProfiler.isEnabled(), connections,
+                statements.subList(0, Math.min(boundedLimit, statements.size())), sqlProfiler.getSlowStatements());
+    }
+
+    private static Map<String, Double> percentiles(HistogramSnapshot snapshot) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            values.put("p" + Math.round(percentile.percentile() * 100), percentile.value(TimeUnit.MILLISECONDS));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,466 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Perfil dos statements SQL por formato (o SQL sem literais). Cada RotatingPool envolve as conexões
+ * que entrega em um proxy que mede a latência de execução, as linhas lidas (ou afetadas) e o tempo
+ * em que a conexão ficou fora do pool. As estatísticas ficam aqui, por nome do datasource, e não no
+ * pool HikariCP: sobrevivem às trocas de geração na rotação de credenciais.
+ * Statements mais lentos que app.sql-profiling.slow-threshold são capturados por amostragem limitada.
+ * Só o formato é registrado, nunca os valores dos parâmetros (cc_info, por exemplo).
+ */
+@Component
+@Slf4j
+public class SqlProfiler {
+
+    static final String OTHER_SHAPE = "other";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])\\d+(?:\\.\\d+)?");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Statement lento capturado
+     *
+     * @param rows linhas lidas pelo chamador ou afetadas; nulo se desconhecido
+     */
+    public record SlowStatement(LocalDateTime timestamp, String datasource, String shape, String sql,
+                                double durationMs, Long rows) {
+    }
+
+    private final SqlProfilingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, DataSourceProfile> profiles = new ConcurrentHashMap<>();
+    private final Deque<SlowStatement> slowStatements = new ArrayDeque<>();
+    private final RequestRateLimiter slowSampler;
+    private final long slowThresholdNanos;
+
+    public SqlProfiler(SqlProfilingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.slowSampler = new RequestRateLimiter("sql-slow-capture", Math.max(1, properties.getSlowSamplesPerMinute()),
+                Duration.ofMinutes(1), meterRegistry);
+        this.slowThresholdNanos = properties.getSlowThreshold().toNanos();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Perfil do datasource, criado na primeira chamada e mantido entre as gerações do pool
+     */
+    public DataSourceProfile forDataSource(String datasource) {
+        return profiles.computeIfAbsent(datasource, DataSourceProfile::new);
+    }
+
+    public Collection<DataSourceProfile> getProfiles() {
+        return List.copyOf(profiles.values());
+    }
+
+    /**
+     * Statements lentos capturados, do mais recente para o mais antigo
+     */
+    public List<SlowStatement> getSlowStatements() {
+        synchronized (slowStatements) {
+            return new ArrayList<>(slowStatements);
+        }
+    }
+
+    /**
+     * Formato do statement: literais substituídos por ?, listas de IN reduzidas e espaços normalizados
+     */
+    static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("IN (?+)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    private void recordSlow(StatementShape shape, long elapsedNanos, Long rows) {
+        shape.slowCounter.increment();
+        if (!slowSampler.tryAcquire()) {
+            return;
+        }
+        SlowStatement slow = new SlowStatement(LocalDateTime.now(), shape.datasource, shape.id, shape.sql,
+                elapsedNanos / 1_000_000.0, rows);
+        synchronized (slowStatements) {
+            slowStatements.addFirst(slow);
+            while (slowStatements.size() > properties.getSlowCapacity()) {
+                slowStatements.removeLast();
+            }
+        }
+        log.warn("[{}] SQL lento ({} ms, {} linha(s)) {}: {}", shape.datasource, Math.round(slow.durationMs()),
+                rows != null ? rows : "?", shape.id, shape.sql);
+    }
+
+    /**
+     * Estatísticas de um datasource: formatos de statement e tempo de uso das conexões
+     */
+    public final class DataSourceProfile {
+
+        private final String name;
+        private final Timer holdTimer;
+        // SQL recebido -> formato, para normalizar cada SQL uma única vez
+        private final Map<String, StatementShape> bySql = new ConcurrentHashMap<>();
+        private final Map<String, StatementShape> byShape = new ConcurrentHashMap<>();
+
+        private DataSourceProfile(String name) {
+            this.name = name;
+            this.holdTimer = Timer.builder("db.sql.connection.hold").tag("datasource", name)
+                    .description("Tempo entre obter a conexão do pool e devolvê-la")
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Timer getHoldTimer() {
+            return holdTimer;
+        }
+
+        public Collection<StatementShape> getShapes() {
+            return List.copyOf(byShape.values());
+        }
+
+        /**
+         * Envolve a conexão obtida do pool; o tempo de uso é medido a partir daqui até o close()
+         */
+        public Connection wrap(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionHandler(this, connection, System.nanoTime()));
+        }
+
+        StatementShape shapeOf(String sql) {
+            StatementShape shape = bySql.get(sql);
+            if (shape != null) {
+                return shape;
+            }
+            String normalized = normalize(sql);
+            shape = byShape.get(normalized);
+            if (shape == null) {
+                // Acima do limite, formatos novos vão para "other": os ids são tags das métricas
+                shape = byShape.size() < properties.getMaxShapes()
+                        ? byShape.computeIfAbsent(normalized, key -> new StatementShape(name, shapeId(key), key))
+                        : byShape.computeIfAbsent(OTHER_SHAPE, key -> new StatementShape(name, OTHER_SHAPE, OTHER_SHAPE));
+            }
+            if (bySql.size() < properties.getMaxShapes() * 10) {
+                bySql.put(sql, shape);
+            }
+            return shape;
+        }
+
+        private String shapeId(String normalized) {
+            CRC32 crc = new CRC32();
+            crc.update(normalized.getBytes(StandardCharsets.UTF_8));
+            return String.format("%08x", crc.getValue());
+        }
+    }
+
+    /**
+     * Métricas de um formato de statement em um datasource
+     */
+    public final class StatementShape {
+
+        private final String datasource;
+        private final String id;
+        private final String sql;
+        private final Timer latency;
+        private final DistributionSummary rows;
+        private final Counter errors;
+        private final Counter slowCounter;
+
+        private StatementShape(String datasource, String id, String sql) {
+            this.datasource = datasource;
+            this.id = id;
+            this.sql = sql;
+            this.latency = Timer.builder("db.sql.statement").tags("datasource", datasource, "shape", id)
+                    .description("Tempo de execução do statement, sem a leitura das linhas")
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .serviceLevelObjectives(properties.getLatencyBuckets().toArray(Duration[]::new))
+                    .register(meterRegistry);
+            this.rows = DistributionSummary.builder("db.sql.rows").tags("datasource", datasource, "shape", id)
+                    .description("Linhas lidas pelo chamador (consultas) ou afetadas (atualizações)")
+                    .register(meterRegistry);
+            this.errors = Counter.builder("db.sql.errors").tags("datasource", datasource, "shape", id)
+                    .register(meterRegistry);
+            this.slowCounter = Counter.builder("db.sql.slow").tags("datasource", datasource, "shape", id)
+                    .description("Statements acima de app.sql-profiling.slow-threshold, capturados ou não")
+                    .register(meterRegistry);
+        }
+
+        public String getDatasource() {
+            return datasource;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public Timer getLatency() {
+            return latency;
+        }
+
+        public DistributionSummary getRows() {
+            return rows;
+        }
+
+        public Counter getErrors() {
+            return errors;
+        }
+    }
+
+    /**
+     * Uma execução: a latência é registrada ao retornar do driver; as linhas e a captura de statement
+     * lento, quando o ResultSet ou o statement é fechado (ou o statement é executado de novo)
+     */
+    private final class Execution {
+
+        private final StatementShape shape;
+        private final long elapsedNanos;
+        private long rows = -1;
+        private boolean finished;
+
+        private Execution(StatementShape shape, long elapsedNanos) {
+            this.shape = shape;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        private void addRows(long count) {
+            rows = rows < 0 ? count : rows + count;
+        }
+
+        private void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (rows >= 0) {
+                shape.rows.record(rows);
+            }
+            if (elapsedNanos >= slowThresholdNanos) {
+                recordSlow(shape, elapsedNanos, rows >= 0 ? rows : null);
+            }
+        }
+    }
+
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * equals, hashCode e toString respondidos pelo próprio proxy, como nos proxies do Spring: o proxy não é
+     * igual ao objeto que envolve. Nulo para os demais métodos, que vão para o objeto envolvido.
+     */
+    private static Object proxyIdentity(Object proxy, Method method, Object[] args, Object target) {
+        return switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "toString" -> "Perfilado [" + target + "]";
+            default -> null;
+        };
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final DataSourceProfile profile;
+        private final Connection target;
+        private final long acquiredAt;
+        private boolean closed;
+
+        private ConnectionHandler(DataSourceProfile profile, Connection target, long acquiredAt) {
+            this.profile = profile;
+            this.target = target;
+            this.acquiredAt = acquiredAt;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object identity = proxyIdentity(proxy, method, args, target);
+            if (identity != null) {
+                return identity;
+            }
+            switch (method.getName()) {
+                case "createStatement":
+                    return wrapStatement(Statement.class, (Statement) delegate(target, method, args), null);
+                case "prepareStatement":
+                    return wrapStatement(PreparedStatement.class, (Statement) delegate(target, method, args),
+                            profile.shapeOf((String) args[0]));
+                case "prepareCall":
+                    return wrapStatement(CallableStatement.class, (Statement) delegate(target, method, args),
+                            profile.shapeOf((String) args[0]));
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        profile.holdTimer.record(System.nanoTime() - acquiredAt, TimeUnit.NANOSECONDS);
+                    }
+                    return delegate(target, method, args);
+                default:
+                    return delegate(target, method, args);
+            }
+        }
+
+        private Object wrapStatement(Class<? extends Statement> type, Statement statement, StatementShape shape) {
+            return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(profile, statement, shape));
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+
+        private final DataSourceProfile profile;
+        private final Statement target;
+        // Formato do PreparedStatement; nulo em Statement, cujo SQL vem em cada execute
+        private final StatementShape prepared;
+        private Execution current;
+
+        private StatementHandler(DataSourceProfile profile, Statement target, StatementShape prepared) {
+            this.profile = profile;
+            this.target = target;
+            this.prepared = prepared;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object identity = proxyIdentity(proxy, method, args, target);
+            if (identity != null) {
+                return identity;
+            }
+            switch (method.getName()) {
+                case "executeQuery", "execute", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch":
+                    return execute(method, args);
+                case "getResultSet": {
+                    Object result = delegate(target, method, args);
+                    return result != null && current != null ? wrapResultSet((ResultSet) result, current) : result;
+                }
+                case "getUpdateCount": {
+                    Object result = delegate(target, method, args);
+                    if (current != null && (Integer) result >= 0) {
+                        current.addRows((Integer) result);
+                    }
+                    return result;
+                }
+                case "close":
+                    finish();
+                    return delegate(target, method, args);
+                default:
+                    return delegate(target, method, args);
+            }
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            StatementShape shape = args != null && args.length > 0 && args[0] instanceof String sql
+                    ? profile.shapeOf(sql)
+                    : prepared;
+            if (shape == null) {
+                // executeBatch de Statement com SQLs de addBatch diferentes
+                return delegate(target, method, args);
+            }
+            finish();
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = delegate(target, method, args);
+            } catch (Throwable e) {
+                shape.errors.increment();
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+            shape.latency.record(elapsed, TimeUnit.NANOSECONDS);
+
+            Execution execution = new Execution(shape, elapsed);
+            current = execution;
+            if (result instanceof ResultSet resultSet) {
+                return wrapResultSet(resultSet, execution);
+            }
+            if (result instanceof Integer count) {
+                execution.addRows(count);
+            } else if (result instanceof Long count) {
+                execution.addRows(count);
+            } else if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    execution.addRows(Math.max(0, count));
+                }
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    execution.addRows(Math.max(0, count));
+                }
+            }
+            // execute() devolve Boolean: linhas conhecidas por getResultSet/getUpdateCount
+            if (!(result instanceof Boolean)) {
+                finish();
+            }
+            return result;
+        }
+
+        private void finish() {
+            if (current != null) {
+                current.finish();
+                current = null;
+            }
+        }
+
+        private Object wrapResultSet(ResultSet resultSet, Execution execution) {
+            if (execution.rows < 0) {
+                execution.rows = 0;
+            }
+            return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> {
+                        Object identity = proxyIdentity(proxy, method, args, resultSet);
+                        if (identity != null) {
+                            return identity;
+                        }
+                        String name = method.getName();
+                        Object result = delegate(resultSet, method, args);
+                        if ("next".equals(name)) {
+                            if ((Boolean) result) {
+                                execution.rows++;
+                            }
+                        } else if ("close".equals(name)) {
+                            execution.finish();
+                        }
+                        return result;
+                    });
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.vaultrotation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Perfil dos statements SQL executados pelas conexões dos RotatingPools (ver SqlProfiler).
+ */
+@Component
+@ConfigurationProperties(prefix = "app.sql-profiling")
+@Data
+public class SqlProfilingProperties {
+
+    // Desligado até o custo sob carga ser medido com o sql-profiling-benchmark.sh
+    private boolean enabled = false;
+
+    // Formatos distintos acompanhados por datasource; os excedentes são somados no formato "other"
+    private int maxShapes = 200;
+
+    // Limites dos buckets do histograma de latência publicado por formato
+    private List<Duration> latencyBuckets = new ArrayList<>(List.of(Duration.ofMillis(1), Duration.ofMillis(5),
+            Duration.ofMillis(25), Duration.ofMillis(100), Duration.ofMillis(500), Duration.ofSeconds(2)));
+
+    // Statements mais lentos que o limite são candidatos à captura
+    private Duration slowThreshold = Duration.ofMillis(200);
+
+    // Capturas por minuto, no máximo (o restante é apenas contado)
+    private int slowSamplesPerMinute = 30;
+
+    // Capturas mantidas em memória para o endpoint
+    private int slowCapacity = 100;
+}
@@ -0,0 +1,70 @@
+package com.example.vaultrotation.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TurboFilter do Logback que amostra os logs de SQL: apenas 1 a cada sampleRate statements
+ * é registrado. Por atuar antes da criação do evento, também responde a isDebugEnabled(),
+ * de modo que o Hibernate e o JdbcTemplate nem chegam a formatar o SQL dos statements descartados.
+ */
+public class SqlSamplingTurboFilter extends TurboFilter {
+
+    private final List<String> loggerPrefixes = new ArrayList<>();
+    private final AtomicLong counter = new AtomicLong();
+
+    // Decisão tomada em isDebugEnabled() reaproveitada pela chamada de log seguinte na mesma thread
+    private final ThreadLocal<Boolean> sampledCheck = new ThreadLocal<>();
+
+    private int sampleRate = 100;
+
+    public void addLogger(String loggerPrefix) {
+        loggerPrefixes.add(loggerPrefix);
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (!isStarted() || level.isGreaterOrEqual(Level.INFO) || !isSqlLogger(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+
+        if (format == null) {
+            // Verificação de nível (isDebugEnabled / isTraceEnabled)
+            boolean sampled = nextSample();
+            if (sampled) {
+                sampledCheck.set(Boolean.TRUE);
+            }
+            return sampled ? FilterReply.NEUTRAL : FilterReply.DENY;
+        }
+
+        if (sampledCheck.get() != null) {
+            sampledCheck.remove();
+            return FilterReply.NEUTRAL;
+        }
+        return nextSample() ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private boolean nextSample() {
+        return counter.incrementAndGet() % sampleRate == 0;
+    }
+
+    private boolean isSqlLogger(String name) {
+        for (String prefix : loggerPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
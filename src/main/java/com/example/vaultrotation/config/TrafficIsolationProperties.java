@@ -0,0 +1,94 @@
+package com.example.vaultrotation.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulkheads e limites de taxa por classe de endpoint. Exemplo:
+ * <pre>
+ * app.traffic.bulkheads.admin.paths=/api/db/**,/api/config/**
+ * app.traffic.bulkheads.admin.max-concurrent=2
+ * app.traffic.rate-limits.context-refresh.paths=/api/config/refresh,/actuator/refresh
+ * app.traffic.rate-limits.context-refresh.permits=1
+ * app.traffic.rate-limits.context-refresh.period=30s
+ * app.traffic.deadlines.payments.paths=/api/payments/**
+ * app.traffic.deadlines.payments.timeout=3s
+ * app.traffic.adaptive-limits.payments.paths=/api/payments/**
+ * app.traffic.adaptive-limits.payments.max-limit=40
+ * </pre>
+ */
+@Component
+@ConfigurationProperties(prefix = "app.traffic")
+@Data
+public class TrafficIsolationProperties {
+
+    private Map<String, BulkheadDefinition> bulkheads = new LinkedHashMap<>();
+    private Map<String, RateLimitDefinition> rateLimits = new LinkedHashMap<>();
+    private Map<String, DeadlineDefinition> deadlines = new LinkedHashMap<>();
+    private Map<String, AdaptiveLimitDefinition> adaptiveLimits = new LinkedHashMap<>();
+
+    // Header com o prazo pedido pelo cliente, em milissegundos; substitui o prazo padrão da rota
+    private String deadlineHeader = "X-Request-Timeout";
+    // Maior prazo aceito no header
+    private Duration maxDeadline = Duration.ofSeconds(30);
+
+    @Data
+    public static class BulkheadDefinition {
+        // Padrões de caminho (estilo Ant); a requisição usa o primeiro bulkhead que casar
+        private List<String> paths = new ArrayList<>();
+        private int maxConcurrent = 10;
+        // Tempo máximo de espera por uma vaga; zero rejeita imediatamente
+        private Duration maxWait = Duration.ZERO;
+    }
+
+    @Data
+    public static class RateLimitDefinition {
+        private List<String> paths = new ArrayList<>();
+        private List<String> methods = new ArrayList<>(List.of("POST"));
+        // Requisições permitidas por período (também é o tamanho da rajada)
+        private int permits = 1;
+        private Duration period = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class DeadlineDefinition {
+        // Padrões de caminho (estilo Ant); a requisição usa o primeiro prazo que casar
+        private List<String> paths = new ArrayList<>();
+        // Prazo quando o cliente não envia o header
+        private Duration timeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class AdaptiveLimitDefinition {
+        private boolean enabled = true;
+        // Padrões de caminho (estilo Ant); a requisição usa o primeiro limite que casar
+        private List<String> paths = new ArrayList<>();
+        // Caminhos dentro de paths fora do limite (long-poll e SSE, que não ocupam conexão durante a espera)
+        private List<String> excludePaths = new ArrayList<>();
+        private int initialLimit = 10;
+        private int minLimit = 2;
+        private int maxLimit = 40;
+        // Aumento da latência curta sobre a de referência tolerado antes de reduzir o limite
+        private double rttTolerance = 1.5;
+        // Peso de cada novo cálculo no limite (0 a 1)
+        private double smoothing = 0.2;
+        // Fator aplicado ao limite quando a janela teve respostas 5xx ou exceções
+        private double backoffRatio = 0.9;
+        // Duração mínima e amostras mínimas de uma janela de latência
+        private Duration window = Duration.ofMillis(100);
+        private int minWindowSamples = 10;
+        // Janelas na média de longo prazo da latência (referência)
+        private int longWindow = 50;
+        // Fração do limite reservada às leituras: escritas são rejeitadas antes
+        private double readReserve = 0.25;
+        private List<String> readMethods = new ArrayList<>(List.of("GET", "HEAD"));
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+}
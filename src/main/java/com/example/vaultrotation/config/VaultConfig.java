@@ -7,6 +7,8 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.util.StringUtils;
 import org.springframework.vault.authentication.ClientAuthentication;
 import org.springframework.vault.authentication.TokenAuthentication;
@@ -31,11 +33,8 @@ public class VaultConfig {
     @Value("${spring.cloud.vault.token:dummy}")
     private String vaultToken;
 
-    @Value("${spring.cloud.vault.database.role:payments-app}")
-    private String databaseRole;
-
-    @Value("${spring.cloud.vault.database.backend:database}")
-    private String databaseBackend;
+    @Value("${app.vault.lease-scheduler.pool-size:2}")
+    private int leaseSchedulerPoolSize;
 
     @Bean
     public VaultEndpoint vaultEndpoint() throws URISyntaxException {
@@ -58,35 +57,41 @@ public class VaultConfig {
         return new VaultTemplate(endpoint, clientAuthentication);
     }
 
+    /**
+     * Scheduler compartilhado pelas leases de todos os datasources. Com mais de uma thread,
+     * renovações de um banco não esperam pelas de outro.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler leaseTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(leaseSchedulerPoolSize);
+        scheduler.setThreadNamePrefix("vault-lease-");
+        scheduler.setDaemon(true);
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    /**
+     * Container das leases dinâmicas de todos os datasources. Os segredos são apenas registrados aqui:
+     * o container é um SmartLifecycle e só obtém as leases quando o contexto o inicia, depois que
+     * VaultRefresher e LeaseStateTracker adicionaram seus listeners. Assim o SecretLeaseCreatedEvent
+     * inicial reconstrói o pool a partir da lease, em vez de se perder.
+     */
     @Bean
-    public SecretLeaseContainer secretLeaseContainer(VaultOperations vaultOperations) {
+    public SecretLeaseContainer secretLeaseContainer(VaultOperations vaultOperations,
+                                                     ThreadPoolTaskScheduler leaseTaskScheduler,
+                                                     RotatingDataSourceProperties dataSourceProperties,
+                                                     Environment environment) {
         log.info("Criando SecretLeaseContainer");
-        SecretLeaseContainer container = new SecretLeaseContainer(vaultOperations);
-        
-        try {
-            // Inicialize o container
-            container.afterPropertiesSet();
-            container.start();
-            
-            // Adicione o caminho para as credenciais do banco de dados
-            String path = String.format("%s/creds/%s", databaseBackend, databaseRole);
-            log.info("Configurando monitoramento de credenciais em: {}", path);
-            
-            // Solicite as credenciais dinâmicas para serem gerenciadas pelo container
-            try {
-                log.info("Solicitando credenciais em: {}", path);
-                container.addRequestedSecret(RequestedSecret.rotating(path));
-                log.info("Credenciais adicionadas com sucesso");
-            } catch (Exception e) {
-                log.error("Erro ao solicitar credenciais do Vault: {}", e.getMessage());
-            }
-            
-            return container;
-        } catch (Exception e) {
-            log.error("Erro ao inicializar SecretLeaseContainer: {}", e.getMessage());
-            
-            // Retornar container mesmo com erro, para permitir que a aplicação continue
-            return container;
+        SecretLeaseContainer container = new SecretLeaseContainer(vaultOperations, leaseTaskScheduler);
+
+        // Registre o caminho das credenciais de cada datasource declarado
+        for (DataSourceDefinition definition : dataSourceProperties.resolveDefinitions(environment)) {
+            String path = definition.getLeasePath();
+            log.info("Configurando monitoramento de credenciais do datasource {} em: {}", definition.getName(), path);
+            container.addRequestedSecret(RequestedSecret.rotating(path));
         }
+
+        return container;
     }
-} 
\ No newline at end of file
+}
@@ -1,149 +1,219 @@
 package com.example.vaultrotation.config;
 
+import com.example.vaultrotation.config.LeaseEventDispatcher.LeaseAction;
+import com.example.vaultrotation.config.LeaseEventDispatcher.LeaseActionHandler;
+import com.example.vaultrotation.config.LeaseEventDispatcher.LeaseSecrets;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.cloud.context.refresh.ContextRefresher;
-import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
-import org.springframework.cloud.vault.config.VaultProperties;
-import org.springframework.context.ApplicationListener;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.core.env.Environment;
-import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.vault.core.lease.SecretLeaseContainer;
 import org.springframework.vault.core.lease.domain.RequestedSecret;
+import org.springframework.vault.core.lease.event.AfterSecretLeaseRenewedEvent;
 import org.springframework.vault.core.lease.event.SecretLeaseCreatedEvent;
+import org.springframework.vault.core.lease.event.SecretLeaseEvent;
 import org.springframework.vault.core.lease.event.SecretLeaseExpiredEvent;
 
+import java.util.Optional;
 import java.util.Set;
 
 @Component
 @Slf4j
-@EnableScheduling
 @ConditionalOnProperty(name = "spring.cloud.vault.enabled", havingValue = "true", matchIfMissing = false)
 @ConditionalOnBean(SecretLeaseContainer.class)
-public class VaultRefresher implements ApplicationListener<RefreshScopeRefreshedEvent> {
+public class VaultRefresher {
 
-    private final ContextRefresher contextRefresher;
     private final SecretLeaseContainer leaseContainer;
-    private final String databaseRole;
-    private final String databaseBackend;
-    private final Environment environment;
-    private final MySqlUserManager mySqlUserManager;
+    private final RotatingDataSourceRegistry registry;
+    private final LeaseEventDispatcher leaseEventDispatcher;
+    private final PoolGenerationRetirer retirer;
+    private final RotationEventJournal journal;
+    private final RotationCoordinator rotationCoordinator;
+    private final ObjectProvider<ConnectionHealthMonitor> healthMonitorProvider;
+    private final LeaseActionHandler leaseActionHandler = new LeaseActionHandler() {
+        @Override
+        public void handle(String path, Set<LeaseAction> actions, LeaseSecrets latestSecrets) {
+            processLeaseActions(path, actions, latestSecrets);
+        }
+
+        @Override
+        public void superseded(String path, LeaseSecrets secrets) {
+            // Lease obtida mas substituída antes de virar pool: o usuário nunca será usado
+            registry.findByLeasePath(path).ifPresent(pool -> retirer.revokeUnused(pool.getName(), secrets.lease()));
+        }
+    };
 
     public VaultRefresher(
-            ContextRefresher contextRefresher,
             SecretLeaseContainer leaseContainer,
-            Environment environment,
-            MySqlUserManager mySqlUserManager,
-            @Value("${spring.cloud.vault.database.role:payments-app}") String databaseRole,
-            @Value("${spring.cloud.vault.database.backend:database}") String databaseBackend) {
-        
-        this.contextRefresher = contextRefresher;
+            RotatingDataSourceRegistry registry,
+            LeaseEventDispatcher leaseEventDispatcher,
+            PoolGenerationRetirer retirer,
+            RotationEventJournal journal,
+            RotationCoordinator rotationCoordinator,
+            ObjectProvider<ConnectionHealthMonitor> healthMonitorProvider) {
+
         this.leaseContainer = leaseContainer;
-        this.databaseRole = databaseRole;
-        this.databaseBackend = databaseBackend;
-        this.environment = environment;
-        this.mySqlUserManager = mySqlUserManager;
-        
-        String path = String.format("%s/creds/%s", databaseBackend, databaseRole);
-        log.info("VaultRefresher inicializado para monitorar o caminho: {}", path);
-        
+        this.registry = registry;
+        this.leaseEventDispatcher = leaseEventDispatcher;
+        this.retirer = retirer;
+        this.journal = journal;
+        this.rotationCoordinator = rotationCoordinator;
+        this.healthMonitorProvider = healthMonitorProvider;
+
+        registry.getPools().forEach(pool ->
+                log.info("VaultRefresher inicializado para monitorar o caminho: {} (datasource {})",
+                        pool.getDefinition().getLeasePath(), pool.getName()));
+
         try {
-            // Adicionar listener para eventos de lease
+            // Adicionar listener para eventos de lease. O listener roda na thread do container de leases
+            // e apenas encaminha a ação para o LeaseEventDispatcher, sem executar trabalho pesado
             leaseContainer.addLeaseListener(event -> {
                 try {
-                    log.debug("Evento de lease recebido: {}, caminho: {}", event.getClass().getSimpleName(), event.getSource().getPath());
-                    
-                    if (path.equals(event.getSource().getPath())) {
-                        // Quando a credencial expirar, solicita uma rotação
-                        if (event instanceof SecretLeaseExpiredEvent && event.getSource().getMode() == RequestedSecret.Mode.RENEW) {
-                            log.info("Lease de credencial do banco de dados expirada no caminho {}, solicitando rotação", path);
-                            leaseContainer.requestRotatingSecret(path);
-                        }
-                        
-                        // Quando a credencial for criada após rotação, atualiza o contexto
-                        if (event instanceof SecretLeaseCreatedEvent secretLeaseCreatedEvent && 
-                            event.getSource().getMode() == RequestedSecret.Mode.ROTATE) {
-                            log.info("Novas credenciais obtidas no caminho {}, atualizando contexto da aplicação", path);
-                            
-                            // Disparar atualização de contexto
-                            refreshContext();
-                        }
+                    String path = event.getSource().getPath();
+                    log.debug("Evento de lease recebido: {}, caminho: {}", event.getClass().getSimpleName(), path);
+
+                    Optional<RotatingPool> pool = registry.findByLeasePath(path);
+                    if (pool.isEmpty()) {
+                        return;
+                    }
+                    recordLeaseEvent(pool.get(), event);
+
+                    // Quando a credencial expirar, solicita uma rotação assim que houver vaga na frota:
+                    // réplicas iniciadas juntas têm leases que expiram juntas
+                    if (event instanceof SecretLeaseExpiredEvent && event.getSource().getMode() == RequestedSecret.Mode.RENEW) {
+                        rotationCoordinator.whenSlotAvailable(pool.get(), "lease-expired", true,
+                                () -> requestRotation(path, "lease-expired"));
+                    }
+
+                    // Quando a credencial for criada após rotação, reconstrói o pool do datasource
+                    if (event instanceof SecretLeaseCreatedEvent created &&
+                        event.getSource().getMode() == RequestedSecret.Mode.ROTATE) {
+                        leaseEventDispatcher.dispatch(path, LeaseAction.REBUILD_POOL,
+                                new LeaseSecrets(created.getLease(), created.getSecrets()), leaseActionHandler);
                     }
                 } catch (Exception e) {
-                    log.error("Erro ao processar evento de lease: {}", e.getMessage(), e);
+                    log.error("Erro ao encaminhar evento de lease: {}", e.getMessage(), e);
                 }
             });
-            
+
+            // Falhas ao obter a nova lease não lançam exceção em rotate(): chegam apenas aos listeners de erro.
+            // A vaga ocupada para a rotação é liberada aqui; do contrário ela ficaria com esta réplica
+            // e as próximas rotações seguiriam sem consultar a frota
+            leaseContainer.addErrorListener((event, exception) -> {
+                if (event.getSource().getMode() != RequestedSecret.Mode.ROTATE) {
+                    return;
+                }
+                registry.findByLeasePath(event.getSource().getPath()).ifPresent(pool -> {
+                    rotationCoordinator.release(pool);
+                    rotationFailed(pool, "erro do Vault: " + exception.getMessage());
+                });
+            });
+
+            // O container só obtém as leases iniciais depois deste construtor (ver VaultConfig): o evento de
+            // criação de cada uma reconstrói o pool, inclusive dos datasources sem credenciais no Environment
             log.info("Listener para eventos de lease configurado com sucesso");
         } catch (Exception e) {
             log.error("Erro ao configurar listeners para eventos do Vault: {}", e.getMessage(), e);
         }
     }
-    
-    private void refreshContext() {
-        try {
-            log.info("Atualizando contexto para utilizar novas credenciais do banco de dados");
-            Set<String> refreshedKeys = contextRefresher.refresh();
-            log.info("Contexto atualizado, {} propriedades atualizadas: {}", refreshedKeys.size(), refreshedKeys);
-            
-            // Após a atualização do contexto, obter o novo usuário e atualizar o gerenciador de usuários
-            updateUserManager();
-        } catch (Exception e) {
-            log.error("Erro ao atualizar contexto: {}", e.getMessage(), e);
+
+    /**
+     * Processa as ações acumuladas para um caminho, fora da thread do container de leases.
+     * Se novas credenciais já foram obtidas, não é necessário solicitar outra rotação.
+     */
+    private void processLeaseActions(String leasePath, Set<LeaseAction> actions, LeaseSecrets secrets) {
+        Optional<RotatingPool> pool = registry.findByLeasePath(leasePath);
+        if (pool.isEmpty()) {
+            return;
+        }
+        log.debug("Processando ações de lease {} para o caminho {}", actions, leasePath);
+
+        if (actions.contains(LeaseAction.REBUILD_POOL) && secrets != null) {
+            log.info("Novas credenciais obtidas no caminho {}, reconstruindo pool do datasource {}",
+                    leasePath, pool.get().getName());
+            try {
+                registry.rotateFromSecrets(pool.get(), secrets.lease(), secrets.secrets());
+            } catch (RuntimeException e) {
+                rotationFailed(pool.get(), e.getMessage());
+                throw e;
+            } finally {
+                rotationCoordinator.release(pool.get());
+            }
+        } else if (actions.contains(LeaseAction.REQUEST_ROTATION)) {
+            log.info("Solicitando rotação de credenciais no caminho {}", leasePath);
+            // A criação da nova lease gera um evento que agenda a reconstrução do pool
+            try {
+                rotateSecret(leasePath);
+            } catch (RuntimeException e) {
+                rotationCoordinator.release(pool.get());
+                rotationFailed(pool.get(), e.getMessage());
+                throw e;
+            }
         }
     }
-    
+
+    private void rotationFailed(RotatingPool pool, String cause) {
+        ConnectionHealthMonitor healthMonitor = healthMonitorProvider.getIfAvailable();
+        if (healthMonitor != null) {
+            healthMonitor.onRotationFailed(pool, cause);
+        }
+    }
+
     /**
-     * Atualiza o gerenciador de usuários MySQL com o usuário atual
+     * Obtém novas credenciais para o segredo já registrado no caminho (ver VaultConfig), em vez de registrar
+     * outro a cada rotação: o container passa a renovar apenas a nova lease, e a anterior pode ser revogada
+     * pelo PoolGenerationRetirer sem que uma renovação posterior falhe e dispare outra rotação.
+     * Sem lease associada (a obtenção inicial falhou), o segredo é registrado de novo.
      */
-    private void updateUserManager() {
+    private void rotateSecret(String leasePath) {
+        // Igual (caminho e modo) ao RequestedSecret registrado: é a chave das renovações no container
+        RequestedSecret secret = RequestedSecret.rotating(leasePath);
         try {
-            String username = environment.getProperty("spring.datasource.username");
-            if (username != null && username.startsWith("v-")) {
-                log.info("Atualizando gerenciador de usuários MySQL com o novo usuário: {}", username);
-                mySqlUserManager.updateCurrentVaultUser(username);
-            } else {
-                log.warn("Nome de usuário atual não é um usuário Vault válido: {}", username);
-            }
-        } catch (Exception e) {
-            log.error("Erro ao atualizar gerenciador de usuários MySQL: {}", e.getMessage(), e);
+            leaseContainer.rotate(secret);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            log.warn("Caminho {} sem lease no container ({}); registrando o segredo novamente", leasePath, e.getMessage());
+            leaseContainer.addRequestedSecret(secret);
+        }
+    }
+
+    private void recordLeaseEvent(RotatingPool pool, SecretLeaseEvent event) {
+        if (event instanceof SecretLeaseCreatedEvent created) {
+            journal.record(RotationEvent.Type.LEASE_CREATED, pool.getName(), created.getLease().getLeaseId());
+        } else if (event instanceof AfterSecretLeaseRenewedEvent renewed) {
+            journal.record(RotationEvent.Type.LEASE_RENEWED, pool.getName(), renewed.getLease().getLeaseId());
+        } else if (event instanceof SecretLeaseExpiredEvent expired) {
+            journal.record(RotationEvent.Type.LEASE_EXPIRED, pool.getName(), expired.getLease().getLeaseId());
         }
     }
 
-    @Override
-    public void onApplicationEvent(RefreshScopeRefreshedEvent event) {
-        log.info("Contexto atualizado com sucesso: {}", event.getName());
-        
-        // Após o contexto ser atualizado, atualizar o gerenciador de usuários
-        updateUserManager();
+    /**
+     * Solicita a rotação das credenciais de um caminho. A chamada ao Vault é feita de forma
+     * assíncrona pelo LeaseEventDispatcher, agrupada com eventos pendentes do mesmo caminho.
+     *
+     * @param requestedBy origem da solicitação (api, health-check, credential-check...), registrada no journal
+     */
+    public void requestRotation(String leasePath, String requestedBy) {
+        registry.findByLeasePath(leasePath).ifPresent(pool ->
+                journal.record(RotationEvent.Type.ROTATION_REQUESTED, pool.getName(), requestedBy));
+        leaseEventDispatcher.dispatch(leasePath, LeaseAction.REQUEST_ROTATION, null, leaseActionHandler);
     }
-    
+
     /**
-     * Verificação periódica para garantir que as credenciais estejam sendo rotacionadas
+     * Verificação periódica para garantir que as credenciais de todos os datasources estejam sendo rotacionadas.
+     * Agendada pelo MaintenanceScheduler no horário desta réplica (ver MaintenanceTasksConfig); cada rotação
+     * espera uma vaga na frota (ver RotationCoordinator).
      */
-    @Scheduled(fixedRate = 300000) // A cada 5 minutos
     public void checkCredentials() {
-        String path = String.format("%s/creds/%s", databaseBackend, databaseRole);
-        log.info("Verificação periódica das credenciais do banco de dados no caminho: {}", path);
-        try {
-            // Forçar uma renovação de credenciais
+        for (RotatingPool pool : registry.getPools()) {
+            String path = pool.getDefinition().getLeasePath();
+            log.info("Verificação periódica das credenciais do datasource {} no caminho: {}", pool.getName(), path);
             try {
-                leaseContainer.requestRotatingSecret(path);
-                log.info("Solicitação de novas credenciais enviada com sucesso");
+                rotationCoordinator.whenSlotAvailable(pool, "credential-check", false,
+                        () -> requestRotation(path, "credential-check"));
             } catch (Exception e) {
-                log.error("Erro ao solicitar rotação de credenciais: {}", e.getMessage(), e);
+                log.error("Erro durante a verificação periódica: {}", e.getMessage(), e);
             }
-            
-            // Atualizar o contexto
-            refreshContext();
-        } catch (Exception e) {
-            log.error("Erro durante a verificação periódica: {}", e.getMessage(), e);
         }
     }
-} 
\ No newline at end of file
+}
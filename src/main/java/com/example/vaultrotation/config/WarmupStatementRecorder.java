@@ -0,0 +1,74 @@
+package com.example.vaultrotation.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statements de aquecimento dos pools, a partir do SQL que o Hibernate gera para os repositórios.
+ * Registrado como StatementInspector (ver DatabaseConfig), conta cada SQL preparado pelo JPA no
+ * datasource em que foi executado; no aquecimento de uma nova geração, o RotatingPool prepara os
+ * mais usados. O texto é exatamente o que o Hibernate gera, portanto sempre encontra o statement
+ * no cache do driver, e acompanha mudanças nas entidades e nas consultas sem configuração.
+ * Antes da primeira consulta (pool criado na inicialização) não há statements a preparar.
+ */
+@Component
+public class WarmupStatementRecorder implements StatementInspector {
+
+    // Formatos distintos acompanhados por datasource; os excedentes não são contados
+    static final int MAX_TRACKED_STATEMENTS = 500;
+
+    private final Map<String, Map<String, LongAdder>> usage = new ConcurrentHashMap<>();
+
+    // Datasource usado pelo JPA fora de uma operação roteada pelo ShardRouter
+    private volatile String defaultDataSource;
+
+    /**
+     * Define o datasource que recebe as consultas do JPA sem shard ligado à thread
+     */
+    public void setDefaultDataSource(String datasource) {
+        this.defaultDataSource = datasource;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        String shard = ShardRouter.currentShard();
+        String datasource = shard != null ? shard : defaultDataSource;
+        if (datasource != null) {
+            record(datasource, sql);
+        }
+        return sql;
+    }
+
+    void record(String datasource, String sql) {
+        Map<String, LongAdder> statements = usage.computeIfAbsent(datasource, name -> new ConcurrentHashMap<>());
+        LongAdder count = statements.get(sql);
+        if (count == null) {
+            if (statements.size() >= MAX_TRACKED_STATEMENTS) {
+                return;
+            }
+            count = statements.computeIfAbsent(sql, key -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * Statements do JPA executados no datasource, do mais para o menos usado
+     */
+    public List<String> statementsFor(String datasource, int limit) {
+        Map<String, LongAdder> statements = usage.get(datasource);
+        if (statements == null || limit <= 0) {
+            return List.of();
+        }
+        return statements.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}
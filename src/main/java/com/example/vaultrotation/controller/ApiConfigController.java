@@ -1,5 +1,6 @@
 package com.example.vaultrotation.controller;
 
+import com.example.vaultrotation.config.ExternalApiClient;
 import com.example.vaultrotation.config.ExternalApiConfig;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,6 +21,7 @@ import java.util.Set;
 public class ApiConfigController {
 
     private final ExternalApiConfig externalApiConfig;
+    private final ExternalApiClient externalApiClient;
 
     /**
      * Exibe as configurações atuais da API externa
@@ -32,6 +34,8 @@ public class ApiConfigController {
         config.put("url", externalApiConfig.getUrl());
         config.put("apiKey", maskApiKey(externalApiConfig.getApiKey()));
         config.put("timeout", externalApiConfig.getTimeout());
+        // Configurações efetivamente em uso pelo cliente HTTP e estado do pool de conexões
+        config.put("client", externalApiClient.describe());
         
         return ResponseEntity.ok(config);
     }
@@ -43,7 +47,7 @@ public class ApiConfigController {
     public ResponseEntity<Map<String, Object>> refreshExternalApiConfig() {
         log.info("Solicitação de atualização manual das configurações da API externa");
         
-        Set<String> refreshedKeys = externalApiConfig.forceRefresh();
+        Set<String> refreshedKeys = externalApiClient.forceRefresh();
         
         Map<String, Object> response = new HashMap<>();
         response.put("refreshed", !refreshedKeys.isEmpty());
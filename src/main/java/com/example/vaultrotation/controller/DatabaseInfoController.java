@@ -1,26 +1,29 @@
 package com.example.vaultrotation.controller;
 
+import com.example.vaultrotation.config.MySqlUserManager;
+import com.example.vaultrotation.config.PoolGeneration;
+import com.example.vaultrotation.config.RotatingDataSourceRegistry;
+import com.example.vaultrotation.config.RotatingPool;
+import com.example.vaultrotation.config.VaultRefresher;
 import com.zaxxer.hikari.HikariDataSource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
-import org.springframework.cloud.context.config.annotation.RefreshScope;
-import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.vault.core.lease.SecretLeaseContainer;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 @RestController
 @RequestMapping("/api/db")
@@ -28,79 +31,138 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class DatabaseInfoController {
 
-    private final DataSource dataSource;
-    private final ContextRefresher contextRefresher;
-    
-    @Autowired(required = false)
-    private SecretLeaseContainer leaseContainer;
+    private final RotatingDataSourceRegistry registry;
+    private final MySqlUserManager mySqlUserManager;
+    private final ObjectProvider<VaultRefresher> vaultRefresherProvider;
+
+    /**
+     * Lista os datasources declarados e seus caminhos de credenciais no Vault
+     */
+    @GetMapping("/datasources")
+    public ResponseEntity<List<Map<String, Object>>> listDataSources() {
+        List<Map<String, Object>> datasources = new ArrayList<>();
+        for (RotatingPool pool : registry.getPools()) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("name", pool.getName());
+            entry.put("primary", pool == registry.getPrimary());
+            entry.put("leasePath", pool.getDefinition().getLeasePath());
+            entry.put("generation", pool.getGeneration());
+            entry.put("vaultUser", mySqlUserManager.getCurrentVaultUser(pool.getName()));
+            datasources.add(entry);
+        }
+        return ResponseEntity.ok(datasources);
+    }
+
+    /**
+     * Lista as gerações de pool de um datasource (atual, em drenagem, revogadas e órfãs)
+     */
+    @GetMapping("/generations/{name}")
+    public ResponseEntity<List<Map<String, Object>>> listGenerations(@PathVariable String name) {
+        if (registry.find(name).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(mySqlUserManager.getGenerations(name).stream()
+                .map(PoolGeneration::describe)
+                .toList());
+    }
+
+    /**
+     * Lista as gerações substituídas cujo usuário ainda existe no MySQL: lease desconhecida
+     * ou revogação com falha. Esses usuários expiram pelo TTL ou devem ser removidos manualmente.
+     */
+    @GetMapping("/generations/orphaned")
+    public ResponseEntity<List<Map<String, Object>>> listOrphanedGenerations() {
+        return ResponseEntity.ok(mySqlUserManager.getOrphanedGenerations().stream()
+                .map(PoolGeneration::describe)
+                .toList());
+    }
 
     @GetMapping("/info")
     public ResponseEntity<Map<String, Object>> getDatabaseInfo() {
-        log.info("Obtendo informações do banco de dados");
-        
+        return ResponseEntity.ok(buildDatabaseInfo(registry.getPrimary()));
+    }
+
+    @GetMapping("/info/{name}")
+    public ResponseEntity<Map<String, Object>> getDatabaseInfo(@PathVariable String name) {
+        return registry.find(name)
+                .map(pool -> ResponseEntity.ok(buildDatabaseInfo(pool)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private Map<String, Object> buildDatabaseInfo(RotatingPool pool) {
+        log.info("Obtendo informações do banco de dados {}", pool.getName());
+
         Map<String, Object> info = new HashMap<>();
-        
-        if (dataSource instanceof HikariDataSource) {
-            HikariDataSource hikariDataSource = (HikariDataSource) dataSource;
+        info.put("datasource", pool.getName());
+        info.put("generation", pool.getGeneration());
+
+        HikariDataSource hikariDataSource = pool.getCurrent();
+        if (hikariDataSource != null) {
             info.put("url", hikariDataSource.getJdbcUrl());
             info.put("username", hikariDataSource.getUsername());
             info.put("password", "******"); // Não exibe a senha por segurança
             info.put("driverClassName", hikariDataSource.getDriverClassName());
             info.put("maxLifetime", hikariDataSource.getMaxLifetime());
             info.put("connectionTimeout", hikariDataSource.getConnectionTimeout());
-        } else {
-            info.put("dataSourceClass", dataSource.getClass().getName());
         }
-        
+
         // Verifica conexão
-        try (Connection connection = dataSource.getConnection()) {
+        try (Connection connection = pool.getConnection()) {
             info.put("connectionValid", connection.isValid(1000));
             info.put("catalogName", connection.getCatalog());
         } catch (SQLException e) {
             log.error("Erro ao verificar conexão: {}", e.getMessage(), e);
             info.put("connectionError", e.getMessage());
         }
-        
+
         info.put("timestamp", LocalDateTime.now().toString());
-        info.put("usingVault", leaseContainer != null);
-        
-        return ResponseEntity.ok(info);
+        info.put("usingVault", vaultRefresherProvider.getIfAvailable() != null);
+
+        return info;
     }
-    
+
     @PostMapping("/refresh")
     public ResponseEntity<Map<String, Object>> refreshDatabaseCredentials() {
-        log.info("Solicitação manual de atualização de credenciais");
-        
+        return requestRotation(registry.getPrimary());
+    }
+
+    @PostMapping("/refresh/{name}")
+    public ResponseEntity<Map<String, Object>> refreshDatabaseCredentials(@PathVariable String name) {
+        return registry.find(name)
+                .map(this::requestRotation)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Solicita a rotação das credenciais de um datasource. A nova lease é obtida de forma assíncrona
+     * e o pool é reconstruído quando ela for criada, sem atualizar o contexto inteiro.
+     */
+    private ResponseEntity<Map<String, Object>> requestRotation(RotatingPool pool) {
+        log.info("Solicitação manual de atualização de credenciais do datasource {}", pool.getName());
+
         Map<String, Object> response = new HashMap<>();
         response.put("timestamp", LocalDateTime.now().toString());
-        
-        if (leaseContainer != null) {
-            try {
-                String path = "database/creds/payments-app";
-                log.info("Solicitando rotação para: {}", path);
-                
-                leaseContainer.requestRotatingSecret(path);
-                response.put("rotationRequested", true);
-                
-                log.info("Atualizando contexto");
-                Set<String> refreshedKeys = contextRefresher.refresh();
-                
-                response.put("refreshedKeys", refreshedKeys);
-                response.put("refreshedKeysCount", refreshedKeys.size());
-                
-                // Obter informações atualizadas
-                Map<String, Object> updatedInfo = getDatabaseInfo().getBody();
-                response.put("updatedInfo", updatedInfo);
-                
-                return ResponseEntity.ok(response);
-            } catch (Exception e) {
-                log.error("Erro ao solicitar rotação: {}", e.getMessage(), e);
-                response.put("error", e.getMessage());
-                return ResponseEntity.internalServerError().body(response);
-            }
-        } else {
+        response.put("datasource", pool.getName());
+
+        VaultRefresher vaultRefresher = vaultRefresherProvider.getIfAvailable();
+        if (vaultRefresher == null) {
             response.put("error", "SecretLeaseContainer não está disponível. Vault não está configurado.");
             return ResponseEntity.internalServerError().body(response);
         }
+
+        try {
+            String path = pool.getDefinition().getLeasePath();
+            log.info("Solicitando rotação para: {}", path);
+            vaultRefresher.requestRotation(path, "api");
+
+            response.put("rotationRequested", true);
+            response.put("leasePath", path);
+            response.put("currentGeneration", pool.getGeneration());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        } catch (Exception e) {
+            log.error("Erro ao solicitar rotação: {}", e.getMessage(), e);
+            response.put("error", e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+package com.example.vaultrotation.controller;
+
+import com.example.vaultrotation.config.ErrorResponses;
+import com.example.vaultrotation.service.PaymentChangeFeed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Feed de alterações de pagamentos (criações, exclusões e arquivamentos), em substituição à comparação da
+ * listagem completa. O cliente guarda o cursor devolvido e lê apenas o que mudou depois dele.
+ */
+@RestController
+@RequestMapping("/api/payments/changes")
+@RequiredArgsConstructor
+public class PaymentChangeController {
+
+    static final String CURSOR_HEADER = "X-Payments-Feed-Cursor";
+    private static final int MAX_LIMIT = 1000;
+    private static final String EXPIRED_MESSAGE =
+            "Cursor anterior à retenção das alterações; recarregue a lista completa em GET /api/payments";
+    private static final String NOT_STARTED_MESSAGE = "Feed de alterações ainda não leu a posição dos shards";
+
+    private final PaymentChangeFeed feed;
+
+    /**
+     * Alterações após o cursor after. Sem alterações novas, a resposta aguarda até wait segundos
+     * (long-poll). Sem after, devolve apenas o cursor atual, a partir do qual o cliente passa a ler.
+     * Cursores mais antigos que a retenção das alterações recebem 410: o cliente refaz a carga completa.
+     */
+    @GetMapping
+    public CompletableFuture<ResponseEntity<Object>> getChanges(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "0") long wait) {
+        if (after == null) {
+            Optional<PaymentChangeFeed.Cursor> current = feed.head();
+            if (current.isEmpty()) {
+                return CompletableFuture.completedFuture(error(HttpStatus.SERVICE_UNAVAILABLE, NOT_STARTED_MESSAGE));
+            }
+            String head = current.get().encode();
+            return CompletableFuture.completedFuture(ResponseEntity.ok()
+                    .header(CURSOR_HEADER, head)
+                    .body(new PaymentChangeFeed.Page(List.of(), head, false)));
+        }
+
+        PaymentChangeFeed.Cursor cursor;
+        try {
+            cursor = PaymentChangeFeed.Cursor.parse(after);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(error(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+        if (feed.isExpired(cursor)) {
+            return CompletableFuture.completedFuture(error(HttpStatus.GONE, EXPIRED_MESSAGE));
+        }
+
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        return feed.poll(cursor, boundedLimit, Duration.ofSeconds(Math.max(0, wait)))
+                .thenApply(page -> ResponseEntity.ok().header(CURSOR_HEADER, page.cursor()).body(page));
+    }
+
+    /**
+     * Stream SSE das alterações. O id de cada evento é o cursor da alteração: reconexões com
+     * Last-Event-ID retomam logo após o último evento recebido.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @RequestParam(required = false) String after,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        String from = lastEventId != null ? lastEventId : after;
+        if (from == null) {
+            return feed.subscribe(feed.head()
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, NOT_STARTED_MESSAGE)));
+        }
+        PaymentChangeFeed.Cursor cursor;
+        try {
+            cursor = PaymentChangeFeed.Cursor.parse(from);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (feed.isExpired(cursor)) {
+            throw new ResponseStatusException(HttpStatus.GONE, EXPIRED_MESSAGE);
+        }
+        return feed.subscribe(cursor);
+    }
+
+    private static ResponseEntity<Object> error(HttpStatus status, String message) {
+        return ErrorResponses.entity(status, message);
+    }
+}
@@ -1,12 +1,25 @@
 package com.example.vaultrotation.controller;
 
+import com.example.vaultrotation.config.ErrorResponses;
 import com.example.vaultrotation.model.Payment;
-import com.example.vaultrotation.repository.PaymentRepository;
+import com.example.vaultrotation.model.PaymentSearchCriteria;
+import com.example.vaultrotation.model.PaymentView;
+import com.example.vaultrotation.service.PaymentChangeFeed;
+import com.example.vaultrotation.service.PaymentSearchService;
+import com.example.vaultrotation.service.PaymentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 
 @RestController
@@ -15,33 +28,160 @@ import java.util.List;
 @Slf4j
 public class PaymentController {
 
-    private final PaymentRepository paymentRepository;
+    // Versão da representação JSON de um pagamento (campos de PaymentView), parte do ETag: incrementar
+    // ao mudar o formato, para que os clientes não revalidem cópias no formato antigo
+    private static final int PAYMENT_REPRESENTATION_VERSION = 1;
 
+    // Revalidação a cada uso (exclusões); private porque a resposta contém dados do cartão
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private final PaymentService paymentService;
+    private final PaymentChangeFeed changeFeed;
+    private final PaymentSearchService searchService;
+
+    /**
+     * Lista completa. O header X-Payments-Feed-Cursor traz a posição do feed de alterações lida
+     * antes da listagem: a partir dela, GET /api/payments/changes mantém a cópia do cliente atualizada.
+     * Antes da primeira leitura do feed, a listagem vem sem o header.
+     * O ETag (fraco) é a sequência de payment_outbox já lida pelo feed em cada shard, que avança com
+     * criações, exclusões e arquivamentos: com If-None-Match igual, responde 304 sem consultar os shards.
+     * Alterações só mudam o ETag quando lidas pelo feed.
+     */
     @GetMapping
-    public ResponseEntity<List<Payment>> getAllPayments() {
+    public ResponseEntity<List<PaymentView>> getAllPayments(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = changeFeed.listingPosition()
+                .map(position -> "W/\"" + PAYMENT_REPRESENTATION_VERSION + "-" + position.version() + "\"")
+                .orElse(null);
+        if (etag != null && etagMatches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE).build();
+        }
+
         log.info("Obtendo todos os pagamentos");
-        return ResponseEntity.ok(paymentRepository.findAll());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(REVALIDATE);
+        changeFeed.head().ifPresent(cursor -> response.header(PaymentChangeController.CURSOR_HEADER, cursor.encode()));
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        return response.body(paymentService.findAll());
+    }
+
+    /**
+     * Quantidade e valor total dos pagamentos, consolidados e por shard
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<PaymentService.PaymentReport> getSummary() {
+        log.info("Obtendo resumo dos pagamentos");
+        return ResponseEntity.ok(paymentService.summarize());
     }
 
+    /**
+     * Busca paginada por prefixo do nome, faixa de valor (inclusiva) e janela de criação
+     * (createdFrom inclusivo, createdTo exclusivo). Exige ao menos um desses filtros; o resultado
+     * segue a ordem do índice usado e o cursor devolvido continua a busca com os mesmos filtros.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchPayments(
+            @RequestParam(required = false) String namePrefix,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        PaymentSearchCriteria criteria = new PaymentSearchCriteria(namePrefix, minAmount, maxAmount, createdFrom, createdTo);
+        log.info("Buscando pagamentos: {}", criteria);
+        try {
+            return ResponseEntity.ok(searchService.search(criteria, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (PaymentSearchService.SearchTimeoutException e) {
+            return error(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+        }
+    }
+
+    /**
+     * Cria um pagamento. Com o header Idempotency-Key, repetições da mesma requisição
+     * (por exemplo após um 503 durante a rotação) devolvem o pagamento original.
+     */
     @PostMapping
-    public ResponseEntity<Payment> createPayment(@RequestBody Payment payment) {
+    public ResponseEntity<?> createPayment(
+            @RequestBody Payment payment,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         log.info("Criando novo pagamento: {}", payment);
-        return ResponseEntity.ok(paymentRepository.save(payment));
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return ResponseEntity.ok(paymentService.create(payment));
+        }
+        if (idempotencyKey.length() > 255) {
+            return error(HttpStatus.BAD_REQUEST, "Idempotency-Key deve ter no máximo 255 caracteres");
+        }
+
+        PaymentService.CreationResult result = paymentService.create(payment, idempotencyKey);
+        return switch (result.outcome()) {
+            case CREATED -> ResponseEntity.ok(result.payment());
+            case REPLAYED -> result.payment() != null
+                    ? ResponseEntity.ok().header("Idempotent-Replayed", "true").body(result.payment())
+                    : ResponseEntity.notFound().build();
+            case IN_PROGRESS -> error(HttpStatus.CONFLICT,
+                    "Uma requisição com esta Idempotency-Key ainda está em andamento");
+            case KEY_REUSED -> error(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key já utilizada com outro pagamento");
+        };
     }
 
+    private static ResponseEntity<Object> error(HttpStatus status, String message) {
+        return ErrorResponses.entity(status, message);
+    }
+
+    /**
+     * Pagamento pelo id, com ETag forte derivado do id e da versão da representação. Pagamentos não
+     * mudam após a criação: com If-None-Match igual, basta confirmar que ainda existe (busca pela
+     * chave primária) para responder 304, sem carregar nem serializar o pagamento.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<Payment> getPaymentById(@PathVariable String id) {
+    public ResponseEntity<PaymentView> getPaymentById(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = paymentETag(id);
+        if (etagMatches(ifNoneMatch, etag) && paymentService.exists(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE).build();
+        }
+
         log.info("Buscando pagamento por ID: {}", id);
-        return paymentRepository.findById(id)
-                .map(ResponseEntity::ok)
+        return paymentService.findById(id)
+                .map(payment -> ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(payment))
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
+    private static String paymentETag(String id) {
+        String tag = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((id + ":" + PAYMENT_REPRESENTATION_VERSION).getBytes(StandardCharsets.UTF_8));
+        return "\"" + tag + "\"";
+    }
+
+    // Comparação fraca, como o If-None-Match exige: W/ é ignorado; * casa com qualquer representação existente
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deletePayment(@PathVariable String id) {
         log.info("Deletando pagamento com ID: {}", id);
-        if (paymentRepository.existsById(id)) {
-            paymentRepository.deleteById(id);
+        if (paymentService.delete(id)) {
             return ResponseEntity.noContent().build();
         }
         return ResponseEntity.notFound().build();
@@ -0,0 +1,75 @@
+package com.example.vaultrotation.controller;
+
+import com.example.vaultrotation.config.RotationEvent;
+import com.example.vaultrotation.config.RotationEventJournal;
+import com.example.vaultrotation.config.RotationEventStream;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Consulta e transmissão dos eventos do ciclo de vida da rotação, para depuração em tempo real
+ * sem aumentar o nível de log
+ */
+@RestController
+@RequestMapping("/api/rotation/events")
+@RequiredArgsConstructor
+public class RotationEventController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final RotationEventJournal journal;
+    private final RotationEventStream stream;
+
+    /**
+     * Snapshot dos eventos. Com since, retorna os eventos a partir dessa sequência;
+     * sem since, os últimos eventos. Filtros opcionais por datasource e tipo.
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getEvents(
+            @RequestParam(required = false) Long since,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String datasource,
+            @RequestParam(required = false) List<RotationEvent.Type> type) {
+        Predicate<RotationEvent> filter = filter(datasource, type);
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        List<RotationEvent> events = since != null
+                ? journal.since(since, boundedLimit, filter)
+                : journal.latest(boundedLimit, filter);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("events", events);
+        response.put("nextSequence", journal.nextSequence());
+        response.put("capacity", journal.capacity());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Stream SSE dos eventos. Reconexões com Last-Event-ID retomam a partir do evento seguinte.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(
+            @RequestParam(required = false) Long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @RequestParam(required = false) String datasource,
+            @RequestParam(required = false) List<RotationEvent.Type> type) {
+        Long from = lastEventId != null ? Long.valueOf(lastEventId + 1) : since;
+        return stream.subscribe(from, filter(datasource, type));
+    }
+
+    private static Predicate<RotationEvent> filter(String datasource, List<RotationEvent.Type> types) {
+        return event -> (datasource == null || datasource.equals(event.datasource()))
+                && (types == null || types.isEmpty() || types.contains(event.type()));
+    }
+}
@@ -2,10 +2,9 @@ package com.example.vaultrotation.model;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import jakarta.persistence.Column;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,14 +13,19 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payments")
+// Índice (created_at, id): ordem da busca por janela de criação. Os índices de nome e valor conduzem
+// a busca filtrada (ver PaymentSearchRepository).
+@Table(name = "payments", indexes = {
+        @Index(name = "idx_payments_created", columnList = "created_at, id"),
+        @Index(name = "idx_payments_name", columnList = "name, created_at, id"),
+        @Index(name = "idx_payments_amount", columnList = "amount, created_at, id")})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Payment {
     
+    // Atribuído pelo PaymentService antes da gravação: o id define o shard do pagamento
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
     private String id;
     
     @Column(nullable = false)
@@ -33,6 +37,8 @@ public class Payment {
     @Column(nullable = false)
     private BigDecimal amount;
     
+    // Coluna de particionamento (ver PaymentPartitionManager): no banco, a chave primária é (id, created_at)
+    // e a unicidade do id é garantida por payment_ids (ver PaymentRegistration)
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 } 
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.example.vaultrotation.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Alteração de um pagamento no feed, lida de payment_outbox (ver PaymentOutboxEntry). O timestamp é o
+ * instante da alteração; apenas as criações trazem o pagamento.
+ *
+ * @param cursor posição desta alteração, para retomar o feed logo após ela
+ */
+public record PaymentChange(String cursor, Type type, String id, LocalDateTime timestamp, PaymentView payment) {
+
+    public enum Type {
+        CREATED,
+        DELETED,
+        // Removido com a partição do mês pelo arquivamento (ver PaymentArchiver)
+        ARCHIVED
+    }
+}
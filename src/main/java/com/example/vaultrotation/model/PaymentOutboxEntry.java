@@ -0,0 +1,49 @@
+package com.example.vaultrotation.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Alteração de um pagamento, gravada no shard do pagamento na mesma transação da criação ou da exclusão
+ * (ou do arquivamento, ver PaymentPartitionManager). A sequência AUTO_INCREMENT é a posição da alteração
+ * no feed do shard (ver PaymentChangeFeed); registros mais antigos que
+ * app.payments.change-feed.tombstone-retention são removidos.
+ */
+@Entity
+@Table(name = "payment_outbox", indexes = @Index(name = "idx_payment_outbox_changed", columnList = "changed_at"))
+@Data
+@NoArgsConstructor
+public class PaymentOutboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "seq")
+    private Long seq;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 16)
+    private PaymentChange.Type type;
+
+    @Column(name = "payment_id", nullable = false)
+    private String paymentId;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+
+    public PaymentOutboxEntry(PaymentChange.Type type, String paymentId, LocalDateTime changedAt) {
+        this.type = type;
+        this.paymentId = paymentId;
+        this.changedAt = changedAt;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.vaultrotation.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Id de um pagamento, gravado no shard do pagamento na mesma transação do INSERT. Com a tabela payments
+ * particionada, a chave primária passa a ser (id, created_at) e não garante mais a unicidade do id:
+ * a chave primária desta tabela, não particionada, garante. O created_at permite ler o pagamento pelo id
+ * consultando apenas a partição dele.
+ */
+@Entity
+@Table(name = "payment_ids", indexes = @Index(name = "idx_payment_ids_created", columnList = "created_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentRegistration {
+
+    @Id
+    @Column(name = "payment_id")
+    private String paymentId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
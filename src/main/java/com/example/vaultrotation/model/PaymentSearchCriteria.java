@@ -0,0 +1,62 @@
+package com.example.vaultrotation.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Filtros da busca de pagamentos, todos opcionais e combináveis: prefixo do nome, faixa de valor
+ * (inclusiva) e janela de criação (createdFrom inclusivo, createdTo exclusivo)
+ */
+public record PaymentSearchCriteria(String namePrefix, BigDecimal minAmount, BigDecimal maxAmount,
+                                    LocalDateTime createdFrom, LocalDateTime createdTo) {
+
+    /**
+     * Índice que conduz a busca: define a faixa lida e a ordem dos resultados
+     */
+    public enum Index {
+        NAME("idx_payments_name", "name"),
+        CREATED_AT("idx_payments_created", null),
+        AMOUNT("idx_payments_amount", "amount");
+
+        private final String indexName;
+        private final String leadingColumn;
+
+        Index(String indexName, String leadingColumn) {
+            this.indexName = indexName;
+            this.leadingColumn = leadingColumn;
+        }
+
+        public String indexName() {
+            return indexName;
+        }
+
+        // Coluna antes de (created_at, id) no índice; nula no índice de created_at
+        public String leadingColumn() {
+            return leadingColumn;
+        }
+    }
+
+    /**
+     * Posição de um pagamento no índice, para continuar a leitura após ele.
+     * name e amount só são preenchidos quando fazem parte do índice.
+     */
+    public record Position(String name, BigDecimal amount, LocalDateTime createdAt, String id) {
+
+        public static Position of(PaymentView payment, Index index) {
+            return new Position(index == Index.NAME ? payment.name() : null,
+                    index == Index.AMOUNT ? payment.amount() : null, payment.createdAt(), payment.id());
+        }
+    }
+
+    public boolean hasNamePrefix() {
+        return namePrefix != null && !namePrefix.isEmpty();
+    }
+
+    public boolean hasCreatedWindow() {
+        return createdFrom != null || createdTo != null;
+    }
+
+    public boolean hasAmountRange() {
+        return minAmount != null || maxAmount != null;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.vaultrotation.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Totais de pagamentos de um shard, ou de todos os shards após o merge
+ */
+public record PaymentSummary(long count, BigDecimal totalAmount, LocalDateTime firstCreatedAt,
+                             LocalDateTime lastCreatedAt) {
+
+    // Usado pela projeção JPQL: sum retorna null em um shard sem pagamentos
+    public PaymentSummary {
+        if (totalAmount == null) {
+            totalAmount = BigDecimal.ZERO;
+        }
+    }
+
+    public static PaymentSummary empty() {
+        return new PaymentSummary(0L, BigDecimal.ZERO, null, null);
+    }
+
+    public PaymentSummary merge(PaymentSummary other) {
+        return new PaymentSummary(count + other.count, totalAmount.add(other.totalAmount),
+                earliest(firstCreatedAt, other.firstCreatedAt), latest(lastCreatedAt, other.lastCreatedAt));
+    }
+
+    private static LocalDateTime earliest(LocalDateTime a, LocalDateTime b) {
+        return a == null ? b : b == null ? a : (a.isBefore(b) ? a : b);
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a == null ? b : b == null ? a : (a.isAfter(b) ? a : b);
+    }
+}
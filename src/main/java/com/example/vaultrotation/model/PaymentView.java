@@ -0,0 +1,17 @@
+package com.example.vaultrotation.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Projeção somente leitura de um pagamento, usada pelos endpoints de consulta.
+ * Construída diretamente pela query (select new), sem entidade gerenciada no contexto
+ * de persistência e sem snapshot para dirty checking. Serializa no mesmo formato da entidade.
+ */
+public record PaymentView(
+        String id,
+        String name,
+        String ccInfo,
+        BigDecimal amount,
+        LocalDateTime createdAt) {
+}
@@ -0,0 +1,38 @@
+package com.example.vaultrotation.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vaga de rotação de credenciais compartilhada pelas réplicas (ver RotationCoordinator).
+ * Uma réplica só inicia uma rotação agendada ocupando uma vaga livre ou expirada; as datas
+ * vêm sempre do relógio do MySQL, o mesmo para todas as réplicas.
+ */
+@Entity
+@Table(name = "rotation_slots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RotationSlot {
+
+    @Id
+    private Integer slot;
+
+    // Réplica e rotação que ocupam a vaga; nulo com a vaga livre
+    private String holder;
+
+    private String datasource;
+
+    @Column(name = "acquired_at")
+    private LocalDateTime acquiredAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,42 @@
+package com.example.vaultrotation.repository;
+
+import com.example.vaultrotation.model.PaymentOutboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PaymentOutboxRepository extends JpaRepository<PaymentOutboxEntry, Long> {
+
+    /**
+     * Alterações com sequência em (after, upTo], na ordem da sequência
+     */
+    @Transactional(readOnly = true)
+    @Query("select e from PaymentOutboxEntry e where e.seq > :after and e.seq <= :upTo order by e.seq")
+    List<PaymentOutboxEntry> findAfter(long after, long upTo, Pageable page);
+
+    /**
+     * Sequências das alterações gravadas antes do instante, da mais recente para a mais antiga
+     */
+    @Transactional(readOnly = true)
+    @Query("select e.seq from PaymentOutboxEntry e where e.changedAt < :before order by e.changedAt desc, e.seq desc")
+    List<Long> findSequencesBefore(LocalDateTime before, Pageable page);
+
+    /**
+     * Intervalo entre valores AUTO_INCREMENT consecutivos (maior que 1 em clusters multi-primário)
+     */
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT @@auto_increment_increment", nativeQuery = true)
+    long autoIncrementIncrement();
+
+    @Transactional
+    @Modifying
+    @Query("delete from PaymentOutboxEntry e where e.changedAt < :cutoff")
+    int deleteOlderThan(LocalDateTime cutoff);
+}
@@ -0,0 +1,9 @@
+package com.example.vaultrotation.repository;
+
+import com.example.vaultrotation.model.PaymentRegistration;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PaymentRegistrationRepository extends JpaRepository<PaymentRegistration, String> {
+}
@@ -1,9 +1,51 @@
 package com.example.vaultrotation.repository;
 
 import com.example.vaultrotation.model.Payment;
+import com.example.vaultrotation.model.PaymentSummary;
+import com.example.vaultrotation.model.PaymentView;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, String> {
-} 
\ No newline at end of file
+
+    /**
+     * Consultas de leitura em transação somente leitura: o Hibernate não faz flush nem
+     * snapshot, e a conexão é marcada como read-only para o driver
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.vaultrotation.model.PaymentView(p.id, p.name, p.ccInfo, p.amount, p.createdAt) from Payment p")
+    List<PaymentView> findAllViews();
+
+    @Transactional(readOnly = true)
+    @Query("select new com.example.vaultrotation.model.PaymentView(p.id, p.name, p.ccInfo, p.amount, p.createdAt) from Payment p where p.id = :id")
+    Optional<PaymentView> findViewById(String id);
+
+    /**
+     * Leitura pelo id com o created_at conhecido (ver PaymentRegistration): com a tabela particionada,
+     * o MySQL consulta apenas a partição do pagamento
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.vaultrotation.model.PaymentView(p.id, p.name, p.ccInfo, p.amount, p.createdAt) from Payment p"
+            + " where p.id = :id and p.createdAt = :createdAt")
+    Optional<PaymentView> findViewByIdAndCreatedAt(String id, LocalDateTime createdAt);
+
+    /**
+     * Pagamentos das criações lidas pelo feed de alterações, pela chave primária
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.vaultrotation.model.PaymentView(p.id, p.name, p.ccInfo, p.amount, p.createdAt) from Payment p"
+            + " where p.id in :ids")
+    List<PaymentView> findViewsByIdIn(Collection<String> ids);
+
+    @Transactional(readOnly = true)
+    @Query("select new com.example.vaultrotation.model.PaymentSummary(count(p), sum(p.amount), min(p.createdAt), max(p.createdAt)) from Payment p")
+    PaymentSummary summarize();
+}
@@ -0,0 +1,91 @@
+package com.example.vaultrotation.repository;
+
+import com.example.vaultrotation.model.PaymentSearchCriteria;
+import com.example.vaultrotation.model.PaymentSearchCriteria.Index;
+import com.example.vaultrotation.model.PaymentSearchCriteria.Position;
+import com.example.vaultrotation.model.PaymentView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Busca de pagamentos em SQL nativo: o JPQL não expressa FORCE INDEX nem o hint MAX_EXECUTION_TIME.
+ * O índice é sempre forçado e a ordenação segue as colunas dele, de modo que o MySQL lê o índice
+ * em ordem a partir da posição e para no LIMIT, sem varredura da tabela nem ordenação em memória.
+ * Executa no shard ligado à thread (ver ShardRouter).
+ */
+@Repository
+@RequiredArgsConstructor
+public class PaymentSearchRepository {
+
+    private static final RowMapper<PaymentView> VIEW_MAPPER = (rs, rowNum) -> new PaymentView(
+            rs.getString("id"), rs.getString("name"), rs.getString("cc_info"), rs.getBigDecimal("amount"),
+            rs.getObject("created_at", LocalDateTime.class));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Até limit pagamentos que atendem aos filtros, na ordem do índice e após a posição (se houver)
+     */
+    public List<PaymentView> search(PaymentSearchCriteria criteria, Index index, Position after, int limit,
+                                    Duration maxExecutionTime) {
+        List<String> predicates = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+
+        if (criteria.hasNamePrefix()) {
+            predicates.add("name LIKE ? ESCAPE '!'");
+            args.add(escapeLike(criteria.namePrefix()) + "%");
+        }
+        if (criteria.minAmount() != null) {
+            predicates.add("amount >= ?");
+            args.add(criteria.minAmount());
+        }
+        if (criteria.maxAmount() != null) {
+            predicates.add("amount <= ?");
+            args.add(criteria.maxAmount());
+        }
+        if (criteria.createdFrom() != null) {
+            predicates.add("created_at >= ?");
+            args.add(criteria.createdFrom());
+        }
+        if (criteria.createdTo() != null) {
+            predicates.add("created_at < ?");
+            args.add(criteria.createdTo());
+        }
+        if (after != null) {
+            predicates.add(keyset(index, after, args));
+        }
+
+        String leading = index.leadingColumn() != null ? index.leadingColumn() + ", " : "";
+        String sql = "SELECT /*+ MAX_EXECUTION_TIME(" + Math.max(1, maxExecutionTime.toMillis()) + ") */"
+                + " id, name, cc_info, amount, created_at FROM payments FORCE INDEX (" + index.indexName() + ")"
+                + " WHERE " + String.join(" AND ", predicates)
+                + " ORDER BY " + leading + "created_at, id LIMIT ?";
+        args.add(limit);
+        return jdbcTemplate.query(sql, VIEW_MAPPER, args.toArray());
+    }
+
+    // (coluna inicial, created_at, id) > posição, expandido em OR: o MySQL não usa faixa de índice
+    // em comparações de row constructor. A primeira condição redundante delimita o início da faixa.
+    private static String keyset(Index index, Position after, List<Object> args) {
+        String tail = "(created_at > ? OR (created_at = ? AND id > ?))";
+        if (index.leadingColumn() == null) {
+            args.addAll(List.of(after.createdAt(), after.createdAt(), after.createdAt(), after.id()));
+            return "created_at >= ? AND " + tail;
+        }
+        String column = index.leadingColumn();
+        Object leadingValue = index == Index.NAME ? after.name() : after.amount();
+        args.addAll(List.of(leadingValue, leadingValue, leadingValue, after.createdAt(), after.createdAt(), after.id()));
+        return column + " >= ? AND (" + column + " > ? OR (" + column + " = ? AND " + tail + "))";
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
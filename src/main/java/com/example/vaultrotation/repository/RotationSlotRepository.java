@@ -0,0 +1,44 @@
+package com.example.vaultrotation.repository;
+
+import com.example.vaultrotation.model.RotationSlot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface RotationSlotRepository extends JpaRepository<RotationSlot, Integer> {
+
+    /**
+     * Cria a vaga se ainda não existir, livre
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO rotation_slots (slot, expires_at) VALUES (:slot, '1970-01-01')", nativeQuery = true)
+    int createIfAbsent(int slot);
+
+    /**
+     * Ocupa a primeira vaga livre ou expirada entre 0 e slots - 1. O UPDATE lê a versão mais recente
+     * de cada linha e espera pelo lock das linhas em disputa, então duas réplicas nunca ocupam a mesma vaga.
+     *
+     * @return 1 se uma vaga foi ocupada, 0 se todas estão em uso
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE rotation_slots SET holder = :holder, datasource = :datasource, acquired_at = NOW(6),"
+            + " expires_at = NOW(6) + INTERVAL :ttlSeconds SECOND"
+            + " WHERE slot < :slots AND (holder IS NULL OR expires_at < NOW(6)) ORDER BY slot LIMIT 1", nativeQuery = true)
+    int claim(String holder, String datasource, long ttlSeconds, int slots);
+
+    @Transactional(readOnly = true)
+    @Query("select s.slot from RotationSlot s where s.holder = :holder")
+    Optional<Integer> findSlotHeldBy(String holder);
+
+    @Transactional
+    @Modifying
+    @Query("update RotationSlot s set s.holder = null, s.datasource = null where s.holder = :holder")
+    int release(String holder);
+}
@@ -0,0 +1,139 @@
+package com.example.vaultrotation.service;
+
+import com.example.vaultrotation.model.PaymentView;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Índice em memória, limitado e com TTL, das chaves de idempotência recentes.
+ * Repetições de uma criação já concluída são respondidas daqui, sem acessar o MySQL;
+ * a tabela idempotency_keys continua sendo a fonte de verdade entre réplicas e reinícios.
+ * Apenas chaves concluídas são descartadas pelo limite de tamanho: uma reserva em andamento só sai
+ * do índice ao ser concluída, liberada ou expirar, senão uma repetição concorrente criaria outro pagamento.
+ */
+@Component
+@Slf4j
+public class IdempotencyIndex {
+
+    /**
+     * Estado de uma chave: em andamento (response nulo) ou concluída com a resposta original
+     */
+    public record Entry(String requestHash, PaymentView response, long expiresAtNanos) {
+
+        public boolean isInFlight() {
+            return response == null;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+
+    private final long ttlNanos;
+    private final long inFlightTtlNanos;
+    private final int maxEntries;
+
+    // Reservas em andamento: limitadas pelas requisições simultâneas e pelo in-flight-ttl, nunca descartadas
+    private final Map<String, Entry> reserved = new HashMap<>();
+
+    // Chaves concluídas, em ordem de inserção: a mais antiga é a primeira a expirar e a ser descartada
+    private final LinkedHashMap<String, Entry> completed;
+
+    public IdempotencyIndex(
+            MeterRegistry meterRegistry,
+            @Value("${app.idempotency.ttl:24h}") Duration ttl,
+            @Value("${app.idempotency.in-flight-ttl:30s}") Duration inFlightTtl,
+            @Value("${app.idempotency.max-entries:10000}") int maxEntries) {
+        this.ttlNanos = ttl.toNanos();
+        this.inFlightTtlNanos = inFlightTtl.toNanos();
+        this.maxEntries = maxEntries;
+        this.completed = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > IdempotencyIndex.this.maxEntries;
+            }
+        };
+
+        Gauge.builder("payments.idempotency.index.size", this, IdempotencyIndex::size)
+                .description("Chaves de idempotência mantidas em memória")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Retorna a entrada da chave, ou null se ausente ou expirada
+     */
+    public synchronized Entry get(String key) {
+        Map<String, Entry> entries = reserved.containsKey(key) ? reserved : completed;
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(System.nanoTime())) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Reserva a chave para uma criação em andamento
+     *
+     * @return a entrada existente se a chave já estiver reservada ou concluída, ou null se a reserva foi feita
+     */
+    public synchronized Entry reserve(String key, String requestHash) {
+        Entry existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        reserved.put(key, new Entry(requestHash, null, System.nanoTime() + inFlightTtlNanos));
+        return null;
+    }
+
+    public synchronized void complete(String key, String requestHash, PaymentView response) {
+        reserved.remove(key);
+        // Reinsere para que a ordem reflita a nova expiração
+        completed.remove(key);
+        completed.put(key, new Entry(requestHash, response, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Libera uma reserva cuja criação falhou, permitindo que o cliente tente novamente
+     */
+    public synchronized void release(String key) {
+        reserved.remove(key);
+    }
+
+    /**
+     * Remove as entradas expiradas
+     */
+    public synchronized int purgeExpired() {
+        long now = System.nanoTime();
+        return purgeExpired(reserved, now) + purgeExpired(completed, now);
+    }
+
+    private static int purgeExpired(Map<String, Entry> entries, long now) {
+        int removed = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public synchronized int size() {
+        return reserved.size() + completed.size();
+    }
+
+    public Duration getTtl() {
+        return Duration.ofNanos(ttlNanos);
+    }
+}
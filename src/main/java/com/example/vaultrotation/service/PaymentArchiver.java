@@ -0,0 +1,492 @@
+package com.example.vaultrotation.service;
+
+import com.example.vaultrotation.config.ConnectionHealthMonitor;
+import com.example.vaultrotation.config.MaintenanceConnectionFactory;
+import com.example.vaultrotation.config.MaintenanceConnectionFactory.MaintenanceConnection;
+import com.example.vaultrotation.config.PartitioningProperties;
+import com.example.vaultrotation.config.RotatingDataSourceRegistry;
+import com.example.vaultrotation.config.RotatingPool;
+import com.example.vaultrotation.config.ShardRouter;
+import com.example.vaultrotation.service.PaymentPartitionManager.Partition;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Retenção dos pagamentos por partição. Para cada datasource de pagamentos (um por shard), mantém as
+ * partições mensais e arquiva as que passaram de app.partitioning.retention-months: as linhas são
+ * gravadas em um arquivo JSON Lines compactado, conferidas e a partição inteira é removida com
+ * DROP PARTITION, sem DELETE linha a linha. O arquivo passa a ser a única cópia das linhas: a partição
+ * só é removida se app.partitioning.archive-directory estiver em um volume persistente e depois que o
+ * arquivo, relido do disco, conferir com o manifesto.
+ *
+ * As linhas são lidas em lotes pela chave primária e cada lote usa uma conexão nova do pool atual.
+ * Uma rotação de credenciais no meio do arquivamento afeta no máximo o lote em andamento, que é
+ * repetido a partir do último registro gravado com a nova geração do pool. O lock entre réplicas usa
+ * uma conexão própria, fora do pool: o arquivamento não ocupa uma vaga do pool entre os lotes nem segura
+ * conexões da geração antiga, que é drenada e revogada normalmente. O DDL (conversão, criação e remoção de
+ * partições) usa o maintenance-role do datasource, se declarado (ver MaintenanceConnectionFactory).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PaymentArchiver {
+
+    public static final String ARCHIVE_FORMAT = "payments-jsonl-gzip/1";
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    // Sistemas de arquivos que não sobrevivem ao container (camada gravável da imagem, memória)
+    private static final Set<String> EPHEMERAL_FILE_STORES = Set.of("overlay", "aufs", "tmpfs", "ramfs");
+
+    private final PartitioningProperties properties;
+    private final PaymentPartitionManager partitionManager;
+    private final RotatingDataSourceRegistry registry;
+    private final MaintenanceConnectionFactory maintenanceConnections;
+    private final ShardRouter shardRouter;
+    private final ConnectionHealthMonitor connectionHealthMonitor;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Descrição de um arquivo arquivado, gravada ao lado dele como &lt;arquivo&gt;.manifest.json.
+     * O manifesto só é gravado depois que o arquivo está completo e conferido com a partição.
+     */
+    public record ArchiveManifest(
+            String format,
+            String datasource,
+            String partition,
+            String rangeStart,
+            String rangeEnd,
+            long rows,
+            String sha256,
+            String archivedAt) {
+    }
+
+    private record ArchivedRow(String id, String name, String ccInfo, BigDecimal amount, LocalDateTime createdAt) {
+    }
+
+    @FunctionalInterface
+    private interface SqlWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    /**
+     * Manutenção periódica de todos os shards. Agendada pelo MaintenanceScheduler (ver MaintenanceTasksConfig).
+     * A falha de um shard não impede a manutenção dos demais.
+     */
+    public void runMaintenance() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (String shard : shardRouter.getShards()) {
+            RotatingPool pool = registry.get(shard);
+            try {
+                maintain(pool);
+            } catch (SQLException | IOException | RuntimeException e) {
+                meterRegistry.counter("payments.archive.failures", "datasource", pool.getName()).increment();
+                log.error("[{}] Erro na manutenção das partições de pagamentos: {}", pool.getName(), e.getMessage());
+            }
+        }
+    }
+
+    private void maintain(RotatingPool pool) throws SQLException, IOException {
+        String datasource = pool.getName();
+        // O lock pertence à sessão desta conexão, fora do pool; se ela cair, o lock é liberado e outra instância
+        // pode repetir o trabalho, o que é seguro (arquivos e remoção idempotentes)
+        try (Connection lockConnection = pool.openUnpooledConnection()) {
+            if (!partitionManager.tryLock(lockConnection)) {
+                log.debug("[{}] Partições de pagamentos em manutenção por outra instância", datasource);
+                return;
+            }
+            try {
+                boolean partitioned = withConnection(pool, "verificação do particionamento", partitionManager::isPartitioned);
+                if (!partitioned && !properties.isConvertTable()) {
+                    log.warn("[{}] Tabela de pagamentos não particionada; a conversão copia a tabela e bloqueia escritas:"
+                            + " faça-a em uma janela de manutenção com app.partitioning.convert-table=true", datasource);
+                    return;
+                }
+                boolean converted = !partitioned && withMaintenanceConnection(pool, "particionamento",
+                        connection -> partitionManager.ensurePartitioned(connection, datasource));
+                if (!converted) {
+                    withMaintenanceConnection(pool, "criação de partições",
+                            connection -> partitionManager.ensureFuturePartitions(connection, datasource));
+                }
+
+                YearMonth oldestRetained = YearMonth.now().minusMonths(properties.getRetentionMonths());
+                List<Partition> partitions = withConnection(pool, "listagem de partições", partitionManager::listPartitions);
+                archiveOrphanRegistrations(pool, partitions, oldestRetained);
+                List<Partition> expired = partitions.stream()
+                        .filter(partition -> partition.month().isBefore(oldestRetained))
+                        .toList();
+                if (expired.isEmpty()) {
+                    return;
+                }
+                Path directory = archiveDirectory();
+                if (directory == null) {
+                    meterRegistry.counter("payments.archive.refused", "datasource", datasource).increment();
+                    return;
+                }
+                for (Partition partition : expired) {
+                    archive(pool, directory, partition);
+                }
+            } finally {
+                releaseLock(lockConnection, datasource);
+            }
+        }
+    }
+
+    private void releaseLock(Connection lockConnection, String datasource) {
+        try {
+            partitionManager.releaseLock(lockConnection);
+        } catch (SQLException e) {
+            log.debug("[{}] Lock de particionamento liberado com o fechamento da conexão: {}", datasource, e.getMessage());
+        }
+    }
+
+    /**
+     * Diretório de arquivamento, se for seguro remover partições depois de gravar nele; caso contrário registra
+     * o motivo e devolve null, e as partições vencidas são mantidas
+     */
+    private Path archiveDirectory() throws IOException {
+        String configured = properties.getArchiveDirectory();
+        if (configured == null || configured.isBlank()) {
+            log.warn("Partições de pagamentos vencidas mantidas: app.partitioning.archive-directory não configurado");
+            return null;
+        }
+        Path directory = Path.of(configured);
+        Files.createDirectories(directory);
+        if (properties.isArchiveDirectoryPersistent()) {
+            return directory;
+        }
+        FileStore store = Files.getFileStore(directory);
+        if (EPHEMERAL_FILE_STORES.contains(store.type())) {
+            log.warn("Partições de pagamentos vencidas mantidas: {} está em um sistema de arquivos {}, que não sobrevive"
+                    + " ao container; monte um volume persistente", directory, store.type());
+            return null;
+        }
+        if (store.equals(Files.getFileStore(Path.of("/")))) {
+            log.warn("Partições de pagamentos vencidas mantidas: {} está no sistema de arquivos raiz; monte um volume"
+                    + " persistente ou declare app.partitioning.archive-directory-persistent=true", directory);
+            return null;
+        }
+        return directory;
+    }
+
+    private void archive(RotatingPool pool, Path directory, Partition partition) throws SQLException, IOException {
+        String datasource = pool.getName();
+        String baseName = "payments-" + datasource + "-" + partition.name();
+        Path archive = directory.resolve(baseName + ".jsonl.gz");
+        Path manifestPath = directory.resolve(baseName + ".manifest.json");
+
+        if (Files.exists(manifestPath) && Files.exists(archive)) {
+            // Arquivada por uma execução anterior que não chegou a remover a partição
+            ArchiveManifest previous = objectMapper.readValue(manifestPath.toFile(), ArchiveManifest.class);
+            long rows = withConnection(pool, "contagem", connection -> partitionManager.countRows(connection, partition));
+            String mismatch = rows != previous.rows()
+                    ? "a partição tem " + rows + " linhas e o manifesto " + previous.rows()
+                    : verifyArchive(archive, previous);
+            if (mismatch == null) {
+                dropPartition(pool, partition);
+                return;
+            }
+            log.warn("[{}] Arquivo existente da partição {} não confere ({}); arquivando novamente",
+                    datasource, partition.name(), mismatch);
+            Files.delete(manifestPath);
+        }
+
+        long start = System.nanoTime();
+        Path part = directory.resolve(baseName + ".jsonl.gz.part");
+        MessageDigest digest = sha256();
+        long rows = 0;
+        try {
+            createOwnerOnly(part);
+            try (FileOutputStream file = new FileOutputStream(part.toFile());
+                 DigestOutputStream compressed = new DigestOutputStream(new BufferedOutputStream(file, 64 * 1024), digest);
+                 GZIPOutputStream gzip = new GZIPOutputStream(compressed, 64 * 1024)) {
+                JsonGenerator json = objectMapper.getFactory().createGenerator(gzip);
+                json.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+                ArchivedRow last = null;
+                while (true) {
+                    ArchivedRow after = last;
+                    List<ArchivedRow> batch = withConnection(pool, "leitura", connection -> readBatch(connection, partition, after));
+                    for (ArchivedRow row : batch) {
+                        write(json, row);
+                    }
+                    rows += batch.size();
+                    meterRegistry.counter("payments.archive.rows", "datasource", datasource).increment(batch.size());
+                    if (batch.size() < properties.getBatchSize()) {
+                        break;
+                    }
+                    last = batch.get(batch.size() - 1);
+                }
+
+                json.close();
+                gzip.finish();
+                compressed.flush();
+                file.getChannel().force(true);
+            }
+            Files.move(part, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+
+        // Linhas inseridas na partição depois da leitura não estariam no arquivo: não remove
+        long tableRows = withConnection(pool, "conferência", connection -> partitionManager.countRows(connection, partition));
+        if (tableRows != rows) {
+            throw new IllegalStateException("Partição " + partition.name() + " tem " + tableRows
+                    + " linhas, mas " + rows + " foram arquivadas; a partição foi mantida");
+        }
+
+        ArchiveManifest manifest = new ArchiveManifest(ARCHIVE_FORMAT, datasource, partition.name(),
+                TIMESTAMP_FORMAT.format(partition.lowerBound()), TIMESTAMP_FORMAT.format(partition.upperBound()),
+                rows, HexFormat.of().formatHex(digest.digest()), Instant.now().toString());
+        Path manifestPart = directory.resolve(baseName + ".manifest.json.part");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(manifestPart.toFile(), manifest);
+        Files.move(manifestPart, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(directory);
+
+        String mismatch = verifyArchive(archive, manifest);
+        if (mismatch != null) {
+            throw new IllegalStateException("Arquivo " + archive + " não confere com o manifesto (" + mismatch
+                    + "); a partição foi mantida");
+        }
+
+        dropPartition(pool, partition);
+        meterRegistry.counter("payments.archive.partitions", "datasource", datasource).increment();
+        log.info("[{}] Partição {} arquivada em {} ({} linhas, {} bytes) e removida em {} ms", datasource,
+                partition.name(), archive, rows, Files.size(archive), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void dropPartition(RotatingPool pool, Partition partition) throws SQLException {
+        boolean dropped = withMaintenanceConnection(pool, "remoção da partição",
+                connection -> partitionManager.dropPartition(connection, partition));
+        if (!dropped) {
+            log.info("[{}] Partição {} já havia sido removida", pool.getName(), partition.name());
+        }
+        archiveRegistrations(pool, partition);
+    }
+
+    // Os ids da partição removida deixam o registro de unicidade, em lotes, e cada lote é publicado no feed
+    // de alterações como ARCHIVED: os clientes removem os pagamentos arquivados das suas cópias
+    private void archiveRegistrations(RotatingPool pool, Partition partition) throws SQLException {
+        int archived;
+        do {
+            archived = withConnection(pool, "remoção dos ids registrados",
+                    connection -> partitionManager.archiveRegistrations(connection, partition, properties.getBatchSize()));
+            meterRegistry.counter("payments.archive.tombstones", "datasource", pool.getName()).increment(archived);
+        } while (archived == properties.getBatchSize());
+    }
+
+    // Ids de meses vencidos cuja partição já não existe: uma execução anterior removeu a partição e foi
+    // interrompida antes de publicar o arquivamento deles no feed
+    private void archiveOrphanRegistrations(RotatingPool pool, List<Partition> partitions, YearMonth oldestRetained)
+            throws SQLException {
+        Optional<YearMonth> oldest = withConnection(pool, "registro de ids", partitionManager::oldestRegistration);
+        while (oldest.isPresent() && oldest.get().isBefore(oldestRetained)) {
+            YearMonth month = oldest.get();
+            if (partitions.stream().anyMatch(partition -> partition.month().equals(month))) {
+                return;
+            }
+            log.info("[{}] Publicando o arquivamento dos ids registrados de {}, cuja partição já foi removida",
+                    pool.getName(), month);
+            archiveRegistrations(pool, new Partition(PaymentPartitionManager.partitionName(month), month, 0));
+            oldest = withConnection(pool, "registro de ids", partitionManager::oldestRegistration);
+        }
+    }
+
+    private List<ArchivedRow> readBatch(Connection connection, Partition partition, ArchivedRow after) throws SQLException {
+        // Percorre a partição pela chave primária (id, created_at), sem ordenação em memória no MySQL
+        String sql = "SELECT id, name, cc_info, amount, created_at FROM " + PaymentPartitionManager.TABLE
+                + " PARTITION (" + partition.name() + ")"
+                + (after != null ? " WHERE (id, created_at) > (?, ?)" : "")
+                + " ORDER BY id, created_at LIMIT ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (after != null) {
+                statement.setString(index++, after.id());
+                statement.setObject(index++, after.createdAt());
+            }
+            statement.setInt(index, properties.getBatchSize());
+            List<ArchivedRow> batch = new ArrayList<>(properties.getBatchSize());
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    batch.add(new ArchivedRow(rs.getString("id"), rs.getString("name"), rs.getString("cc_info"),
+                            rs.getBigDecimal("amount"), rs.getObject("created_at", LocalDateTime.class)));
+                }
+            }
+            return batch;
+        }
+    }
+
+    // Um objeto JSON por linha; amount como texto para não perder a escala do DECIMAL
+    private static void write(JsonGenerator json, ArchivedRow row) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("id", row.id());
+        json.writeStringField("name", row.name());
+        json.writeStringField("ccInfo", row.ccInfo());
+        json.writeStringField("amount", row.amount().toPlainString());
+        json.writeStringField("createdAt", TIMESTAMP_FORMAT.format(row.createdAt()));
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    /**
+     * Executa um passo com uma conexão nova do pool. Falhas de conexão (credenciais revogadas, pool
+     * trocado ou esgotado durante a rotação) repetem o passo; falhas de autenticação também
+     * solicitam a rotação do pool, como nas demais falhas observadas fora da verificação de saúde.
+     */
+    private <T> T withConnection(RotatingPool pool, String step, SqlWork<T> work) throws SQLException {
+        return withRetries(pool, step, true, () -> {
+            try (Connection connection = pool.getConnection()) {
+                return work.run(connection);
+            }
+        });
+    }
+
+    // DDL: com o role de manutenção do datasource, se houver (ver MaintenanceConnectionFactory)
+    private <T> T withMaintenanceConnection(RotatingPool pool, String step, SqlWork<T> work) throws SQLException {
+        return withRetries(pool, step, !pool.getDefinition().hasMaintenanceRole(), () -> {
+            try (MaintenanceConnection maintenance = maintenanceConnections.open(pool)) {
+                return work.run(maintenance.connection());
+            }
+        });
+    }
+
+    /**
+     * @param poolCredentials a conexão usa as credenciais do pool: falhas de autenticação pedem a rotação dele
+     */
+    private <T> T withRetries(RotatingPool pool, String step, boolean poolCredentials, SqlCall<T> call) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (SQLException e) {
+                if (!isConnectionFailure(e) || attempt >= properties.getMaxAttempts()) {
+                    throw e;
+                }
+                if (poolCredentials && ConnectionHealthMonitor.isAuthenticationError(e)) {
+                    connectionHealthMonitor.onAuthenticationFailure(pool, "payment-archive", e);
+                }
+                meterRegistry.counter("payments.archive.retries", "datasource", pool.getName()).increment();
+                log.warn("[{}] Falha de conexão na etapa '{}' do arquivamento (tentativa {}/{}): {}",
+                        pool.getName(), step, attempt, properties.getMaxAttempts(), e.getMessage());
+                try {
+                    Thread.sleep(properties.getRetryBackoff().toMillis() * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static boolean isConnectionFailure(SQLException e) {
+        return e instanceof SQLTransientException
+                || e instanceof SQLRecoverableException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("08"))
+                || ConnectionHealthMonitor.isAuthenticationError(e);
+    }
+
+    /**
+     * Relê o arquivo gravado, como um leitor do arquivamento faria: o SHA-256 do .gz e o número de linhas
+     * descompactadas devem conferir com o manifesto
+     *
+     * @return a divergência encontrada, ou null se o arquivo confere
+     */
+    private static String verifyArchive(Path archive, ArchiveManifest manifest) throws IOException {
+        MessageDigest digest = sha256();
+        long rows = 0;
+        try (DigestInputStream compressed = new DigestInputStream(
+                new BufferedInputStream(Files.newInputStream(archive), 64 * 1024), digest);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     new GZIPInputStream(compressed, 64 * 1024), StandardCharsets.UTF_8))) {
+            while (reader.readLine() != null) {
+                rows++;
+            }
+            // Bytes após o fim do gzip também entram no SHA-256
+            compressed.transferTo(OutputStream.nullOutputStream());
+        }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        if (!sha256.equals(manifest.sha256())) {
+            return "SHA-256 " + sha256 + ", esperado " + manifest.sha256();
+        }
+        if (rows != manifest.rows()) {
+            return rows + " linhas no arquivo, esperadas " + manifest.rows();
+        }
+        return null;
+    }
+
+    // Persiste as renomeações do arquivo e do manifesto antes da remoção da partição
+    private static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    // Os arquivos contêm dados de cartão: apenas o usuário da aplicação pode lê-los
+    private static void createOwnerOnly(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        try {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createFile(path);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
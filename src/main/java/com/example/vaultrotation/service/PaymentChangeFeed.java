@@ -0,0 +1,622 @@
+package com.example.vaultrotation.service;
+
+import com.example.vaultrotation.config.ChangeFeedProperties;
+import com.example.vaultrotation.config.ShardRouter;
+import com.example.vaultrotation.model.PaymentChange;
+import com.example.vaultrotation.model.PaymentOutboxEntry;
+import com.example.vaultrotation.model.PaymentView;
+import com.example.vaultrotation.repository.PaymentOutboxRepository;
+import com.example.vaultrotation.repository.PaymentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Feed de alterações de pagamentos: criações, exclusões e arquivamentos, para que os clientes leiam
+ * apenas o que mudou em vez de comparar a listagem completa.
+ * Cada alteração é gravada em payment_outbox na mesma transação do pagamento (ver PaymentOutboxEntry),
+ * com uma sequência AUTO_INCREMENT por shard; a posição no feed é a última sequência lida de cada shard.
+ * Uma única thread lê os shards periodicamente a partir da última posição lida (head) e acrescenta
+ * as alterações a uma janela imutável em memória; long-polls e assinantes SSE são atendidos dessa
+ * janela, sem consultas ao banco por cliente. Cursores anteriores à janela (cliente atrasado,
+ * réplica reiniciada) são lidos do banco até alcançá-la.
+ * A sequência é atribuída no INSERT, não no commit: uma transação ainda não confirmada deixa uma lacuna
+ * e a leitura do shard para nela até que seja preenchida. Lacunas cuja alteração seguinte é mais antiga
+ * que app.payments.change-feed.gap-timeout são de transações desfeitas e são puladas; por isso a
+ * gravação em payment_outbox é sempre a última da transação. A entrega é pelo menos uma vez (cursores
+ * de outra réplica ou de Last-Event-ID podem repetir alterações): os clientes devem aplicar as
+ * alterações de forma idempotente pelo id.
+ */
+@Service
+@Slf4j
+public class PaymentChangeFeed implements DisposableBean {
+
+    private static final int STREAM_BATCH_SIZE = 256;
+
+    /**
+     * Posição no feed: a última sequência de payment_outbox lida em cada shard (shards ausentes são lidos
+     * desde o início) e o instante da posição, usado na retenção. Exposta aos clientes como texto opaco
+     * (base64url de "timestamp|shard:seq,shard:seq").
+     */
+    public record Cursor(LocalDateTime timestamp, Map<String, Long> positions) {
+
+        public Cursor {
+            positions = Map.copyOf(positions);
+        }
+
+        public static Cursor parse(String value) {
+            String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Cursor inválido: " + value);
+            }
+            LocalDateTime timestamp;
+            try {
+                timestamp = LocalDateTime.parse(decoded.substring(0, separator));
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + value, e);
+            }
+            String encodedPositions = decoded.substring(separator + 1);
+            if (!encodedPositions.contains(":")) {
+                // Cursor (timestamp, id) das versões anteriores do feed: expirado, o cliente refaz a carga completa
+                return new Cursor(LocalDateTime.MIN, Map.of());
+            }
+            Map<String, Long> positions = new HashMap<>();
+            for (String position : encodedPositions.split(",")) {
+                int colon = position.lastIndexOf(':');
+                try {
+                    positions.put(position.substring(0, colon), Long.parseLong(position.substring(colon + 1)));
+                } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                    throw new IllegalArgumentException("Cursor inválido: " + value, e);
+                }
+            }
+            return new Cursor(timestamp, positions);
+        }
+
+        public String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((timestamp + "|" + encodedPositions()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Apenas as sequências de cada shard, sem o instante: igual em todas as réplicas que leram até a mesma posição
+         */
+        public String version() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(encodedPositions().getBytes(StandardCharsets.UTF_8));
+        }
+
+        private String encodedPositions() {
+            StringJoiner encoded = new StringJoiner(",");
+            new TreeMap<>(positions).forEach((shard, seq) -> encoded.add(shard + ":" + seq));
+            return encoded.toString();
+        }
+
+        public long position(String shard) {
+            return positions.getOrDefault(shard, 0L);
+        }
+
+        // Todas as alterações lidas até other também foram lidas até esta posição
+        boolean covers(Cursor other) {
+            return other.positions.entrySet().stream().allMatch(position -> position(position.getKey()) >= position.getValue());
+        }
+
+        Cursor advance(String shard, long seq, LocalDateTime at) {
+            Map<String, Long> advanced = new HashMap<>(positions);
+            advanced.merge(shard, seq, Math::max);
+            return new Cursor(at, advanced);
+        }
+
+        private Cursor max(Cursor other) {
+            Map<String, Long> merged = new HashMap<>(positions);
+            other.positions.forEach((shard, seq) -> merged.merge(shard, seq, Math::max));
+            return new Cursor(timestamp.isAfter(other.timestamp) ? timestamp : other.timestamp, merged);
+        }
+    }
+
+    /**
+     * Página do feed
+     *
+     * @param cursor  posição para a próxima leitura: a última alteração da página ou, sem mais
+     *                alterações, a posição já lida pelo feed
+     * @param hasMore há alterações após a página que podem ser lidas imediatamente
+     */
+    public record Page(List<PaymentChange> changes, String cursor, boolean hasMore) {
+    }
+
+    // Alteração lida de um shard, com a posição do feed logo após ela
+    private record Entry(String shard, long seq, Cursor position, PaymentChange change) {
+    }
+
+    // Resultado de uma leitura da janela ou dos shards
+    private record Batch(List<Entry> entries, Cursor next, boolean truncated) {
+    }
+
+    // Linhas de payment_outbox lidas de um shard, com os pagamentos das criações
+    private record ShardRead(List<PaymentOutboxEntry> rows, Map<String, PaymentView> payments, boolean full) {
+    }
+
+    // Janela imutável: todas as alterações entre floor e head, em ordem (posições crescentes)
+    private record Window(List<Entry> entries, Cursor floor, Cursor head) {
+    }
+
+    // Long-poll aguardando alterações após o cursor
+    private record Waiter(Cursor after, int limit, CompletableFuture<Page> result) {
+    }
+
+    /**
+     * Assinante SSE, com sua posição no feed
+     */
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        volatile Cursor cursor;
+
+        Subscriber(SseEmitter emitter, Cursor cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentOutboxRepository outboxRepository;
+    private final ShardRouter shardRouter;
+    private final ChangeFeedProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // @@auto_increment_increment de cada shard, lido uma vez
+    private final Map<String, Long> increments = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+    // Encerramento da aplicação: long-polls e assinaturas terminam já, para não prenderem a drenagem das requisições
+    private volatile boolean closing;
+
+    // Escrita apenas pela thread do feed; nula até a primeira leitura da posição dos shards
+    private volatile Window window;
+    private boolean failing;
+
+    public PaymentChangeFeed(
+            PaymentRepository paymentRepository,
+            PaymentOutboxRepository outboxRepository,
+            ShardRouter shardRouter,
+            ChangeFeedProperties properties,
+            MeterRegistry meterRegistry) {
+        this.paymentRepository = paymentRepository;
+        this.outboxRepository = outboxRepository;
+        this.shardRouter = shardRouter;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("payments.feed.window.size", this, feed -> feed.window != null ? feed.window.entries().size() : 0)
+                .register(meterRegistry);
+        // Tempo desde a última leitura bem-sucedida dos shards
+        Gauge.builder("payments.feed.lag", this, feed -> feed.window != null
+                        ? ChronoUnit.MILLIS.between(feed.window.head().timestamp(), LocalDateTime.now()) / 1000.0
+                        : Double.NaN)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("payments.feed.waiters", waiters, Queue::size)
+                .register(meterRegistry);
+        Gauge.builder("payments.feed.subscribers", subscribers, List::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Inicia a leitura dos shards depois da inicialização, sem disputar a criação dos pools
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long interval = properties.getPollInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::tail, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Posição já lida pelo feed. Uma listagem feita depois contém todas as alterações anteriores a ela.
+     * Vazia até a primeira leitura dos shards.
+     */
+    public Optional<Cursor> head() {
+        Window current = window;
+        return current != null ? Optional.of(current.head()) : Optional.empty();
+    }
+
+    /**
+     * Posição já lida pelo feed, que identifica o conteúdo da listagem de pagamentos (ETag de GET /api/payments,
+     * ver Cursor.version): criações, exclusões e arquivamentos avançam a sequência de payment_outbox.
+     * Vazia se a leitura não começou ou está parada há mais de app.payments.change-feed.stale-after.
+     */
+    public Optional<Cursor> listingPosition() {
+        Window current = window;
+        if (current == null
+                || Duration.between(current.head().timestamp(), LocalDateTime.now()).compareTo(properties.getStaleAfter()) > 0) {
+            return Optional.empty();
+        }
+        return Optional.of(current.head());
+    }
+
+    /**
+     * Cursores anteriores à retenção de payment_outbox podem ter perdido alterações já removidas
+     */
+    public boolean isExpired(Cursor cursor) {
+        return cursor.timestamp().isBefore(LocalDateTime.now().minus(properties.getTombstoneRetention()));
+    }
+
+    /**
+     * Lê até limit alterações após o cursor, da janela em memória ou, se o cursor for anterior a ela, dos shards
+     */
+    public Page read(Cursor after, int limit) {
+        return toPage(readBatch(after, limit));
+    }
+
+    /**
+     * Long-poll: devolve as alterações após o cursor ou, se não houver, aguarda a próxima leitura com
+     * alterações por até wait (limitado a app.payments.change-feed.max-wait). A espera não ocupa thread.
+     */
+    public CompletableFuture<Page> poll(Cursor after, int limit, Duration wait) {
+        Batch batch = readBatch(after, limit);
+        if (!batch.entries().isEmpty() || wait.isZero() || wait.isNegative() || closing) {
+            return CompletableFuture.completedFuture(toPage(batch));
+        }
+
+        Waiter waiter = new Waiter(batch.next(), limit, new CompletableFuture<>());
+        waiters.add(waiter);
+        waiter.result().whenComplete((page, e) -> waiters.remove(waiter));
+        // A janela pode ter avançado entre a leitura e o registro
+        complete(waiter, window);
+
+        Duration bounded = wait.compareTo(properties.getMaxWait()) > 0 ? properties.getMaxWait() : wait;
+        return waiter.result().completeOnTimeout(toPage(batch), bounded.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cria um assinante SSE que recebe as alterações após o cursor
+     */
+    public SseEmitter subscribe(Cursor after) {
+        SseEmitter emitter = new SseEmitter(properties.getStreamTimeout().toMillis());
+        Subscriber subscriber = new Subscriber(emitter, after);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        if (closing) {
+            emitter.complete();
+            return emitter;
+        }
+        subscribers.add(subscriber);
+        log.debug("Novo assinante do feed de pagamentos a partir de {}", subscriber.cursor);
+        return emitter;
+    }
+
+    /**
+     * Encerra os long-polls (com as alterações lidas até agora, sem erro) e as assinaturas SSE, que os
+     * clientes retomam pelo cursor em outra réplica. Novas esperas passam a responder imediatamente.
+     * Chamado no encerramento da aplicação (ver ShutdownSequence).
+     *
+     * @return long-polls e assinaturas encerrados
+     */
+    public int closeStreams() {
+        closing = true;
+        int closed = 0;
+        for (Waiter waiter : waiters) {
+            if (waiter.result().complete(new Page(List.of(), waiter.after().encode(), false))) {
+                closed++;
+            }
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscribers.remove(subscriber);
+            subscriber.emitter.complete();
+            closed++;
+        }
+        return closed;
+    }
+
+    /**
+     * Remove de payment_outbox, em cada shard, as alterações mais antigas que a retenção.
+     * Agendada pelo MaintenanceScheduler (ver MaintenanceTasksConfig).
+     */
+    public void purgeHistory() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getTombstoneRetention());
+        int removed = shardRouter.fanOut("tombstone-purge", shard -> outboxRepository.deleteOlderThan(cutoff))
+                .values().stream().mapToInt(Integer::intValue).sum();
+        if (removed > 0) {
+            log.info("Alterações de pagamentos anteriores a {} removidas do feed: {}", cutoff, removed);
+        }
+    }
+
+    void tail() {
+        try {
+            if (window == null) {
+                Cursor start = startPosition();
+                window = new Window(List.of(), start, start);
+                log.info("Feed de alterações de pagamentos iniciado nas posições {}", start.positions());
+            }
+            Batch batch;
+            do {
+                batch = readFromShards(window.head(), null, properties.getBatchSize());
+                append(batch);
+            } while (batch.truncated());
+
+            if (failing) {
+                log.info("Leitura das alterações de pagamentos restabelecida");
+                failing = false;
+            }
+        } catch (Exception e) {
+            meterRegistry.counter("payments.feed.tail.failures").increment();
+            // Um shard indisponível para o feed inteiro: sem ele, alterações ficariam para trás da posição lida
+            if (!failing) {
+                log.warn("Falha ao ler alterações de pagamentos, feed parado até a próxima leitura: {}", e.getMessage());
+                failing = true;
+            }
+            return;
+        }
+
+        Window current = window;
+        waiters.forEach(waiter -> complete(waiter, current));
+        pushToSubscribers();
+    }
+
+    // Posição inicial de cada shard: a última alteração gravada antes de gap-timeout. As mais recentes, que
+    // podem ter lacunas de transações em andamento, são lidas pelo feed; as anteriores, pelos cursores dos clientes
+    private Cursor startPosition() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime before = now.minus(properties.getGapTimeout());
+        Map<String, Long> positions = shardRouter.fanOut("change-feed-start", shard ->
+                outboxRepository.findSequencesBefore(before, PageRequest.of(0, 1)).stream().findFirst().orElse(0L));
+        return new Cursor(now, positions);
+    }
+
+    private void append(Batch batch) {
+        Window current = window;
+        List<Entry> entries = current.entries();
+        Cursor floor = current.floor();
+        if (!batch.entries().isEmpty()) {
+            List<Entry> merged = new ArrayList<>(entries.size() + batch.entries().size());
+            merged.addAll(entries);
+            merged.addAll(batch.entries());
+            int excess = merged.size() - properties.getCapacity();
+            if (excess > 0) {
+                floor = merged.get(excess - 1).position();
+                merged = merged.subList(excess, merged.size());
+            }
+            entries = List.copyOf(merged);
+        }
+        window = new Window(entries, floor, batch.next());
+    }
+
+    private Batch readBatch(Cursor after, int limit) {
+        Window current = window;
+        if (current == null) {
+            // Sem posição lida dos shards ainda: nada a devolver
+            return new Batch(List.of(), after, false);
+        }
+        if (after.covers(current.floor())) {
+            meterRegistry.counter("payments.feed.reads", "source", "memory").increment();
+            return readWindow(current, after, limit);
+        }
+        meterRegistry.counter("payments.feed.reads", "source", "database").increment();
+        return readFromShards(after, current.head(), limit);
+    }
+
+    private static Batch readWindow(Window window, Cursor after, int limit) {
+        List<Entry> entries = window.entries();
+        // Primeira alteração não coberta pelo cursor: as posições da janela são crescentes
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (after.covers(entries.get(mid).position())) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        List<Entry> page = new ArrayList<>();
+        Cursor next = after;
+        int index = low;
+        for (; index < entries.size() && page.size() < limit; index++) {
+            Entry entry = entries.get(index);
+            // O cursor pode estar adiante da janela em alguns shards (lido do banco ou de outra réplica)
+            if (entry.seq() > after.position(entry.shard())) {
+                page.add(entry);
+                next = next.advance(entry.shard(), entry.seq(), entry.change().timestamp());
+            }
+        }
+        boolean truncated = index < entries.size();
+        return new Batch(page, truncated ? next : next.max(window.head()), truncated);
+    }
+
+    /**
+     * Lê até limit alterações após o cursor e junta os shards na ordem de gravação, mantendo a ordem da
+     * sequência de cada um. Sem upTo (leitura do feed), a leitura de cada shard para na primeira lacuna
+     * recente da sequência; com upTo (cursores anteriores à janela), lê até a posição já lida pelo feed.
+     */
+    private Batch readFromShards(Cursor after, Cursor upTo, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, ShardRead> byShard = shardRouter.fanOut("change-feed", shard -> {
+            List<PaymentOutboxEntry> rows = outboxRepository.findAfter(after.position(shard),
+                    upTo != null ? upTo.position(shard) : Long.MAX_VALUE, page);
+            boolean full = rows.size() == limit;
+            if (upTo == null) {
+                List<PaymentOutboxEntry> settled = settled(shard, after.position(shard), rows, now);
+                full = full && settled.size() == rows.size();
+                rows = settled;
+            }
+            List<String> created = rows.stream()
+                    .filter(row -> row.getType() == PaymentChange.Type.CREATED)
+                    .map(PaymentOutboxEntry::getPaymentId)
+                    .toList();
+            Map<String, PaymentView> payments = created.isEmpty() ? Map.of() : paymentRepository.findViewsByIdIn(created)
+                    .stream().collect(Collectors.toMap(PaymentView::id, Function.identity()));
+            return new ShardRead(rows, payments, full);
+        });
+
+        List<Entry> entries = new ArrayList<>();
+        Cursor position = after;
+        Map<String, Integer> consumed = new HashMap<>();
+        boolean truncated = byShard.values().stream().anyMatch(ShardRead::full);
+        int read = 0;
+        while (true) {
+            // Próxima linha: a gravada primeiro entre as próximas de cada shard
+            String shard = null;
+            PaymentOutboxEntry row = null;
+            for (Map.Entry<String, ShardRead> shardRead : byShard.entrySet()) {
+                List<PaymentOutboxEntry> rows = shardRead.getValue().rows();
+                int index = consumed.getOrDefault(shardRead.getKey(), 0);
+                if (index < rows.size() && (row == null || rows.get(index).getChangedAt().isBefore(row.getChangedAt()))) {
+                    shard = shardRead.getKey();
+                    row = rows.get(index);
+                }
+            }
+            if (row == null) {
+                break;
+            }
+            if (read == limit) {
+                truncated = true;
+                break;
+            }
+            consumed.merge(shard, 1, Integer::sum);
+            read++;
+            position = position.advance(shard, row.getSeq(), row.getChangedAt());
+            PaymentChange change = change(row, position, byShard.get(shard).payments());
+            if (change != null) {
+                entries.add(new Entry(shard, row.getSeq(), position, change));
+            }
+        }
+
+        Cursor next;
+        if (truncated) {
+            next = position;
+        } else if (upTo != null) {
+            next = position.max(upTo);
+        } else {
+            next = new Cursor(now, position.positions());
+        }
+        return new Batch(entries, next, truncated);
+    }
+
+    // Linhas até a primeira lacuna recente da sequência: a alteração que falta pode ser de uma transação ainda
+    // não confirmada, que ficaria para trás da posição lida. A lacuna é pulada quando a alteração seguinte é
+    // mais antiga que gap-timeout: a transação foi desfeita
+    private List<PaymentOutboxEntry> settled(String shard, long after, List<PaymentOutboxEntry> rows, LocalDateTime now) {
+        long increment = increments.computeIfAbsent(shard, s -> outboxRepository.autoIncrementIncrement());
+        LocalDateTime gapCutoff = now.minus(properties.getGapTimeout());
+        long expected = after + increment;
+        for (int i = 0; i < rows.size(); i++) {
+            PaymentOutboxEntry row = rows.get(i);
+            // Sem posição anterior no shard, a primeira linha inicia a sequência
+            boolean first = i == 0 && after == 0;
+            if (row.getSeq() != expected && !first) {
+                if (row.getChangedAt().isAfter(gapCutoff)) {
+                    return rows.subList(0, i);
+                }
+                meterRegistry.counter("payments.feed.gaps.skipped", "shard", shard).increment();
+                log.debug("[{}] Lacuna na sequência de payment_outbox pulada: {} a {}", shard, expected, row.getSeq() - 1);
+            }
+            expected = row.getSeq() + increment;
+        }
+        return rows;
+    }
+
+    private void complete(Waiter waiter, Window current) {
+        if (current == null || waiter.result().isDone() || !waiter.after().covers(current.floor())) {
+            return;
+        }
+        Batch batch = readWindow(current, waiter.after(), waiter.limit());
+        if (!batch.entries().isEmpty()) {
+            waiter.result().complete(toPage(batch));
+        }
+    }
+
+    private void pushToSubscribers() {
+        for (Subscriber subscriber : subscribers) {
+            try {
+                Batch batch;
+                do {
+                    batch = readBatch(subscriber.cursor, STREAM_BATCH_SIZE);
+                    for (Entry entry : batch.entries()) {
+                        PaymentChange change = entry.change();
+                        subscriber.emitter.send(SseEmitter.event()
+                                .id(change.cursor())
+                                .name(change.type().name())
+                                .data(change));
+                    }
+                    subscriber.cursor = batch.next();
+                    // Assinantes atrasados leem uma página do banco por ciclo, sem segurar a thread do feed
+                } while (batch.truncated() && subscriber.cursor.covers(window.floor()));
+            } catch (IOException | IllegalStateException e) {
+                // Cliente desconectado
+                subscribers.remove(subscriber);
+                subscriber.emitter.completeWithError(e);
+            } catch (Exception e) {
+                log.warn("Erro ao enviar alterações de pagamentos: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static Page toPage(Batch batch) {
+        return new Page(batch.entries().stream().map(Entry::change).toList(), batch.next().encode(), batch.truncated());
+    }
+
+    // Criações de pagamentos já excluídos ou arquivados são omitidas: a remoção vem depois no feed
+    private static PaymentChange change(PaymentOutboxEntry row, Cursor position, Map<String, PaymentView> payments) {
+        PaymentView payment = null;
+        if (row.getType() == PaymentChange.Type.CREATED) {
+            payment = payments.get(row.getPaymentId());
+            if (payment == null) {
+                return null;
+            }
+        }
+        return new PaymentChange(position.encode(), row.getType(), row.getPaymentId(), row.getChangedAt(), payment);
+    }
+
+    /**
+     * Interrompe a leitura periódica dos shards. Chamado no encerramento da aplicação, depois que as
+     * requisições terminaram (ver ShutdownSequence).
+     */
+    public void stopPolling() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        waiters.forEach(waiter -> waiter.result().cancel(false));
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.vaultrotation.service;
+
+import com.example.vaultrotation.config.PartitioningProperties;
+import com.example.vaultrotation.model.PaymentChange;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Particionamento mensal da tabela payments (RANGE COLUMNS em created_at). Cada mês é uma partição
+ * pAAAAMM, com limite superior no primeiro dia do mês seguinte; a partição pmax (MAXVALUE) recebe
+ * datas além dos meses criados e é dividida à medida que novos meses são adicionados.
+ * O MySQL exige que toda chave única contenha a coluna de particionamento, por isso a chave primária
+ * passa a ser (id, created_at); a unicidade do id fica com a tabela payment_ids (ver PaymentRegistration),
+ * cujos registros acompanham as partições removidas e, ao serem removidos, publicam o arquivamento no
+ * feed de alterações (ver PaymentChangeFeed). As operações usam a conexão recebida de quem chama.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PaymentPartitionManager {
+
+    static final String TABLE = "payments";
+    static final String REGISTRY_TABLE = "payment_ids";
+    static final String OUTBOX_TABLE = "payment_outbox";
+    static final String OVERFLOW_PARTITION = "pmax";
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("p(\\d{4})(\\d{2})");
+    private static final String ARCHIVE_LOCK = "vault-rotation.payments-partitioning";
+
+    private final PartitioningProperties properties;
+
+    /**
+     * Partição mensal com as linhas de created_at em [início do mês, início do mês seguinte)
+     *
+     * @param estimatedRows estimativa do information_schema, não uma contagem exata
+     */
+    public record Partition(String name, YearMonth month, long estimatedRows) {
+
+        public LocalDateTime lowerBound() {
+            return month.atDay(1).atStartOfDay();
+        }
+
+        public LocalDateTime upperBound() {
+            return month.plusMonths(1).atDay(1).atStartOfDay();
+        }
+    }
+
+    public static String partitionName(YearMonth month) {
+        return String.format("p%04d%02d", month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * Partições mensais da tabela, da mais antiga para a mais recente (sem a pmax)
+     */
+    public List<Partition> listPartitions(Connection connection) throws SQLException {
+        List<Partition> partitions = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT PARTITION_NAME, TABLE_ROWS FROM information_schema.PARTITIONS"
+                        + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL"
+                        + " ORDER BY PARTITION_ORDINAL_POSITION")) {
+            statement.setString(1, TABLE);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Matcher matcher = MONTHLY_PARTITION.matcher(rs.getString(1));
+                    if (matcher.matches()) {
+                        YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                        partitions.add(new Partition(rs.getString(1), month, rs.getLong(2)));
+                    }
+                }
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Converte a tabela para particionada, se ainda não for. A conversão copia a tabela inteira e
+     * bloqueia escritas durante a cópia: só é feita com app.partitioning.convert-table, ligado em uma
+     * janela de manutenção. Antes dela, os ids existentes são registrados em payment_ids.
+     *
+     * @return true se a tabela foi convertida nesta chamada
+     */
+    public boolean ensurePartitioned(Connection connection, String datasource) throws SQLException {
+        if (!tableExists(connection, TABLE) || !tableExists(connection, REGISTRY_TABLE)) {
+            log.warn("[{}] Tabela {} ou {} não existe; particionamento adiado", datasource, TABLE, REGISTRY_TABLE);
+            return false;
+        }
+        if (isPartitioned(connection)) {
+            return false;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            int registered = statement.executeUpdate("INSERT IGNORE INTO " + REGISTRY_TABLE
+                    + " (payment_id, created_at) SELECT id, created_at FROM " + TABLE);
+            log.info("[{}] {} id(s) de pagamento registrado(s) em {} antes da conversão", datasource, registered, REGISTRY_TABLE);
+        }
+
+        YearMonth first = YearMonth.now();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT MIN(created_at) FROM " + TABLE)) {
+            if (rs.next() && rs.getObject(1, LocalDateTime.class) != null) {
+                first = YearMonth.from(rs.getObject(1, LocalDateTime.class));
+            }
+        }
+        YearMonth last = YearMonth.now().plusMonths(properties.getFutureMonths());
+
+        log.info("[{}] Convertendo a tabela {} para partições mensais de {} a {}", datasource, TABLE, first, last);
+        long start = System.nanoTime();
+        executeDdl(connection, "ALTER TABLE " + TABLE + " DROP PRIMARY KEY, ADD PRIMARY KEY (id, created_at)"
+                + " PARTITION BY RANGE COLUMNS(created_at) (" + definitions(first, last) + ")");
+        log.info("[{}] Tabela {} particionada em {} ms", datasource, TABLE, (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    /**
+     * Cria as partições dos próximos app.partitioning.future-months meses, dividindo a pmax
+     *
+     * @return número de partições criadas
+     */
+    public int ensureFuturePartitions(Connection connection, String datasource) throws SQLException {
+        if (!isPartitioned(connection)) {
+            return 0;
+        }
+        List<Partition> partitions = listPartitions(connection);
+        YearMonth next = partitions.isEmpty() ? YearMonth.now() : partitions.get(partitions.size() - 1).month().plusMonths(1);
+        YearMonth last = YearMonth.now().plusMonths(properties.getFutureMonths());
+        if (next.isAfter(last)) {
+            return 0;
+        }
+        executeDdl(connection, "ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + OVERFLOW_PARTITION
+                + " INTO (" + definitions(next, last) + ")");
+        int created = (int) ChronoUnit.MONTHS.between(next, last) + 1;
+        log.info("[{}] {} partição(ões) criada(s) em {}: {} a {}", datasource, created, TABLE, next, last);
+        return created;
+    }
+
+    /**
+     * Contagem exata das linhas de uma partição
+     */
+    public long countRows(Connection connection, Partition partition) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + TABLE + " PARTITION (" + partition.name() + ")")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Remove a partição inteira (sem DELETE linha a linha)
+     *
+     * @return false se a partição já não existia (ex: removida por uma tentativa anterior)
+     */
+    public boolean dropPartition(Connection connection, Partition partition) throws SQLException {
+        boolean exists = listPartitions(connection).stream().anyMatch(p -> p.name().equals(partition.name()));
+        if (!exists) {
+            return false;
+        }
+        executeDdl(connection, "ALTER TABLE " + TABLE + " DROP PARTITION " + partition.name());
+        return true;
+    }
+
+    /**
+     * Remove um lote dos ids registrados no intervalo de uma partição já removida e publica a remoção deles
+     * no feed de alterações (ARCHIVED em payment_outbox), na mesma transação
+     *
+     * @return número de registros removidos; menor que batchSize quando não há mais registros no intervalo
+     */
+    public int archiveRegistrations(Connection connection, Partition partition, int batchSize) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            List<String> ids = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement("SELECT payment_id FROM " + REGISTRY_TABLE
+                    + " WHERE created_at >= ? AND created_at < ? LIMIT ? FOR UPDATE")) {
+                statement.setObject(1, partition.lowerBound());
+                statement.setObject(2, partition.upperBound());
+                statement.setInt(3, batchSize);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getString(1));
+                    }
+                }
+            }
+            if (!ids.isEmpty()) {
+                String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "DELETE FROM " + REGISTRY_TABLE + " WHERE payment_id IN (" + placeholders + ")")) {
+                    for (int i = 0; i < ids.size(); i++) {
+                        statement.setString(i + 1, ids.get(i));
+                    }
+                    statement.executeUpdate();
+                }
+                // Por último e em um único INSERT com a lista de valores: o MySQL reserva exatamente uma sequência
+                // por linha, sem as lacunas de INSERT ... SELECT, que o feed esperaria até gap-timeout
+                String values = String.join(", ", Collections.nCopies(ids.size(), "(?, ?, ?)"));
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO " + OUTBOX_TABLE + " (type, payment_id, changed_at) VALUES " + values)) {
+                    LocalDateTime now = LocalDateTime.now();
+                    int index = 1;
+                    for (String id : ids) {
+                        statement.setString(index++, PaymentChange.Type.ARCHIVED.name());
+                        statement.setString(index++, id);
+                        statement.setObject(index++, now);
+                    }
+                    statement.executeUpdate();
+                }
+            }
+            connection.commit();
+            return ids.size();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Mês do id registrado mais antigo (índice de created_at)
+     */
+    public Optional<YearMonth> oldestRegistration(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT MIN(created_at) FROM " + REGISTRY_TABLE)) {
+            LocalDateTime oldest = rs.next() ? rs.getObject(1, LocalDateTime.class) : null;
+            return Optional.ofNullable(oldest).map(YearMonth::from);
+        }
+    }
+
+    /**
+     * Lock nomeado do MySQL que impede duas instâncias de alterar as partições do mesmo banco ao mesmo tempo.
+     * Pertence à sessão: é liberado com releaseLock ou quando a conexão é fechada.
+     */
+    public boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            statement.setString(1, ARCHIVE_LOCK);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    public void releaseLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, ARCHIVE_LOCK);
+            statement.executeQuery().close();
+        }
+    }
+
+    private boolean tableExists(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?")) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    public boolean isPartitioned(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT COUNT(*) FROM information_schema.PARTITIONS"
+                        + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL")) {
+            statement.setString(1, TABLE);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    // Meses de first a last, seguidos da pmax
+    private static String definitions(YearMonth first, YearMonth last) {
+        StringBuilder definitions = new StringBuilder();
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            definitions.append("PARTITION ").append(partitionName(month))
+                    .append(" VALUES LESS THAN ('").append(month.plusMonths(1).atDay(1)).append(" 00:00:00'), ");
+        }
+        return definitions.append("PARTITION ").append(OVERFLOW_PARTITION).append(" VALUES LESS THAN (MAXVALUE)").toString();
+    }
+
+    private void executeDdl(Connection connection, String ddl) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET SESSION lock_wait_timeout = " + Math.max(1, properties.getDdlLockWaitTimeout().toSeconds()));
+            try {
+                statement.execute(ddl);
+            } finally {
+                // A conexão volta ao pool: restaura o valor global
+                statement.execute("SET SESSION lock_wait_timeout = DEFAULT");
+            }
+        }
+    }
+}
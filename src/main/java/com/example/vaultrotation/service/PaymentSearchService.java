@@ -0,0 +1,223 @@
+package com.example.vaultrotation.service;
+
+import com.example.vaultrotation.config.PaymentSearchProperties;
+import com.example.vaultrotation.config.RequestDeadline;
+import com.example.vaultrotation.config.ShardRouter;
+import com.example.vaultrotation.model.PaymentSearchCriteria;
+import com.example.vaultrotation.model.PaymentSearchCriteria.Index;
+import com.example.vaultrotation.model.PaymentSearchCriteria.Position;
+import com.example.vaultrotation.model.PaymentView;
+import com.example.vaultrotation.repository.PaymentSearchRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Busca filtrada de pagamentos em todos os shards, paginada por posição no índice (keyset).
+ * A busca só é aceita com ao menos um filtro coberto por índice; o filtro de maior prioridade
+ * (prefixo do nome, janela de criação, faixa de valor) escolhe o índice, e os demais são aplicados
+ * às linhas lidas dele. O cursor guarda a posição de cada shard separadamente: cada página continua
+ * exatamente de onde o shard parou, independentemente da collation usada na ordenação do MySQL.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PaymentSearchService {
+
+    // Erro do MySQL quando a consulta excede o MAX_EXECUTION_TIME
+    private static final int ER_QUERY_TIMEOUT = 3024;
+
+    /**
+     * Página da busca
+     *
+     * @param index  índice usado, que define a ordem dos resultados
+     * @param cursor continuação da busca; nulo na última página
+     */
+    public record SearchPage(List<PaymentView> payments, Index index, String cursor) {
+    }
+
+    /**
+     * Busca interrompida pelo MAX_EXECUTION_TIME: os filtros não indexados descartaram linhas demais
+     */
+    public static class SearchTimeoutException extends RuntimeException {
+        public SearchTimeoutException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Conteúdo do cursor (JSON em base64url): shards com resultados ainda não lidos e a última
+     * posição lida de cada um (ausente: do início do índice)
+     */
+    public record SearchCursor(Index index, List<String> shards, Map<String, Position> positions) {
+    }
+
+    private final PaymentSearchRepository searchRepository;
+    private final ShardRouter shardRouter;
+    private final PaymentSearchProperties properties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @throws IllegalArgumentException filtros ou cursor inválidos
+     */
+    public SearchPage search(PaymentSearchCriteria criteria, String cursorValue, int limit) {
+        Index index = validate(criteria);
+        int boundedLimit = Math.max(1, Math.min(limit, properties.getMaxLimit()));
+        SearchCursor cursor = cursorValue != null
+                ? decode(cursorValue, index)
+                : new SearchCursor(index, shardRouter.getShards(), Map.of());
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Map<String, List<PaymentView>> byShard;
+        try {
+            byShard = shardRouter.fanOut("search", shard -> cursor.shards().contains(shard)
+                    ? searchRepository.search(criteria, index, cursor.positions().get(shard), boundedLimit,
+                    properties.getMaxExecutionTime())
+                    : List.of());
+        } catch (DataAccessException e) {
+            // Timeout causado pelo prazo da requisição segue para o DatabaseExceptionHandler (504)
+            if (isTimeout(e) && !RequestDeadline.isCause(e)) {
+                meterRegistry.counter("payments.search.timeouts", "index", index.name().toLowerCase()).increment();
+                throw new SearchTimeoutException("Busca interrompida após " + properties.getMaxExecutionTime()
+                        + "; restrinja os filtros (por exemplo, a janela de criação)", e);
+            }
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("payments.search", "index", index.name().toLowerCase()));
+        }
+
+        // Intercala as listas pelo início de cada uma: as linhas consumidas de um shard são sempre
+        // as primeiras na ordem do MySQL, mesmo que a comparação em Java difira da collation
+        Comparator<PaymentView> order = order(index);
+        Map<String, Integer> taken = new HashMap<>();
+        List<PaymentView> payments = new ArrayList<>();
+        while (payments.size() < boundedLimit) {
+            String next = null;
+            PaymentView candidate = null;
+            for (Map.Entry<String, List<PaymentView>> entry : byShard.entrySet()) {
+                int position = taken.getOrDefault(entry.getKey(), 0);
+                if (position < entry.getValue().size()) {
+                    PaymentView head = entry.getValue().get(position);
+                    if (candidate == null || order.compare(head, candidate) < 0) {
+                        next = entry.getKey();
+                        candidate = head;
+                    }
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            taken.merge(next, 1, Integer::sum);
+            payments.add(candidate);
+        }
+
+        List<String> remaining = new ArrayList<>();
+        Map<String, Position> positions = new LinkedHashMap<>();
+        for (String shard : cursor.shards()) {
+            List<PaymentView> rows = byShard.getOrDefault(shard, List.of());
+            int consumed = taken.getOrDefault(shard, 0);
+            // O shard devolveu menos que o limite e todas as linhas foram usadas: não há mais resultados nele
+            if (consumed == rows.size() && rows.size() < boundedLimit) {
+                continue;
+            }
+            remaining.add(shard);
+            Position position = consumed > 0 ? Position.of(rows.get(consumed - 1), index) : cursor.positions().get(shard);
+            if (position != null) {
+                positions.put(shard, position);
+            }
+        }
+        String nextCursor = remaining.isEmpty() ? null : encode(new SearchCursor(index, remaining, positions));
+        return new SearchPage(payments, index, nextCursor);
+    }
+
+    private Index validate(PaymentSearchCriteria criteria) {
+        if (criteria.hasNamePrefix() && criteria.namePrefix().length() < properties.getMinPrefixLength()) {
+            throw new IllegalArgumentException("namePrefix deve ter ao menos " + properties.getMinPrefixLength() + " caracteres");
+        }
+        if (criteria.minAmount() != null && criteria.maxAmount() != null
+                && criteria.minAmount().compareTo(criteria.maxAmount()) > 0) {
+            throw new IllegalArgumentException("minAmount maior que maxAmount");
+        }
+        if (criteria.createdFrom() != null && criteria.createdTo() != null
+                && !criteria.createdFrom().isBefore(criteria.createdTo())) {
+            throw new IllegalArgumentException("createdFrom deve ser anterior a createdTo");
+        }
+        if (criteria.hasNamePrefix()) {
+            return Index.NAME;
+        }
+        if (criteria.hasCreatedWindow()) {
+            return Index.CREATED_AT;
+        }
+        if (criteria.hasAmountRange()) {
+            return Index.AMOUNT;
+        }
+        // Sem filtro indexado, a busca seria uma varredura completa da tabela
+        throw new IllegalArgumentException(
+                "Informe ao menos um filtro: namePrefix, createdFrom/createdTo ou minAmount/maxAmount");
+    }
+
+    private static Comparator<PaymentView> order(Index index) {
+        Comparator<PaymentView> byCreation = Comparator.comparing(PaymentView::createdAt).thenComparing(PaymentView::id);
+        return switch (index) {
+            case NAME -> Comparator.comparing(PaymentView::name, String.CASE_INSENSITIVE_ORDER).thenComparing(byCreation);
+            case AMOUNT -> Comparator.comparing(PaymentView::amount).thenComparing(byCreation);
+            case CREATED_AT -> byCreation;
+        };
+    }
+
+    private String encode(SearchCursor cursor) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(cursor));
+        } catch (IOException e) {
+            throw new IllegalStateException("Falha ao serializar o cursor da busca", e);
+        }
+    }
+
+    private SearchCursor decode(String value, Index index) {
+        SearchCursor cursor;
+        try {
+            cursor = objectMapper.readValue(Base64.getUrlDecoder().decode(value), SearchCursor.class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+        // O cursor é uma posição no índice: só continua uma busca que usa o mesmo índice
+        if (cursor.index() != index || cursor.shards() == null || cursor.positions() == null) {
+            throw new IllegalArgumentException("Cursor não corresponde aos filtros da busca");
+        }
+        for (Position position : cursor.positions().values()) {
+            boolean leadingMissing = (index == Index.NAME && position.name() == null)
+                    || (index == Index.AMOUNT && position.amount() == null);
+            if (position.createdAt() == null || position.id() == null || leadingMissing) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+        }
+        return cursor;
+    }
+
+    private static boolean isTimeout(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof QueryTimeoutException || cause instanceof SQLTimeoutException
+                    || (cause instanceof SQLException sql && sql.getErrorCode() == ER_QUERY_TIMEOUT)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.vaultrotation.service;
+
+import com.example.vaultrotation.config.ShardRouter;
+import com.example.vaultrotation.model.IdempotencyKey;
+import com.example.vaultrotation.model.Payment;
+import com.example.vaultrotation.model.PaymentChange;
+import com.example.vaultrotation.model.PaymentOutboxEntry;
+import com.example.vaultrotation.model.PaymentRegistration;
+import com.example.vaultrotation.model.PaymentSummary;
+import com.example.vaultrotation.model.PaymentView;
+import com.example.vaultrotation.repository.IdempotencyKeyRepository;
+import com.example.vaultrotation.repository.PaymentRegistrationRepository;
+import com.example.vaultrotation.repository.PaymentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Criação de pagamentos com suporte a Idempotency-Key. Durante incidentes de rotação os clientes
+ * recebem 503 e repetem o POST; com a chave, cada repetição devolve o pagamento original em vez
+ * de criar uma nova linha. O índice em memória responde às repetições sem acessar o MySQL e a
+ * chave primária de idempotency_keys garante a unicidade entre réplicas.
+ * Os pagamentos são distribuídos entre shards pelo hash do id (ver ShardRouter); listagens e
+ * relatórios consultam todos os shards em paralelo e juntam os resultados. Cada pagamento tem seu id
+ * registrado em payment_ids na mesma transação (ver PaymentRegistration).
+ */
+@Service
+@Slf4j
+public class PaymentService {
+
+    /**
+     * Resultado de uma criação idempotente
+     */
+    public enum Outcome {
+        CREATED,
+        REPLAYED,
+        // Outra requisição com a mesma chave ainda está em andamento
+        IN_PROGRESS,
+        // A chave já foi usada com um corpo diferente
+        KEY_REUSED
+    }
+
+    public record CreationResult(Outcome outcome, PaymentView payment) {
+    }
+
+    /**
+     * Totais consolidados e por shard
+     */
+    public record PaymentReport(PaymentSummary total, Map<String, PaymentSummary> shards) {
+    }
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentRegistrationRepository paymentRegistrationRepository;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final IdempotencyIndex idempotencyIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ShardRouter shardRouter;
+    private final MeterRegistry meterRegistry;
+
+    public PaymentService(
+            PaymentRepository paymentRepository,
+            PaymentRegistrationRepository paymentRegistrationRepository,
+            IdempotencyKeyRepository idempotencyKeyRepository,
+            IdempotencyIndex idempotencyIndex,
+            PlatformTransactionManager transactionManager,
+            EntityManager entityManager,
+            ShardRouter shardRouter,
+            MeterRegistry meterRegistry) {
+        this.paymentRepository = paymentRepository;
+        this.paymentRegistrationRepository = paymentRegistrationRepository;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.idempotencyIndex = idempotencyIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManager = entityManager;
+        this.shardRouter = shardRouter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Lista os pagamentos de todos os shards, do mais recente para o mais antigo
+     */
+    public List<PaymentView> findAll() {
+        List<PaymentView> payments = ShardRouter.merge(
+                shardRouter.fanOut("find-all", shard -> paymentRepository.findAllViews()));
+        payments.sort(Comparator.comparing(PaymentView::createdAt).reversed().thenComparing(PaymentView::id));
+        return payments;
+    }
+
+    public Optional<PaymentView> findById(String id) {
+        return shardRouter.callOn(shardRouter.shardFor(id), () -> findView(id));
+    }
+
+    // Pelo created_at registrado, a leitura vai apenas à partição do pagamento; pagamentos gravados antes
+    // do registro de ids são lidos só pelo id
+    private Optional<PaymentView> findView(String id) {
+        return paymentRegistrationRepository.findById(id)
+                .map(registration -> paymentRepository.findViewByIdAndCreatedAt(id, registration.getCreatedAt()))
+                .orElseGet(() -> paymentRepository.findViewById(id));
+    }
+
+    /**
+     * Verifica a existência pela chave primária, sem carregar o pagamento
+     */
+    public boolean exists(String id) {
+        return shardRouter.callOn(shardRouter.shardFor(id), () -> paymentRepository.existsById(id));
+    }
+
+    /**
+     * Remove o pagamento do shard dono do id. A exclusão é registrada em payment_outbox na mesma
+     * transação, para ser publicada pelo feed de alterações (ver PaymentChangeFeed).
+     *
+     * @return false se o pagamento não existir
+     */
+    public boolean delete(String id) {
+        return Boolean.TRUE.equals(shardRouter.callOn(shardRouter.shardFor(id), () -> transactionTemplate.execute(status -> {
+            if (!paymentRepository.existsById(id)) {
+                return false;
+            }
+            paymentRepository.deleteById(id);
+            paymentRegistrationRepository.deleteById(id);
+            recordChange(PaymentChange.Type.DELETED, id, LocalDateTime.now());
+            return true;
+        })));
+    }
+
+    /**
+     * Quantidade e valor total dos pagamentos, consultados em paralelo em todos os shards
+     */
+    public PaymentReport summarize() {
+        Map<String, PaymentSummary> byShard = new LinkedHashMap<>(
+                shardRouter.fanOut("summary", shard -> paymentRepository.summarize()));
+        PaymentSummary total = byShard.values().stream().reduce(PaymentSummary.empty(), PaymentSummary::merge);
+        return new PaymentReport(total, byShard);
+    }
+
+    /**
+     * Cria um pagamento sem chave de idempotência
+     */
+    public PaymentView create(Payment payment) {
+        // O id é sempre gerado aqui, nunca aceito do cliente: ele determina o shard
+        payment.setId(UUID.randomUUID().toString());
+        return shardRouter.callOn(shardRouter.shardFor(payment.getId()), () -> transactionTemplate.execute(status -> {
+            // created_at é sempre definido aqui, dentro da transação: define a partição do pagamento (ver PaymentPartitionManager)
+            payment.setCreatedAt(LocalDateTime.now());
+            entityManager.persist(payment);
+            entityManager.persist(new PaymentRegistration(payment.getId(), payment.getCreatedAt()));
+            recordChange(PaymentChange.Type.CREATED, payment.getId(), payment.getCreatedAt());
+            return toView(payment);
+        }));
+    }
+
+    /**
+     * Cria um pagamento associado à chave de idempotência, ou devolve o pagamento já criado com ela
+     */
+    public CreationResult create(Payment payment, String key) {
+        String requestHash = hash(payment);
+
+        IdempotencyIndex.Entry existing = idempotencyIndex.reserve(key, requestHash);
+        if (existing != null) {
+            return fromIndex(existing, requestHash);
+        }
+
+        try {
+            // A chave e o pagamento ficam no shard da chave, gravados na mesma transação
+            String shard = shardRouter.shardFor(key);
+            return shardRouter.callOn(shard, () -> createOnShard(payment, key, requestHash, shard));
+        } finally {
+            // Em caso de erro a reserva é liberada; se a criação foi concluída, não tem efeito
+            idempotencyIndex.release(key);
+        }
+    }
+
+    private CreationResult createOnShard(Payment payment, String key, String requestHash, String shard) {
+        // A chave pode ter sido registrada por outra réplica ou antes de um reinício
+        Optional<CreationResult> stored = findStored(key, requestHash);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        payment.setId(shardRouter.newIdOn(shard));
+        PaymentView created;
+        try {
+            created = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                payment.setCreatedAt(now);
+                entityManager.persist(payment);
+                entityManager.persist(new PaymentRegistration(payment.getId(), now));
+                // persist, nunca save/merge: com a chave já gravada por outra réplica, o merge faria SELECT e UPDATE,
+                // apontando a chave para este pagamento; o INSERT falha na chave primária e a transação é desfeita
+                entityManager.persist(new IdempotencyKey(key, payment.getId(), requestHash, now,
+                        now.plus(idempotencyIndex.getTtl())));
+                recordChange(PaymentChange.Type.CREATED, payment.getId(), now);
+                return toView(payment);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Outra réplica criou o pagamento com a mesma chave ao mesmo tempo; a transação foi desfeita
+            log.info("Chave de idempotência {} registrada concorrentemente, devolvendo pagamento existente", key);
+            return findStored(key, requestHash).orElseThrow(() -> e);
+        }
+
+        idempotencyIndex.complete(key, requestHash, created);
+        count(Outcome.CREATED);
+        return new CreationResult(Outcome.CREATED, created);
+    }
+
+    // Registra a alteração para o feed (ver PaymentChangeFeed). A sequência de payment_outbox é atribuída no INSERT:
+    // as demais escritas vão antes (flush), para que uma falha delas, como a chave de idempotência duplicada,
+    // desfaça a transação sem deixar uma lacuna na sequência, e o intervalo até o commit seja o menor possível.
+    // O flush pelo repositório traduz a violação de chave para DataIntegrityViolationException
+    private void recordChange(PaymentChange.Type type, String paymentId, LocalDateTime changedAt) {
+        paymentRepository.flush();
+        entityManager.persist(new PaymentOutboxEntry(type, paymentId, changedAt));
+    }
+
+    private CreationResult fromIndex(IdempotencyIndex.Entry entry, String requestHash) {
+        if (!entry.requestHash().equals(requestHash)) {
+            return count(new CreationResult(Outcome.KEY_REUSED, null));
+        }
+        if (entry.isInFlight()) {
+            return count(new CreationResult(Outcome.IN_PROGRESS, null));
+        }
+        return count(new CreationResult(Outcome.REPLAYED, entry.response()));
+    }
+
+    private Optional<CreationResult> findStored(String key, String requestHash) {
+        return idempotencyKeyRepository.findById(key)
+                .filter(stored -> stored.getExpiresAt().isAfter(LocalDateTime.now()))
+                .map(stored -> {
+                    if (!stored.getRequestHash().equals(requestHash)) {
+                        return count(new CreationResult(Outcome.KEY_REUSED, null));
+                    }
+                    Optional<PaymentView> payment = findView(stored.getPaymentId());
+                    payment.ifPresent(view -> idempotencyIndex.complete(key, requestHash, view));
+                    return count(new CreationResult(Outcome.REPLAYED, payment.orElse(null)));
+                });
+    }
+
+    /**
+     * Remove as chaves expiradas da memória e da tabela de cada shard.
+     * Agendada pelo MaintenanceScheduler (ver MaintenanceTasksConfig).
+     */
+    public void purgeExpiredKeys() {
+        int fromIndex = idempotencyIndex.purgeExpired();
+        LocalDateTime now = LocalDateTime.now();
+        int fromTable = shardRouter.fanOut("idempotency-purge", shard -> idempotencyKeyRepository.deleteExpired(now))
+                .values().stream().mapToInt(Integer::intValue).sum();
+        if (fromIndex > 0 || fromTable > 0) {
+            log.info("Chaves de idempotência expiradas removidas: {} em memória, {} na tabela", fromIndex, fromTable);
+        }
+    }
+
+    private CreationResult count(CreationResult result) {
+        count(result.outcome());
+        return result;
+    }
+
+    private void count(Outcome outcome) {
+        meterRegistry.counter("payments.idempotency.requests", "outcome", outcome.name().toLowerCase()).increment();
+    }
+
+    private static PaymentView toView(Payment payment) {
+        return new PaymentView(payment.getId(), payment.getName(), payment.getCcInfo(), payment.getAmount(),
+                payment.getCreatedAt());
+    }
+
+    private static String hash(Payment payment) {
+        String canonical = payment.getName() + '\u0000' + payment.getCcInfo() + '\u0000'
+                + (payment.getAmount() != null ? payment.getAmount().stripTrailingZeros().toPlainString() : null);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.vaultrotation.config;
+
+import com.example.vaultrotation.config.AdaptiveConcurrencyLimiter.Permit;
+import com.example.vaultrotation.config.AdaptiveConcurrencyLimiter.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Limite de concorrência pelo gradiente de latência, com as janelas conduzidas por um relógio simulado
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TrafficIsolationProperties.AdaptiveLimitDefinition definition =
+            new TrafficIsolationProperties.AdaptiveLimitDefinition();
+    private AdaptiveConcurrencyLimiter limiter;
+    private long clock;
+
+    @BeforeEach
+    void setUp() {
+        definition.setInitialLimit(10);
+        definition.setMinLimit(2);
+        definition.setMaxLimit(40);
+        definition.setWindow(Duration.ofMillis(100));
+        definition.setMinWindowSamples(10);
+        limiter = new AdaptiveConcurrencyLimiter("payments", definition, meterRegistry);
+        clock = System.nanoTime();
+    }
+
+    @Test
+    void rejectsAboveTheLimitAndKeepsTheReadReserve() {
+        List<Permit> permits = new ArrayList<>();
+        // 25% do limite de 10 reservado às leituras: escritas até 7
+        for (int i = 0; i < 7; i++) {
+            permits.add(limiter.tryAcquire(Priority.WRITE));
+        }
+        assertThat(permits).doesNotContainNull();
+        assertThat(limiter.tryAcquire(Priority.WRITE)).isNull();
+
+        for (int i = 0; i < 3; i++) {
+            permits.add(limiter.tryAcquire(Priority.READ));
+        }
+        assertThat(permits).doesNotContainNull();
+        assertThat(limiter.tryAcquire(Priority.READ)).isNull();
+        assertThat(limiter.getInFlight()).isEqualTo(10);
+        assertThat(meterRegistry.get("concurrency.shed").tag("priority", "write").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("concurrency.shed").tag("priority", "read").counter().count()).isEqualTo(1);
+
+        permits.get(0).release(false);
+        assertThat(limiter.tryAcquire(Priority.READ)).isNotNull();
+    }
+
+    @Test
+    void growsWhileLatencyStaysAtTheReference() {
+        for (int i = 0; i < 20; i++) {
+            window(10, limiter.getLimit(), false);
+        }
+        assertThat(limiter.getLimit()).isGreaterThan(15);
+    }
+
+    @Test
+    void queueingLatencyLowersTheLimitAndTheReferenceDoesNotFollowIt() {
+        for (int i = 0; i < 10; i++) {
+            window(10, limiter.getLimit(), false);
+        }
+        int beforeQueueing = limiter.getLimit();
+
+        for (int i = 0; i < 10; i++) {
+            // Sob sobrecarga: houve rejeições na janela
+            saturate();
+            window(40, limiter.getLimit(), false);
+        }
+        assertThat(limiter.getLimit()).isLessThan(beforeQueueing);
+        assertThat(meterRegistry.get("concurrency.rtt.long").gauge().value()).isLessThan(15);
+    }
+
+    @Test
+    void failuresBackOffTheLimit() {
+        window(10, limiter.getLimit(), false);
+        int before = limiter.getLimit();
+
+        window(10, limiter.getLimit(), true);
+        assertThat(limiter.getLimit()).isEqualTo((int) (before * definition.getBackoffRatio()));
+    }
+
+    @Test
+    void lowDemandHoldsTheLimit() {
+        for (int i = 0; i < 20; i++) {
+            window(10, 2, false);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void limitStaysWithinMinAndMax() {
+        for (int i = 0; i < 100; i++) {
+            window(10, limiter.getLimit(), true);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(definition.getMinLimit());
+
+        for (int i = 0; i < 200; i++) {
+            window(10, limiter.getLimit(), false);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(definition.getMaxLimit());
+    }
+
+    // Uma janela completa: min-window-samples requisições com a mesma latência, a última depois de window
+    private void window(long rttMillis, int inFlight, boolean dropped) {
+        long rtt = TimeUnit.MILLISECONDS.toNanos(rttMillis);
+        long step = definition.getWindow().toNanos() / definition.getMinWindowSamples() + 1;
+        for (int i = 0; i < definition.getMinWindowSamples(); i++) {
+            clock += step;
+            limiter.sample(clock, rtt, inFlight, dropped && i == 0);
+        }
+    }
+
+    // Ocupa as vagas até a primeira rejeição; as vagas não são devolvidas, para não registrar latência real
+    private void saturate() {
+        while (limiter.tryAcquire(Priority.READ) != null) {
+            assertThat(limiter.getInFlight()).isLessThanOrEqualTo(definition.getMaxLimit());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Rotação forçada que não termina: a readiness não pode ficar presa em rotationInProgress
+ */
+class ConnectionHealthMonitorTest {
+
+    private final RotatingPool pool = mock(RotatingPool.class);
+    private final VaultRefresher vaultRefresher = mock(VaultRefresher.class);
+    private final RotatingDataSourceRegistry registry = mock(RotatingDataSourceRegistry.class);
+    private ObjectProvider<VaultRefresher> vaultRefresherProvider;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        DataSourceDefinition definition = new DataSourceDefinition();
+        definition.setName("payments");
+        definition.setRole("payments-app");
+        when(pool.getName()).thenReturn("payments");
+        when(pool.getDefinition()).thenReturn(definition);
+        when(registry.getPools()).thenReturn(List.of(pool));
+        vaultRefresherProvider = mock(ObjectProvider.class);
+        when(vaultRefresherProvider.getIfAvailable()).thenReturn(vaultRefresher);
+    }
+
+    @Test
+    void failedRotationClearsTheFlagAndAllowsTheNextAttempt() {
+        ConnectionHealthMonitor monitor = monitor(Duration.ofMinutes(2));
+
+        monitor.triggerManualRotation(pool);
+        assertThat(monitor.isRotationInProgress(pool)).isTrue();
+        monitor.triggerManualRotation(pool);
+        verify(vaultRefresher, times(1)).requestRotation(anyString(), anyString());
+
+        monitor.onRotationFailed(pool, "erro do Vault: permission denied");
+        assertThat(monitor.isRotationInProgress(pool)).isFalse();
+        monitor.triggerManualRotation(pool);
+        verify(vaultRefresher, times(2)).requestRotation(anyString(), anyString());
+    }
+
+    @Test
+    void rotationWithoutOutcomeExpiresAfterTheTimeout() throws Exception {
+        ConnectionHealthMonitor monitor = monitor(Duration.ofMillis(50));
+
+        monitor.triggerManualRotation(pool);
+        assertThat(monitor.isRotationInProgress(pool)).isTrue();
+        Thread.sleep(80);
+
+        assertThat(monitor.isRotationInProgress(pool)).isFalse();
+        monitor.triggerManualRotation(pool);
+        verify(vaultRefresher, times(2)).requestRotation(anyString(), anyString());
+    }
+
+    private ConnectionHealthMonitor monitor(Duration rotationTimeout) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new ConnectionHealthMonitor(registry, vaultRefresherProvider,
+                new RotationEventJournal(meterRegistry, 64), meterRegistry, rotationTimeout);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.vaultrotation.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Configurações da API externa em logs e diagnósticos: a chave nunca aparece
+ */
+class ExternalApiClientSettingsTest {
+
+    @Test
+    void toStringMasksTheApiKey() {
+        ExternalApiClient.Settings settings = new ExternalApiClient.Settings(
+                URI.create("https://api.example.com"), "sk-live-5f2c9a71e04b", 3000, 7);
+
+        assertThat(settings.toString())
+                .doesNotContain("sk-live-5f2c9a71e04b")
+                .contains("apiKey=****", "https://api.example.com", "version=7");
+    }
+}
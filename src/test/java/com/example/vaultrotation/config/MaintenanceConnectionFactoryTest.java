@@ -0,0 +1,96 @@
+package com.example.vaultrotation.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.vault.VaultException;
+import org.springframework.vault.core.VaultOperations;
+import org.springframework.vault.core.lease.domain.Lease;
+import org.springframework.vault.support.VaultResponse;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * DDL de manutenção com o usuário do maintenance-role: lease obtida na abertura e revogada no fechamento
+ */
+class MaintenanceConnectionFactoryTest {
+
+    private final VaultOperations vaultOperations = mock(VaultOperations.class);
+    private final PoolGenerationRetirer retirer = mock(PoolGenerationRetirer.class);
+    private final RotatingPool pool = mock(RotatingPool.class);
+    private final DataSourceDefinition definition = new DataSourceDefinition();
+    private MaintenanceConnectionFactory factory;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        definition.setName("payments");
+        definition.setRole("payments-app");
+        definition.setUrl("jdbc:h2:mem:maintenance;DB_CLOSE_DELAY=-1");
+        when(pool.getName()).thenReturn("payments");
+        when(pool.getDefinition()).thenReturn(definition);
+        ObjectProvider<VaultOperations> vaultOperationsProvider = mock(ObjectProvider.class);
+        when(vaultOperationsProvider.getIfAvailable()).thenReturn(vaultOperations);
+        factory = new MaintenanceConnectionFactory(vaultOperationsProvider, retirer);
+    }
+
+    @Test
+    void maintenanceRoleLeaseIsRevokedWhenTheConnectionCloses() throws Exception {
+        definition.setMaintenanceRole("payments-maintenance");
+        VaultResponse response = new VaultResponse();
+        response.setLeaseId("database/creds/payments-maintenance/x1");
+        response.setLeaseDuration(900);
+        response.setData(Map.of("username", "sa", "password", ""));
+        when(vaultOperations.read("database/creds/payments-maintenance")).thenReturn(response);
+
+        Connection connection;
+        try (MaintenanceConnectionFactory.MaintenanceConnection maintenance = factory.open(pool)) {
+            connection = maintenance.connection();
+            assertThat(connection.isValid(1)).isTrue();
+            verify(retirer, never()).revokeMaintenance(anyString(), any());
+        }
+        assertThat(connection.isClosed()).isTrue();
+        ArgumentCaptor<Lease> lease = ArgumentCaptor.forClass(Lease.class);
+        verify(retirer).revokeMaintenance(eq("payments"), lease.capture());
+        assertThat(lease.getValue().getLeaseId()).isEqualTo("database/creds/payments-maintenance/x1");
+        assertThat(lease.getValue().getLeaseDuration()).isEqualTo(Duration.ofMinutes(15));
+        verify(pool, never()).getConnection();
+    }
+
+    @Test
+    void withoutMaintenanceRoleThePoolIsUsed() throws Exception {
+        Connection pooled = mock(Connection.class);
+        when(pool.getConnection()).thenReturn(pooled);
+
+        try (MaintenanceConnectionFactory.MaintenanceConnection maintenance = factory.open(pool)) {
+            assertThat(maintenance.connection()).isSameAs(pooled);
+        }
+        verify(pooled).close();
+        verify(vaultOperations, never()).read(anyString());
+        verify(retirer, never()).revokeMaintenance(anyString(), any());
+    }
+
+    @Test
+    void vaultErrorIsReportedAsSqlException() {
+        definition.setMaintenanceRole("payments-maintenance");
+        when(vaultOperations.read(anyString())).thenThrow(new VaultException("Status 403 Forbidden: permission denied"));
+
+        assertThatThrownBy(() -> factory.open(pool))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("database/creds/payments-maintenance");
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.vaultrotation.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mascaramento de dados sensíveis nas mensagens de log
+ */
+class MaskingMessageConverterTest {
+
+    @Test
+    void masksContiguousCardNumberInLombokToString() {
+        assertThat(MaskingMessageConverter.mask("Payment(id=1, name=Maria, ccInfo=4111111111111111, amount=10.00)"))
+                .isEqualTo("Payment(id=1, name=Maria, ccInfo=****, amount=10.00)");
+    }
+
+    @Test
+    void masksSpacedAndDashedCardNumbersUpToTheDelimiter() {
+        assertThat(MaskingMessageConverter.mask("Payment(id=1, ccInfo=4111 1111 1111 1111, amount=10.00)"))
+                .isEqualTo("Payment(id=1, ccInfo=****, amount=10.00)");
+        assertThat(MaskingMessageConverter.mask("Payment(id=1, ccInfo=4111-1111-1111-1111)"))
+                .isEqualTo("Payment(id=1, ccInfo=****)");
+        assertThat(MaskingMessageConverter.mask("ccInfo=4111 - 1111 - 1111 - 1111"))
+                .isEqualTo("ccInfo=****");
+    }
+
+    @Test
+    void masksQuotedJsonValuesUpToTheClosingQuote() {
+        assertThat(MaskingMessageConverter.mask("{\"name\":\"Maria\",\"ccInfo\":\"4111 1111 1111 1111\",\"amount\":10.00}"))
+                .isEqualTo("{\"name\":\"Maria\",\"ccInfo\":\"****\",\"amount\":10.00}");
+        assertThat(MaskingMessageConverter.mask("{\"cc_info\": \"4111-1111-1111-1111\"}"))
+                .isEqualTo("{\"cc_info\": \"****\"}");
+        assertThat(MaskingMessageConverter.mask("{\"password\":\"a \\\"b\\\", c\"}"))
+                .isEqualTo("{\"password\":\"****\"}");
+    }
+
+    @Test
+    void masksVaultUsernamesKeepingTheSuffix() {
+        assertThat(MaskingMessageConverter.mask("Pool criado com usuário v-token-payments-a-Xyz123-1697040000"))
+                .isEqualTo("Pool criado com usuário v-****0000");
+    }
+
+    @Test
+    void leavesMessagesWithoutSensitiveFieldsUntouched() {
+        String message = "Pagamento criado: id=1, amount=10.00";
+        assertThat(MaskingMessageConverter.mask(message)).isSameAs(message);
+    }
+}
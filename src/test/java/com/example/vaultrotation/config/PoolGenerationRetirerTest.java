@@ -0,0 +1,111 @@
+package com.example.vaultrotation.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.vault.VaultException;
+import org.springframework.vault.core.VaultOperations;
+import org.springframework.vault.core.lease.domain.Lease;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Aposentadoria de uma geração: a lease só é revogada depois que as conexões emprestadas voltam
+ */
+class PoolGenerationRetirerTest {
+
+    private static final String LEASE_ID = "database/creds/payments-app/h7Kq2";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final VaultOperations vaultOperations = mock(VaultOperations.class);
+    private final HikariDataSource dataSource = mock(HikariDataSource.class);
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private PoolGenerationRetirer retirer;
+    private PoolGeneration generation;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<VaultOperations> vaultOperationsProvider = mock(ObjectProvider.class);
+        when(vaultOperationsProvider.getIfAvailable()).thenReturn(vaultOperations);
+        retirer = new PoolGenerationRetirer(vaultOperationsProvider, mock(MySqlUserManager.class),
+                new RotationEventJournal(meterRegistry, 64), meterRegistry);
+        ReflectionTestUtils.setField(retirer, "drainTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(retirer, "pollInterval", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(retirer, "revokeSupersededLeases", true);
+
+        HikariPoolMXBean mxBean = mock(HikariPoolMXBean.class);
+        when(mxBean.getActiveConnections()).thenAnswer(invocation -> activeConnections.get());
+        when(dataSource.getHikariPoolMXBean()).thenReturn(mxBean);
+        when(dataSource.getPoolName()).thenReturn("payments-gen-1");
+        generation = new PoolGeneration("payments", 1, dataSource, "v-payments-h7Kq2",
+                Lease.of(LEASE_ID, Duration.ofHours(1), true));
+    }
+
+    @AfterEach
+    void tearDown() {
+        retirer.destroy();
+    }
+
+    @Test
+    void leaseIsRevokedOnlyAfterActiveConnectionsReachZero() throws Exception {
+        activeConnections.set(2);
+        retirer.retire(generation);
+
+        Thread.sleep(100);
+        assertThat(generation.getState()).isEqualTo(PoolGeneration.State.DRAINING);
+        verify(dataSource, never()).close();
+        verify(vaultOperations, never()).write(anyString(), any());
+
+        activeConnections.set(0);
+        waitFor(() -> generation.getState() == PoolGeneration.State.REVOKED);
+        InOrder order = inOrder(dataSource, vaultOperations);
+        order.verify(dataSource).close();
+        order.verify(vaultOperations).write(eq("sys/leases/revoke/" + LEASE_ID), isNull());
+        assertThat(revocations("success")).isEqualTo(1);
+    }
+
+    @Test
+    void failedRevocationLeavesTheGenerationOrphaned() throws Exception {
+        when(vaultOperations.write(anyString(), any())).thenThrow(new VaultException("Status 403 Forbidden: permission denied"));
+        retirer.retire(generation);
+
+        waitFor(() -> generation.getState() == PoolGeneration.State.ORPHANED);
+        assertThat(generation.isOrphaned()).isTrue();
+        assertThat(generation.describe().get("lastError")).asString().contains("permission denied");
+        verify(dataSource).close();
+        assertThat(revocations("failure")).isEqualTo(1);
+    }
+
+    private double revocations(String result) {
+        return meterRegistry.get("db.lease.revocations").tag("result", result).counter().count();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condição não atendida em 2s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
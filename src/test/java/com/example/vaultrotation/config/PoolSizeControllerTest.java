@@ -0,0 +1,88 @@
+package com.example.vaultrotation.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Teto do dimensionamento adaptativo pelo limite de conexões do usuário, lido na rotação
+ */
+class PoolSizeControllerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RotatingPool pool = mock(RotatingPool.class);
+    private final HikariDataSource dataSource = mock(HikariDataSource.class);
+    private final HikariPoolMXBean mxBean = mock(HikariPoolMXBean.class);
+    private PoolSizeController controller;
+
+    @BeforeEach
+    void setUp() {
+        DataSourceDefinition definition = new DataSourceDefinition();
+        definition.setName("payments");
+        definition.setPoolSizeCeiling(20);
+        when(pool.getName()).thenReturn("payments");
+        when(pool.getDefinition()).thenReturn(definition);
+        when(pool.getCurrent()).thenReturn(dataSource);
+        when(pool.getAcquireTimer()).thenReturn(Timer.builder("acquire").register(meterRegistry));
+        when(pool.getAcquireTimeoutCounter()).thenReturn(Counter.builder("timeouts").register(meterRegistry));
+        when(dataSource.getHikariPoolMXBean()).thenReturn(mxBean);
+
+        controller = new PoolSizeController(meterRegistry);
+        ReflectionTestUtils.setField(controller, "growWaitThreshold", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(controller, "shrinkWaitThreshold", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(controller, "shrinkUtilization", 0.5);
+        ReflectionTestUtils.setField(controller, "shrinkAfterEvaluations", 6);
+    }
+
+    @Test
+    void growsUpToTheUserConnectionLimitWithoutBorrowingConnections() throws Exception {
+        when(pool.getMaximumPoolSize()).thenReturn(8);
+        when(pool.getUserConnectionLimit()).thenReturn(10);
+        when(mxBean.getActiveConnections()).thenReturn(8);
+        when(mxBean.getThreadsAwaitingConnection()).thenReturn(3);
+
+        assertThat(controller.evaluate(pool)).isEqualTo(PoolSizeController.Decision.GROW);
+        verify(pool).resize(10);
+
+        when(pool.getMaximumPoolSize()).thenReturn(10);
+        assertThat(controller.evaluate(pool)).isEqualTo(PoolSizeController.Decision.CAPPED);
+        verify(dataSource, never()).getConnection();
+        assertThat(meterRegistry.get("db.pool.size.budget").gauge().value()).isEqualTo(10);
+    }
+
+    @Test
+    void unknownLimitLeavesOnlyTheConfiguredCeiling() throws Exception {
+        when(pool.getMaximumPoolSize()).thenReturn(18);
+        when(pool.getUserConnectionLimit()).thenReturn(0);
+        when(mxBean.getActiveConnections()).thenReturn(18);
+        when(mxBean.getThreadsAwaitingConnection()).thenReturn(5);
+
+        assertThat(controller.evaluate(pool)).isEqualTo(PoolSizeController.Decision.GROW);
+        verify(pool).resize(20);
+        verify(dataSource, never()).getConnection();
+    }
+
+    @Test
+    void rotatingPoolIsNotResized() {
+        when(pool.isRotating()).thenReturn(true);
+
+        assertThat(controller.evaluate(pool)).isEqualTo(PoolSizeController.Decision.HOLD);
+        verify(pool, never()).resize(anyInt());
+        verifyNoInteractions(mxBean);
+    }
+}
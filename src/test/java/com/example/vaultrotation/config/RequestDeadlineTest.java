@@ -0,0 +1,72 @@
+package com.example.vaultrotation.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Query timeout dos statements: com cachePrepStmts o driver devolve o mesmo statement para o mesmo SQL,
+ * e o timeout de uma requisição com prazo não pode valer para quem vem depois sem prazo.
+ */
+class RequestDeadlineTest {
+
+    @Test
+    void cachedStatementLosesTheTimeoutOfThePreviousRequest() throws Exception {
+        PreparedStatement cached = new TimeoutRecordingStatement().statement();
+        Connection physical = mock(Connection.class);
+        when(physical.prepareStatement(anyString())).thenReturn(cached);
+        Connection connection = RequestDeadline.withQueryTimeout(physical);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        RequestDeadline.callWith(deadline, () -> {
+            try {
+                return connection.prepareStatement("SELECT 1");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(cached.getQueryTimeout()).isBetween(1, 5);
+
+        connection.prepareStatement("SELECT 1");
+        assertThat(cached.getQueryTimeout()).isZero();
+    }
+
+    @Test
+    void proxyIdentityIsNotForwardedToTheConnection() {
+        Connection physical = mock(Connection.class);
+        Connection connection = RequestDeadline.withQueryTimeout(physical);
+        Connection other = RequestDeadline.withQueryTimeout(physical);
+
+        assertThat(connection).isEqualTo(connection);
+        assertThat(connection).isNotEqualTo(physical);
+        assertThat(connection).isNotEqualTo(other);
+        assertThat(connection.hashCode()).isEqualTo(System.identityHashCode(connection));
+        assertThat(connection.toString()).contains(physical.toString());
+        verifyNoInteractions(physical);
+    }
+
+    // Statement que guarda o query timeout, como o do driver
+    private static final class TimeoutRecordingStatement {
+        private int timeout;
+
+        PreparedStatement statement() throws Exception {
+            PreparedStatement statement = mock(PreparedStatement.class);
+            when(statement.getQueryTimeout()).thenAnswer(invocation -> timeout);
+            doAnswer(invocation -> {
+                timeout = invocation.getArgument(0);
+                return null;
+            }).when(statement).setQueryTimeout(anyInt());
+            return statement;
+        }
+    }
+}
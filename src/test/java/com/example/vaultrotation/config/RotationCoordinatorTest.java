@@ -0,0 +1,306 @@
+package com.example.vaultrotation.config;
+
+import com.example.vaultrotation.repository.RotationSlotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ocupação de vagas e adiamento das rotações agendadas, com a tabela rotation_slots simulada
+ */
+class RotationCoordinatorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RotationSlotRepository repository = mock(RotationSlotRepository.class);
+    private final AtomicBoolean slotFree = new AtomicBoolean(true);
+    private final RotatingPool pool = mock(RotatingPool.class);
+    private RotationCoordinator coordinator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(pool.getName()).thenReturn("payments");
+        when(repository.claim(anyString(), anyString(), anyLong(), anyInt())).thenAnswer(invocation -> slotFree.get() ? 1 : 0);
+        when(repository.findSlotHeldBy(anyString())).thenReturn(Optional.of(0));
+        ObjectProvider<RotationSlotRepository> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(repository);
+
+        RotationCoordinationProperties properties = new RotationCoordinationProperties();
+        properties.setInstanceId("replica-1");
+        properties.setRetryInterval(Duration.ofMillis(20));
+        properties.setMaxDefer(Duration.ofMillis(300));
+        properties.setExpiryMaxDefer(Duration.ofMillis(150));
+        coordinator = new RotationCoordinator(properties, provider, new RotationEventJournal(meterRegistry, 64), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.destroy();
+    }
+
+    @Test
+    void freeSlotRunsTheRotationAndHoldsTheSlot() throws Exception {
+        CountDownLatch rotated = new CountDownLatch(1);
+        coordinator.whenSlotAvailable(pool, "verificação periódica", false, rotated::countDown);
+
+        assertThat(rotated.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get("rotation.slots.held").gauge().value()).isEqualTo(1);
+        coordinator.release(pool);
+        assertThat(meterRegistry.get("rotation.slots.held").gauge().value()).isZero();
+    }
+
+    @Test
+    void busyFleetDefersUntilASlotFrees() throws Exception {
+        slotFree.set(false);
+        CountDownLatch rotated = new CountDownLatch(1);
+        coordinator.whenSlotAvailable(pool, "verificação periódica", false, rotated::countDown);
+
+        assertThat(rotated.await(80, TimeUnit.MILLISECONDS)).isFalse();
+        slotFree.set(true);
+        assertThat(rotated.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(counter("rotation.coordination.deferred")).isEqualTo(1);
+    }
+
+    @Test
+    void periodicRotationIsSkippedAfterMaxDefer() throws Exception {
+        slotFree.set(false);
+        AtomicInteger rotations = new AtomicInteger();
+        coordinator.whenSlotAvailable(pool, "verificação periódica", false, rotations::incrementAndGet);
+
+        waitFor(() -> counter("rotation.coordination.skipped") == 1);
+        assertThat(rotations).hasValue(0);
+    }
+
+    @Test
+    void expiringLeaseUpgradesTheWaitingPeriodicRotation() throws Exception {
+        slotFree.set(false);
+        AtomicInteger periodic = new AtomicInteger();
+        CountDownLatch expiring = new CountDownLatch(1);
+        coordinator.whenSlotAvailable(pool, "verificação periódica", false, periodic::incrementAndGet);
+        coordinator.whenSlotAvailable(pool, "lease expirando", true, expiring::countDown);
+
+        // Sem vaga, a rotação segue ao fim de expiry-max-defer em vez de ser descartada com a periódica
+        assertThat(expiring.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(periodic).hasValue(0);
+        assertThat(counter("rotation.coordination.skipped")).isZero();
+        assertThat(counter("rotation.coordination.uncoordinated")).isEqualTo(1);
+    }
+
+    @Test
+    void repeatedRequestsWhileWaitingRunOneRotation() throws Exception {
+        slotFree.set(false);
+        AtomicInteger rotations = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            coordinator.whenSlotAvailable(pool, "verificação periódica", false, rotations::incrementAndGet);
+        }
+        slotFree.set(true);
+
+        waitFor(() -> rotations.get() == 1);
+        Thread.sleep(100);
+        assertThat(rotations).hasValue(1);
+    }
+
+    @Test
+    void unavailableSlotTableRotatesWithoutCoordination() throws Exception {
+        when(repository.claim(anyString(), anyString(), anyLong(), anyInt())).thenThrow(new IllegalStateException("banco indisponível"));
+        CountDownLatch rotated = new CountDownLatch(1);
+        coordinator.whenSlotAvailable(pool, "verificação periódica", false, rotated::countDown);
+
+        assertThat(rotated.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(counter("rotation.coordination.uncoordinated")).isEqualTo(1);
+    }
+
+    @Test
+    void claimNotReleasedWithinTheSlotTtlIsClaimedAgain() throws Exception {
+        RotationCoordinationProperties properties = new RotationCoordinationProperties();
+        properties.setInstanceId("replica-1");
+        properties.setSlotTtl(Duration.ofMillis(100));
+        RotationCoordinator stale = new RotationCoordinator(properties, provider(repository),
+                new RotationEventJournal(meterRegistry, 64), new SimpleMeterRegistry());
+        try {
+            CountDownLatch first = new CountDownLatch(1);
+            stale.whenSlotAvailable(pool, "verificação periódica", false, first::countDown);
+            assertThat(first.await(2, TimeUnit.SECONDS)).isTrue();
+
+            // Sem release (rotação perdida): depois do TTL a vaga pode ser de outra réplica
+            Thread.sleep(150);
+            CountDownLatch second = new CountDownLatch(1);
+            stale.whenSlotAvailable(pool, "verificação periódica", false, second::countDown);
+            assertThat(second.await(2, TimeUnit.SECONDS)).isTrue();
+            verify(repository, times(2)).claim(anyString(), anyString(), anyLong(), anyInt());
+        } finally {
+            stale.destroy();
+        }
+    }
+
+    @Test
+    void replicasSharingTheSlotTableNeverExceedMaxConcurrent() throws Exception {
+        int replicas = 6;
+        InMemorySlots slots = new InMemorySlots();
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        CountDownLatch rotated = new CountDownLatch(replicas);
+        List<RotationCoordinator> fleet = new ArrayList<>();
+        try {
+            for (int i = 0; i < replicas; i++) {
+                RotationCoordinationProperties properties = new RotationCoordinationProperties();
+                properties.setInstanceId("payments-api-" + i);
+                properties.setMaxConcurrent(2);
+                properties.setRetryInterval(Duration.ofMillis(10));
+                properties.setMaxDefer(Duration.ofSeconds(5));
+                fleet.add(new RotationCoordinator(properties, provider(slots.repository()),
+                        new RotationEventJournal(meterRegistry, 64), new SimpleMeterRegistry()));
+            }
+            for (RotationCoordinator replica : fleet) {
+                replica.whenSlotAvailable(pool, "verificação periódica", false, () -> {
+                    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(40);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    active.decrementAndGet();
+                    rotated.countDown();
+                    replica.release(pool);
+                });
+            }
+
+            assertThat(rotated.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(maxActive.get()).isBetween(1, 2);
+            assertThat(slots.maxHeld()).isEqualTo(2);
+        } finally {
+            fleet.forEach(RotationCoordinator::destroy);
+        }
+    }
+
+    @Test
+    void alignedDelaysSpreadReplicasAcrossThePeriod() {
+        Duration period = Duration.ofMinutes(10);
+        long periodMillis = period.toMillis();
+        int replicas = 16;
+        long[] offsets = new long[replicas];
+        for (int i = 0; i < replicas; i++) {
+            RotationCoordinationProperties properties = new RotationCoordinationProperties();
+            properties.setInstanceId("payments-api-" + i);
+            RotationCoordinator replica = new RotationCoordinator(properties, provider(repository),
+                    new RotationEventJournal(meterRegistry, 64), new SimpleMeterRegistry());
+            try {
+                long delay = replica.alignedDelay("credential-check", period).toMillis();
+                assertThat(delay).isBetween(0L, periodMillis - 1);
+                offsets[i] = Math.floorMod(System.currentTimeMillis() + delay, periodMillis);
+
+                // O horário é fixo por réplica, e não contado a partir da chamada
+                long again = Math.floorMod(System.currentTimeMillis()
+                        + replica.alignedDelay("credential-check", period).toMillis(), periodMillis);
+                assertThat(Math.abs(again - offsets[i])).isLessThan(1_000);
+            } finally {
+                replica.destroy();
+            }
+        }
+
+        // Réplicas em todos os quartos do período, nenhum com mais da metade da frota
+        int[] quarters = new int[4];
+        for (long offset : offsets) {
+            quarters[(int) (offset * 4 / periodMillis)]++;
+        }
+        for (int count : quarters) {
+            assertThat(count).isBetween(1, replicas / 2);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<RotationSlotRepository> provider(RotationSlotRepository repository) {
+        ObjectProvider<RotationSlotRepository> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(repository);
+        return provider;
+    }
+
+    /**
+     * Tabela rotation_slots compartilhada pelas réplicas, com a mesma semântica das consultas do repositório
+     */
+    private static final class InMemorySlots {
+
+        private final Map<Integer, String> holders = new HashMap<>();
+        private final Map<Integer, Long> expiresAt = new HashMap<>();
+        private int maxHeld;
+
+        RotationSlotRepository repository() {
+            RotationSlotRepository repository = mock(RotationSlotRepository.class);
+            when(repository.claim(anyString(), anyString(), anyLong(), anyInt())).thenAnswer(invocation ->
+                    claim(invocation.getArgument(0), invocation.<Long>getArgument(2), invocation.<Integer>getArgument(3)));
+            when(repository.findSlotHeldBy(anyString())).thenAnswer(invocation -> slotHeldBy(invocation.getArgument(0)));
+            when(repository.release(anyString())).thenAnswer(invocation -> release(invocation.getArgument(0)));
+            return repository;
+        }
+
+        synchronized int claim(String holder, long ttlSeconds, int slots) {
+            long now = System.nanoTime();
+            for (int slot = 0; slot < slots; slot++) {
+                if (holders.get(slot) == null || expiresAt.get(slot) < now) {
+                    holders.put(slot, holder);
+                    expiresAt.put(slot, now + TimeUnit.SECONDS.toNanos(ttlSeconds));
+                    maxHeld = Math.max(maxHeld, (int) holders.values().stream().filter(h -> h != null).count());
+                    return 1;
+                }
+            }
+            return 0;
+        }
+
+        synchronized Optional<Integer> slotHeldBy(String holder) {
+            return holders.entrySet().stream()
+                    .filter(entry -> holder.equals(entry.getValue()))
+                    .map(Map.Entry::getKey)
+                    .findFirst();
+        }
+
+        synchronized int release(String holder) {
+            int released = 0;
+            for (Map.Entry<Integer, String> entry : holders.entrySet()) {
+                if (holder.equals(entry.getValue())) {
+                    entry.setValue(null);
+                    released++;
+                }
+            }
+            return released;
+        }
+
+        synchronized int maxHeld() {
+            return maxHeld;
+        }
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condição não atendida em 2s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
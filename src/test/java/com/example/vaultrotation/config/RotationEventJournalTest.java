@@ -0,0 +1,112 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Buffer circular do journal: sobrescrita dos eventos antigos e leitura concorrente com a gravação
+ */
+class RotationEventJournalTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertThat(journal(1000).capacity()).isEqualTo(1024);
+        assertThat(journal(1024).capacity()).isEqualTo(1024);
+        assertThat(journal(1025).capacity()).isEqualTo(2048);
+    }
+
+    @Test
+    void oldEventsAreOverwrittenAndReadInOrder() {
+        RotationEventJournal journal = journal(8);
+        for (int i = 0; i < 20; i++) {
+            journal.record(RotationEvent.Type.LEASE_RENEWED, "payments", "lease-" + i);
+        }
+
+        assertThat(sequences(journal.since(0, 100, event -> true))).containsExactly(12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L);
+        assertThat(sequences(journal.latest(3, event -> true))).containsExactly(17L, 18L, 19L);
+        assertThat(journal.since(12, 100, event -> true).get(0).detail()).isEqualTo("lease-12");
+        assertThat(journal.nextSequence()).isEqualTo(20);
+    }
+
+    @Test
+    void sinceHonoursTheStartTheLimitAndTheFilter() {
+        RotationEventJournal journal = journal(16);
+        for (int i = 0; i < 10; i++) {
+            journal.record(i % 2 == 0 ? RotationEvent.Type.LEASE_CREATED : RotationEvent.Type.POOL_PUBLISHED,
+                    i < 5 ? "payments" : "ledger", null);
+        }
+
+        assertThat(sequences(journal.since(4, 3, event -> true))).containsExactly(4L, 5L, 6L);
+        assertThat(sequences(journal.since(0, 100, event -> event.type() == RotationEvent.Type.POOL_PUBLISHED)))
+                .containsExactly(1L, 3L, 5L, 7L, 9L);
+        assertThat(sequences(journal.latest(2, event -> event.datasource().equals("payments")))).containsExactly(3L, 4L);
+        assertThat(journal.since(10, 100, event -> true)).isEmpty();
+    }
+
+    @Test
+    void concurrentWritersNeverExposeOverwrittenOrMisplacedEvents() throws Exception {
+        RotationEventJournal journal = journal(64);
+        int writers = 4;
+        int eventsPerWriter = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < eventsPerWriter; i++) {
+                        journal.record(RotationEvent.Type.LEASE_RENEWED, "payments", null);
+                    }
+                    return null;
+                }));
+            }
+            Future<Integer> reader = executor.submit(() -> {
+                start.await();
+                int reads = 0;
+                while (writing.get()) {
+                    List<Long> read = sequences(journal.since(0, 64, event -> true));
+                    // Cada evento lido está na sua posição, em ordem crescente, sem repetição
+                    assertThat(read).isSorted().doesNotHaveDuplicates();
+                    reads++;
+                }
+                return reads;
+            });
+
+            start.countDown();
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            assertThat(reader.get(30, TimeUnit.SECONDS)).isPositive();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long total = (long) writers * eventsPerWriter;
+        assertThat(journal.nextSequence()).isEqualTo(total);
+        assertThat(sequences(journal.since(0, 100, event -> true)))
+                .containsExactlyElementsOf(LongStream.range(total - 64, total).boxed().toList());
+    }
+
+    private static RotationEventJournal journal(int capacity) {
+        return new RotationEventJournal(new SimpleMeterRegistry(), capacity);
+    }
+
+    private static List<Long> sequences(List<RotationEvent> events) {
+        return events.stream().map(RotationEvent::sequence).toList();
+    }
+}
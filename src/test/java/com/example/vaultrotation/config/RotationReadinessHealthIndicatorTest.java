@@ -0,0 +1,117 @@
+package com.example.vaultrotation.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.vault.core.lease.SecretLeaseContainer;
+import org.springframework.vault.core.lease.domain.Lease;
+import org.springframework.vault.core.lease.domain.RequestedSecret;
+import org.springframework.vault.core.lease.event.LeaseListener;
+import org.springframework.vault.core.lease.event.SecretLeaseCreatedEvent;
+import org.springframework.vault.core.lease.event.SecretLeaseExpiredEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Readiness sem lease válida: a lease expirada continua conhecida e o datasource deixa de estar pronto
+ */
+class RotationReadinessHealthIndicatorTest {
+
+    private static final RequestedSecret SECRET = RequestedSecret.rotating("database/creds/payments-app");
+
+    private final RotatingPool pool = mock(RotatingPool.class);
+    private LeaseStateTracker tracker;
+    private LeaseListener leaseListener;
+    private RotationReadinessHealthIndicator indicator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        SecretLeaseContainer leaseContainer = mock(SecretLeaseContainer.class);
+        ObjectProvider<SecretLeaseContainer> leaseContainerProvider = mock(ObjectProvider.class);
+        when(leaseContainerProvider.getIfAvailable()).thenReturn(leaseContainer);
+        tracker = new LeaseStateTracker(leaseContainerProvider);
+        ArgumentCaptor<LeaseListener> captor = ArgumentCaptor.forClass(LeaseListener.class);
+        verify(leaseContainer).addLeaseListener(captor.capture());
+        leaseListener = captor.getValue();
+
+        DataSourceDefinition definition = new DataSourceDefinition();
+        definition.setName("payments");
+        definition.setRole("payments-app");
+        HikariDataSource current = mock(HikariDataSource.class);
+        when(current.getHikariPoolMXBean()).thenReturn(mock(HikariPoolMXBean.class));
+        when(pool.getName()).thenReturn("payments");
+        when(pool.getDefinition()).thenReturn(definition);
+        when(pool.getCurrent()).thenReturn(current);
+        RotatingDataSourceRegistry registry = mock(RotatingDataSourceRegistry.class);
+        when(registry.getPools()).thenReturn(List.of(pool));
+
+        indicator = new RotationReadinessHealthIndicator(tracker, registry);
+        ReflectionTestUtils.setField(indicator, "vaultEnabled", true);
+        ReflectionTestUtils.setField(indicator, "minLeaseTtl", Duration.ofSeconds(15));
+        ReflectionTestUtils.setField(indicator, "refreshInterval", 5000L);
+    }
+
+    @Test
+    void validLeaseIsReady() {
+        leaseListener.onLeaseEvent(created("lease-1"));
+
+        assertThat(refreshedStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void expiredLeaseIsKeptAndReportsNotReady() {
+        leaseListener.onLeaseEvent(created("lease-1"));
+        leaseListener.onLeaseEvent(new SecretLeaseExpiredEvent(SECRET, lease("lease-1")));
+
+        assertThat(tracker.getLeaseState(SECRET.getPath())).hasValueSatisfying(state -> {
+            assertThat(state.expired()).isTrue();
+            assertThat(state.remaining(Instant.now())).isZero();
+        });
+        assertThat(refreshedStatus()).isEqualTo(Status.DOWN);
+
+        // Uma nova lease no caminho volta a deixar o datasource pronto
+        leaseListener.onLeaseEvent(created("lease-2"));
+        assertThat(refreshedStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void expiryOfAReplacedLeaseKeepsTheCurrentOne() {
+        leaseListener.onLeaseEvent(created("lease-1"));
+        leaseListener.onLeaseEvent(created("lease-2"));
+        leaseListener.onLeaseEvent(new SecretLeaseExpiredEvent(SECRET, lease("lease-1")));
+
+        assertThat(refreshedStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void noLeaseYetIsNotReady() {
+        assertThat(refreshedStatus()).isEqualTo(Status.DOWN);
+    }
+
+    private Status refreshedStatus() {
+        indicator.refreshSnapshot();
+        return indicator.health().getStatus();
+    }
+
+    private static SecretLeaseCreatedEvent created(String leaseId) {
+        return new SecretLeaseCreatedEvent(SECRET, lease(leaseId), Map.of("username", "v-payments", "password", "secret"));
+    }
+
+    private static Lease lease(String leaseId) {
+        return Lease.of(leaseId, Duration.ofHours(1), true);
+    }
+}
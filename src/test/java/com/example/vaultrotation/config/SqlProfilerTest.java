@@ -0,0 +1,69 @@
+package com.example.vaultrotation.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Formato dos statements: o mesmo SQL com literais diferentes cai no mesmo formato, sem expor os valores
+ */
+class SqlProfilerTest {
+
+    @Test
+    void replacesStringAndNumberLiterals() {
+        assertThat(SqlProfiler.normalize("select * from payments where name = 'Maria' and amount > 150.00 limit 10"))
+                .isEqualTo("select * from payments where name = ? and amount > ? limit ?");
+    }
+
+    @Test
+    void replacesLiteralsWithEscapedAndDoubledQuotes() {
+        assertThat(SqlProfiler.normalize("insert into payments (name, cc_info) values ('O''Brien', 'a\\'b 4111 1111')"))
+                .isEqualTo("insert into payments (name, cc_info) values (?, ?)");
+    }
+
+    @Test
+    void keepsNumbersThatArePartOfIdentifiers() {
+        assertThat(SqlProfiler.normalize("select p1_0.id, p1_0.amount from payments_2024 p1_0 where p1_0.id=?"))
+                .isEqualTo("select p1_0.id, p1_0.amount from payments_2024 p1_0 where p1_0.id=?");
+    }
+
+    @Test
+    void collapsesInListsOfAnySize() {
+        String one = SqlProfiler.normalize("select id from payments where id in (?)");
+        String three = SqlProfiler.normalize("select id from payments where id IN ( ?, ?,? )");
+        String literals = SqlProfiler.normalize("select id from payments where id in (1, 2, 3, 4)");
+
+        assertThat(one).isEqualTo("select id from payments where id IN (?+)");
+        assertThat(three).isEqualTo(one);
+        assertThat(literals).isEqualTo(one);
+    }
+
+    @Test
+    void normalizesWhitespace() {
+        assertThat(SqlProfiler.normalize("  select id\n  from payments\t where id = ?  "))
+                .isEqualTo("select id from payments where id = ?");
+    }
+
+    @Test
+    void wrappedConnectionAndStatementKeepTheirOwnIdentity() throws Exception {
+        Connection physical = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(physical.prepareStatement("select 1")).thenReturn(statement);
+        SqlProfiler profiler = new SqlProfiler(new SqlProfilingProperties(), new SimpleMeterRegistry());
+
+        Connection connection = profiler.forDataSource("payments").wrap(physical);
+        PreparedStatement prepared = connection.prepareStatement("select 1");
+
+        assertThat(connection).isEqualTo(connection).isNotEqualTo(physical);
+        assertThat(connection.hashCode()).isEqualTo(System.identityHashCode(connection));
+        assertThat(connection.toString()).contains(physical.toString());
+        assertThat(prepared).isEqualTo(prepared).isNotEqualTo(statement);
+        assertThat(prepared.hashCode()).isEqualTo(System.identityHashCode(prepared));
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.vaultrotation.config;
+
+import com.example.vaultrotation.config.LeaseEventDispatcher.LeaseAction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.vault.core.lease.SecretLeaseContainer;
+import org.springframework.vault.core.lease.domain.Lease;
+import org.springframework.vault.core.lease.domain.RequestedSecret;
+import org.springframework.vault.core.lease.event.LeaseErrorListener;
+import org.springframework.vault.core.lease.event.LeaseListener;
+import org.springframework.vault.core.lease.event.SecretLeaseCreatedEvent;
+import org.springframework.vault.core.lease.event.SecretLeaseErrorEvent;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Eventos do container de leases: a lease inicial reconstrói o pool e a falha do Vault ao rotacionar
+ * libera a vaga da frota e avisa o monitor de saúde
+ */
+class VaultRefresherTest {
+
+    private static final String LEASE_PATH = "database/creds/payments-app";
+
+    private final SecretLeaseContainer leaseContainer = mock(SecretLeaseContainer.class);
+    private final RotatingDataSourceRegistry registry = mock(RotatingDataSourceRegistry.class);
+    private final RotationCoordinator rotationCoordinator = mock(RotationCoordinator.class);
+    private final ConnectionHealthMonitor healthMonitor = mock(ConnectionHealthMonitor.class);
+    private final LeaseEventDispatcher leaseEventDispatcher = mock(LeaseEventDispatcher.class);
+    private final RotatingPool pool = mock(RotatingPool.class);
+    private LeaseListener leaseListener;
+    private LeaseErrorListener errorListener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(pool.getName()).thenReturn("payments");
+        when(registry.getPools()).thenReturn(List.of());
+        when(registry.findByLeasePath(LEASE_PATH)).thenReturn(Optional.of(pool));
+        ObjectProvider<ConnectionHealthMonitor> healthMonitorProvider = mock(ObjectProvider.class);
+        when(healthMonitorProvider.getIfAvailable()).thenReturn(healthMonitor);
+
+        new VaultRefresher(leaseContainer, registry, leaseEventDispatcher, mock(PoolGenerationRetirer.class),
+                new RotationEventJournal(new SimpleMeterRegistry(), 64), rotationCoordinator, healthMonitorProvider);
+
+        ArgumentCaptor<LeaseListener> leaseCaptor = ArgumentCaptor.forClass(LeaseListener.class);
+        verify(leaseContainer).addLeaseListener(leaseCaptor.capture());
+        leaseListener = leaseCaptor.getValue();
+        ArgumentCaptor<LeaseErrorListener> captor = ArgumentCaptor.forClass(LeaseErrorListener.class);
+        verify(leaseContainer).addErrorListener(captor.capture());
+        errorListener = captor.getValue();
+    }
+
+    @Test
+    void initialLeaseRebuildsThePoolWithoutAnotherRequest() {
+        // Os segredos são registrados no VaultConfig; o VaultRefresher não pede leases na inicialização
+        verify(leaseContainer, never()).addRequestedSecret(any());
+        verify(leaseContainer, never()).rotate(any());
+
+        leaseListener.onLeaseEvent(new SecretLeaseCreatedEvent(RequestedSecret.rotating(LEASE_PATH),
+                Lease.of("database/creds/payments-app/abc", Duration.ofHours(1), true),
+                Map.of("username", "v-payments-abc", "password", "secret")));
+
+        verify(leaseEventDispatcher).dispatch(eq(LEASE_PATH), eq(LeaseAction.REBUILD_POOL), any(), any());
+    }
+
+    @Test
+    void vaultErrorWhileRotatingReleasesTheSlot() {
+        errorListener.onLeaseError(new SecretLeaseErrorEvent(RequestedSecret.rotating(LEASE_PATH), Lease.none(),
+                new IllegalStateException("permission denied")), new IllegalStateException("permission denied"));
+
+        verify(rotationCoordinator).release(pool);
+        verify(healthMonitor).onRotationFailed(eq(pool), any());
+    }
+
+    @Test
+    void renewErrorOfANonRotatingSecretKeepsTheSlot() {
+        errorListener.onLeaseError(new SecretLeaseErrorEvent(RequestedSecret.renewable(LEASE_PATH), Lease.none(),
+                new IllegalStateException("permission denied")), new IllegalStateException("permission denied"));
+
+        verify(rotationCoordinator, never()).release(any());
+        verify(healthMonitor, never()).onRotationFailed(any(), any());
+    }
+}
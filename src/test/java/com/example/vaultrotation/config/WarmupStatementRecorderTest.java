@@ -0,0 +1,83 @@
+package com.example.vaultrotation.config;
+
+import com.example.vaultrotation.model.Payment;
+import com.example.vaultrotation.repository.PaymentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Statements de aquecimento a partir do SQL que o Hibernate gera para os repositórios
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WarmupStatementRecorderTest {
+
+    @TestConfiguration
+    static class RecorderConfig {
+        @Bean
+        WarmupStatementRecorder warmupStatementRecorder() {
+            WarmupStatementRecorder recorder = new WarmupStatementRecorder();
+            recorder.setDefaultDataSource("payments");
+            return recorder;
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer warmupStatementInspector(WarmupStatementRecorder recorder) {
+            return new DatabaseConfig().warmupStatementInspector(recorder);
+        }
+    }
+
+    @Autowired
+    private WarmupStatementRecorder recorder;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @AfterEach
+    void cleanUp() {
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void recordsTheSqlHibernateGeneratesForRepositoryCalls() {
+        paymentRepository.save(new Payment("p-1", "Maria", "4111111111111111", new BigDecimal("10.00"), LocalDateTime.now()));
+        paymentRepository.findById("p-1");
+        paymentRepository.findById("p-1");
+
+        List<String> statements = recorder.statementsFor("payments", 20);
+        assertThat(statements).anyMatch(sql -> sql.startsWith("insert into payments"));
+        // A consulta por id, executada mais vezes, vem primeiro
+        assertThat(statements.get(0)).startsWith("select").contains("from payments").contains("where");
+        assertThat(recorder.statementsFor("ledger", 20)).isEmpty();
+    }
+
+    @Test
+    void ranksByUseAndCapsTheTrackedStatementsPerDatasource() {
+        WarmupStatementRecorder ranking = new WarmupStatementRecorder();
+        ranking.record("payments-s1", "select 1");
+        ranking.record("payments-s1", "select 2");
+        ranking.record("payments-s1", "select 2");
+        assertThat(ranking.statementsFor("payments-s1", 1)).containsExactly("select 2");
+        assertThat(ranking.statementsFor("payments-s1", 0)).isEmpty();
+
+        for (int i = 0; i < WarmupStatementRecorder.MAX_TRACKED_STATEMENTS + 10; i++) {
+            ranking.record("audit", "select " + i);
+        }
+        ranking.record("audit", "select 0");
+        assertThat(ranking.statementsFor("audit", Integer.MAX_VALUE)).hasSize(WarmupStatementRecorder.MAX_TRACKED_STATEMENTS);
+        assertThat(ranking.statementsFor("audit", 1)).containsExactly("select 0");
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.vaultrotation.repository;
+
+import com.example.vaultrotation.model.Payment;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bytes alocados por leitura nas duas formas de consulta dos pagamentos (entidade e PaymentView), no H2.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+class PaymentViewAllocationTest {
+
+    private static final int PAYMENTS = 100;
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 2_000;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Serialização da resposta, como no controller
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    private String paymentId;
+
+    @BeforeEach
+    void setUp() {
+        List<Payment> payments = new ArrayList<>();
+        LocalDateTime createdAt = LocalDateTime.of(2026, 1, 1, 0, 0);
+        for (int i = 0; i < PAYMENTS; i++) {
+            payments.add(new Payment("payment-" + i, "Cliente " + i, "4111111111111111",
+                    new BigDecimal("150.00").add(BigDecimal.valueOf(i)), createdAt.plusMinutes(i)));
+        }
+        paymentRepository.saveAll(payments);
+        paymentId = "payment-" + (PAYMENTS / 2);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void listingThroughViewsAllocatesLessThanThroughEntities() {
+        long entities = allocatedPerRead(() -> serialize(paymentRepository.findAll()));
+        long views = allocatedPerRead(() -> serialize(paymentRepository.findAllViews()));
+
+        log.info("GET /api/payments ({} pagamentos): entidade {} bytes, PaymentView {} bytes por leitura",
+                PAYMENTS, entities, views);
+        assertThat(views).isLessThan(entities);
+    }
+
+    @Test
+    void lookupByIdThroughViewAllocatesLessThanThroughEntity() {
+        long entity = allocatedPerRead(() -> serialize(paymentRepository.findById(paymentId).orElseThrow()));
+        long view = allocatedPerRead(() -> serialize(paymentRepository.findViewById(paymentId).orElseThrow()));
+
+        log.info("GET /api/payments/{id}: entidade {} bytes, PaymentView {} bytes por leitura", entity, view);
+        assertThat(view).isLessThan(entity);
+    }
+
+    // Média de bytes alocados pela thread em cada leitura, após o aquecimento
+    private long allocatedPerRead(Supplier<byte[]> read) {
+        for (int i = 0; i < WARMUP; i++) {
+            read.get();
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            read.get();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+    }
+
+    private byte[] serialize(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.vaultrotation.service;
+
+import com.example.vaultrotation.model.PaymentView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyIndexTest {
+
+    private final IdempotencyIndex index = new IdempotencyIndex(new SimpleMeterRegistry(),
+            Duration.ofHours(24), Duration.ofSeconds(30), 2);
+
+    @Test
+    void sizeLimitNeverEvictsReservationsInFlight() {
+        assertThat(index.reserve("in-flight", "hash")).isNull();
+        for (int i = 0; i < 5; i++) {
+            index.reserve("done-" + i, "hash");
+            index.complete("done-" + i, "hash", view("p" + i));
+        }
+
+        IdempotencyIndex.Entry entry = index.reserve("in-flight", "hash");
+        assertThat(entry).isNotNull();
+        assertThat(entry.isInFlight()).isTrue();
+        // Apenas as duas chaves concluídas mais recentes permanecem
+        assertThat(index.get("done-0")).isNull();
+        assertThat(index.get("done-4").response().id()).isEqualTo("p4");
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void completedReservationMovesUnderTheSizeLimit() {
+        index.reserve("a", "hash");
+        index.complete("a", "hash", view("pa"));
+        index.reserve("b", "hash");
+        index.complete("b", "hash", view("pb"));
+        index.reserve("c", "hash");
+        index.complete("c", "hash", view("pc"));
+
+        assertThat(index.get("a")).isNull();
+        assertThat(index.get("c").isInFlight()).isFalse();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void releaseOnlyDropsTheReservation() {
+        index.reserve("a", "hash");
+        index.complete("a", "hash", view("pa"));
+        index.release("a");
+        index.reserve("b", "hash");
+        index.release("b");
+
+        assertThat(index.get("a").response().id()).isEqualTo("pa");
+        assertThat(index.get("b")).isNull();
+    }
+
+    private static PaymentView view(String id) {
+        return new PaymentView(id, "Maria", "4111111111111111", new BigDecimal("10.00"), LocalDateTime.now());
+    }
+}
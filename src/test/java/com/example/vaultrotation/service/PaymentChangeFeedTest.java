@@ -0,0 +1,167 @@
+package com.example.vaultrotation.service;
+
+import com.example.vaultrotation.config.ChangeFeedProperties;
+import com.example.vaultrotation.config.ShardRouter;
+import com.example.vaultrotation.model.PaymentChange;
+import com.example.vaultrotation.model.PaymentOutboxEntry;
+import com.example.vaultrotation.model.PaymentView;
+import com.example.vaultrotation.repository.PaymentOutboxRepository;
+import com.example.vaultrotation.repository.PaymentRepository;
+import com.example.vaultrotation.service.PaymentChangeFeed.Cursor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Leitura de payment_outbox pelo feed: lacunas na sequência (transações ainda não confirmadas) seguram
+ * a leitura do shard, e só são puladas depois de gap-timeout.
+ */
+class PaymentChangeFeedTest {
+
+    private static final String SHARD = "payments";
+
+    private final List<PaymentOutboxEntry> outbox = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PaymentChangeFeed feed;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.fanOut(anyString(), any())).thenAnswer(invocation ->
+                Map.of(SHARD, invocation.<Function<String, Object>>getArgument(1).apply(SHARD)));
+
+        PaymentOutboxRepository outboxRepository = mock(PaymentOutboxRepository.class);
+        when(outboxRepository.autoIncrementIncrement()).thenReturn(1L);
+        when(outboxRepository.findSequencesBefore(any(), any())).thenReturn(List.of());
+        when(outboxRepository.findAfter(anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            long upTo = invocation.getArgument(1);
+            Pageable page = invocation.getArgument(2);
+            return outbox.stream()
+                    .filter(entry -> entry.getSeq() > after && entry.getSeq() <= upTo)
+                    .limit(page.getPageSize())
+                    .toList();
+        });
+
+        PaymentRepository paymentRepository = mock(PaymentRepository.class);
+        when(paymentRepository.findViewsByIdIn(any())).thenAnswer(invocation -> invocation.<Collection<String>>getArgument(0)
+                .stream()
+                .map(id -> new PaymentView(id, "Maria", "4111111111111111", new BigDecimal("10.00"), LocalDateTime.now()))
+                .toList());
+
+        ChangeFeedProperties properties = new ChangeFeedProperties();
+        feed = new PaymentChangeFeed(paymentRepository, outboxRepository, shardRouter, properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        feed.destroy();
+    }
+
+    @Test
+    void uncommittedSequenceHoldsLaterChangesUntilItCommits() {
+        feed.tail();
+        Cursor start = feed.head().orElseThrow();
+
+        record(1, PaymentChange.Type.CREATED, "a", LocalDateTime.now());
+        // A sequência 2 pertence a uma transação ainda não confirmada
+        record(3, PaymentChange.Type.CREATED, "c", LocalDateTime.now());
+        feed.tail();
+        assertThat(ids(feed.read(start, 10))).containsExactly("a");
+        assertThat(feed.head().orElseThrow().position(SHARD)).isEqualTo(1);
+
+        record(2, PaymentChange.Type.DELETED, "b", LocalDateTime.now());
+        feed.tail();
+        PaymentChangeFeed.Page page = feed.read(start, 10);
+        assertThat(ids(page)).containsExactly("a", "b", "c");
+        assertThat(Cursor.parse(page.cursor()).position(SHARD)).isEqualTo(3);
+    }
+
+    @Test
+    void gapOlderThanTimeoutIsSkippedAsRolledBack() {
+        feed.tail();
+        Cursor start = feed.head().orElseThrow();
+
+        record(1, PaymentChange.Type.CREATED, "a", LocalDateTime.now().minusMinutes(2));
+        record(3, PaymentChange.Type.CREATED, "c", LocalDateTime.now().minusMinutes(1));
+        feed.tail();
+
+        assertThat(ids(feed.read(start, 10))).containsExactly("a", "c");
+        assertThat(meterRegistry.counter("payments.feed.gaps.skipped", "shard", SHARD).count()).isEqualTo(1);
+    }
+
+    @Test
+    void cursorBehindTheWindowReadsFromTheDatabaseInPages() {
+        feed.tail();
+        Cursor start = feed.head().orElseThrow();
+        for (int seq = 1; seq <= 5; seq++) {
+            record(seq, PaymentChange.Type.ARCHIVED, "p" + seq, LocalDateTime.now());
+        }
+        feed.tail();
+
+        PaymentChangeFeed.Page first = feed.read(start, 2);
+        assertThat(ids(first)).containsExactly("p1", "p2");
+        assertThat(first.hasMore()).isTrue();
+        PaymentChangeFeed.Page rest = feed.read(Cursor.parse(first.cursor()), 10);
+        assertThat(ids(rest)).containsExactly("p3", "p4", "p5");
+        assertThat(rest.hasMore()).isFalse();
+    }
+
+    @Test
+    void listingVersionIsStableWhileIdleAndAdvancesWithDeletionsAndArchives() {
+        feed.tail();
+        String initial = feed.listingPosition().orElseThrow().version();
+        feed.tail();
+        assertThat(feed.listingPosition().orElseThrow().version()).isEqualTo(initial);
+
+        record(1, PaymentChange.Type.DELETED, "a", LocalDateTime.now());
+        feed.tail();
+        String afterDeletion = feed.listingPosition().orElseThrow().version();
+        assertThat(afterDeletion).isNotEqualTo(initial);
+
+        record(2, PaymentChange.Type.ARCHIVED, "b", LocalDateTime.now());
+        feed.tail();
+        assertThat(feed.listingPosition().orElseThrow().version()).isNotEqualTo(afterDeletion);
+    }
+
+    @Test
+    void cursorRoundTripsAndLegacyCursorsAreExpired() {
+        Cursor cursor = new Cursor(LocalDateTime.of(2024, 5, 1, 10, 0), Map.of("shard-a", 42L, "shard-b", 7L));
+        assertThat(Cursor.parse(cursor.encode())).isEqualTo(cursor);
+
+        String legacy = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("2024-05-01T10:00|0b7c5d5e-9a1f-4c41-a2f7-2c8f6f3b7c10".getBytes(StandardCharsets.UTF_8));
+        assertThat(feed.isExpired(Cursor.parse(legacy))).isTrue();
+    }
+
+    private void record(long seq, PaymentChange.Type type, String paymentId, LocalDateTime changedAt) {
+        PaymentOutboxEntry entry = new PaymentOutboxEntry(type, paymentId, changedAt);
+        entry.setSeq(seq);
+        outbox.add(entry);
+        outbox.sort((a, b) -> Long.compare(a.getSeq(), b.getSeq()));
+    }
+
+    private static List<String> ids(PaymentChangeFeed.Page page) {
+        return page.changes().stream().map(PaymentChange::id).toList();
+    }
+}
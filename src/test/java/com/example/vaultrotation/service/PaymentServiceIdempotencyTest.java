@@ -0,0 +1,160 @@
+package com.example.vaultrotation.service;
+
+import com.example.vaultrotation.config.ShardRouter;
+import com.example.vaultrotation.model.IdempotencyKey;
+import com.example.vaultrotation.model.Payment;
+import com.example.vaultrotation.repository.IdempotencyKeyRepository;
+import com.example.vaultrotation.repository.PaymentRegistrationRepository;
+import com.example.vaultrotation.repository.PaymentRepository;
+import com.example.vaultrotation.service.PaymentService.CreationResult;
+import com.example.vaultrotation.service.PaymentService.Outcome;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Duas réplicas (cada uma com seu índice em memória) criando pagamentos com a mesma Idempotency-Key
+ * no mesmo banco: a chave primária de idempotency_keys deve resultar em um único pagamento.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentServiceIdempotencyTest {
+
+    private static final String SHARD = "payments";
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentRegistrationRepository paymentRegistrationRepository;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private ShardRouter shardRouter;
+
+    @BeforeEach
+    void setUp() {
+        shardRouter = mock(ShardRouter.class);
+        when(shardRouter.shardFor(anyString())).thenReturn(SHARD);
+        when(shardRouter.newIdOn(SHARD)).thenAnswer(invocation -> UUID.randomUUID().toString());
+        when(shardRouter.callOn(eq(SHARD), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        idempotencyKeyRepository.deleteAll();
+        paymentRegistrationRepository.deleteAll();
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void replicaThatMissedTheCommittedKeyReplaysTheOriginalPayment() {
+        PaymentService replicaA = replica(idempotencyKeyRepository);
+        // A réplica B consultou a chave antes do commit da réplica A e segue para a gravação
+        PaymentService replicaB = replica(staleOnFirstLookup(idempotencyKeyRepository));
+
+        CreationResult first = replicaA.create(payment(), "key-1");
+        CreationResult second = replicaB.create(payment(), "key-1");
+
+        assertThat(first.outcome()).isEqualTo(Outcome.CREATED);
+        assertThat(second.outcome()).isEqualTo(Outcome.REPLAYED);
+        assertThat(second.payment().id()).isEqualTo(first.payment().id());
+        assertThat(paymentRepository.count()).isEqualTo(1);
+        assertThat(idempotencyKeyRepository.findById("key-1"))
+                .map(IdempotencyKey::getPaymentId)
+                .contains(first.payment().id());
+    }
+
+    @Test
+    void concurrentReplicasCreateOnePaymentPerKey() throws Exception {
+        PaymentService replicaA = replica(idempotencyKeyRepository);
+        PaymentService replicaB = replica(idempotencyKeyRepository);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 20; i++) {
+                String key = "key-" + i;
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                Future<CreationResult> a = executor.submit(() -> {
+                    barrier.await();
+                    return replicaA.create(payment(), key);
+                });
+                Future<CreationResult> b = executor.submit(() -> {
+                    barrier.await();
+                    return replicaB.create(payment(), key);
+                });
+                CreationResult resultA = a.get(30, TimeUnit.SECONDS);
+                CreationResult resultB = b.get(30, TimeUnit.SECONDS);
+
+                assertThat(resultA.payment().id()).as(key).isEqualTo(resultB.payment().id());
+                assertThat(idempotencyKeyRepository.findById(key))
+                        .map(IdempotencyKey::getPaymentId)
+                        .contains(resultA.payment().id());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(paymentRepository.count()).isEqualTo(20);
+    }
+
+    private PaymentService replica(IdempotencyKeyRepository keyRepository) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IdempotencyIndex index = new IdempotencyIndex(meterRegistry, Duration.ofHours(24), Duration.ofSeconds(30), 100);
+        return new PaymentService(paymentRepository, paymentRegistrationRepository, keyRepository, index,
+                transactionManager, entityManager, shardRouter, meterRegistry);
+    }
+
+    private static Payment payment() {
+        return new Payment(null, "Maria", "4111111111111111", new BigDecimal("150.00"), null);
+    }
+
+    // A primeira consulta da chave não enxerga o que outra réplica gravou depois dela
+    private static IdempotencyKeyRepository staleOnFirstLookup(IdempotencyKeyRepository repository) {
+        AtomicBoolean stale = new AtomicBoolean(true);
+        return (IdempotencyKeyRepository) Proxy.newProxyInstance(IdempotencyKeyRepository.class.getClassLoader(),
+                new Class<?>[]{IdempotencyKeyRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findById") && stale.getAndSet(false)) {
+                        return Optional.empty();
+                    }
+                    try {
+                        return method.invoke(repository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
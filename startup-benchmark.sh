@@ -0,0 +1,35 @@
+#!/bin/bash
+set -e
+
+# Compara tempo de inicialização e memória residente (RSS) entre o JAR na JVM e o executável nativo.
+# Mede até o /actuator/health/liveness responder, com o mesmo Vault e MySQL para os dois builds.
+#   ./mvnw clean package -DskipTests && cp target/vault-rotation-0.0.1-SNAPSHOT.jar /tmp/vault-rotation-jvm.jar
+#   ./mvnw -Pnative clean native:compile -DskipTests
+#   VAULT_TOKEN=root ./startup-benchmark.sh
+JAR=${JAR:-/tmp/vault-rotation-jvm.jar}
+NATIVE=${NATIVE:-target/vault-rotation}
+RUNS=${RUNS:-5}
+PORT=${PORT:-8080}
+export SPRING_PROFILES_ACTIVE=${SPRING_PROFILES_ACTIVE:-native}
+
+measure() {
+  local label=$1; shift
+  for run in $(seq 1 "$RUNS"); do
+    local start=$(date +%s%N)
+    "$@" --server.port="$PORT" > "/tmp/startup-$label-$run.log" 2>&1 &
+    local pid=$!
+    until curl -sf "localhost:$PORT/actuator/health/liveness" > /dev/null; do
+      kill -0 "$pid" 2>/dev/null || { echo "$label: processo terminou, veja /tmp/startup-$label-$run.log"; exit 1; }
+      sleep 0.05
+    done
+    local elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+    local rss=$(awk '/VmRSS/ {print $2}' "/proc/$pid/status")
+    echo "$label;$run;$elapsed;$rss"
+    kill "$pid"; wait "$pid" 2>/dev/null || true
+  done
+}
+
+echo "build;execução;inicialização (ms);RSS (kB)"
+# O JAR roda com o mesmo perfil, mas sem AOT: condições e proxies avaliados na inicialização
+measure jvm java -jar "$JAR"
+measure native "$NATIVE"
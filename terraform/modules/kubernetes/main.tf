@@ -38,6 +38,12 @@ resource "kubernetes_config_map" "app_config" {
       # Configuração para mostrar SQL
       spring.jpa.show-sql=true
       spring.jpa.properties.hibernate.format_sql=true
+      
+      # Health checks: liveness apenas em memória, readiness a partir de snapshot assíncrono
+      management.health.db.enabled=false
+      management.endpoint.health.probes.enabled=true
+      management.endpoint.health.group.liveness.include=livenessState
+      management.endpoint.health.group.readiness.include=readinessState,rotationReadiness
     EOT
     
     "bootstrap.properties" = <<-EOT
@@ -165,7 +171,7 @@ resource "kubernetes_deployment" "app" {
           
           liveness_probe {
             http_get {
-              path = "/actuator/health"
+              path = "/actuator/health/liveness"
               port = 8080
             }
             initial_delay_seconds = 60
@@ -174,7 +180,7 @@ resource "kubernetes_deployment" "app" {
           
           readiness_probe {
             http_get {
-              path = "/actuator/health"
+              path = "/actuator/health/readiness"
               port = 8080
             }
             initial_delay_seconds = 30
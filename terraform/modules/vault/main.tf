@@ -33,7 +33,7 @@ resource "vault_database_secret_backend_connection" "mysql" {
     connection_url = "{{username}}:{{password}}@tcp(${var.mysql_host}:${var.mysql_port})/"
     username       = var.mysql_username
     password       = var.mysql_password
-    allowed_roles  = [var.vault_role_name]
+    allowed_roles  = [var.vault_role_name, var.vault_maintenance_role_name]
   }
 }
 
@@ -45,7 +45,7 @@ resource "vault_database_secret_backend_role" "role" {
   default_ttl         = var.vault_default_ttl
   max_ttl             = var.vault_max_ttl
   creation_statements = [
-    "CREATE USER '{{name}}'@'%' IDENTIFIED BY '{{password}}';",
+    "CREATE USER '{{name}}'@'%' IDENTIFIED BY '{{password}}' WITH MAX_USER_CONNECTIONS 20;",
     "GRANT SELECT, INSERT, UPDATE, DELETE ON ${var.mysql_database}.* TO '{{name}}'@'%';",
   ]
   revocation_statements = [
@@ -53,6 +53,23 @@ resource "vault_database_secret_backend_role" "role" {
   ]
 }
 
+# Role de manutenção: DDL das partições de pagamentos (PaymentArchiver), com usuários de curta duração
+# revogados após o uso; a role das requisições fica apenas com DML
+resource "vault_database_secret_backend_role" "maintenance" {
+  backend             = vault_mount.db.path
+  name                = var.vault_maintenance_role_name
+  db_name             = vault_database_secret_backend_connection.mysql.name
+  default_ttl         = var.vault_maintenance_default_ttl
+  max_ttl             = var.vault_maintenance_max_ttl
+  creation_statements = [
+    "CREATE USER '{{name}}'@'%' IDENTIFIED BY '{{password}}' WITH MAX_USER_CONNECTIONS 2;",
+    "GRANT SELECT, INSERT, CREATE, ALTER, DROP ON ${var.mysql_database}.* TO '{{name}}'@'%';",
+  ]
+  revocation_statements = [
+    "DROP USER IF EXISTS '{{name}}'@'%';",
+  ]
+}
+
 # Armazenar configurações de API externa no KV
 resource "vault_kv_secret_v2" "api_config" {
   mount               = vault_mount.kv.path
@@ -50,6 +50,24 @@ variable "vault_max_ttl" {
   type        = string
 }
 
+variable "vault_maintenance_role_name" {
+  description = "Nome da role com privilégios de DDL para a manutenção das partições"
+  type        = string
+  default     = "payments-maintenance"
+}
+
+variable "vault_maintenance_default_ttl" {
+  description = "TTL padrão para credenciais de manutenção"
+  type        = string
+  default     = "15m"
+}
+
+variable "vault_maintenance_max_ttl" {
+  description = "TTL máximo para credenciais de manutenção"
+  type        = string
+  default     = "1h"
+}
+
 variable "external_api_url" {
   description = "URL da API externa"
   type        = string
@@ -3,11 +3,41 @@ path "database/creds/payments-app" {
   capabilities = ["read"]
 }
 
+path "database/creds/ledger-app" {
+  capabilities = ["read"]
+}
+
+path "database/creds/audit-app" {
+  capabilities = ["read"]
+}
+
+# Usuário de curta duração para o DDL das partições de pagamentos
+path "database/creds/payments-maintenance" {
+  capabilities = ["read"]
+}
+
 # Permissões para renovar leases
 path "sys/leases/renew" {
   capabilities = ["update"]
 }
 
+# Permissões para revogar leases de gerações substituídas, apenas dos papéis da aplicação
+path "sys/leases/revoke/database/creds/payments-app/*" {
+  capabilities = ["update"]
+}
+
+path "sys/leases/revoke/database/creds/ledger-app/*" {
+  capabilities = ["update"]
+}
+
+path "sys/leases/revoke/database/creds/audit-app/*" {
+  capabilities = ["update"]
+}
+
+path "sys/leases/revoke/database/creds/payments-maintenance/*" {
+  capabilities = ["update"]
+}
+
 # Permissões para o engine KV
 path "kv/data/application/*" {
   capabilities = ["read", "list"]
@@ -21,7 +21,7 @@ echo "Configurando conexão com o MySQL..."
 kubectl exec -n vault vault-0 -- vault write database/config/payments \
     plugin_name=mysql-database-plugin \
     connection_url="{{username}}:{{password}}@tcp($MYSQL_HOST:$MYSQL_PORT)/" \
-    allowed_roles="payments-app" \
+    allowed_roles="payments-app,payments-maintenance,ledger-app,audit-app" \
     username="$MYSQL_USER" \
     password="$MYSQL_PASS"
 
@@ -29,10 +29,28 @@ kubectl exec -n vault vault-0 -- vault write database/config/payments \
 echo "Configurando role payments-app com TTL de 1 hora..."
 kubectl exec -n vault vault-0 -- vault write database/roles/payments-app \
     db_name=payments \
-    creation_statements="CREATE USER '{{name}}'@'%' IDENTIFIED BY '{{password}}'; GRANT ALL PRIVILEGES ON $MYSQL_DB.* TO '{{name}}'@'%';" \
+    creation_statements="CREATE USER '{{name}}'@'%' IDENTIFIED BY '{{password}}' WITH MAX_USER_CONNECTIONS 20; GRANT ALL PRIVILEGES ON $MYSQL_DB.* TO '{{name}}'@'%';" \
     default_ttl="1h" \
     max_ttl="24h"
 
+# Role de manutenção: DDL das partições de pagamentos, com usuários de curta duração revogados após o uso
+echo "Configurando role payments-maintenance..."
+kubectl exec -n vault vault-0 -- vault write database/roles/payments-maintenance \
+    db_name=payments \
+    creation_statements="CREATE USER '{{name}}'@'%' IDENTIFIED BY '{{password}}' WITH MAX_USER_CONNECTIONS 2; GRANT SELECT, INSERT, CREATE, ALTER, DROP ON $MYSQL_DB.* TO '{{name}}'@'%';" \
+    default_ttl="15m" \
+    max_ttl="1h"
+
+# Roles dos datasources secundários (ledger e audit), cada uma com seu próprio usuário dinâmico
+for DB_ROLE in ledger audit; do
+  echo "Configurando role $DB_ROLE-app..."
+  kubectl exec -n vault vault-0 -- vault write database/roles/$DB_ROLE-app \
+      db_name=payments \
+      creation_statements="CREATE USER '{{name}}'@'%' IDENTIFIED BY '{{password}}' WITH MAX_USER_CONNECTIONS 20; GRANT ALL PRIVILEGES ON $DB_ROLE.* TO '{{name}}'@'%';" \
+      default_ttl="1h" \
+      max_ttl="24h"
+done
+
 # Habilitar motor de secrets KV versão 2
 echo "Habilitando motor de secrets KV v2..."
 kubectl exec -n vault vault-0 -- vault secrets enable -version=2 kv || echo "Motor KV já habilitado"
@@ -45,11 +63,41 @@ path "database/creds/payments-app" {
   capabilities = ["read"]
 }
 
+path "database/creds/ledger-app" {
+  capabilities = ["read"]
+}
+
+path "database/creds/audit-app" {
+  capabilities = ["read"]
+}
+
+# Usuário de curta duração para o DDL das partições de pagamentos
+path "database/creds/payments-maintenance" {
+  capabilities = ["read"]
+}
+
 # Permissões para renovar leases
 path "sys/leases/renew" {
   capabilities = ["update"]
 }
 
+# Permissões para revogar leases de gerações substituídas, apenas dos papéis da aplicação
+path "sys/leases/revoke/database/creds/payments-app/*" {
+  capabilities = ["update"]
+}
+
+path "sys/leases/revoke/database/creds/ledger-app/*" {
+  capabilities = ["update"]
+}
+
+path "sys/leases/revoke/database/creds/audit-app/*" {
+  capabilities = ["update"]
+}
+
+path "sys/leases/revoke/database/creds/payments-maintenance/*" {
+  capabilities = ["update"]
+}
+
 # Permissões para o engine KV
 path "kv/data/application/*" {
   capabilities = ["read", "list"]